@@ -0,0 +1,21 @@
+#!/usr/bin/env bash
+# Build and run the JMH benchmarks against scripts/fake-ansible.
+# Any arguments are passed to JMH, e.g. a benchmark filter and profilers:
+#
+#   benchmarks/run.sh ParserBenchmark -prof gc
+#   benchmarks/run.sh -p hosts=100 -rf json -rff target/results.json
+#
+# FAKE_ANSIBLE_LATENCY (seconds, default 0) sets the simulated remote latency.
+set -euo pipefail
+
+cd "$(dirname "$0")/.."
+export FAKE_ANSIBLE_LATENCY="${FAKE_ANSIBLE_LATENCY:-0}"
+
+mvn -B -q install -DskipTests
+(cd benchmarks && mvn -B -q package)
+
+FAKE_BIN=$(mktemp -d)
+ln -s "$PWD/scripts/fake-ansible" "$FAKE_BIN/ansible"
+trap 'rm -rf "$FAKE_BIN"' EXIT
+
+PATH="$FAKE_BIN:$PATH" java -jar benchmarks/target/benchmarks.jar "$@"
@@ -0,0 +1,55 @@
+package com.example.ansibleping;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.core.env.MapPropertySource;
+
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * The application's execution beans wired the way Spring Boot wires them,
+ * with defaults for every property and an in-memory meter registry
+ */
+final class BenchmarkContext {
+
+    private BenchmarkContext() {
+    }
+
+    static AnnotationConfigApplicationContext start() {
+        AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext();
+        context.registerBean(SimpleMeterRegistry.class);
+        context.register(AnsibleMetrics.class, ProcessRunner.class, ProcessCommandExecutor.class);
+        context.refresh();
+        return context;
+    }
+
+    /**
+     * The WinRM executor and its session pool, talking plain HTTP to a WS-Management endpoint on this port
+     */
+    static AnnotationConfigApplicationContext startWinRm(int port) {
+        AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext();
+        context.getEnvironment().getPropertySources().addFirst(new MapPropertySource("benchmark",
+                Map.of("ansible.executor", "winrm", "ansible.winrm.port", port)));
+        context.registerBean(SimpleMeterRegistry.class);
+        context.register(AnsibleMetrics.class, WinRmSessionPool.class, WinRmCommandExecutor.class);
+        context.refresh();
+        return context;
+    }
+
+    /**
+     * Simulated remote latency, the same for the fake ansible and the WinRM stub
+     */
+    static Duration fakeLatency() {
+        return Duration.ofMillis(Math.round(Double.parseDouble(System.getenv("FAKE_ANSIBLE_LATENCY")) * 1000));
+    }
+
+    /**
+     * Fail fast unless the benchmark runs against scripts/fake-ansible, see benchmarks/run.sh
+     */
+    static void requireFakeAnsible() {
+        if (System.getenv("FAKE_ANSIBLE_LATENCY") == null) {
+            throw new IllegalStateException("Run through benchmarks/run.sh so that 'ansible' is the fake");
+        }
+    }
+}
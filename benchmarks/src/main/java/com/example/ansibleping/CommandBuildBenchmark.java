@@ -0,0 +1,55 @@
+package com.example.ansibleping;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Building the ansible arguments for one host from a cached template,
+ * against the {@code String.format} command line the executor used to build
+ * for {@code bash -c}
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CommandBuildBenchmark {
+
+    private final ProcessCommandExecutor executor = new ProcessCommandExecutor();
+
+    private final AnsibleCommand status = new AnsibleCommand(new Target("10.0.0.1", "admin", "S3cret!pass"),
+            "win_service", "name=W3SVC", Duration.ofSeconds(60));
+
+    private final AnsibleCommand ping = new AnsibleCommand(new Target("10.0.0.1", "admin", "S3cret!pass"),
+            "win_ping", null, Duration.ofSeconds(30));
+
+    @Benchmark
+    public List<String> statusCommand() {
+        return executor.buildCommand(status);
+    }
+
+    @Benchmark
+    public List<String> pingCommand() {
+        return executor.buildCommand(ping);
+    }
+
+    @Benchmark
+    public String formattedStatusCommand() {
+        Target target = status.target();
+        return String.format(
+            "ansible all -i \"%s,\" -m %s%s -e \"ansible_user=%s ansible_password='%s' ansible_connection=winrm ansible_winrm_server_cert_validation=ignore ansible_winrm_transport=basic ansible_port=5985\"",
+            target.host(), status.module(), String.format(" -a \"%s\"", status.moduleArgs()), target.user(), target.pass());
+    }
+}
@@ -0,0 +1,75 @@
+package com.example.ansibleping;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reading a child process's output of recorded size: {@link ProcessRunner}
+ * (bounded buffer drained on its own thread, deadline enforced) against the
+ * line-by-line {@code StringBuilder} loop that executeCommand used to run on
+ * the calling thread. Both start the same {@code cat} of a scaled recording.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DrainBenchmark {
+
+    @Param({"1", "100", "1000"})
+    public int hosts;
+
+    private AnnotationConfigApplicationContext context;
+    private ProcessRunner processRunner;
+    private Path recording;
+
+    @Setup
+    public void setUp() {
+        context = BenchmarkContext.start();
+        processRunner = context.getBean(ProcessRunner.class);
+        recording = Recordings.scaledFile("win_service", hosts);
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public String processRunner() throws IOException {
+        return processRunner.run(new ProcessBuilder("cat", recording.toString()), Duration.ofSeconds(30)).output();
+    }
+
+    @Benchmark
+    public String lineByLine() throws IOException, InterruptedException {
+        Process process = new ProcessBuilder("cat", recording.toString()).redirectErrorStream(true).start();
+        StringBuilder output = new StringBuilder();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                output.append(line).append("\n");
+            }
+        }
+        process.waitFor();
+        return output.toString();
+    }
+}
@@ -0,0 +1,105 @@
+package com.example.ansibleping;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Checking IIS on a group of hosts three ways: one fake ansible process per
+ * host, one batched process for all of them, and the WinRM executor over
+ * pooled shells to a local {@link StubWsManServer}. With
+ * {@code FAKE_ANSIBLE_LATENCY=0} this measures the local cost of each
+ * strategy; raise it to see how remote latency dominates. The stub holds
+ * every command for the same latency as the fake ansible.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ExecutionBenchmark {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(60);
+
+    @Param({"1", "10", "50"})
+    public int hosts;
+
+    private AnnotationConfigApplicationContext context;
+    private ProcessCommandExecutor executor;
+    private List<Target> targets;
+    private StubWsManServer winRmServer;
+    private AnnotationConfigApplicationContext winRmContext;
+    private WinRmCommandExecutor winRmExecutor;
+    private List<Target> winRmTargets;
+
+    @Setup
+    public void setUp() throws IOException {
+        BenchmarkContext.requireFakeAnsible();
+        context = BenchmarkContext.start();
+        executor = context.getBean(ProcessCommandExecutor.class);
+        targets = new ArrayList<>();
+        for (int i = 0; i < hosts; i++) {
+            targets.add(new Target(Recordings.host(i), "admin", "S3cret!pass"));
+        }
+
+        // Every 127.0.0.x address is this machine: the stub answers for each host and the pool keeps a shell per host
+        winRmServer = new StubWsManServer("admin", "S3cret!pass", InetAddress.getByName("0.0.0.0"));
+        winRmServer.latency(BenchmarkContext.fakeLatency());
+        winRmServer.respond(script -> StubWsManServer.Reply.ok(
+                "changed=False\r\nname=W3SVC\r\nstate=running\r\nstart_mode=auto\r\n"));
+        winRmContext = BenchmarkContext.startWinRm(winRmServer.port());
+        winRmExecutor = winRmContext.getBean(WinRmCommandExecutor.class);
+        winRmTargets = new ArrayList<>();
+        for (int i = 0; i < hosts; i++) {
+            winRmTargets.add(new Target("127.0.0." + (i + 1), "admin", "S3cret!pass"));
+        }
+        // As StartupWarmup does when the application starts
+        winRmExecutor.warmUp(winRmTargets);
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+        winRmContext.close();
+        winRmServer.close();
+    }
+
+    @Benchmark
+    public Map<String, ServiceStatus> processPerHost() {
+        Map<String, ServiceStatus> results = new LinkedHashMap<>();
+        for (Target target : targets) {
+            results.put(target.host(), executor.execute(new AnsibleCommand(target, "win_service", "name=W3SVC", TIMEOUT)));
+        }
+        return results;
+    }
+
+    @Benchmark
+    public Map<String, ServiceStatus> batched() {
+        return executor.executeBatch(targets, "win_service", "name=W3SVC", TIMEOUT);
+    }
+
+    @Benchmark
+    public Map<String, ServiceStatus> winRmPooled() {
+        return winRmExecutor.executeBatch(winRmTargets, "win_service", "name=W3SVC", TIMEOUT);
+    }
+}
@@ -0,0 +1,41 @@
+package com.example.ansibleping;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Starting a child process and waiting for it to exit: directly from an
+ * argument vector, as the executor does now, against going through
+ * {@code bash -c} first, as it used to. The child is {@code /bin/true}, so
+ * the difference is the cost of starting the shell and exec-ing from it.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LaunchBenchmark {
+
+    private static final String TRUE = "/bin/true";
+
+    @Benchmark
+    public int direct() throws IOException, InterruptedException {
+        return new ProcessBuilder(TRUE).start().waitFor();
+    }
+
+    @Benchmark
+    public int shell() throws IOException, InterruptedException {
+        return new ProcessBuilder("bash", "-c", TRUE).start().waitFor();
+    }
+}
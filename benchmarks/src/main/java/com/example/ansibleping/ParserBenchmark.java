@@ -0,0 +1,104 @@
+package com.example.ansibleping;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing recorded json callback output for 1 to 1000 hosts: the streaming
+ * parser the application uses against a Jackson tree-model parser that
+ * produces the same statuses. Run with {@code -prof gc} for allocation rates.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ParserBenchmark {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    @Param({"win_service", "win_ping", "win_service_unreachable"})
+    public String recording;
+
+    @Param({"1", "10", "100", "1000"})
+    public int hosts;
+
+    private String output;
+
+    @Setup
+    public void load() {
+        output = Recordings.scaled(recording, hosts);
+        int parsed = AnsibleJsonParser.parse(output).size();
+        if (parsed != hosts || treeParse(output).size() != hosts) {
+            throw new IllegalStateException("Expected " + hosts + " hosts in " + recording + " but parsed " + parsed);
+        }
+    }
+
+    @Benchmark
+    public Map<String, ServiceStatus> streaming() {
+        return AnsibleJsonParser.parse(output);
+    }
+
+    @Benchmark
+    public Map<String, ServiceStatus> tree() {
+        return treeParse(output);
+    }
+
+    /**
+     * Reference implementation reading the whole document into a tree first
+     */
+    static Map<String, ServiceStatus> treeParse(String output) {
+        Map<String, ServiceStatus> results = new LinkedHashMap<>();
+        int start = output.startsWith("{") ? 0 : output.indexOf("\n{") + 1;
+        try {
+            JsonNode document = MAPPER.readTree(output.substring(start));
+            for (JsonNode play : document.path("plays")) {
+                for (JsonNode task : play.path("tasks")) {
+                    var hosts = task.path("hosts").fields();
+                    while (hosts.hasNext()) {
+                        var entry = hosts.next();
+                        results.put(entry.getKey(), toStatus(entry.getKey(), entry.getValue()));
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return results;
+    }
+
+    private static ServiceStatus toStatus(String host, JsonNode result) {
+        ServiceState state;
+        if (result.path("unreachable").asBoolean()) {
+            state = ServiceState.UNREACHABLE;
+        } else if (result.path("failed").asBoolean()) {
+            state = ServiceState.FAILED;
+        } else if (result.has("state")) {
+            state = ServiceState.fromWindowsState(result.get("state").asText());
+        } else {
+            state = "pong".equals(result.path("ping").asText()) ? ServiceState.REACHABLE : ServiceState.UNKNOWN;
+        }
+        return new ServiceStatus(host, state, result.path("changed").asBoolean(),
+                result.has("start_mode") ? result.get("start_mode").asText() : null,
+                result.has("process_id") ? result.get("process_id").asInt() : null,
+                0, result.has("msg") ? result.get("msg").asText() : null);
+    }
+}
@@ -0,0 +1,95 @@
+package com.example.ansibleping;
+
+import com.fasterxml.jackson.core.util.DefaultIndenter;
+import com.fasterxml.jackson.core.util.DefaultPrettyPrinter;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Recorded ansible {@code json} callback output for one host, scaled up to
+ * any number of hosts by copying that host's results under new names
+ */
+final class Recordings {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    // Same layout as the json callback: four-space indent, one field per line
+    private static final DefaultPrettyPrinter ANSIBLE_STYLE = new DefaultPrettyPrinter()
+            .withObjectIndenter(new DefaultIndenter("    ", "\n"))
+            .withArrayIndenter(new DefaultIndenter("    ", "\n"));
+
+    private Recordings() {
+    }
+
+    /**
+     * Get the recording with its single host replicated as 10.0.0.1 ... 10.0.x.y
+     */
+    static String scaled(String name, int hosts) {
+        String recording = load(name);
+        int start = recording.indexOf("\n{") + 1;
+        String preamble = recording.startsWith("{") ? "" : recording.substring(0, start);
+        try {
+            JsonNode document = MAPPER.readTree(recording.substring(preamble.length()));
+            for (JsonNode play : document.get("plays")) {
+                for (JsonNode task : play.get("tasks")) {
+                    replicate((ObjectNode) task.get("hosts"), hosts);
+                }
+            }
+            replicate((ObjectNode) document.get("stats"), hosts);
+            return preamble + MAPPER.writer(ANSIBLE_STYLE).writeValueAsString(document) + "\n";
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Write the scaled recording to a temporary file, for the fake ansible to print
+     */
+    static Path scaledFile(String name, int hosts) {
+        try {
+            Path file = Files.createTempFile("recording-" + name + "-", ".json");
+            file.toFile().deleteOnExit();
+            Files.writeString(file, scaled(name, hosts));
+            return file;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Host names used in scaled recordings, in order
+     */
+    static String host(int index) {
+        return "10.0." + (index / 250) + "." + (index % 250 + 1);
+    }
+
+    private static void replicate(ObjectNode hosts, int count) {
+        Iterator<Map.Entry<String, JsonNode>> fields = hosts.fields();
+        JsonNode template = fields.next().getValue();
+        hosts.removeAll();
+        for (int i = 0; i < count; i++) {
+            hosts.set(host(i), template.deepCopy());
+        }
+    }
+
+    private static String load(String name) {
+        try (InputStream in = Recordings.class.getResourceAsStream("/recordings/" + name + ".json")) {
+            if (in == null) {
+                throw new IllegalArgumentException("No recording named " + name);
+            }
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
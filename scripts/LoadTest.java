@@ -0,0 +1,71 @@
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Fires N concurrent POST /check-iis-status requests and reports how many
+ * the server actually worked on at once.
+ *
+ * Usage: java scripts/LoadTest.java [baseUrl] [requests]
+ */
+public class LoadTest {
+
+    public static void main(String[] args) throws Exception {
+        String baseUrl = args.length > 0 ? args[0] : "http://localhost:8080";
+        int requests = args.length > 1 ? Integer.parseInt(args[1]) : 500;
+
+        HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(10)).build();
+        AtomicInteger failures = new AtomicInteger();
+        long[] latencies = new long[requests];
+
+        long start = System.nanoTime();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<?>> futures = new ArrayList<>(requests);
+            for (int i = 0; i < requests; i++) {
+                int index = i;
+                futures.add(executor.submit(() -> {
+                    String body = String.format("{\"host\":\"10.0.%d.%d\",\"user\":\"load\",\"pass\":\"test\"}",
+                            index / 250, index % 250 + 1);
+                    HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + "/check-iis-status"))
+                            .header("Content-Type", "application/json")
+                            .timeout(Duration.ofMinutes(5))
+                            .POST(HttpRequest.BodyPublishers.ofString(body))
+                            .build();
+                    long sent = System.nanoTime();
+                    try {
+                        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+                        if (response.statusCode() != 200 || !response.body().contains("RUNNING")) {
+                            failures.incrementAndGet();
+                        }
+                    } catch (Exception e) {
+                        failures.incrementAndGet();
+                    }
+                    latencies[index] = System.nanoTime() - sent;
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        }
+        long wallNanos = System.nanoTime() - start;
+
+        Arrays.sort(latencies);
+        double totalLatency = Arrays.stream(latencies).sum();
+        System.out.printf("requests=%d failures=%d wall=%.2fs throughput=%.1f req/s%n",
+                requests, failures.get(), wallNanos / 1e9, requests / (wallNanos / 1e9));
+        System.out.printf("latency p50=%.2fs p99=%.2fs max=%.2fs%n",
+                latencies[requests / 2] / 1e9, latencies[(int) (requests * 0.99)] / 1e9, latencies[requests - 1] / 1e9);
+        // Little's law: average number of requests in flight over the run
+        System.out.printf("achieved concurrency=%.0f%n", totalLatency / wallNanos);
+    }
+}
@@ -0,0 +1,49 @@
+#!/usr/bin/env bash
+# Start the application in the fast-start profile with a class data sharing
+# (CDS) archive, so the JVM maps the classes it needs from one file instead
+# of loading, verifying and parsing them from the jar one by one.
+#
+# The first run unpacks the jar into target/fast-start and records the
+# archive with a training run that starts the context and exits at once;
+# later runs reuse both until the jar is rebuilt. A jar built with
+# `mvn -Paot package` also runs with its AOT-generated bean definitions.
+#
+# Usage: scripts/fast-start.sh [application arguments]
+set -euo pipefail
+
+cd "$(dirname "$0")/.."
+JAR=target/ansible-ping-0.0.1-SNAPSHOT.jar
+DIR=target/fast-start
+MAIN=com.example.ansibleping.AnsiblePingApplication
+export SPRING_PROFILES_ACTIVE="${SPRING_PROFILES_ACTIVE:-fast-start}"
+
+[ -f "$JAR" ] || mvn -B -q package -DskipTests
+
+JAVA_OPTS=()
+if jar tf "$JAR" | grep -q 'AnsiblePingApplication__ApplicationContextInitializer'; then
+    JAVA_OPTS+=(-Dspring.aot.enabled=true)
+fi
+
+if [ ! -f "$DIR/app.jsa" ] || [ "$JAR" -nt "$DIR/app.jsa" ]; then
+    echo "Unpacking $JAR and recording the CDS archive..." >&2
+    rm -rf "$DIR"
+    mkdir -p "$DIR/unpacked"
+    (cd "$DIR/unpacked" && jar xf "../../../$JAR")
+    # CDS only archives classes from jars, so the application classes go back into one
+    jar cf "$DIR/application.jar" -C "$DIR/unpacked/BOOT-INF/classes" .
+    {
+        printf '%s' "$DIR/application.jar"
+        sed -n 's/^- "\(.*\)"$/\1/p' "$DIR/unpacked/BOOT-INF/classpath.idx" |
+            while read -r lib; do printf ':%s' "$DIR/unpacked/$lib"; done
+    } > "$DIR/classpath"
+
+    # Start the context and exit; data goes to a scratch directory, and no checks or warm-up run
+    java -XX:ArchiveClassesAtExit="$DIR/app.jsa" -Dspring.context.exit=onRefresh "${JAVA_OPTS[@]}" \
+        -cp "$(cat "$DIR/classpath")" "$MAIN" \
+        --server.port=0 --startup.warmup.enabled=false \
+        --iis.inventory.dir="$DIR/training/inventory" --iis.history.dir="$DIR/training/history" \
+        --iis.cluster.dir="$DIR/training/cluster" > "$DIR/training.log" 2>&1 ||
+        { echo "Training run failed, see $DIR/training.log" >&2; exit 1; }
+fi
+
+exec java -XX:SharedArchiveFile="$DIR/app.jsa" "${JAVA_OPTS[@]}" -cp "$(cat "$DIR/classpath")" "$MAIN" "$@"
@@ -0,0 +1,58 @@
+#!/usr/bin/env bash
+# Compare request concurrency with platform (thread-per-request) and
+# virtual-thread handling. Both runs use scripts/fake-ansible, which
+# sleeps FAKE_ANSIBLE_LATENCY seconds per call, and a process limit high
+# enough that only the request threads can be the bottleneck.
+#
+# Usage: scripts/load-test.sh [requests]
+set -euo pipefail
+
+cd "$(dirname "$0")/.."
+REQUESTS="${1:-1000}"
+PORT="${PORT:-18080}"
+export FAKE_ANSIBLE_LATENCY="${FAKE_ANSIBLE_LATENCY:-2}"
+
+JAR=target/ansible-ping-0.0.1-SNAPSHOT.jar
+[ -f "$JAR" ] || mvn -B -q package -DskipTests
+
+FAKE_BIN=$(mktemp -d)
+ln -s "$PWD/scripts/fake-ansible" "$FAKE_BIN/ansible"
+trap 'rm -rf "$FAKE_BIN"' EXIT
+
+run() {
+    local profile="$1"
+    echo "== ${profile} threads, ${REQUESTS} concurrent requests, ${FAKE_ANSIBLE_LATENCY}s per ansible call"
+    PATH="$FAKE_BIN:$PATH" java -jar "$JAR" \
+        --server.port="$PORT" \
+        --spring.profiles.active="$profile" \
+        --server.tomcat.threads.max=200 \
+        --server.tomcat.max-connections="$((REQUESTS * 2))" \
+        --server.tomcat.accept-count="$REQUESTS" \
+        --ansible.max-concurrent-processes="$REQUESTS" \
+        --iis.monitor.interval-ms=86400000 > "target/load-test-${profile}.log" 2>&1 &
+    local pid=$!
+    until curl -s -o /dev/null "http://localhost:$PORT/monitor/status"; do sleep 1; done
+
+    # Peak number of ansible processes the server had running at once
+    local peak_file
+    peak_file=$(mktemp)
+    (
+        peak=0
+        while true; do
+            running=$(pgrep -c -f "$FAKE_BIN/ansible" || true)
+            if [ "$running" -gt "$peak" ]; then peak=$running; echo "$peak" > "$peak_file"; fi
+            sleep 0.2
+        done
+    ) &
+    local sampler=$!
+
+    java scripts/LoadTest.java "http://localhost:$PORT" "$REQUESTS"
+    kill "$sampler"
+    echo "peak concurrent ansible processes=$(cat "$peak_file" 2>/dev/null || echo 0)"
+    rm -f "$peak_file"
+    kill "$pid"
+    wait "$pid" 2>/dev/null || true
+}
+
+run platform
+run virtual
@@ -0,0 +1,34 @@
+package com.example.ansibleping;
+
+import java.time.Duration;
+
+/**
+ * A single ad-hoc Ansible module invocation against one target, with the
+ * deadline after which it is abandoned
+ */
+public record AnsibleCommand(Target target, String module, String moduleArgs, Duration timeout) {
+
+    /**
+     * Short name of what the command does, used to tag metrics
+     */
+    public String operation() {
+        return operationOf(module, moduleArgs);
+    }
+
+    /**
+     * Name a module invocation: ping, status, or the requested service state (started, stopped, restarted)
+     */
+    public static String operationOf(String module, String moduleArgs) {
+        if ("win_ping".equals(module)) {
+            return "ping";
+        }
+        if (moduleArgs != null) {
+            for (String token : moduleArgs.trim().split("\\s+")) {
+                if (token.startsWith("state=")) {
+                    return token.substring("state=".length());
+                }
+            }
+        }
+        return "win_service".equals(module) ? "status" : module;
+    }
+}
@@ -1,21 +1,73 @@
 package com.example.ansibleping;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import java.net.URI;
 import java.net.URLDecoder;
 import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.RejectedExecutionException;
 
 @RestController
-@CrossOrigin(origins = "*")
 public class AnsibleController {
 
+    // Longest an operation status request is held open waiting for the result
+    private static final long MAX_OPERATION_WAIT_MILLIS = 60000;
+
     @Autowired
     private AnsibleService ansibleService;
 
     @Autowired
     private IISMonitorService iisMonitorService;
 
+    @Autowired
+    private IISStatusCache statusCache;
+
+    @Autowired
+    private IISStatusStream statusStream;
+
+    @Autowired
+    private StatusHistoryStore historyStore;
+
+    @Autowired
+    private FleetActionService fleetActionService;
+
+    @Autowired
+    private Inventory inventory;
+
+    @Autowired
+    private IISProbeService probeService;
+
+    @Autowired
+    private HttpHealthProbe httpProbe;
+
+    @Autowired
+    private ClusterCoordinator cluster;
+
+    @Autowired
+    private OperationService operationService;
+
+    @Autowired
+    private LogTailService logTailService;
+
+    @Autowired
+    private RemediationEngine remediation;
+
+    @Autowired
+    private ApiAuthorization apiAuthorization;
+
     @PostMapping("/ping-vm")
     public ResponseEntity<String> pingVM(@RequestBody PingRequest request) {
         try {
@@ -42,6 +94,42 @@ public class AnsibleController {
         }
     }
 
+    @PostMapping("/ping-vm/batch")
+    public ResponseEntity<Map<String, String>> pingVMBatch(@RequestBody List<PingRequest> requests) {
+        return ResponseEntity.ok(ansibleService.pingVM(toTargets(requests)));
+    }
+
+    @PostMapping("/check-iis-status/batch")
+    public ResponseEntity<Map<String, String>> checkIISStatusBatch(@RequestBody List<PingRequest> requests) {
+        return ResponseEntity.ok(ansibleService.checkIISStatus(toTargets(requests)));
+    }
+
+    @PostMapping("/check-iis-status/details")
+    public ResponseEntity<?> checkIISStatusDetails(@RequestBody PingRequest request) {
+        try {
+            return ResponseEntity.ok(ansibleService.getIISStatus(request.getHost(), request.getUser(), request.getPass()));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body("Validation Error: " + e.getMessage());
+        } catch (Exception e) {
+            return ResponseEntity.internalServerError().body("Error: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Probe W3SVC and WAS, every app pool, every site with its bindings and
+     * basic performance counters in one remote execution
+     */
+    @PostMapping("/check-iis-status/probe")
+    public ResponseEntity<?> probeIIS(@RequestBody PingRequest request) {
+        try {
+            return ResponseEntity.ok(probeService.probe(request.getHost(), request.getUser(), request.getPass()));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body("Validation Error: " + e.getMessage());
+        } catch (Exception e) {
+            return ResponseEntity.internalServerError().body("Error: " + e.getMessage());
+        }
+    }
+
     @PostMapping("/start-iis")
     public ResponseEntity<String> startIIS(@RequestBody PingRequest request) {
         try {
@@ -181,14 +269,446 @@ public class AnsibleController {
         return iisMonitorService.checkIISStatusNow();
     }
 
+    /**
+     * Monitor a host with the given credential. The credential is stored in
+     * the inventory under {@code user@host}, replacing the one there, so it needs the API token.
+     */
     @PostMapping("/monitor/update-config")
-    public String updateMonitoringConfig(@RequestBody PingRequest request) {
+    public ResponseEntity<String> updateMonitoringConfig(@RequestBody PingRequest request,
+                                                         @RequestHeader(value = HttpHeaders.AUTHORIZATION, required = false) String authorization) {
+        if (!apiAuthorization.permits(authorization)) {
+            return unauthorized("Changing a monitored host");
+        }
         try {
             iisMonitorService.updateMonitoringConfig(request.host, request.user, request.pass);
-            return "Monitoring configuration updated successfully";
+            return ResponseEntity.ok("Monitoring configuration updated successfully");
         } catch (Exception e) {
-            return "Error updating monitoring configuration: " + e.getMessage();
+            return ResponseEntity.ok("Error updating monitoring configuration: " + e.getMessage());
+        }
+    }
+
+    @GetMapping("/monitor/targets")
+    public List<String> getMonitoredTargets() {
+        return iisMonitorService.getMonitoredHosts();
+    }
+
+    /**
+     * Add or replace a monitored host; stores its credential like {@code /monitor/update-config}
+     */
+    @PostMapping("/monitor/targets")
+    public ResponseEntity<String> addMonitoredTarget(@RequestBody PingRequest request,
+                                                     @RequestHeader(value = HttpHeaders.AUTHORIZATION, required = false) String authorization) {
+        if (!apiAuthorization.permits(authorization)) {
+            return unauthorized("Changing a monitored host");
+        }
+        try {
+            iisMonitorService.updateMonitoringConfig(request.getHost(), request.getUser(), request.getPass());
+            return ResponseEntity.ok("Host " + request.getHost() + " added to monitoring");
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body("Validation Error: " + e.getMessage());
+        }
+    }
+
+    @DeleteMapping("/monitor/targets")
+    public ResponseEntity<String> removeMonitoredTarget(@RequestParam String host,
+                                                        @RequestHeader(value = HttpHeaders.AUTHORIZATION, required = false) String authorization) {
+        if (!apiAuthorization.permits(authorization)) {
+            return unauthorized("Changing the inventory");
+        }
+        return removeTarget(host);
+    }
+
+    @GetMapping("/monitor/sweep")
+    public IISMonitorService.Sweep getSweepMetrics() {
+        return iisMonitorService.getSweep();
+    }
+
+    /**
+     * Run the composite probe against a host from the inventory, using its stored credential
+     */
+    @GetMapping("/monitor/probe")
+    public ResponseEntity<?> probeMonitoredHost(@RequestParam String host,
+                                                @RequestHeader(value = HttpHeaders.AUTHORIZATION, required = false) String authorization) {
+        if (!apiAuthorization.permits(authorization)) {
+            return unauthorized("Probing an inventory host");
+        }
+        Target target = inventory.target(host);
+        if (target == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(probeService.probe(target.host(), target.user(), target.pass()));
+    }
+
+    /**
+     * Collected System events and IIS access log lines of a host, oldest
+     * first. Pass the last {@code sequence} seen as {@code after} to read on.
+     */
+    @GetMapping("/monitor/logs")
+    public List<LogEntry> getLogs(@RequestParam String host,
+                                  @RequestParam(defaultValue = "0") long after,
+                                  @RequestParam(required = false) String source,
+                                  @RequestParam(defaultValue = "200") int limit) {
+        return logTailService.query(host, after, source, Math.max(1, Math.min(limit, 5000)));
+    }
+
+    /**
+     * Fetch what an inventory host logged since its last collection
+     */
+    @PostMapping("/monitor/logs/collect")
+    public ResponseEntity<?> collectLogs(@RequestParam String host,
+                                         @RequestHeader(value = HttpHeaders.AUTHORIZATION, required = false) String authorization) {
+        if (!apiAuthorization.permits(authorization)) {
+            return unauthorized("Collecting the logs of an inventory host");
+        }
+        Target target = inventory.target(host);
+        if (target == null) {
+            return ResponseEntity.notFound().build();
+        }
+        LogTailService.LogBatch batch = logTailService.collect(target);
+        return batch == null
+                ? ResponseEntity.status(HttpStatus.CONFLICT).body("A log collection for " + host + " is already running")
+                : ResponseEntity.ok(batch);
+    }
+
+    @GetMapping("/monitor/schedule")
+    public List<HostSchedule.Snapshot> getMonitorSchedule() {
+        return iisMonitorService.getSchedules();
+    }
+
+    /**
+     * Cluster members and how the host shards are split between them
+     */
+    @GetMapping("/monitor/cluster")
+    public ClusterCoordinator.ClusterStatus getClusterStatus() {
+        return cluster.getStatus();
+    }
+
+    /**
+     * Active remediation policies, queued events, and the remediation
+     * actions running and recently finished
+     */
+    @GetMapping("/monitor/remediation")
+    public RemediationEngine.Status getRemediation() {
+        return remediation.getStatus();
+    }
+
+    /**
+     * Last HTTP probe of every monitored host: URL, status code and latency
+     */
+    @GetMapping("/monitor/http")
+    public List<HttpHealthProbe.HttpCheck> getHttpProbes() {
+        return httpProbe.getLatest();
+    }
+
+    /**
+     * Stream IIS state changes of monitored hosts as Server-Sent Events.
+     * A "snapshot" event with the current state comes first, then a "status"
+     * event per transition and a "removed" event when a host is dropped.
+     * Repeat {@code host} to only follow some hosts.
+     */
+    @GetMapping(value = "/monitor/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> streamStatus(@RequestParam(required = false) List<String> host) {
+        try {
+            Set<String> hosts = host == null ? Set.of() : Set.copyOf(host);
+            return ResponseEntity.ok(statusStream.subscribe(hosts, iisMonitorService::getLatestStatus));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        }
+    }
+
+    /**
+     * Get the latest known state of every monitored host without opening a stream
+     */
+    @GetMapping("/monitor/latest")
+    public List<StatusEvent> getLatestStatus() {
+        return iisMonitorService.getLatestStatus();
+    }
+
+    /**
+     * Get the stored checks and auto-restarts of a host, by default over the last 24 hours.
+     * {@code from} and {@code to} are ISO-8601 instants, e.g. 2024-05-01T00:00:00Z.
+     */
+    @GetMapping("/monitor/history")
+    public List<HistoryRecord> getHistory(@RequestParam String host,
+                                          @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant from,
+                                          @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant to) {
+        Instant end = to == null ? Instant.now() : to;
+        Instant start = from == null ? end.minus(Duration.ofDays(1)) : from;
+        return historyStore.query(host, start.toEpochMilli(), end.toEpochMilli());
+    }
+
+    /**
+     * Get uptime, MTTR and restart figures of a host, by default over the last 24 hours
+     */
+    @GetMapping("/monitor/history/report")
+    public HistoryReport getHistoryReport(@RequestParam String host,
+                                          @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant from,
+                                          @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant to) {
+        Instant end = to == null ? Instant.now() : to;
+        Instant start = from == null ? end.minus(Duration.ofDays(1)) : from;
+        return historyStore.report(host, start.toEpochMilli(), end.toEpochMilli());
+    }
+
+    /**
+     * Get IIS status cache hit, miss and coalesce counters
+     */
+    @GetMapping("/monitor/cache")
+    public Map<String, Long> getCacheStats() {
+        return statusCache.getStats();
+    }
+
+    /**
+     * Start a rolling start, stop or restart of IIS across a list of hosts,
+     * an inventory group or tag, or every monitored host with {@code "group": "monitored"}.
+     * Returns 202 with the job; poll, stream or cancel it by its ID. Selecting
+     * hosts from the inventory uses their stored credentials and needs the API token.
+     */
+    @PostMapping("/fleet/jobs")
+    public ResponseEntity<?> submitFleetJob(@RequestBody FleetActionRequest request,
+                                            @RequestHeader(value = HttpHeaders.AUTHORIZATION, required = false) String authorization) {
+        boolean stored = request.getGroup() != null || request.getTag() != null;
+        if (stored && !apiAuthorization.permits(authorization)) {
+            return unauthorized("Selecting hosts by group or tag");
+        }
+        try {
+            List<Target> targets;
+            if ("monitored".equals(request.getGroup())) {
+                targets = inventory.targets();
+            } else if (request.getGroup() != null || request.getTag() != null) {
+                targets = request.getGroup() != null ? inventory.byGroup(request.getGroup()) : inventory.byTag(request.getTag());
+                if (targets.isEmpty()) {
+                    throw new IllegalArgumentException("No hosts in group or tag "
+                            + (request.getGroup() != null ? request.getGroup() : request.getTag()));
+                }
+            } else {
+                targets = request.getHosts() == null ? List.of() : toTargets(request.getHosts());
+            }
+            FleetJob job = fleetActionService.submit(FleetJob.Action.parse(request.getAction()), targets,
+                    request.toOptions());
+            return ResponseEntity.accepted()
+                    .location(URI.create("/fleet/jobs/" + job.getId()))
+                    .body(job.snapshot());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body("Validation Error: " + e.getMessage());
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(e.getMessage());
+        }
+    }
+
+    @GetMapping("/fleet/jobs")
+    public List<FleetJob.Snapshot> getFleetJobs() {
+        return fleetActionService.getJobs();
+    }
+
+    @GetMapping("/fleet/jobs/{id}")
+    public ResponseEntity<FleetJob.Snapshot> getFleetJob(@PathVariable String id) {
+        FleetJob job = fleetActionService.getJob(id);
+        return job == null ? ResponseEntity.notFound().build() : ResponseEntity.ok(job.snapshot());
+    }
+
+    /**
+     * Cancel a running job. Hosts already being acted on finish; the rest are left alone.
+     */
+    @DeleteMapping("/fleet/jobs/{id}")
+    public ResponseEntity<?> cancelFleetJob(@PathVariable String id) {
+        FleetJob job = fleetActionService.getJob(id);
+        if (job == null) {
+            return ResponseEntity.notFound().build();
+        }
+        if (!fleetActionService.cancel(id)) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body("Job " + id + " has already finished");
+        }
+        return ResponseEntity.ok(job.snapshot());
+    }
+
+    /**
+     * Stream a job's progress as Server-Sent Events: a "job" event with the
+     * current state, a "host" event per host update and a final "job" event
+     */
+    @GetMapping(value = "/fleet/jobs/{id}/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> streamFleetJob(@PathVariable String id) {
+        SseEmitter emitter = fleetActionService.subscribe(id);
+        return emitter == null ? ResponseEntity.notFound().build() : ResponseEntity.ok(emitter);
+    }
+
+    /**
+     * Run any single-host operation (ping, status, details, probe, start,
+     * stop, restart) in the background. Returns 202 with the operation at
+     * once; collect the result from {@code GET /operations/{id}}.
+     */
+    @PostMapping("/operations")
+    public ResponseEntity<?> submitOperation(@RequestBody OperationRequest request) {
+        try {
+            Operation op = operationService.submit(request.getOperation(), request.getHost(), request.getUser(),
+                    request.getPass());
+            return ResponseEntity.accepted()
+                    .location(URI.create("/operations/" + op.getId()))
+                    .body(op.snapshot());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body("Validation Error: " + e.getMessage());
+        } catch (RejectedExecutionException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(e.getMessage());
+        }
+    }
+
+    /**
+     * Start many operations at once; returns 202 with them in request order.
+     * Nothing is started unless every request is valid.
+     */
+    @PostMapping("/operations/batch")
+    public ResponseEntity<?> submitOperations(@RequestBody List<OperationRequest> requests) {
+        try {
+            for (OperationRequest request : requests) {
+                Operation.Kind.parse(request.getOperation());
+                ansibleService.validateInput(request.getHost(), request.getUser(), request.getPass());
+            }
+            List<Operation.Snapshot> submitted = new ArrayList<>(requests.size());
+            for (OperationRequest request : requests) {
+                submitted.add(operationService.submit(request.getOperation(), request.getHost(), request.getUser(),
+                        request.getPass()).snapshot());
+            }
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(submitted);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body("Validation Error: " + e.getMessage());
+        } catch (RejectedExecutionException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(e.getMessage());
+        }
+    }
+
+    /**
+     * List operations by ID ({@code ?id=a&id=b}), or every retained one newest first
+     */
+    @GetMapping("/operations")
+    public List<Operation.Snapshot> getOperations(@RequestParam(required = false) List<String> id) {
+        return operationService.getAll(id);
+    }
+
+    /**
+     * Get an operation. With {@code waitMs} the response is held, without
+     * holding a server thread, until the operation finishes or the wait is over.
+     */
+    @GetMapping("/operations/{id}")
+    public DeferredResult<ResponseEntity<Operation.Snapshot>> getOperation(@PathVariable String id,
+                                                                           @RequestParam(defaultValue = "0") long waitMs) {
+        Operation op = operationService.get(id);
+        if (op == null) {
+            DeferredResult<ResponseEntity<Operation.Snapshot>> notFound = new DeferredResult<>();
+            notFound.setResult(ResponseEntity.notFound().build());
+            return notFound;
+        }
+        long wait = Math.min(Math.max(waitMs, 0), MAX_OPERATION_WAIT_MILLIS);
+        DeferredResult<ResponseEntity<Operation.Snapshot>> result = new DeferredResult<>(
+                wait > 0 ? wait : null, () -> ResponseEntity.ok(op.snapshot()));
+        if (wait == 0 || op.isFinished()) {
+            result.setResult(ResponseEntity.ok(op.snapshot()));
+        } else {
+            op.whenDone().thenAccept(snapshot -> result.setResult(ResponseEntity.ok(snapshot)));
         }
+        return result;
+    }
+
+    /**
+     * List inventory entries, optionally only those in a group and/or with a tag
+     */
+    @GetMapping("/inventory/targets")
+    public List<InventoryTarget> getInventory(@RequestParam(required = false) String group,
+                                              @RequestParam(required = false) String tag) {
+        return inventory.entries(group, tag);
+    }
+
+    /**
+     * Add or replace a host with its credential ID, groups and tags. This
+     * points a stored credential at a host, so it needs the API token.
+     */
+    @PutMapping("/inventory/targets")
+    public ResponseEntity<String> putInventoryTarget(@RequestBody InventoryTarget target,
+                                                     @RequestHeader(value = HttpHeaders.AUTHORIZATION, required = false) String authorization) {
+        if (!apiAuthorization.permits(authorization)) {
+            return unauthorized("Assigning a credential to a host");
+        }
+        try {
+            inventory.put(target, null);
+            return ResponseEntity.ok("Host " + target.host() + " saved in the inventory");
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body("Validation Error: " + e.getMessage());
+        }
+    }
+
+    @DeleteMapping("/inventory/targets")
+    public ResponseEntity<String> removeInventoryTarget(@RequestParam String host,
+                                                       @RequestHeader(value = HttpHeaders.AUTHORIZATION, required = false) String authorization) {
+        if (!apiAuthorization.permits(authorization)) {
+            return unauthorized("Changing the inventory");
+        }
+        return removeTarget(host);
+    }
+
+    @GetMapping("/inventory/groups")
+    public Map<String, List<String>> getInventoryGroups() {
+        return inventory.groups();
+    }
+
+    @GetMapping("/inventory/tags")
+    public Map<String, List<String>> getInventoryTags() {
+        return inventory.tags();
+    }
+
+    /**
+     * List credential IDs and user names; passwords are never returned
+     */
+    @GetMapping("/inventory/credentials")
+    public List<Map<String, String>> getCredentials() {
+        return inventory.credentials().stream()
+            .map(credential -> Map.of("id", credential.id(), "user", credential.user()))
+            .toList();
+    }
+
+    /**
+     * Add or replace a credential; hosts using it switch to it on their next check
+     */
+    @PutMapping("/inventory/credentials")
+    public ResponseEntity<String> putCredential(@RequestBody Credential credential,
+                                                @RequestHeader(value = HttpHeaders.AUTHORIZATION, required = false) String authorization) {
+        if (!apiAuthorization.permits(authorization)) {
+            return unauthorized("Changing a credential");
+        }
+        inventory.putCredential(credential);
+        return ResponseEntity.ok("Credential " + credential.id() + " saved");
+    }
+
+    @DeleteMapping("/inventory/credentials/{id}")
+    public ResponseEntity<String> removeCredential(@PathVariable String id,
+                                                   @RequestHeader(value = HttpHeaders.AUTHORIZATION, required = false) String authorization) {
+        if (!apiAuthorization.permits(authorization)) {
+            return unauthorized("Changing a credential");
+        }
+        try {
+            if (inventory.removeCredential(id)) {
+                return ResponseEntity.ok("Credential " + id + " removed");
+            }
+            return ResponseEntity.notFound().build();
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(e.getMessage());
+        }
+    }
+
+    private ResponseEntity<String> removeTarget(String host) {
+        if (iisMonitorService.removeTarget(host)) {
+            return ResponseEntity.ok("Host " + host + " removed from monitoring");
+        }
+        return ResponseEntity.notFound().build();
+    }
+
+    private static ResponseEntity<String> unauthorized(String what) {
+        return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+            .header(HttpHeaders.WWW_AUTHENTICATE, "Bearer")
+            .body(what + " involves stored credentials and needs Authorization: Bearer <api.token>");
+    }
+
+    private static List<Target> toTargets(List<PingRequest> requests) {
+        return requests.stream()
+            .map(request -> new Target(request.getHost(), request.getUser(), request.getPass()))
+            .toList();
     }
 
     // Request body class for POST method
@@ -207,4 +727,56 @@ public class AnsibleController {
         public String getPass() { return pass; }
         public void setPass(String pass) { this.pass = pass; }
     }
+
+    // Request body for background operations
+    public static class OperationRequest extends PingRequest {
+        private String operation;
+
+        public String getOperation() { return operation; }
+        public void setOperation(String operation) { this.operation = operation; }
+    }
+
+    // Request body for bulk fleet actions
+    public static class FleetActionRequest {
+        private String action;
+        private List<PingRequest> hosts;
+        private String group;
+        private String tag;
+        private int batchSize = 5;
+        private Integer maxParallel;
+        private Integer maxUnavailable;
+        private long pauseMs;
+
+        // Getters and setters
+        public String getAction() { return action; }
+        public void setAction(String action) { this.action = action; }
+
+        public List<PingRequest> getHosts() { return hosts; }
+        public void setHosts(List<PingRequest> hosts) { this.hosts = hosts; }
+
+        public String getGroup() { return group; }
+        public void setGroup(String group) { this.group = group; }
+
+        public String getTag() { return tag; }
+        public void setTag(String tag) { this.tag = tag; }
+
+        public int getBatchSize() { return batchSize; }
+        public void setBatchSize(int batchSize) { this.batchSize = batchSize; }
+
+        public Integer getMaxParallel() { return maxParallel; }
+        public void setMaxParallel(Integer maxParallel) { this.maxParallel = maxParallel; }
+
+        public Integer getMaxUnavailable() { return maxUnavailable; }
+        public void setMaxUnavailable(Integer maxUnavailable) { this.maxUnavailable = maxUnavailable; }
+
+        public long getPauseMs() { return pauseMs; }
+        public void setPauseMs(long pauseMs) { this.pauseMs = pauseMs; }
+
+        // maxParallel defaults to the batch size, maxUnavailable to maxParallel
+        FleetJob.Options toOptions() {
+            int parallel = maxParallel != null ? maxParallel : batchSize;
+            int unavailable = maxUnavailable != null ? maxUnavailable : parallel;
+            return new FleetJob.Options(batchSize, parallel, unavailable, pauseMs);
+        }
+    }
 }
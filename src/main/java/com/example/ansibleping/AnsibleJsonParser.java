@@ -0,0 +1,235 @@
+package com.example.ansibleping;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiFunction;
+
+/**
+ * Streaming parser for the output of Ansible's {@code json} stdout callback.
+ * Walks {@code plays[].tasks[].hosts} token by token, keeps only the few
+ * fields a {@link ServiceStatus} needs and skips everything else without
+ * building a tree.
+ */
+public final class AnsibleJsonParser {
+
+    private static final JsonFactory JSON = new JsonFactory();
+
+    private AnsibleJsonParser() {
+    }
+
+    /**
+     * Parse callback output into one status per host. Anything printed
+     * before the JSON document (e.g. warnings) is ignored. Returns an empty
+     * map if the output holds no JSON document.
+     */
+    public static Map<String, ServiceStatus> parse(String output) {
+        return parse(output, HostResult::toStatus);
+    }
+
+    /**
+     * Parse the output of a command module ({@code win_command},
+     * {@code win_shell}) into the outcome and captured stdout per host
+     */
+    public static Map<String, ScriptResult> parseScripts(String output) {
+        return parse(output, HostResult::toScriptResult);
+    }
+
+    private static <T> Map<String, T> parse(String output, BiFunction<HostResult, Long, T> convert) {
+        Map<String, T> results = new LinkedHashMap<>();
+        int start = documentStart(output);
+        if (start < 0) {
+            return results;
+        }
+        try (JsonParser parser = JSON.createParser(output.substring(start))) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return results;
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                parser.nextToken();
+                if ("plays".equals(field) && parser.currentToken() == JsonToken.START_ARRAY) {
+                    while (parser.nextToken() == JsonToken.START_OBJECT) {
+                        readPlay(parser, results, convert);
+                    }
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        } catch (IOException e) {
+            // Truncated or malformed output; keep whatever hosts were complete
+        }
+        return results;
+    }
+
+    private static <T> void readPlay(JsonParser parser, Map<String, T> results,
+                                     BiFunction<HostResult, Long, T> convert) throws IOException {
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            parser.nextToken();
+            if ("tasks".equals(field) && parser.currentToken() == JsonToken.START_ARRAY) {
+                while (parser.nextToken() == JsonToken.START_OBJECT) {
+                    readTask(parser, results, convert);
+                }
+            } else {
+                parser.skipChildren();
+            }
+        }
+    }
+
+    private static <T> void readTask(JsonParser parser, Map<String, T> results,
+                                     BiFunction<HostResult, Long, T> convert) throws IOException {
+        List<HostResult> hosts = new ArrayList<>(1);
+        long durationMillis = 0;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            parser.nextToken();
+            if ("hosts".equals(field) && parser.currentToken() == JsonToken.START_OBJECT) {
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String host = parser.getCurrentName();
+                    parser.nextToken();
+                    hosts.add(readHost(parser, host));
+                }
+            } else if ("task".equals(field) && parser.currentToken() == JsonToken.START_OBJECT) {
+                durationMillis = readTaskDuration(parser);
+            } else {
+                parser.skipChildren();
+            }
+        }
+        // "task" sorts after "hosts", so the duration is only known once the task object ends
+        for (HostResult host : hosts) {
+            results.put(host.host, convert.apply(host, durationMillis));
+        }
+    }
+
+    private static HostResult readHost(JsonParser parser, String host) throws IOException {
+        HostResult result = new HostResult(host);
+        if (parser.currentToken() != JsonToken.START_OBJECT) {
+            parser.skipChildren();
+            return result;
+        }
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            JsonToken value = parser.nextToken();
+            switch (field) {
+                case "changed" -> result.changed = value == JsonToken.VALUE_TRUE;
+                case "failed" -> result.failed = value == JsonToken.VALUE_TRUE;
+                case "unreachable" -> result.unreachable = value == JsonToken.VALUE_TRUE;
+                case "state" -> result.state = textValue(parser);
+                case "start_mode" -> result.startMode = textValue(parser);
+                case "ping" -> result.ping = textValue(parser);
+                case "msg" -> result.msg = textValue(parser);
+                case "stdout" -> result.stdout = textValue(parser);
+                case "stderr" -> result.stderr = textValue(parser);
+                default -> parser.skipChildren();
+            }
+        }
+        return result;
+    }
+
+    private static long readTaskDuration(JsonParser parser) throws IOException {
+        long durationMillis = 0;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            parser.nextToken();
+            if ("duration".equals(field) && parser.currentToken() == JsonToken.START_OBJECT) {
+                String start = null;
+                String end = null;
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String key = parser.getCurrentName();
+                    parser.nextToken();
+                    if ("start".equals(key)) {
+                        start = textValue(parser);
+                    } else if ("end".equals(key)) {
+                        end = textValue(parser);
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+                durationMillis = between(start, end);
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return durationMillis;
+    }
+
+    private static String textValue(JsonParser parser) throws IOException {
+        if (parser.currentToken() == JsonToken.VALUE_STRING) {
+            return parser.getText();
+        }
+        parser.skipChildren();
+        return null;
+    }
+
+    private static long between(String start, String end) {
+        if (start == null || end == null) {
+            return 0;
+        }
+        try {
+            return Duration.between(Instant.parse(start), Instant.parse(end)).toMillis();
+        } catch (DateTimeParseException e) {
+            return 0;
+        }
+    }
+
+    // The document starts at the first line beginning with '{'
+    private static int documentStart(String output) {
+        if (output.startsWith("{")) {
+            return 0;
+        }
+        int index = output.indexOf("\n{");
+        return index < 0 ? -1 : index + 1;
+    }
+
+    private static final class HostResult {
+        final String host;
+        boolean changed;
+        boolean failed;
+        boolean unreachable;
+        String state;
+        String startMode;
+        String ping;
+        String msg;
+        String stdout;
+        String stderr;
+
+        HostResult(String host) {
+            this.host = host;
+        }
+
+        ServiceStatus toStatus(long durationMillis) {
+            ServiceState serviceState;
+            if (unreachable) {
+                serviceState = ServiceState.UNREACHABLE;
+            } else if (failed) {
+                serviceState = ServiceState.FAILED;
+            } else if (state != null) {
+                serviceState = ServiceState.fromWindowsState(state);
+            } else if ("pong".equals(ping)) {
+                serviceState = ServiceState.REACHABLE;
+            } else {
+                serviceState = ServiceState.UNKNOWN;
+            }
+            // win_service does not report the service's process, so there is no PID on this path
+            return new ServiceStatus(host, serviceState, changed, startMode, null, durationMillis, msg);
+        }
+
+        ScriptResult toScriptResult(long durationMillis) {
+            ServiceState outcome = unreachable ? ServiceState.UNREACHABLE
+                    : failed ? ServiceState.FAILED : ServiceState.REACHABLE;
+            String message = failed && stderr != null && !stderr.isBlank() ? stderr.trim() : msg;
+            return new ScriptResult(new ServiceStatus(host, outcome, changed, null, null, durationMillis, message),
+                    stdout);
+        }
+    }
+}
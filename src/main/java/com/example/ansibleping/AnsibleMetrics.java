@@ -0,0 +1,242 @@
+package com.example.ansibleping;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Micrometer meters for Ansible calls and the IIS monitor, exposed at
+ * {@code /actuator/prometheus}. Timers publish percentile histograms so
+ * latency quantiles can be aggregated across instances. Meters are tagged
+ * with the host only when {@code ansible.metrics.host-tag=true}; timers
+ * tagged that way drop their histogram, so the bucket series do not grow
+ * with the fleet.
+ */
+@Component
+public class AnsibleMetrics {
+
+    private static final String ALL_HOSTS = "all";
+
+    @Autowired
+    private MeterRegistry registry;
+
+    @Value("${ansible.metrics.host-tag:false}")
+    private boolean hostTag;
+
+    public AnsibleMetrics() {
+    }
+
+    /**
+     * Meters on the given registry, for use without Spring
+     */
+    AnsibleMetrics(MeterRegistry registry, boolean hostTag) {
+        this.registry = registry;
+        this.hostTag = hostTag;
+    }
+
+    /**
+     * Record one ansible process run, from waiting for a process slot until its output was drained
+     */
+    public void recordProcess(String operation, String host, ProcessRunner.ProcessResult result) {
+        String outcome = result.timedOut() ? "timeout" : result.exitCode() == 0 ? "success" : "error";
+        Timer.builder("ansible.process.duration")
+                .description("Time to run one ansible process")
+                .tags("operation", operation, "host", host(host), "outcome", outcome)
+                .publishPercentileHistogram(!hostTag)
+                .register(registry)
+                .record(result.durationMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Record how long starting a child process took
+     */
+    public void recordSpawn(long nanos) {
+        Timer.builder("ansible.process.spawn")
+                .description("Time to fork and exec a child process")
+                .publishPercentileHistogram()
+                .register(registry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Record how long parsing one ansible output took
+     */
+    public void recordParse(String operation, long nanos) {
+        Timer.builder("ansible.parse.duration")
+                .description("Time to parse the output of one ansible run")
+                .tag("operation", operation)
+                .publishPercentileHistogram()
+                .register(registry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Record one WinRM command round trip, including session acquisition
+     */
+    public void recordWinRm(String operation, String host, String outcome, long nanos) {
+        Timer.builder("ansible.winrm.roundtrip")
+                .description("Time to run one PowerShell command over WinRM")
+                .tags("operation", operation, "host", host(host), "outcome", outcome)
+                .publishPercentileHistogram(!hostTag)
+                .register(registry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Record one HTTP probe of a monitored site by its status code, or "none" when no response arrived
+     */
+    public void recordHttpProbe(String host, int statusCode, boolean healthy, long nanos) {
+        Timer.builder("iis.http.probe.duration")
+                .description("Time to get an HTTP response from a monitored site")
+                .tags("host", host(host), "outcome", healthy ? "healthy" : "unhealthy")
+                .publishPercentileHistogram(!hostTag)
+                .register(registry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+        Counter.builder("iis.http.probe.responses")
+                .description("HTTP probe results by status code")
+                .tags("host", host(host), "status", statusCode > 0 ? Integer.toString(statusCode) : "none")
+                .register(registry)
+                .increment();
+    }
+
+    /**
+     * Count log entries collected from hosts, by source (event or w3c)
+     */
+    public void recordLogEntries(String source, int count) {
+        Counter.builder("iis.logs.entries")
+                .description("Log entries collected from hosts")
+                .tag("source", source)
+                .register(registry)
+                .increment(count);
+    }
+
+    /**
+     * Count the bytes of one log collection as transferred (compressed) and after decompression
+     */
+    public void recordLogTransfer(long compressedBytes, long uncompressedBytes) {
+        Counter.builder("iis.logs.bytes")
+                .description("Bytes of collected logs, as transferred and after decompression")
+                .tag("encoding", "gzip")
+                .register(registry)
+                .increment(compressedBytes);
+        Counter.builder("iis.logs.bytes")
+                .description("Bytes of collected logs, as transferred and after decompression")
+                .tag("encoding", "identity")
+                .register(registry)
+                .increment(uncompressedBytes);
+    }
+
+    /**
+     * Count a scheduled monitor check by the tier that settled it: http when
+     * the site answered, winrm when the full service check had to run
+     */
+    public void recordMonitorCheck(String tier) {
+        Counter.builder("iis.monitor.checks")
+                .description("Scheduled monitor checks by the tier that settled them")
+                .tag("tier", tier)
+                .register(registry)
+                .increment();
+    }
+
+    /**
+     * Count the outcome of a command by the state it reported
+     */
+    public void recordOutcome(String operation, ServiceStatus status) {
+        Counter.builder("ansible.command.outcomes")
+                .description("Commands by operation and resulting state")
+                .tags("operation", operation, "host", host(status.host()), "state", status.state().name())
+                .register(registry)
+                .increment();
+    }
+
+    /**
+     * Count an automatic IIS start by the monitor: success, failure, or
+     * suppressed when the host's restart breaker is open
+     */
+    public void recordAutoRestart(String host, String result) {
+        Counter.builder("iis.monitor.auto.restarts")
+                .description("Automatic IIS starts attempted or suppressed by the monitor")
+                .tags("host", host(host), "result", result)
+                .register(registry)
+                .increment();
+    }
+
+    /**
+     * Count a remediation action by the policy that asked for it and its
+     * outcome: succeeded, failed, skipped, deduplicated or suppressed
+     */
+    public void recordRemediation(String policy, String action, String outcome) {
+        Counter.builder("iis.remediation.actions")
+                .description("Remediation actions asked for by the policies, by outcome")
+                .tags("policy", policy, "action", action.toLowerCase(), "outcome", outcome)
+                .register(registry)
+                .increment();
+    }
+
+    /**
+     * Record how long a monitor event waited before the remediation dispatcher took it
+     */
+    public void recordRemediationLag(long millis) {
+        Timer.builder("iis.remediation.dispatch.lag")
+                .description("Delay between a monitor check finishing and its event being dispatched")
+                .publishPercentileHistogram()
+                .register(registry)
+                .record(millis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Record how late a scheduled check started compared with when it was due
+     */
+    public void recordSchedulerLag(long millis) {
+        Timer.builder("iis.monitor.scheduler.lag")
+                .description("Delay between when a monitor check was due and when it started")
+                .publishPercentileHistogram()
+                .register(registry)
+                .record(millis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Record how long one fleet sweep took, until every monitored host finished a check
+     */
+    public void recordSweep(long millis) {
+        Timer.builder("iis.monitor.sweep.duration")
+                .description("Time for every monitored host to finish one check")
+                .publishPercentileHistogram()
+                .register(registry)
+                .record(millis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Register a gauge that samples the object whenever metrics are scraped
+     */
+    public <T> void gauge(String name, String description, T object, ToDoubleFunction<T> value) {
+        Gauge.builder(name, object, value).description(description).register(registry);
+    }
+
+    /**
+     * Register a gauge of a duration in milliseconds, published in seconds
+     */
+    public <T> void timeGauge(String name, String description, T object, ToDoubleFunction<T> millis) {
+        TimeGauge.builder(name, object, TimeUnit.MILLISECONDS, millis).description(description).register(registry);
+    }
+
+    /**
+     * Register a counter whose value is maintained by the object itself
+     */
+    public <T> void functionCounter(String name, String description, T object, ToDoubleFunction<T> value) {
+        FunctionCounter.builder(name, object, value).description(description).register(registry);
+    }
+
+    private String host(String host) {
+        return hostTag && host != null ? host : ALL_HOSTS;
+    }
+}
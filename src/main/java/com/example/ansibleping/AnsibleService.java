@@ -1,178 +1,289 @@
 package com.example.ansibleping;
 
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import java.io.*;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 
 @Service
 public class AnsibleService {
 
+    @Autowired
+    private CommandExecutor commandExecutor;
+
+    @Autowired
+    private IISStatusCache statusCache;
+
+    @Autowired
+    private AnsibleMetrics metrics;
+
+    // Per-operation deadlines; a command still running after its deadline is killed
+    @Value("${ansible.timeout.ping-ms:30000}")
+    private long pingTimeoutMillis;
+
+    @Value("${ansible.timeout.status-ms:60000}")
+    private long statusTimeoutMillis;
+
+    @Value("${ansible.timeout.action-ms:120000}")
+    private long actionTimeoutMillis;
+
     /**
      * Ping a Windows VM using Ansible
      */
     public String pingVM(String host, String user, String pass) {
         validateInput(host, user, pass);
         
-        String command = String.format(
-            "ansible all -i \"%s,\" -m win_ping -e \"ansible_user=%s ansible_password='%s' ansible_connection=winrm ansible_winrm_server_cert_validation=ignore ansible_winrm_transport=basic ansible_port=5985\"",
-            host, user, pass
+        ServiceStatus result = execute(
+            new AnsibleCommand(new Target(host, user, pass), "win_ping", null, pingTimeout())
         );
-        
-        String result = executeCommand(command);
-        return parsePingResult(result);
+        return describePingResult(result);
     }
 
     /**
      * Check IIS service status
      */
     public String checkIISStatus(String host, String user, String pass) {
+        return describeIISStatus(getIISStatus(host, user, pass));
+    }
+
+    /**
+     * Check IIS service status and return the typed result. Recent results
+     * are served from the status cache and concurrent checks of the same
+     * host share one remote run.
+     */
+    public ServiceStatus getIISStatus(String host, String user, String pass) {
         validateInput(host, user, pass);
         
-        String command = String.format(
-            "ansible all -i \"%s,\" -m win_service -a \"name=W3SVC\" -e \"ansible_user=%s ansible_password='%s' ansible_connection=winrm ansible_winrm_server_cert_validation=ignore ansible_winrm_transport=basic ansible_port=5985\"",
-            host, user, pass
-        );
-        
-        String result = executeCommand(command);
-        return parseIISStatusResult(result);
+        Target target = new Target(host, user, pass);
+        return statusCache.get(target, () -> execute(
+            new AnsibleCommand(target, "win_service", "name=W3SVC", statusTimeout())
+        ));
     }
 
     /**
      * Start IIS service
      */
     public String startIIS(String host, String user, String pass) {
-        validateInput(host, user, pass);
-        
-        String command = String.format(
-            "ansible all -i \"%s,\" -m win_service -a \"name=W3SVC state=started\" -e \"ansible_user=%s ansible_password='%s' ansible_connection=winrm ansible_winrm_server_cert_validation=ignore ansible_winrm_transport=basic ansible_port=5985\"",
-            host, user, pass
-        );
-        
-        String result = executeCommand(command);
-        return parseServiceActionResult(result, "started");
+        return describeServiceAction(changeIISState(host, user, pass, "started"), "started");
     }
 
     /**
      * Stop IIS service
      */
     public String stopIIS(String host, String user, String pass) {
-        validateInput(host, user, pass);
-        
-        String command = String.format(
-            "ansible all -i \"%s,\" -m win_service -a \"name=W3SVC state=stopped\" -e \"ansible_user=%s ansible_password='%s' ansible_connection=winrm ansible_winrm_server_cert_validation=ignore ansible_winrm_transport=basic ansible_port=5985\"",
-            host, user, pass
-        );
-        
-        String result = executeCommand(command);
-        return parseServiceActionResult(result, "stopped");
+        return describeServiceAction(changeIISState(host, user, pass, "stopped"), "stopped");
     }
 
     /**
      * Restart IIS service
      */
     public String restartIIS(String host, String user, String pass) {
-        validateInput(host, user, pass);
-        
-        String command = String.format(
-            "ansible all -i \"%s,\" -m win_service -a \"name=W3SVC state=restarted\" -e \"ansible_user=%s ansible_password='%s' ansible_connection=winrm ansible_winrm_server_cert_validation=ignore ansible_winrm_transport=basic ansible_port=5985\"",
-            host, user, pass
-        );
-        
-        String result = executeCommand(command);
-        return parseServiceActionResult(result, "restarted");
+        return describeServiceAction(changeIISState(host, user, pass, "restarted"), "restarted");
     }
 
     /**
-     * Parse ping result and return clean status
+     * Move the IIS service to the given state (started, stopped or restarted)
+     * and return the typed result. The cached status of the host is dropped
+     * whatever the outcome, since a failed action may still have changed it.
      */
-    private String parsePingResult(String result) {
-        if (result.contains("SUCCESS") && result.contains("ping") && result.contains("pong")) {
-            return "🟢 CONNECTED - VM is reachable and responding";
-        } else if (result.contains("UNREACHABLE")) {
-            return "🔴 UNREACHABLE - Cannot connect to VM";
-        } else if (result.contains("FAILED")) {
-            return "🔴 FAILED - Connection failed";
-        } else {
-            return "🟡 UNKNOWN - Unexpected response: " + result;
+    public ServiceStatus changeIISState(String host, String user, String pass, String state) {
+        validateInput(host, user, pass);
+
+        try {
+            return execute(
+                new AnsibleCommand(new Target(host, user, pass), "win_service", "name=W3SVC state=" + state,
+                    actionTimeout())
+            );
+        } finally {
+            statusCache.invalidate(host);
         }
     }
 
     /**
-     * Parse IIS status result and return clean status
+     * Ping several Windows VMs with a single Ansible run
      */
-    private String parseIISStatusResult(String result) {
-        if (result.contains("SUCCESS") && result.contains("state") && result.contains("running")) {
-            return "🟢 RUNNING - IIS is active and serving requests";
-        } else if (result.contains("SUCCESS") && result.contains("state") && result.contains("stopped")) {
-            return "🔴 STOPPED - IIS is not running";
-        } else if (result.contains("UNREACHABLE")) {
-            return "🔴 UNREACHABLE - Cannot connect to VM";
-        } else if (result.contains("FAILED")) {
-            return "🔴 FAILED - Failed to check IIS status";
-        } else {
-            return "🟡 UNKNOWN - Unexpected response: " + result;
-        }
+    public Map<String, String> pingVM(List<Target> targets) {
+        Map<String, String> results = new LinkedHashMap<>();
+        runBatch(targets, "win_ping", null, pingTimeout()).forEach((host, status) -> results.put(host, describePingResult(status)));
+        return results;
     }
 
     /**
-     * Parse service action result and return clean status
+     * Check IIS service status on several hosts with a single Ansible run
      */
-    private String parseServiceActionResult(String result, String action) {
-        // Check for successful service start/stop with state confirmation
-        if ((result.contains("SUCCESS") || result.contains("CHANGED")) && 
-            result.contains("changed") && result.contains("true") && 
-            result.contains("\"state\": \"running\"")) {
-            return "✅ SUCCESS - IIS has been " + action + " successfully";
-        } else if ((result.contains("SUCCESS") || result.contains("CHANGED")) && 
-                   result.contains("changed") && result.contains("false")) {
-            return "ℹ️ NO CHANGE - IIS was already " + action;
-        } else if (result.contains("UNREACHABLE")) {
-            return "🔴 UNREACHABLE - Cannot connect to VM";
-        } else if (result.contains("FAILED")) {
-            return "🔴 FAILED - Failed to " + action + " IIS";
-        } else if ((result.contains("SUCCESS") || result.contains("CHANGED")) && 
-                   result.contains("changed") && result.contains("true")) {
-            return "✅ SUCCESS - IIS has been " + action + " successfully";
-        } else {
-            return "🟡 UNKNOWN - Unexpected response: " + result;
-        }
+    public Map<String, String> checkIISStatus(List<Target> targets) {
+        Map<String, String> results = new LinkedHashMap<>();
+        getIISStatus(targets).forEach((host, status) -> results.put(host, describeIISStatus(status)));
+        return results;
     }
 
     /**
-     * Execute Ansible command with proper environment setup
+     * Check IIS service status on several hosts and return the typed results.
+     * Hosts with a fresh cached status are left out of the Ansible run.
      */
-    private String executeCommand(String command) {
-        StringBuilder result = new StringBuilder();
+    public Map<String, ServiceStatus> getIISStatus(List<Target> targets) {
+        Map<String, ServiceStatus> cached = new LinkedHashMap<>();
+        List<Target> remaining = new ArrayList<>();
+        Map<String, Long> generations = new HashMap<>();
+        for (Target target : targets) {
+            // Invalid targets go straight to runBatch, which reports them
+            boolean cacheable = target.host() != null && target.pass() != null;
+            ServiceStatus status = cacheable ? statusCache.getIfPresent(target) : null;
+            if (status != null) {
+                cached.put(target.host(), status);
+            } else {
+                remaining.add(target);
+                if (cacheable) {
+                    generations.put(target.host(), statusCache.generation(target.host()));
+                }
+            }
+        }
 
-        try {
-            ProcessBuilder pb = new ProcessBuilder("bash", "-c", command);
-            pb.redirectErrorStream(true);
-            
-            // Set environment variables to fix macOS multiprocessing issue
-            Map<String, String> env = pb.environment();
-            env.put("OBJC_DISABLE_INITIALIZE_FORK_SAFETY", "YES");
-            env.put("ANSIBLE_FORKS", "1");
-            
-            Process process = pb.start();
-
-            BufferedReader reader = new BufferedReader(
-                new InputStreamReader(process.getInputStream())
-            );
+        Map<String, ServiceStatus> checked = remaining.isEmpty() ? Map.of()
+            : runBatch(remaining, "win_service", "name=W3SVC", statusTimeout());
+        for (Target target : remaining) {
+            ServiceStatus status = checked.get(String.valueOf(target.host()));
+            if (status != null && generations.containsKey(target.host())) {
+                statusCache.put(target, status, generations.get(target.host()));
+            }
+        }
 
-            String line;
-            while ((line = reader.readLine()) != null) {
-                result.append(line).append("\n");
+        // Keep the caller's host order
+        Map<String, ServiceStatus> results = new LinkedHashMap<>();
+        for (Target target : targets) {
+            String host = String.valueOf(target.host());
+            ServiceStatus status = cached.containsKey(host) ? cached.get(host) : checked.get(host);
+            if (status != null) {
+                results.put(host, status);
             }
+        }
+        return results;
+    }
 
-            int exitCode = process.waitFor();
-            if (exitCode != 0) {
-                result.append("Ansible command failed with exit code: ").append(exitCode);
+    /**
+     * Run a module against every valid target in one invocation. Targets that
+     * fail validation get their own FAILED entry instead of failing the batch.
+     */
+    private Map<String, ServiceStatus> runBatch(List<Target> targets, String module, String moduleArgs,
+                                                Duration timeout) {
+        Map<String, ServiceStatus> results = new LinkedHashMap<>();
+        List<Target> valid = new ArrayList<>();
+        for (Target target : targets) {
+            try {
+                validateInput(target.host(), target.user(), target.pass());
+                valid.add(target);
+            } catch (IllegalArgumentException e) {
+                String host = String.valueOf(target.host());
+                results.put(host, ServiceStatus.of(host, ServiceState.FAILED, "Validation Error: " + e.getMessage()));
             }
-        } catch (Exception e) {
-            return "Error: " + e.getMessage();
         }
+        if (!valid.isEmpty()) {
+            String operation = AnsibleCommand.operationOf(module, moduleArgs);
+            commandExecutor.executeBatch(valid, module, moduleArgs, timeout).forEach((host, status) -> {
+                metrics.recordOutcome(operation, status);
+                results.put(host, status);
+            });
+        }
+        return results;
+    }
+
+    private ServiceStatus execute(AnsibleCommand command) {
+        ServiceStatus status = commandExecutor.execute(command);
+        metrics.recordOutcome(command.operation(), status);
+        return status;
+    }
+
+    /**
+     * Describe a ping result as a clean status line
+     */
+    public String describePingResult(ServiceStatus result) {
+        switch (result.state()) {
+            case REACHABLE:
+                return "🟢 CONNECTED - VM is reachable and responding";
+            case UNREACHABLE:
+                return "🔴 UNREACHABLE - Cannot connect to VM";
+            case FAILED:
+                return "🔴 FAILED - Connection failed" + detail(result);
+            case TIMED_OUT:
+            case TRUNCATED:
+                return describeIncomplete(result);
+            default:
+                return "🟡 UNKNOWN - Unexpected response: " + result.message();
+        }
+    }
 
-        return result.toString();
+    /**
+     * Describe an IIS status result as a clean status line
+     */
+    public String describeIISStatus(ServiceStatus result) {
+        switch (result.state()) {
+            case RUNNING:
+                return "🟢 RUNNING - IIS is active and serving requests";
+            case STOPPED:
+                return "🔴 STOPPED - IIS is not running";
+            case UNREACHABLE:
+                return "🔴 UNREACHABLE - Cannot connect to VM";
+            case FAILED:
+                return "🔴 FAILED - Failed to check IIS status" + detail(result);
+            case TIMED_OUT:
+            case TRUNCATED:
+                return describeIncomplete(result);
+            case PAUSED:
+            case PENDING:
+                return "🟡 " + result.state() + " - IIS is not serving requests yet";
+            default:
+                return "🟡 UNKNOWN - Unexpected response: " + result.message();
+        }
+    }
+
+    /**
+     * Describe a service action result as a clean status line
+     */
+    public String describeServiceAction(ServiceStatus result, String action) {
+        if (result.succeeded()) {
+            return result.changed()
+                ? "✅ SUCCESS - IIS has been " + action + " successfully"
+                : "ℹ️ NO CHANGE - IIS was already " + action;
+        }
+        switch (result.state()) {
+            case UNREACHABLE:
+                return "🔴 UNREACHABLE - Cannot connect to VM";
+            case FAILED:
+                return "🔴 FAILED - Failed to " + action + " IIS" + detail(result);
+            case TIMED_OUT:
+            case TRUNCATED:
+                return describeIncomplete(result);
+            default:
+                return "🟡 UNKNOWN - Unexpected response: " + result.message();
+        }
+    }
+
+    private static String describeIncomplete(ServiceStatus result) {
+        return result.state() == ServiceState.TIMED_OUT
+            ? "🔴 TIMED OUT - VM did not respond before the deadline" + detail(result)
+            : "🟡 TRUNCATED - Response was too large to read" + detail(result);
+    }
+
+    private Duration pingTimeout() {
+        return Duration.ofMillis(pingTimeoutMillis);
+    }
+
+    private Duration statusTimeout() {
+        return Duration.ofMillis(statusTimeoutMillis);
+    }
+
+    private Duration actionTimeout() {
+        return Duration.ofMillis(actionTimeoutMillis);
+    }
+
+    private static String detail(ServiceStatus result) {
+        return result.message() == null || result.message().isEmpty() ? "" : ": " + result.message();
     }
 
     /**
@@ -182,6 +293,10 @@ public class AnsibleService {
         if (host == null || host.trim().isEmpty()) {
             throw new IllegalArgumentException("Host cannot be null or empty");
         }
+        if (host.contains(",") || host.chars().anyMatch(Character::isWhitespace)) {
+            // The host is passed as an inline inventory, where a comma would add hosts
+            throw new IllegalArgumentException("Host cannot contain commas or whitespace");
+        }
         if (user == null || user.trim().isEmpty()) {
             throw new IllegalArgumentException("Username cannot be null or empty");
         }
@@ -0,0 +1,38 @@
+package com.example.ansibleping;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+
+/**
+ * Decides whether a caller may store or change inventory credentials, or
+ * make the server act with them rather than ones sent in the request: for
+ * whole groups of hosts or for a host named only by its address.
+ *
+ * <p>Such requests must carry {@code Authorization: Bearer <api.token>}.
+ * When no {@code api.token} is configured nobody is authenticated and those
+ * requests are refused; everything that takes credentials in the request
+ * keeps working without a token.
+ */
+@Component
+public class ApiAuthorization {
+
+    private static final String BEARER = "Bearer ";
+
+    @Value("${api.token:}")
+    private String token;
+
+    /**
+     * Whether the value of the request's Authorization header carries the API token
+     */
+    public boolean permits(String authorization) {
+        if (token.isBlank() || authorization == null || !authorization.startsWith(BEARER)) {
+            return false;
+        }
+        // Constant time, so the token cannot be guessed from response timing
+        return MessageDigest.isEqual(token.getBytes(StandardCharsets.UTF_8),
+                authorization.substring(BEARER.length()).trim().getBytes(StandardCharsets.UTF_8));
+    }
+}
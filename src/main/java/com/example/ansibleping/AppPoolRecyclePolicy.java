@@ -0,0 +1,61 @@
+package com.example.ansibleping;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Recycles the application pools of a host whose W3SVC service runs but
+ * whose site answers the HTTP probe with a server error: the web server is
+ * up and the application behind it is not. At most once per
+ * {@code iis.remediation.recycle.min-interval-ms} per host, so a site that
+ * stays broken is escalated rather than recycled over and over.
+ */
+@Component
+@Order(400)
+@ConditionalOnProperty(name = "iis.remediation.recycle.enabled", havingValue = "true", matchIfMissing = true)
+public class AppPoolRecyclePolicy implements RemediationPolicy {
+
+    private static final int FIRST_SERVER_ERROR = 500;
+
+    @Value("${iis.remediation.recycle.min-interval-ms:600000}")
+    private long minIntervalMillis;
+
+    // When each host was last recycled
+    private final Map<String, Long> lastRecycled = new ConcurrentHashMap<>();
+
+    public AppPoolRecyclePolicy() {
+    }
+
+    AppPoolRecyclePolicy(long minIntervalMillis) {
+        this.minIntervalMillis = minIntervalMillis;
+    }
+
+    @Override
+    public String name() {
+        return "recycle";
+    }
+
+    @Override
+    public Decision evaluate(MonitorEvent event) {
+        HttpHealthProbe.HttpCheck probe = event.failedProbe();
+        if (event.state() != ServiceState.RUNNING || probe == null || probe.statusCode() < FIRST_SERVER_ERROR) {
+            return Decision.none();
+        }
+        Long last = lastRecycled.get(event.host());
+        if (last != null && event.at() - last < minIntervalMillis) {
+            return Decision.none();
+        }
+        lastRecycled.put(event.host(), event.at());
+        return Decision.act(Action.RECYCLE, probe.url() + " answered " + probe.statusCode());
+    }
+
+    @Override
+    public void forget(String host) {
+        lastRecycled.remove(host);
+    }
+}
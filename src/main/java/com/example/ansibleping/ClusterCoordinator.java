@@ -0,0 +1,209 @@
+package com.example.ansibleping;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Splits the monitored hosts between the instances of this application.
+ *
+ * <p>Hosts hash into a fixed number of shards, and shards are spread over
+ * the live members with a {@link HashRing}. Every {@code iis.cluster.heartbeat-ms}
+ * each instance renews its membership in the {@link ClusterStore}, recomputes
+ * the ring and claims leases on the shards the ring gives it. An instance
+ * only monitors a host while it holds the lease on the host's shard, and a
+ * lease is only granted once the previous holder has released it or let it
+ * expire, so no host is ever checked or restarted by two instances at once.
+ *
+ * <p>When a member joins, the others stop dispatching the shards that move
+ * to it, keep their leases for one more heartbeat so running checks can
+ * finish, then release them. When a member leaves cleanly it releases its
+ * leases at once; when it dies they expire after {@code iis.cluster.lease-ms}.
+ * An instance that cannot reach the store stops monitoring before its leases
+ * can expire.
+ *
+ * <p>With {@code iis.cluster.enabled=false} (the default) this instance owns every host.
+ */
+@Component
+public class ClusterCoordinator {
+
+    private static final Logger logger = LoggerFactory.getLogger(ClusterCoordinator.class);
+
+    /**
+     * Cluster view for the API
+     */
+    public record ClusterStatus(boolean enabled, String nodeId, List<String> members, int shards, int ownedShards,
+                                Map<String, Integer> shardsByMember) {
+    }
+
+    @Autowired
+    private ClusterStore store;
+
+    @Autowired
+    private AnsibleMetrics metrics;
+
+    @Value("${iis.cluster.enabled:false}")
+    private boolean enabled;
+
+    @Value("${iis.cluster.node-id:}")
+    private String nodeId;
+
+    @Value("${iis.cluster.shards:128}")
+    private int shards;
+
+    @Value("${iis.cluster.virtual-nodes:64}")
+    private int virtualNodes;
+
+    @Value("${iis.cluster.heartbeat-ms:5000}")
+    private long heartbeatMillis;
+
+    @Value("${iis.cluster.lease-ms:20000}")
+    private long leaseMillis;
+
+    // Replaced as a whole on each heartbeat; read by the monitor without locking
+    private volatile Set<Integer> owned = Set.of();
+    private volatile List<String> members = List.of();
+    // Owned shards may only be used until this time unless a heartbeat renews them
+    private volatile long ownedUntil;
+
+    public ClusterCoordinator() {
+    }
+
+    ClusterCoordinator(ClusterStore store, AnsibleMetrics metrics, String nodeId, int shards, int virtualNodes,
+                       long heartbeatMillis, long leaseMillis) {
+        this.store = store;
+        this.metrics = metrics;
+        this.enabled = true;
+        this.nodeId = nodeId;
+        this.shards = shards;
+        this.virtualNodes = virtualNodes;
+        this.heartbeatMillis = heartbeatMillis;
+        this.leaseMillis = leaseMillis;
+        init();
+    }
+
+    @PostConstruct
+    void init() {
+        if (nodeId == null || nodeId.isBlank()) {
+            nodeId = defaultNodeId();
+        }
+        if (!enabled) {
+            logger.info("Clustering disabled; this instance monitors every host");
+            return;
+        }
+        if (shards < 1 || virtualNodes < 1) {
+            throw new IllegalArgumentException("iis.cluster.shards and iis.cluster.virtual-nodes must be at least 1");
+        }
+        if (leaseMillis < 2 * heartbeatMillis) {
+            throw new IllegalArgumentException("iis.cluster.lease-ms must be at least twice iis.cluster.heartbeat-ms");
+        }
+        metrics.gauge("iis.cluster.members", "Live instances sharing the monitored hosts", this,
+                coordinator -> coordinator.members.size());
+        metrics.gauge("iis.cluster.shards.owned", "Host shards monitored by this instance", this,
+                coordinator -> coordinator.owned.size());
+        logger.info("Clustering enabled as node {} with {} shards, {} ms heartbeat and {} ms lease",
+                nodeId, shards, heartbeatMillis, leaseMillis);
+    }
+
+    @PreDestroy
+    void leave() {
+        if (!enabled) {
+            return;
+        }
+        owned = Set.of();
+        try {
+            store.leave(nodeId);
+            logger.info("Node {} left the cluster", nodeId);
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Node {} could not leave the cluster; its leases expire in {} ms: {}",
+                    nodeId, leaseMillis, e.getMessage());
+        }
+    }
+
+    /**
+     * Renew membership and leases, and take over or give up shards after a member joined or left
+     */
+    @Scheduled(fixedDelayString = "${iis.cluster.heartbeat-ms:5000}")
+    public void heartbeat() {
+        if (!enabled) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        try {
+            List<String> live = store.heartbeat(nodeId, now + leaseMillis, now);
+            HashRing ring = new HashRing(live, virtualNodes);
+            Set<Integer> wanted = new TreeSet<>();
+            for (int shard = 0; shard < shards; shard++) {
+                if (nodeId.equals(ring.owner("shard-" + shard))) {
+                    wanted.add(shard);
+                }
+            }
+
+            // Shards moving to another member are held one more round, unused, so checks running on them finish
+            Set<Integer> keep = new TreeSet<>(wanted);
+            keep.addAll(owned);
+            Set<Integer> held = store.claim(nodeId, keep, now + leaseMillis, now);
+            Set<Integer> nowOwned = new TreeSet<>(held);
+            nowOwned.retainAll(wanted);
+
+            if (!nowOwned.equals(owned) || !live.equals(members)) {
+                logger.info("Cluster of {} members: node {} monitors {} of {} shards ({} waiting for their lease)",
+                        live.size(), nodeId, nowOwned.size(), shards, wanted.size() - nowOwned.size());
+            }
+            members = List.copyOf(live);
+            owned = Set.copyOf(nowOwned);
+            // Stop one heartbeat before the leases run out, so a missed renewal never overlaps a new owner
+            ownedUntil = now + leaseMillis - heartbeatMillis;
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Cluster heartbeat of node {} failed: {}", nodeId, e.getMessage());
+        }
+    }
+
+    /**
+     * Whether this instance should monitor the host now
+     */
+    public boolean owns(String host) {
+        if (!enabled) {
+            return true;
+        }
+        return System.currentTimeMillis() < ownedUntil && owned.contains(HashRing.shard(host, shards));
+    }
+
+    public ClusterStatus getStatus() {
+        if (!enabled) {
+            return new ClusterStatus(false, nodeId, List.of(nodeId), shards, shards, Map.of(nodeId, shards));
+        }
+        Map<String, Integer> byMember = new TreeMap<>();
+        try {
+            store.owners(System.currentTimeMillis()).values().forEach(owner -> byMember.merge(owner, 1, Integer::sum));
+        } catch (IOException e) {
+            logger.warn("Could not read shard owners: {}", e.getMessage());
+        }
+        return new ClusterStatus(true, nodeId, members, shards, owned.size(), byMember);
+    }
+
+    private static String defaultNodeId() {
+        String host;
+        try {
+            host = InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException e) {
+            host = "localhost";
+        }
+        // The PID keeps instances on the same machine apart
+        return host + "-" + ProcessHandle.current().pid();
+    }
+}
@@ -0,0 +1,38 @@
+package com.example.ansibleping;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Shared membership and shard lease store used to split the monitored
+ * hosts between instances. Every operation is atomic with respect to all
+ * instances using the same store. Times are wall-clock milliseconds, so
+ * instances need synchronised clocks.
+ */
+public interface ClusterStore {
+
+    /**
+     * Register or renew a node's membership until {@code expiresAt} and
+     * return every node whose membership has not expired, including this one
+     */
+    List<String> heartbeat(String nodeId, long expiresAt, long now) throws IOException;
+
+    /**
+     * Take or renew the node's leases on {@code shards} until {@code expiresAt}
+     * and release every other shard it holds. A shard whose lease another
+     * node still holds is left alone. Returns the shards the node now holds.
+     */
+    Set<Integer> claim(String nodeId, Set<Integer> shards, long expiresAt, long now) throws IOException;
+
+    /**
+     * Remove a node and release all of its leases
+     */
+    void leave(String nodeId) throws IOException;
+
+    /**
+     * The current holder of every leased shard
+     */
+    Map<Integer, String> owners(long now) throws IOException;
+}
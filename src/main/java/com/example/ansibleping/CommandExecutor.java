@@ -0,0 +1,52 @@
+package com.example.ansibleping;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Runs Ansible module invocations and turns their output into typed
+ * {@link ServiceStatus} results. Selected with the {@code ansible.executor} property.
+ */
+public interface CommandExecutor {
+
+    /**
+     * Execute the command and return the result for its target
+     */
+    ServiceStatus execute(AnsibleCommand command);
+
+    /**
+     * Run a PowerShell script on the target in one remote execution and
+     * return what it printed. {@code operation} names the script in metrics.
+     */
+    ScriptResult runScript(Target target, String operation, String script, Duration timeout);
+
+    /**
+     * Get ready to serve these targets, so the first real command does not
+     * pay for a cold start: load the toolchain, open connections. Called
+     * once, in the background, when the application has started.
+     */
+    default void warmUp(List<Target> targets) {
+    }
+
+    /**
+     * Let go of anything held open for a host that is no longer monitored
+     */
+    default void forget(String host) {
+    }
+
+    /**
+     * Run the same module against several targets and return the result
+     * for each host. A failure on one host must not affect the results of
+     * the others.
+     */
+    default Map<String, ServiceStatus> executeBatch(List<Target> targets, String module, String moduleArgs,
+                                                    Duration timeout) {
+        Map<String, ServiceStatus> results = new LinkedHashMap<>();
+        for (Target target : targets) {
+            results.put(target.host(), execute(new AnsibleCommand(target, module, moduleArgs, timeout)));
+        }
+        return results;
+    }
+}
@@ -0,0 +1,111 @@
+package com.example.ansibleping;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Precompiled, immutable argument vector of one ansible ad-hoc invocation.
+ * Everything but the inventory is fixed when the template is built; a call
+ * only copies the array and fills in the inventory slot. The process is
+ * started from the vector directly, without a shell, so no value ever
+ * needs quoting.
+ *
+ * <p>Single-host templates take the credentials from the child's
+ * environment ({@link #USER_ENV}, {@link #PASSWORD_ENV}) through an env
+ * lookup in the extra vars, so they never appear on a command line where
+ * {@code ps} would show them. Batch runs do the same per credential pair,
+ * with numbered variables looked up from the inventory file. A lookup's
+ * value is not templated again, so a password may contain {@code {{}.
+ */
+final class CommandTemplate {
+
+    static final String USER_ENV = "ANSIBLE_PING_USER";
+    static final String PASSWORD_ENV = "ANSIBLE_PING_PASSWORD";
+
+    /**
+     * Connection settings shared by every host
+     */
+    static final Map<String, String> CONNECTION_VARS = Map.of(
+            "ansible_connection", "winrm",
+            "ansible_winrm_server_cert_validation", "ignore",
+            "ansible_winrm_transport", "basic",
+            "ansible_port", "5985");
+
+    // Extra vars of a single-host run: the connection settings plus env lookups for the credentials
+    private static final String SINGLE_HOST_VARS = singleHostVars();
+
+    private static final int INVENTORY = 3;
+
+    private final String[] argv;
+
+    private CommandTemplate(String[] argv) {
+        this.argv = argv;
+    }
+
+    /**
+     * Template for one host named inline as the inventory
+     */
+    static CommandTemplate single(String module, String moduleArgs) {
+        List<String> argv = base(module, moduleArgs);
+        argv.add("-e");
+        argv.add(SINGLE_HOST_VARS);
+        return new CommandTemplate(argv.toArray(String[]::new));
+    }
+
+    /**
+     * Template for a run over an inventory file holding hosts, credential lookups and connection settings
+     */
+    static CommandTemplate batch(String module, String moduleArgs) {
+        return new CommandTemplate(base(module, moduleArgs).toArray(String[]::new));
+    }
+
+    /**
+     * A variable value that reads an environment variable of the ansible process
+     */
+    static String envLookup(String name) {
+        return "{{ lookup('env', '" + name + "') }}";
+    }
+
+    /**
+     * The arguments for one run against a single host
+     */
+    List<String> forHost(String host) {
+        return withInventory(host + ",");
+    }
+
+    /**
+     * The arguments for one run over an inventory file
+     */
+    List<String> withInventory(String inventory) {
+        String[] copy = argv.clone();
+        copy[INVENTORY] = inventory;
+        return Arrays.asList(copy);
+    }
+
+    private static List<String> base(String module, String moduleArgs) {
+        List<String> argv = new ArrayList<>(List.of("ansible", "all", "-i", "", "-m", module));
+        if (moduleArgs != null) {
+            argv.add("-a");
+            argv.add(moduleArgs);
+        }
+        return argv;
+    }
+
+    private static String singleHostVars() {
+        Map<String, String> vars = new LinkedHashMap<>();
+        vars.put("ansible_user", envLookup(USER_ENV));
+        vars.put("ansible_password", envLookup(PASSWORD_ENV));
+        vars.putAll(CONNECTION_VARS);
+        try {
+            return new ObjectMapper().writeValueAsString(vars);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package com.example.ansibleping;
+
+/**
+ * WinRM credentials stored once in the inventory and referenced by ID from
+ * any number of targets
+ */
+public record Credential(String id, String user, String pass) {
+
+    public Credential {
+        if (id == null || id.isBlank()) {
+            throw new IllegalArgumentException("Credential ID cannot be null or empty");
+        }
+        if (user == null || user.trim().isEmpty()) {
+            throw new IllegalArgumentException("Username cannot be null or empty");
+        }
+        if (pass == null || pass.trim().isEmpty()) {
+            throw new IllegalArgumentException("Password cannot be null or empty");
+        }
+    }
+
+    /**
+     * Keep the password out of log lines and error messages
+     */
+    @Override
+    public String toString() {
+        return "Credential[id=" + id + ", user=" + user + "]";
+    }
+}
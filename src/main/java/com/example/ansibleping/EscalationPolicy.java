@@ -0,0 +1,56 @@
+package com.example.ansibleping;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Escalates a host once it has been unhealthy for
+ * {@code iis.remediation.escalation.after-failures} checks in a row: down,
+ * unreachable, or failing its HTTP probe. A host is escalated once per
+ * outage; the count starts over when a check finds it healthy.
+ */
+@Component
+@Order(200)
+@ConditionalOnProperty(name = "iis.remediation.escalation.enabled", havingValue = "true", matchIfMissing = true)
+public class EscalationPolicy implements RemediationPolicy {
+
+    @Value("${iis.remediation.escalation.after-failures:5}")
+    private int afterFailures;
+
+    // Unhealthy checks in a row per host
+    private final Map<String, Integer> failures = new ConcurrentHashMap<>();
+
+    public EscalationPolicy() {
+    }
+
+    EscalationPolicy(int afterFailures) {
+        this.afterFailures = afterFailures;
+    }
+
+    @Override
+    public String name() {
+        return "escalation";
+    }
+
+    @Override
+    public Decision evaluate(MonitorEvent event) {
+        if (event.isHealthy()) {
+            failures.remove(event.host());
+            return Decision.none();
+        }
+        int count = failures.merge(event.host(), 1, Integer::sum);
+        return count == afterFailures
+                ? Decision.act(Action.ESCALATE, count + " unhealthy checks in a row")
+                : Decision.none();
+    }
+
+    @Override
+    public void forget(String host) {
+        failures.remove(host);
+    }
+}
@@ -0,0 +1,129 @@
+package com.example.ansibleping;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.function.Function;
+
+/**
+ * {@link ClusterStore} kept in one JSON file in a directory every instance
+ * can reach (a local directory for several instances on one machine, or a
+ * shared mount). Each operation takes an exclusive lock on
+ * {@code cluster.lock}, reads the file, applies the change and replaces the
+ * file atomically.
+ */
+@Component
+@ConditionalOnProperty(name = "iis.cluster.store", havingValue = "file", matchIfMissing = true)
+public class FileClusterStore implements ClusterStore {
+
+    private static final String LOCK = "cluster.lock";
+    private static final String STATE = "cluster.json";
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    @Value("${iis.cluster.dir:data/cluster}")
+    private String directory;
+
+    public FileClusterStore() {
+    }
+
+    FileClusterStore(String directory) {
+        this.directory = directory;
+    }
+
+    @Override
+    public List<String> heartbeat(String nodeId, long expiresAt, long now) throws IOException {
+        return update(state -> {
+            state.members().put(nodeId, expiresAt);
+            expire(state, now);
+            return new ArrayList<>(state.members().keySet());
+        });
+    }
+
+    @Override
+    public Set<Integer> claim(String nodeId, Set<Integer> shards, long expiresAt, long now) throws IOException {
+        return update(state -> {
+            expire(state, now);
+            state.shards().values().removeIf(lease -> lease.owner().equals(nodeId));
+            Set<Integer> held = new TreeSet<>();
+            for (Integer shard : shards) {
+                if (!state.shards().containsKey(shard)) {
+                    state.shards().put(shard, new Lease(nodeId, expiresAt));
+                    held.add(shard);
+                }
+            }
+            return held;
+        });
+    }
+
+    @Override
+    public void leave(String nodeId) throws IOException {
+        update(state -> {
+            state.members().remove(nodeId);
+            state.shards().values().removeIf(lease -> lease.owner().equals(nodeId));
+            return null;
+        });
+    }
+
+    @Override
+    public Map<Integer, String> owners(long now) throws IOException {
+        return update(state -> {
+            expire(state, now);
+            Map<Integer, String> owners = new TreeMap<>();
+            state.shards().forEach((shard, lease) -> owners.put(shard, lease.owner()));
+            return owners;
+        });
+    }
+
+    // Instances that stopped heartbeating lose their membership and leases once they expire
+    private static void expire(State state, long now) {
+        state.members().values().removeIf(expiresAt -> expiresAt <= now);
+        state.shards().values().removeIf(lease -> lease.expiresAt() <= now);
+    }
+
+    // The file lock excludes other processes; synchronized excludes other threads, which the lock does not
+    private synchronized <T> T update(Function<State, T> change) throws IOException {
+        Path dir = Path.of(directory);
+        Files.createDirectories(dir);
+        Path file = dir.resolve(STATE);
+        try (FileChannel lockChannel = FileChannel.open(dir.resolve(LOCK), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE)) {
+            FileLock lock = lockChannel.lock();
+            try {
+                State state = Files.exists(file)
+                        ? mapper.readValue(file.toFile(), State.class)
+                        : new State(new TreeMap<>(), new TreeMap<>());
+                state = new State(new TreeMap<>(state.members()), new TreeMap<>(state.shards()));
+                T result = change.apply(state);
+
+                Path tmp = dir.resolve(STATE + ".tmp");
+                Files.write(tmp, mapper.writeValueAsBytes(state));
+                Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                return result;
+            } finally {
+                lock.release();
+            }
+        }
+    }
+
+    private record State(Map<String, Long> members, Map<Integer, Lease> shards) {
+    }
+
+    private record Lease(String owner, long expiresAt) {
+    }
+}
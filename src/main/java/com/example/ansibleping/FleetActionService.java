@@ -0,0 +1,264 @@
+package com.example.ansibleping;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs bulk start/stop/restart jobs across many hosts as rolling batches,
+ * so a whole farm can be restarted without taking every node down at once.
+ * Jobs run in the background; callers poll or stream their progress by ID
+ * and can cancel them.
+ */
+@Service
+public class FleetActionService {
+
+    private static final Logger logger = LoggerFactory.getLogger(FleetActionService.class);
+
+    @Autowired
+    private AnsibleService ansibleService;
+
+    @Autowired
+    private AnsibleMetrics metrics;
+
+    @Value("${fleet.worker-threads:16}")
+    private int workerThreads;
+
+    @Value("${fleet.jobs.max-retained:100}")
+    private int maxRetainedJobs;
+
+    // Jobs by ID in submission order; finished jobs beyond the retention limit are dropped oldest first
+    private final Map<String, FleetJob> jobs = new LinkedHashMap<>();
+
+    private ExecutorService runners;
+    private ExecutorService workers;
+    private ExecutorService senders;
+
+    public FleetActionService() {
+    }
+
+    FleetActionService(AnsibleService ansibleService, AnsibleMetrics metrics, int workerThreads, int maxRetainedJobs) {
+        this.ansibleService = ansibleService;
+        this.metrics = metrics;
+        this.workerThreads = workerThreads;
+        this.maxRetainedJobs = maxRetainedJobs;
+        init();
+    }
+
+    @PostConstruct
+    void init() {
+        runners = Executors.newCachedThreadPool(daemonThreads("fleet-job-"));
+        workers = Executors.newFixedThreadPool(workerThreads, daemonThreads("fleet-action-"));
+        senders = Executors.newCachedThreadPool(daemonThreads("fleet-progress-"));
+        metrics.gauge("fleet.jobs.running", "Bulk IIS action jobs in progress", this,
+                service -> service.countRunning());
+    }
+
+    @PreDestroy
+    void shutdown() {
+        runners.shutdownNow();
+        workers.shutdownNow();
+        senders.shutdownNow();
+    }
+
+    /**
+     * Start a rolling job. Fails when a host is listed twice (host names are
+     * compared ignoring case) or is already part of a running job, so
+     * neither one job nor two act on the same host at once.
+     */
+    public FleetJob submit(FleetJob.Action action, List<Target> targets, FleetJob.Options options) {
+        if (targets.isEmpty()) {
+            throw new IllegalArgumentException("At least one host is required");
+        }
+        Set<String> hosts = new HashSet<>();
+        Set<String> names = new HashSet<>();
+        for (Target target : targets) {
+            ansibleService.validateInput(target.host(), target.user(), target.pass());
+            if (!names.add(target.host().toLowerCase(Locale.ROOT))) {
+                throw new IllegalArgumentException("Host " + target.host() + " is listed more than once");
+            }
+            hosts.add(target.host());
+        }
+
+        FleetJob job;
+        synchronized (jobs) {
+            for (FleetJob running : jobs.values()) {
+                for (String host : hosts) {
+                    if (running.isActive(host)) {
+                        throw new IllegalStateException("Host " + host + " is already part of running job " + running.getId());
+                    }
+                }
+            }
+            job = new FleetJob(UUID.randomUUID().toString(), action, options, targets, senders);
+            jobs.put(job.getId(), job);
+            evictFinished();
+        }
+        logger.info("Fleet job {}: {} IIS on {} hosts in {} batches (maxParallel {}, maxUnavailable {})",
+                job.getId(), action.name().toLowerCase(), targets.size(), job.getBatches(),
+                options.maxParallel(), options.maxUnavailable());
+        runners.execute(() -> run(job));
+        return job;
+    }
+
+    /**
+     * Get a job by ID, or null if it is unknown or no longer retained
+     */
+    public FleetJob getJob(String id) {
+        synchronized (jobs) {
+            return jobs.get(id);
+        }
+    }
+
+    /**
+     * Get every retained job, newest first
+     */
+    public List<FleetJob.Snapshot> getJobs() {
+        List<FleetJob> all;
+        synchronized (jobs) {
+            all = new ArrayList<>(jobs.values());
+        }
+        List<FleetJob.Snapshot> snapshots = new ArrayList<>(all.size());
+        all.forEach(job -> snapshots.add(job.snapshot()));
+        snapshots.sort(Comparator.comparingLong(FleetJob.Snapshot::createdAt).reversed());
+        return snapshots;
+    }
+
+    /**
+     * Cancel a running job. Actions already running on hosts finish; no new ones start.
+     */
+    public boolean cancel(String id) {
+        FleetJob job = getJob(id);
+        if (job == null || !job.cancel()) {
+            return false;
+        }
+        logger.info("Fleet job {} cancelled", id);
+        return true;
+    }
+
+    /**
+     * Stream a job's progress as Server-Sent Events
+     */
+    public SseEmitter subscribe(String id) {
+        FleetJob job = getJob(id);
+        return job == null ? null : job.subscribe();
+    }
+
+    /**
+     * Whether a running job still has to act on, or is acting on, the host
+     */
+    public boolean isHostBusy(String host) {
+        synchronized (jobs) {
+            for (FleetJob job : jobs.values()) {
+                if (job.isActive(host)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private void run(FleetJob job) {
+        try {
+            for (int batch = 1; batch <= job.getBatches() && !job.shouldStop(); batch++) {
+                if (batch > 1 && job.getOptions().pauseMillis() > 0) {
+                    job.pause(job.getOptions().pauseMillis());
+                    if (job.shouldStop()) {
+                        break;
+                    }
+                }
+                job.startBatch(batch);
+                for (Target target : job.batch(batch)) {
+                    if (!job.awaitSlot()) {
+                        break;
+                    }
+                    job.started(target.host());
+                    workers.execute(() -> act(job, target));
+                }
+                job.awaitIdle();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            job.fail("Interrupted while shutting down");
+        } catch (RuntimeException e) {
+            logger.error("Fleet job {} failed: {}", job.getId(), e.getMessage(), e);
+            job.fail("Error: " + e.getMessage());
+        }
+        job.complete();
+    }
+
+    /**
+     * Run the action on one host. A start or restart only counts as done
+     * once a fresh status check finds IIS running again.
+     */
+    private void act(FleetJob job, Target target) {
+        FleetJob.Action action = job.getAction();
+        boolean succeeded = false;
+        String description;
+        ServiceStatus result = null;
+        try {
+            result = ansibleService.changeIISState(target.host(), target.user(), target.pass(), action.state());
+            description = ansibleService.describeServiceAction(result, action.state());
+            if (result.succeeded() && action != FleetJob.Action.STOP) {
+                result = ansibleService.getIISStatus(target.host(), target.user(), target.pass());
+                description = result.state() == ServiceState.RUNNING
+                        ? description
+                        : "🔴 NOT RUNNING - IIS did not come back: " + ansibleService.describeIISStatus(result);
+                succeeded = result.state() == ServiceState.RUNNING;
+            } else {
+                succeeded = result.succeeded();
+            }
+        } catch (Exception e) {
+            logger.error("Fleet job {}: error on {}: {}", job.getId(), target.host(), e.getMessage(), e);
+            description = "Error: " + e.getMessage();
+        }
+        logger.info("Fleet job {}: {} -> {}", job.getId(), target.host(), description);
+        job.finished(target.host(), succeeded, description, result);
+    }
+
+    private int countRunning() {
+        synchronized (jobs) {
+            return (int) jobs.values().stream().filter(job -> !job.isFinished()).count();
+        }
+    }
+
+    // Caller holds the jobs lock
+    private void evictFinished() {
+        int excess = jobs.size() - maxRetainedJobs;
+        Iterator<FleetJob> iterator = jobs.values().iterator();
+        while (excess > 0 && iterator.hasNext()) {
+            if (iterator.next().isFinished()) {
+                iterator.remove();
+                excess--;
+            }
+        }
+    }
+
+    private static ThreadFactory daemonThreads(String prefix) {
+        AtomicInteger count = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
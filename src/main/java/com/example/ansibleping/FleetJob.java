@@ -0,0 +1,381 @@
+package com.example.ansibleping;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * One bulk IIS action rolled across a list of hosts, and its progress.
+ *
+ * <p>Hosts run in batches of {@code batchSize}; the next batch starts when
+ * the previous one has finished and {@code pauseMillis} has passed. Within a
+ * batch at most {@code maxParallel} actions run at once. A host counts as
+ * unavailable while its action runs and, if the action fails, for the rest
+ * of the job; no new action starts while {@code maxUnavailable} hosts are
+ * unavailable, and the job stops once that many have failed.
+ */
+public final class FleetJob {
+
+    private static final Logger logger = LoggerFactory.getLogger(FleetJob.class);
+
+    public enum Action {
+        START("started"), STOP("stopped"), RESTART("restarted");
+
+        private final String state;
+
+        Action(String state) {
+            this.state = state;
+        }
+
+        /**
+         * The win_service state this action moves IIS to
+         */
+        public String state() {
+            return state;
+        }
+
+        static Action parse(String value) {
+            if (value != null) {
+                for (Action action : values()) {
+                    if (action.name().equalsIgnoreCase(value.trim())) {
+                        return action;
+                    }
+                }
+            }
+            throw new IllegalArgumentException("Action must be one of start, stop or restart");
+        }
+    }
+
+    public enum Status { RUNNING, SUCCEEDED, FAILED, CANCELLED }
+
+    public enum HostState { PENDING, IN_PROGRESS, SUCCEEDED, FAILED, SKIPPED, CANCELLED }
+
+    /**
+     * How the job is rolled out
+     */
+    public record Options(int batchSize, int maxParallel, int maxUnavailable, long pauseMillis) {
+
+        public Options {
+            if (batchSize < 1 || maxParallel < 1 || maxUnavailable < 1) {
+                throw new IllegalArgumentException("batchSize, maxParallel and maxUnavailable must be at least 1");
+            }
+            if (pauseMillis < 0) {
+                throw new IllegalArgumentException("pauseMillis cannot be negative");
+            }
+        }
+    }
+
+    /**
+     * Progress of one host; {@code status} is the last result seen for it
+     */
+    public record HostProgress(String host, int batch, HostState state, String description, ServiceStatus status,
+                               long updatedAt) {
+    }
+
+    /**
+     * The job as returned by the API
+     */
+    public record Snapshot(String id, Action action, Status status, String message, Options options, int batches,
+                           int currentBatch, Map<HostState, Integer> counts, List<HostProgress> hosts,
+                           long createdAt, long finishedAt) {
+    }
+
+    private final String id;
+    private final Action action;
+    private final Options options;
+    private final List<Target> targets;
+    private final int batches;
+    private final long createdAt = System.currentTimeMillis();
+    private final Executor senders;
+
+    // All mutable state below is guarded by "this"
+    private final Map<String, HostProgress> progress = new LinkedHashMap<>();
+    private Status status = Status.RUNNING;
+    private String message;
+    private int currentBatch;
+    private int inProgress;
+    private int failed;
+    private boolean cancelled;
+    private String error;
+    private long finishedAt = -1;
+
+    private final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+
+    FleetJob(String id, Action action, Options options, List<Target> targets, Executor senders) {
+        this.id = id;
+        this.action = action;
+        this.options = options;
+        this.targets = List.copyOf(targets);
+        this.batches = (targets.size() + options.batchSize() - 1) / options.batchSize();
+        this.senders = senders;
+        for (int i = 0; i < targets.size(); i++) {
+            String host = targets.get(i).host();
+            // Progress is tracked per host, so a host listed twice would be acted on twice but counted once
+            if (progress.put(host, new HostProgress(host, i / options.batchSize() + 1, HostState.PENDING, null, null,
+                    createdAt)) != null) {
+                throw new IllegalArgumentException("Host " + host + " is listed more than once");
+            }
+        }
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public Action getAction() {
+        return action;
+    }
+
+    Options getOptions() {
+        return options;
+    }
+
+    /**
+     * The targets of one batch, numbered from 1
+     */
+    List<Target> batch(int number) {
+        int from = (number - 1) * options.batchSize();
+        return targets.subList(from, Math.min(targets.size(), from + options.batchSize()));
+    }
+
+    int getBatches() {
+        return batches;
+    }
+
+    List<String> getHosts() {
+        return targets.stream().map(Target::host).toList();
+    }
+
+    synchronized boolean isFinished() {
+        return status != Status.RUNNING;
+    }
+
+    synchronized boolean isActive(String host) {
+        HostProgress entry = progress.get(host);
+        return status == Status.RUNNING && entry != null
+                && (entry.state() == HostState.PENDING || entry.state() == HostState.IN_PROGRESS);
+    }
+
+    synchronized void startBatch(int number) {
+        currentBatch = number;
+        logger.info("Fleet job {}: starting batch {}/{}", id, number, batches);
+    }
+
+    /**
+     * Wait until another action may start. Returns false when the job was
+     * cancelled or has hit its failure limit.
+     */
+    synchronized boolean awaitSlot() throws InterruptedException {
+        while (!cancelled && failed < options.maxUnavailable()
+                && (inProgress >= options.maxParallel() || inProgress + failed >= options.maxUnavailable())) {
+            wait();
+        }
+        return !cancelled && failed < options.maxUnavailable();
+    }
+
+    /**
+     * Wait until every started action has finished
+     */
+    synchronized void awaitIdle() throws InterruptedException {
+        while (inProgress > 0) {
+            wait();
+        }
+    }
+
+    /**
+     * Sleep between batches; returns early when the job is cancelled
+     */
+    synchronized void pause(long millis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + millis;
+        long remaining = millis;
+        while (!cancelled && remaining > 0) {
+            wait(remaining);
+            remaining = deadline - System.currentTimeMillis();
+        }
+    }
+
+    synchronized boolean shouldStop() {
+        return cancelled || failed >= options.maxUnavailable();
+    }
+
+    synchronized void started(String host) {
+        inProgress++;
+        update(host, HostState.IN_PROGRESS, "⏳ IN PROGRESS - IIS is being " + action.state(), null);
+    }
+
+    synchronized void finished(String host, boolean succeeded, String description, ServiceStatus result) {
+        inProgress--;
+        if (!succeeded) {
+            failed++;
+        }
+        update(host, succeeded ? HostState.SUCCEEDED : HostState.FAILED, description, result);
+        notifyAll();
+    }
+
+    /**
+     * Stop starting new actions. Actions already running are left to finish.
+     */
+    synchronized boolean cancel() {
+        if (status != Status.RUNNING) {
+            return false;
+        }
+        cancelled = true;
+        notifyAll();
+        return true;
+    }
+
+    /**
+     * Mark hosts that never ran and settle the job status
+     */
+    void complete() {
+        Snapshot snapshot;
+        synchronized (this) {
+            boolean halted = failed >= options.maxUnavailable();
+            for (HostProgress host : List.copyOf(progress.values())) {
+                if (host.state() != HostState.PENDING) {
+                    continue;
+                }
+                if (error != null) {
+                    update(host.host(), HostState.SKIPPED, "Skipped: " + error, null);
+                } else if (cancelled) {
+                    update(host.host(), HostState.CANCELLED, "Job was cancelled", null);
+                } else {
+                    update(host.host(), HostState.SKIPPED, "Skipped after " + failed + " hosts failed", null);
+                }
+            }
+            if (error != null) {
+                status = Status.FAILED;
+                message = error;
+            } else if (cancelled) {
+                status = Status.CANCELLED;
+                message = "Cancelled by request";
+            } else if (failed > 0) {
+                status = Status.FAILED;
+                message = halted
+                        ? "Stopped after " + failed + " hosts failed (maxUnavailable " + options.maxUnavailable() + ")"
+                        : failed + " hosts failed";
+            } else {
+                status = Status.SUCCEEDED;
+                message = "IIS " + action.state() + " on " + targets.size() + " hosts";
+            }
+            finishedAt = System.currentTimeMillis();
+            snapshot = snapshot();
+        }
+        logger.info("Fleet job {} finished: {} - {}", id, status, message);
+        for (Subscriber subscriber : subscribers) {
+            subscriber.offer(SseEmitter.event().name("job").data(snapshot), true);
+            schedule(subscriber);
+        }
+    }
+
+    /**
+     * Abort the job after an unexpected error in the runner
+     */
+    synchronized void fail(String reason) {
+        cancelled = true;
+        error = reason;
+        notifyAll();
+    }
+
+    synchronized Snapshot snapshot() {
+        Map<HostState, Integer> counts = new EnumMap<>(HostState.class);
+        for (HostProgress host : progress.values()) {
+            counts.merge(host.state(), 1, Integer::sum);
+        }
+        return new Snapshot(id, action, status, message, options, batches, currentBatch, counts,
+                new ArrayList<>(progress.values()), createdAt, finishedAt);
+    }
+
+    /**
+     * Stream the job's progress: a "job" event with the current snapshot,
+     * a "host" event per host update, and a final "job" event when it ends.
+     */
+    SseEmitter subscribe() {
+        SseEmitter emitter = new SseEmitter(0L);
+        Subscriber subscriber = new Subscriber(emitter);
+        emitter.onCompletion(() -> subscribers.remove(subscriber));
+        emitter.onTimeout(() -> subscribers.remove(subscriber));
+        emitter.onError(e -> subscribers.remove(subscriber));
+        synchronized (this) {
+            subscriber.offer(SseEmitter.event().name("job").data(snapshot()), status != Status.RUNNING);
+            if (status == Status.RUNNING) {
+                subscribers.add(subscriber);
+            }
+        }
+        schedule(subscriber);
+        return emitter;
+    }
+
+    // Caller holds the lock, so host events reach subscribers in the order they happened
+    private void update(String host, HostState state, String description, ServiceStatus result) {
+        HostProgress previous = progress.get(host);
+        HostProgress updated = new HostProgress(host, previous.batch(), state, description,
+                result != null ? result : previous.status(), System.currentTimeMillis());
+        progress.put(host, updated);
+        for (Subscriber subscriber : subscribers) {
+            subscriber.offer(SseEmitter.event().name("host").data(updated), false);
+            schedule(subscriber);
+        }
+    }
+
+    private void schedule(Subscriber subscriber) {
+        if (subscriber.sending.compareAndSet(false, true)) {
+            senders.execute(() -> drain(subscriber));
+        }
+    }
+
+    // Runs on at most one sender thread per subscriber, so a slow client never holds up the job
+    private void drain(Subscriber subscriber) {
+        try {
+            while (true) {
+                SseEmitter.SseEventBuilder event = subscriber.events.poll();
+                if (event == null) {
+                    subscriber.sending.set(false);
+                    if (!subscriber.events.isEmpty() && subscriber.sending.compareAndSet(false, true)) {
+                        continue;
+                    }
+                    if (subscriber.last && subscriber.events.isEmpty()) {
+                        subscriber.emitter.complete();
+                    }
+                    return;
+                }
+                subscriber.emitter.send(event);
+            }
+        } catch (IOException | IllegalStateException e) {
+            logger.debug("Fleet job {} progress subscriber disconnected: {}", id, e.getMessage());
+            subscribers.remove(subscriber);
+            subscriber.emitter.completeWithError(e);
+        }
+    }
+
+    private static final class Subscriber {
+        private final SseEmitter emitter;
+        // Bounded by the job: two host events per host plus the job events
+        private final Queue<SseEmitter.SseEventBuilder> events = new ConcurrentLinkedQueue<>();
+        private final AtomicBoolean sending = new AtomicBoolean();
+        private volatile boolean last;
+
+        Subscriber(SseEmitter emitter) {
+            this.emitter = emitter;
+        }
+
+        void offer(SseEmitter.SseEventBuilder event, boolean last) {
+            events.add(event);
+            if (last) {
+                this.last = true;
+            }
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.example.ansibleping;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Consistent hash ring of cluster members. Each member is placed at
+ * {@code virtualNodes} points; a key belongs to the first member point at or
+ * after its own hash. When a member joins or leaves only the keys next to
+ * its points change owner, about one in N of them.
+ *
+ * <p>Hashes are taken from MD5 so every instance, on any JVM, computes the
+ * same ring from the same member list.
+ */
+final class HashRing {
+
+    private final TreeMap<Long, String> points = new TreeMap<>();
+
+    HashRing(Collection<String> members, int virtualNodes) {
+        for (String member : members) {
+            for (int i = 0; i < virtualNodes; i++) {
+                points.put(hash(member + "#" + i), member);
+            }
+        }
+    }
+
+    /**
+     * The member owning a key, or null when the ring is empty
+     */
+    String owner(String key) {
+        if (points.isEmpty()) {
+            return null;
+        }
+        Map.Entry<Long, String> entry = points.ceilingEntry(hash(key));
+        return (entry != null ? entry : points.firstEntry()).getValue();
+    }
+
+    /**
+     * The shard a host belongs to. The shard count is fixed, so a host never
+     * changes shard; only shards move between members.
+     */
+    static int shard(String host, int shards) {
+        return (int) Math.floorMod(hash(host), (long) shards);
+    }
+
+    static long hash(String key) {
+        try {
+            byte[] digest = MessageDigest.getInstance("MD5").digest(key.getBytes(StandardCharsets.UTF_8));
+            return ByteBuffer.wrap(digest).getLong();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("MD5 is not available", e);
+        }
+    }
+}
@@ -0,0 +1,10 @@
+package com.example.ansibleping;
+
+/**
+ * One stored IIS check or auto-restart of a host. Downsampled records cover
+ * {@code samples} checks, of which {@code upSamples} found IIS running;
+ * {@code state} is then the last state seen and {@code durationMillis} the average.
+ */
+public record HistoryRecord(String host, long timestamp, ServiceState state, boolean restart, boolean succeeded,
+                            int durationMillis, int samples, int upSamples) {
+}
@@ -0,0 +1,14 @@
+package com.example.ansibleping;
+
+/**
+ * Uptime and recovery figures for one host over a time range.
+ * An outage runs from the first check that found IIS not running to the
+ * next check that found it running again; {@code mttrMillis} is the mean
+ * length of the outages that ended in the range, or -1 if none did.
+ * {@code ongoingOutageSince} is -1 unless IIS was still down at the end.
+ * On downsampled days outages are only as precise as a bucket.
+ */
+public record HistoryReport(String host, long from, long to, long checks, double uptimePercent,
+                            long averageCheckMillis, int outages, long mttrMillis, long ongoingOutageSince,
+                            int restarts, int failedRestarts) {
+}
@@ -0,0 +1,181 @@
+package com.example.ansibleping;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * One memory-mapped history file of fixed-width records, appended in time
+ * order. The file is sized for its capacity up front; the header holds the
+ * number of records written so far.
+ *
+ * <pre>
+ * header (32 bytes): int magic, int version, int record size, int capacity, int count
+ * record (32 bytes): long timestamp, int host id, int duration ms, byte state, byte flags,
+ *                    2 bytes padding, int samples, int up samples, 4 bytes padding
+ * </pre>
+ *
+ * The state is stored as the {@link ServiceState} ordinal, so new states must
+ * only ever be added at the end of the enum. A raw check has one sample; a
+ * downsampled record covers many, with the average duration and last state.
+ */
+final class HistorySegment {
+
+    static final int HEADER_SIZE = 32;
+    static final int RECORD_SIZE = 32;
+
+    static final int FLAG_RESTART = 1;
+    static final int FLAG_SUCCEEDED = 2;
+
+    private static final int MAGIC = 0x49495348; // "IISH"
+    private static final int VERSION = 1;
+    private static final int COUNT_OFFSET = 16;
+
+    private static final ServiceState[] STATES = ServiceState.values();
+
+    private final Path path;
+    private final MappedByteBuffer buffer;
+    private final int capacity;
+    private volatile int count;
+
+    private HistorySegment(Path path, MappedByteBuffer buffer, int capacity, int count) {
+        this.path = path;
+        this.buffer = buffer;
+        this.capacity = capacity;
+        this.count = count;
+    }
+
+    /**
+     * Create and map a new segment file with room for the given number of records
+     */
+    static HistorySegment create(Path path, int capacity) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0,
+                    HEADER_SIZE + (long) capacity * RECORD_SIZE);
+            buffer.putInt(0, MAGIC);
+            buffer.putInt(4, VERSION);
+            buffer.putInt(8, RECORD_SIZE);
+            buffer.putInt(12, capacity);
+            buffer.putInt(COUNT_OFFSET, 0);
+            return new HistorySegment(path, buffer, capacity, 0);
+        }
+    }
+
+    /**
+     * Map an existing segment file
+     */
+    static HistorySegment open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            if (channel.size() < HEADER_SIZE) {
+                throw new IOException("History segment " + path + " is too short");
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+            if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION || buffer.getInt(8) != RECORD_SIZE) {
+                throw new IOException("History segment " + path + " has an unknown format");
+            }
+            int capacity = buffer.getInt(12);
+            int count = buffer.getInt(COUNT_OFFSET);
+            if (capacity < 0 || HEADER_SIZE + (long) capacity * RECORD_SIZE > channel.size()
+                    || count < 0 || count > capacity) {
+                throw new IOException("History segment " + path + " has a corrupt header");
+            }
+            return new HistorySegment(path, buffer, capacity, count);
+        }
+    }
+
+    /**
+     * Append a record; returns false when the segment is full.
+     * Callers serialize appends.
+     */
+    boolean append(long timestamp, int hostId, int durationMillis, ServiceState state, int flags,
+                   int samples, int upSamples) {
+        int index = count;
+        if (index >= capacity) {
+            return false;
+        }
+        int offset = offset(index);
+        buffer.putLong(offset, timestamp);
+        buffer.putInt(offset + 8, hostId);
+        buffer.putInt(offset + 12, durationMillis);
+        buffer.put(offset + 16, (byte) state.ordinal());
+        buffer.put(offset + 17, (byte) flags);
+        buffer.putInt(offset + 20, samples);
+        buffer.putInt(offset + 24, upSamples);
+        // Publish the record only once it is completely written
+        buffer.putInt(COUNT_OFFSET, index + 1);
+        count = index + 1;
+        return true;
+    }
+
+    /**
+     * Index of the first record at or after the timestamp, or {@link #count()} if there is none
+     */
+    int firstIndexAtOrAfter(long timestamp) {
+        int low = 0;
+        int high = count;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (timestamp(mid) < timestamp) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    long timestamp(int index) {
+        return buffer.getLong(offset(index));
+    }
+
+    int hostId(int index) {
+        return buffer.getInt(offset(index) + 8);
+    }
+
+    int durationMillis(int index) {
+        return buffer.getInt(offset(index) + 12);
+    }
+
+    ServiceState state(int index) {
+        int ordinal = buffer.get(offset(index) + 16);
+        return ordinal >= 0 && ordinal < STATES.length ? STATES[ordinal] : ServiceState.UNKNOWN;
+    }
+
+    int flags(int index) {
+        return buffer.get(offset(index) + 17);
+    }
+
+    int samples(int index) {
+        return buffer.getInt(offset(index) + 20);
+    }
+
+    int upSamples(int index) {
+        return buffer.getInt(offset(index) + 24);
+    }
+
+    int count() {
+        return count;
+    }
+
+    boolean isFull() {
+        return count >= capacity;
+    }
+
+    Path path() {
+        return path;
+    }
+
+    /**
+     * Write dirty pages back to the file
+     */
+    void force() {
+        buffer.force();
+    }
+
+    private static int offset(int index) {
+        return HEADER_SIZE + index * RECORD_SIZE;
+    }
+}
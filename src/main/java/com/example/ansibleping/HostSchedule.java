@@ -0,0 +1,195 @@
+package com.example.ansibleping;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * When a monitored host is checked next, and whether the monitor may try to
+ * restart IIS on it.
+ *
+ * <ul>
+ *   <li>A healthy host is checked every {@code interval}.</li>
+ *   <li>After a failed check, an auto-restart, or the first good check after
+ *       an outage, it is re-checked after {@code recheck} to confirm the
+ *       outcome quickly.</li>
+ *   <li>While it stays unreachable the delay doubles from {@code recheck}
+ *       up to {@code maxBackoff}.</li>
+ *   <li>Restarts pass through a circuit breaker: a restart fails when the
+ *       start command fails or the next check still finds IIS down. After
+ *       {@code breakerThreshold} failures in a row the breaker opens and no
+ *       restart is tried for {@code breakerOpen}; then a single trial restart
+ *       decides whether it closes again.</li>
+ *   <li>Where the site answers HTTP, a healthy host is settled by a cheap
+ *       HTTP probe instead: the full check only runs when the probe fails,
+ *       the last full check is older than the staleness limit, or the host
+ *       was not running at its last full check. A host whose site failed
+ *       its probe is probed again after {@code recheck}, even when the full
+ *       check found IIS running.</li>
+ * </ul>
+ */
+public final class HostSchedule {
+
+    public enum BreakerState { CLOSED, OPEN, HALF_OPEN }
+
+    /**
+     * Timing and breaker settings shared by every host, all in milliseconds
+     */
+    record Policy(long interval, long recheck, long maxBackoff, int breakerThreshold, long breakerOpen) {
+    }
+
+    private final String host;
+    private final Policy policy;
+
+    private long nextDue;
+    private ServiceState lastState;
+    private int consecutiveUnreachable;
+    private int consecutiveRestartFailures;
+    private boolean awaitingRestartConfirmation;
+    private BreakerState breaker = BreakerState.CLOSED;
+    private long breakerOpenUntil;
+    private long lastFullCheck = -1;
+    private boolean siteFailing;
+
+    HostSchedule(String host, Policy policy, long firstDue) {
+        this.host = host;
+        this.policy = policy;
+        this.nextDue = firstDue;
+    }
+
+    synchronized boolean isDue(long now) {
+        return now >= nextDue;
+    }
+
+    synchronized long nextDue() {
+        return nextDue;
+    }
+
+    /**
+     * Record a check result and schedule the next check
+     */
+    synchronized void afterCheck(ServiceState state, long now) {
+        afterCheck(state, false, now);
+    }
+
+    /**
+     * Record the result of a check that followed a failed HTTP probe when
+     * {@code probeFailed}, and schedule the next check
+     */
+    synchronized void afterCheck(ServiceState state, boolean probeFailed, long now) {
+        lastFullCheck = now;
+        boolean running = state == ServiceState.RUNNING;
+        if (awaitingRestartConfirmation) {
+            awaitingRestartConfirmation = false;
+            if (running) {
+                restartSucceeded();
+            } else {
+                restartFailed(now);
+            }
+        }
+
+        boolean wasHealthy = (lastState == null || lastState == ServiceState.RUNNING) && !siteFailing;
+        lastState = state;
+        siteFailing = running && probeFailed;
+        if (state == ServiceState.UNREACHABLE || state == ServiceState.TIMED_OUT) {
+            consecutiveUnreachable++;
+            nextDue = now + jitter(backoff(consecutiveUnreachable));
+            return;
+        }
+        consecutiveUnreachable = 0;
+        if (running) {
+            // One quick confirmation after an outage catches a host that comes up and falls over again
+            nextDue = now + jitter(wasHealthy && !siteFailing ? policy.interval() : policy.recheck());
+        } else if (breakerState(now) == BreakerState.OPEN) {
+            // Nothing the monitor can do while the breaker is open; come back exactly when the trial restart is allowed
+            nextDue = Math.min(now + jitter(policy.interval()), breakerOpenUntil);
+        } else {
+            nextDue = now + jitter(policy.recheck());
+        }
+    }
+
+    /**
+     * Whether a healthy HTTP probe may stand in for the full check now: the
+     * last full check found IIS running, is not older than {@code maxStale},
+     * and no restart is waiting to be confirmed
+     */
+    synchronized boolean acceptsHttpProbe(long now, long maxStale) {
+        return lastState == ServiceState.RUNNING && !awaitingRestartConfirmation
+                && lastFullCheck >= 0 && now - lastFullCheck < maxStale;
+    }
+
+    /**
+     * Record a healthy HTTP probe in place of a full check. Returns whether
+     * it ends a run of failed probes.
+     */
+    synchronized boolean afterHttpProbe(long now, long interval) {
+        nextDue = now + jitter(interval);
+        boolean recovered = siteFailing;
+        siteFailing = false;
+        return recovered;
+    }
+
+    /**
+     * Whether the breaker lets an automatic restart through now.
+     * An open breaker turns half-open, allowing one trial, once its time is up.
+     */
+    synchronized boolean allowRestart(long now) {
+        return breakerState(now) != BreakerState.OPEN;
+    }
+
+    /**
+     * Record the outcome of an automatic restart. A successful start is only
+     * counted once the re-check confirms IIS is running.
+     */
+    synchronized void afterRestart(boolean succeeded, long now) {
+        if (succeeded) {
+            awaitingRestartConfirmation = true;
+        } else {
+            restartFailed(now);
+        }
+        nextDue = now + jitter(policy.recheck());
+    }
+
+    synchronized Snapshot snapshot(long now) {
+        return new Snapshot(host, lastState, Math.max(0, nextDue - now),
+                lastFullCheck >= 0 ? now - lastFullCheck : -1, consecutiveUnreachable,
+                consecutiveRestartFailures, breakerState(now));
+    }
+
+    private BreakerState breakerState(long now) {
+        if (breaker == BreakerState.OPEN && now >= breakerOpenUntil) {
+            breaker = BreakerState.HALF_OPEN;
+        }
+        return breaker;
+    }
+
+    private void restartSucceeded() {
+        consecutiveRestartFailures = 0;
+        breaker = BreakerState.CLOSED;
+    }
+
+    private void restartFailed(long now) {
+        consecutiveRestartFailures++;
+        if (breaker == BreakerState.HALF_OPEN || consecutiveRestartFailures >= policy.breakerThreshold()) {
+            breaker = BreakerState.OPEN;
+            breakerOpenUntil = now + policy.breakerOpen();
+        }
+    }
+
+    private long backoff(int attempts) {
+        // recheck, 2x, 4x, ... capped; the shift is bounded so it cannot overflow
+        long delay = policy.recheck() << Math.min(attempts - 1, 20);
+        return Math.min(policy.maxBackoff(), delay);
+    }
+
+    // +/- 10% so hosts that failed together do not stay in lockstep
+    private static long jitter(long delay) {
+        long spread = delay / 10;
+        return spread > 0 ? delay + ThreadLocalRandom.current().nextLong(-spread, spread + 1) : delay;
+    }
+
+    /**
+     * Scheduling state of one host, for the API; {@code lastFullCheckAgoMillis} is -1 before the first full check
+     */
+    public record Snapshot(String host, ServiceState lastState, long nextCheckInMillis, long lastFullCheckAgoMillis,
+                    int consecutiveUnreachable, int consecutiveRestartFailures, BreakerState breaker) {
+    }
+}
@@ -0,0 +1,190 @@
+package com.example.ansibleping;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Cheap first-tier health check: an HTTP GET of the site on each host.
+ *
+ * <p>All requests go through one shared, non-blocking {@link HttpClient},
+ * which keeps connections to each host open between probes, so a probe
+ * costs a request on a pooled socket instead of an ansible process and a
+ * WinRM logon. A status code up to {@code iis.http-probe.max-healthy-status}
+ * means IIS is serving; anything else, or no answer, sends the host to the
+ * full WinRM check.
+ */
+@Component
+public class HttpHealthProbe {
+
+    private static final Logger logger = LoggerFactory.getLogger(HttpHealthProbe.class);
+
+    /**
+     * Outcome of one probe; {@code statusCode} is 0 when no response arrived
+     */
+    public record HttpCheck(String host, String url, int statusCode, long latencyMillis, boolean healthy,
+                            String error, long checkedAt) {
+    }
+
+    @Autowired
+    private AnsibleMetrics metrics;
+
+    @Value("${iis.http-probe.enabled:true}")
+    private boolean enabled;
+
+    @Value("${iis.http-probe.url-template:http://{host}/}")
+    private String urlTemplate;
+
+    @Value("${iis.http-probe.connect-timeout-ms:2000}")
+    private long connectTimeoutMillis;
+
+    @Value("${iis.http-probe.request-timeout-ms:5000}")
+    private long requestTimeoutMillis;
+
+    @Value("${iis.http-probe.max-healthy-status:399}")
+    private int maxHealthyStatus;
+
+    @Value("${iis.http-probe.threads:2}")
+    private int threads;
+
+    // Last probe of each host, for the API
+    private final Map<String, HttpCheck> latest = new ConcurrentHashMap<>();
+
+    private ExecutorService executor;
+    private HttpClient client;
+
+    public HttpHealthProbe() {
+    }
+
+    HttpHealthProbe(AnsibleMetrics metrics, boolean enabled, String urlTemplate, long connectTimeoutMillis,
+                    long requestTimeoutMillis, int maxHealthyStatus, int threads) {
+        this.metrics = metrics;
+        this.enabled = enabled;
+        this.urlTemplate = urlTemplate;
+        this.connectTimeoutMillis = connectTimeoutMillis;
+        this.requestTimeoutMillis = requestTimeoutMillis;
+        this.maxHealthyStatus = maxHealthyStatus;
+        this.threads = threads;
+        init();
+    }
+
+    @PostConstruct
+    void init() {
+        AtomicInteger count = new AtomicInteger();
+        // Only runs the client's selector and completions; requests themselves never block a thread
+        executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "http-probe-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofMillis(connectTimeoutMillis))
+                .followRedirects(HttpClient.Redirect.NEVER)
+                .executor(executor)
+                .build();
+        logger.info("HTTP health probe {} ({} ms connect, {} ms request timeout)",
+                enabled ? "enabled for " + urlTemplate : "disabled", connectTimeoutMillis, requestTimeoutMillis);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * The URL to probe for an inventory entry, or null when probing is off
+     */
+    public String urlFor(InventoryTarget target) {
+        if (!enabled || target == null) {
+            return null;
+        }
+        if (target.healthUrl() != null) {
+            return target.healthUrl();
+        }
+        return urlTemplate.isBlank() ? null : urlTemplate.replace("{host}", target.host());
+    }
+
+    /**
+     * Probe a URL. The future always completes normally; failures are reported in the result.
+     */
+    public CompletableFuture<HttpCheck> probe(String host, String url) {
+        long start = System.nanoTime();
+        HttpRequest request;
+        try {
+            request = HttpRequest.newBuilder(URI.create(url))
+                    .timeout(Duration.ofMillis(requestTimeoutMillis))
+                    .header("User-Agent", "ansible-ping-probe")
+                    .GET()
+                    .build();
+        } catch (IllegalArgumentException e) {
+            return CompletableFuture.completedFuture(record(host, url, 0, start, "Invalid URL: " + e.getMessage()));
+        }
+        // The body is read and discarded so the connection goes back to the pool
+        return client.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                .handle((response, failure) -> response != null
+                        ? record(host, url, response.statusCode(), start, null)
+                        : record(host, url, 0, start, describe(failure)));
+    }
+
+    /**
+     * Get the last probe of every host, ordered by host
+     */
+    public List<HttpCheck> getLatest() {
+        List<HttpCheck> checks = new ArrayList<>(latest.values());
+        checks.sort(Comparator.comparing(HttpCheck::host));
+        return checks;
+    }
+
+    /**
+     * Forget a host that is no longer monitored
+     */
+    public void forget(String host) {
+        latest.remove(host);
+    }
+
+    private HttpCheck record(String host, String url, int statusCode, long start, String error) {
+        long nanos = System.nanoTime() - start;
+        boolean healthy = statusCode > 0 && statusCode <= maxHealthyStatus;
+        HttpCheck check = new HttpCheck(host, url, statusCode, TimeUnit.NANOSECONDS.toMillis(nanos), healthy, error,
+                System.currentTimeMillis());
+        latest.put(host, check);
+        metrics.recordHttpProbe(host, statusCode, healthy, nanos);
+        if (!healthy) {
+            logger.info("HTTP probe of {} ({}) failed: {}", host, url, error != null ? error : "status " + statusCode);
+        }
+        return check;
+    }
+
+    private static String describe(Throwable failure) {
+        Throwable cause = failure instanceof CompletionException && failure.getCause() != null
+                ? failure.getCause() : failure;
+        if (cause instanceof HttpTimeoutException) {
+            return "Timed out";
+        }
+        String message = cause.getMessage();
+        return cause.getClass().getSimpleName() + (message != null ? ": " + message : "");
+    }
+}
@@ -1,120 +1,409 @@
 package com.example.ansibleping;
 
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+
 @Service
 public class IISMonitorService {
 
+    /**
+     * The last completed fleet sweep: every host this instance monitored when
+     * it started finished a check. {@code pending} counts the hosts the
+     * sweep in progress is still waiting for.
+     */
+    public record Sweep(int hosts, long lastSweepDurationMs, long lastSweepCompletedAt, int pending) {
+    }
+
     private static final Logger logger = LoggerFactory.getLogger(IISMonitorService.class);
     
     @Autowired
     private AnsibleService ansibleService;
     
-    // Configuration for monitoring
-    private String monitoredHost = "34.93.235.24";
-    private String monitoredUser = "admin";
-    private String monitoredPass = "I&8j7TbhSrxy1{z";
+    @Autowired
+    private IISStatusStream statusStream;
     
-    private boolean monitoringEnabled = true;
+    @Autowired
+    private StatusHistoryStore historyStore;
+
+    @Autowired
+    private AnsibleMetrics metrics;
+
+    @Autowired
+    private Inventory inventory;
+
+    @Autowired
+    private CommandExecutor commandExecutor;
+
+    @Autowired
+    private HttpHealthProbe httpProbe;
+
+    @Autowired
+    private ClusterCoordinator cluster;
+
+    @Autowired
+    private LogTailService logTailService;
+
+    @Autowired
+    private RemediationEngine remediation;
+
+    @Autowired
+    private StartupWarmup startup;
+
+    @Value("${iis.monitor.interval-ms:300000}")
+    private long intervalMillis;
+
+    @Value("${iis.monitor.recheck-ms:30000}")
+    private long recheckMillis;
+
+    @Value("${iis.monitor.max-backoff-ms:1800000}")
+    private long maxBackoffMillis;
+
+    @Value("${iis.monitor.breaker.failure-threshold:3}")
+    private int breakerThreshold;
+
+    @Value("${iis.monitor.breaker.open-ms:1800000}")
+    private long breakerOpenMillis;
+
+    @Value("${iis.http-probe.interval-ms:60000}")
+    private long httpIntervalMillis;
+
+    @Value("${iis.http-probe.max-stale-ms:3600000}")
+    private long httpMaxStaleMillis;
+
+    @Value("${iis.monitor.worker-threads:16}")
+    private int workerThreads;
+
+    @Value("${iis.monitor.jitter-ms:30000}")
+    private long jitterMillis;
+
+    @Value("${iis.monitor.check-timeout-ms:120000}")
+    private long checkTimeoutMillis;
+
+    // Latest state seen for each monitored host; changes are pushed to live status subscribers
+    private final Map<String, StatusEvent> latestStatus = new ConcurrentHashMap<>();
+
+    // Hosts whose check has been dispatched but has not finished yet
+    private final Set<String> inFlight = ConcurrentHashMap.newKeySet();
+
+    // When each monitored host is due next, and its restart breaker
+    private final Map<String, HostSchedule> schedules = new ConcurrentHashMap<>();
+
+    private HostSchedule.Policy policy;
+
+    // Fleet sweep in progress: hosts it still waits for, guarded by sweepLock
+    private final Object sweepLock = new Object();
+    private Set<String> sweepPending;
+    private int sweepHosts;
+    private long sweepStartedNanos;
+    private volatile Sweep lastSweep = new Sweep(0, -1, -1, 0);
+
+    private volatile boolean monitoringEnabled = true;
+
+    private ScheduledThreadPoolExecutor checkExecutor;
+
+    @PostConstruct
+    void startWorkers() {
+        if (inventory.isFresh()) {
+            // First run: start with the original demo target, which is then kept in the inventory
+            updateMonitoringConfig("34.93.235.24", "admin", "I&8j7TbhSrxy1{z");
+        }
+        AtomicInteger threadCount = new AtomicInteger();
+        checkExecutor = new ScheduledThreadPoolExecutor(workerThreads, runnable -> {
+            Thread thread = new Thread(runnable, "iis-check-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        checkExecutor.setRemoveOnCancelPolicy(true);
+        remediation.onStatus(this::recordStatus);
+        policy = new HostSchedule.Policy(intervalMillis, recheckMillis, maxBackoffMillis, breakerThreshold,
+                breakerOpenMillis);
+        metrics.gauge("iis.monitor.hosts", "Hosts being monitored", inventory, Inventory::size);
+        metrics.gauge("iis.monitor.checks.in.flight", "Monitor checks dispatched but not finished", inFlight, Set::size);
+        metrics.gauge("iis.monitor.hosts.backing.off", "Unreachable hosts being checked less often", this,
+                service -> service.countSchedules(snapshot -> snapshot.consecutiveUnreachable() > 0));
+        metrics.gauge("iis.monitor.breakers.open", "Hosts whose automatic restarts are suspended", this,
+                service -> service.countSchedules(snapshot -> snapshot.breaker() == HostSchedule.BreakerState.OPEN));
+        logger.info("IIS monitor started with {} worker threads, {} ms interval and {} ms re-check",
+                workerThreads, intervalMillis, recheckMillis);
+    }
+
+    @PreDestroy
+    void stopWorkers() {
+        checkExecutor.shutdownNow();
+    }
 
     /**
-     * Scheduled task to check IIS status every 5 minutes
+     * Dispatch the check of every host that is due. Each host keeps its own
+     * schedule: healthy hosts every {@code iis.monitor.interval-ms}, hosts
+     * that just changed state sooner, unreachable hosts with growing backoff.
+     * A host whose site answers HTTP is settled by the asynchronous HTTP
+     * probe every {@code iis.http-probe.interval-ms} and only gets the full
+     * WinRM check when the probe fails or the last full check is stale.
+     * Full checks run on the bounded worker pool, so this method returns immediately.
+     * With clustering on, only hosts in shards this instance holds are dispatched.
      */
-    @Scheduled(fixedRate = 300000) // 5 minutes = 300,000 milliseconds
-    public void scheduledIISStatusCheck() {
+    @Scheduled(fixedDelayString = "${iis.monitor.tick-ms:1000}")
+    public void dispatchDueChecks() {
         if (!monitoringEnabled) {
-            logger.debug("IIS monitoring is disabled - skipping scheduled check");
             return;
         }
         
-        logger.info("Starting scheduled IIS status check...");
-        try {
-            // Check IIS status using AnsibleService for clean output
-            String statusResult = ansibleService.checkIISStatus(monitoredHost, monitoredUser, monitoredPass);
-            logger.info("IIS Status Check Result: {}", statusResult);
-            
-            // Check if IIS is running
-            if (!isIISRunning(statusResult)) {
-                logger.warn("IIS is not running - attempting to start it automatically");
-                startIISAutomatically();
-            } else {
-                logger.info("IIS is running normally - no action needed");
+        long now = System.currentTimeMillis();
+        Set<String> owned = new HashSet<>();
+        Map<Target, HostSchedule> due = new LinkedHashMap<>();
+        // One consistent view of the inventory, so a host is always checked with its current credentials
+        for (Target target : inventory.targets()) {
+            if (!cluster.owns(target.host())) {
+                // Another instance monitors it; if it comes back here it starts with a fresh schedule
+                schedules.remove(target.host());
+                continue;
             }
-            
-        } catch (Exception e) {
-            logger.error("Error during scheduled IIS status check: {}", e.getMessage(), e);
+            owned.add(target.host());
+            // First checks are spread over the jitter window so a restart does not check every host at once
+            HostSchedule schedule = schedules.computeIfAbsent(target.host(), host -> new HostSchedule(host, policy,
+                    now + (jitterMillis > 0 ? ThreadLocalRandom.current().nextLong(jitterMillis) : 0)));
+            if (!schedule.isDue(now) || !inFlight.add(target.host())) {
+                // A hung host only holds its own worker and is not dispatched again until it returns
+                continue;
+            }
+            due.put(target, schedule);
         }
+        // Before dispatching, so the sweep counts a check that finishes right away
+        trackSweep(owned);
+
+        due.forEach((target, schedule) -> {
+            try {
+                metrics.recordSchedulerLag(Math.max(0, now - schedule.nextDue()));
+                String url = httpProbe.urlFor(inventory.entry(target.host()));
+                if (url != null && schedule.acceptsHttpProbe(now, httpMaxStaleMillis)) {
+                    httpProbe.probe(target.host(), url).whenComplete((check, error) -> afterHttpProbe(target, schedule,
+                            url, check, error));
+                } else {
+                    dispatchFullCheck(target, schedule, null);
+                }
+            } catch (RuntimeException e) {
+                logger.error("Could not dispatch the check of {}: {}", target.host(), e.getMessage(), e);
+                finishCheck(target.host());
+            }
+        });
     }
 
     /**
-     * Check if IIS is running based on the status result
+     * Settle a host whose site answered the HTTP probe, or hand it to the
+     * full check along with the failed probe. A healthy probe after failed
+     * ones is published as the host's recovery. Whatever happens the host
+     * leaves {@code inFlight}, so it is dispatched again when next due.
      */
-    private boolean isIISRunning(String statusResult) {
-        if (statusResult == null || statusResult.isEmpty()) {
-            return false;
-        }
-        
-        // Check for clean status messages
-        if (statusResult.contains("🟢 RUNNING")) {
-            return true;
+    private void afterHttpProbe(Target target, HostSchedule schedule, String url, HttpHealthProbe.HttpCheck check,
+                                Throwable error) {
+        if (error != null) {
+            logger.warn("HTTP probe of {} failed: {} - falling back to the full check", target.host(),
+                    error.getMessage());
+            dispatchFullCheck(target, schedule, new HttpHealthProbe.HttpCheck(target.host(), url, 0, 0, false,
+                    error.getMessage(), System.currentTimeMillis()));
+        } else if (!check.healthy()) {
+            dispatchFullCheck(target, schedule, check);
+        } else {
+            try {
+                long now = System.currentTimeMillis();
+                StatusEvent latest = latestStatus.get(target.host());
+                if (schedule.afterHttpProbe(now, httpIntervalMillis) && latest != null) {
+                    logger.info("The site on {} answers its HTTP probe again", target.host());
+                    remediation.publish(new MonitorEvent(target, schedule, latest.state(), latest.status(), null, now));
+                }
+                metrics.recordMonitorCheck("http");
+            } finally {
+                finishCheck(target.host());
+            }
         }
-        
-        if (statusResult.contains("🔴 STOPPED") || statusResult.contains("🔴 UNREACHABLE") || statusResult.contains("🔴 FAILED")) {
-            return false;
+    }
+
+    private void dispatchFullCheck(Target target, HostSchedule schedule, HttpHealthProbe.HttpCheck failedProbe) {
+        try {
+            checkExecutor.execute(() -> {
+                try {
+                    metrics.recordMonitorCheck("winrm");
+                    checkTarget(target, schedule, failedProbe);
+                } finally {
+                    finishCheck(target.host());
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // Shutting down
+            inFlight.remove(target.host());
         }
-        
-        // Fallback to JSON parsing for backward compatibility
-        if (statusResult.contains("\"state\": \"running\"")) {
-            return true;
+    }
+
+    /**
+     * A check of the host finished, one way or another: it may be dispatched
+     * again, and the sweep in progress no longer waits for it
+     */
+    private void finishCheck(String host) {
+        inFlight.remove(host);
+        synchronized (sweepLock) {
+            if (sweepPending != null && sweepPending.remove(host) && sweepPending.isEmpty()) {
+                completeSweep();
+            }
         }
-        
-        if (statusResult.contains("\"state\": \"stopped\"")) {
-            logger.info("IIS service is detected as stopped");
-            return false;
+    }
+
+    /**
+     * Start a fleet sweep over the hosts this instance monitors when none is
+     * in progress; otherwise stop waiting for hosts that were removed or
+     * moved to another instance since it started
+     */
+    private void trackSweep(Set<String> owned) {
+        synchronized (sweepLock) {
+            if (sweepPending == null) {
+                if (!owned.isEmpty()) {
+                    sweepPending = owned;
+                    sweepHosts = owned.size();
+                    sweepStartedNanos = System.nanoTime();
+                }
+                return;
+            }
+            int before = sweepPending.size();
+            sweepPending.retainAll(owned);
+            sweepHosts -= before - sweepPending.size();
+            if (sweepPending.isEmpty()) {
+                completeSweep();
+            }
         }
-        
-        // If we can't determine the state clearly, log it and assume it's not running
-        logger.warn("Could not determine IIS state clearly from response: {}", statusResult);
-        return false;
+    }
+
+    // Called holding sweepLock
+    private void completeSweep() {
+        long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - sweepStartedNanos);
+        lastSweep = new Sweep(sweepHosts, millis, System.currentTimeMillis(), 0);
+        sweepPending = null;
+        metrics.recordSweep(millis);
+        logger.info("IIS status sweep of {} hosts finished in {} ms", sweepHosts, millis);
     }
 
     /**
-     * Automatically start IIS when it's down
+     * Check a single target, schedule the next check and publish the outcome
+     * to the remediation policies when the state changed or the host is not
+     * healthy. {@code failedProbe} is the HTTP probe that led to the check, if any.
+     * Remediation runs elsewhere, so a slow restart never holds up checking.
      */
-    private void startIISAutomatically() {
+    private void checkTarget(Target target, HostSchedule schedule, HttpHealthProbe.HttpCheck failedProbe) {
         try {
-            logger.info("Attempting to start IIS automatically...");
-            String startResult = ansibleService.startIIS(monitoredHost, monitoredUser, monitoredPass);
-            logger.info("IIS Auto-Start Result: {}", startResult);
-            
-            if (startResult.contains("✅ SUCCESS") || startResult.contains("SUCCESS") || startResult.contains("CHANGED")) {
-                logger.info("IIS has been successfully started automatically");
+            StatusEvent previous = latestStatus.get(target.host());
+            ServiceStatus status = ansibleService.getIISStatus(target.host(), target.user(), target.pass());
+            logger.info("IIS Status Check Result for {}: {}", target.host(), recordCheck(status).description());
+            startup.recordCheck(status);
+            long now = System.currentTimeMillis();
+            schedule.afterCheck(status.state(), failedProbe != null, now);
+
+            MonitorEvent event = new MonitorEvent(target, schedule, previous == null ? null : previous.state(), status,
+                    failedProbe, now);
+            if (event.isHealthy()) {
+                logger.info("IIS is running normally on {} - no action needed", target.host());
+            } else if (event.isUnreachable()) {
+                logger.warn("{} is unreachable - not attempting to start IIS", target.host());
             } else {
-                logger.error("Failed to start IIS automatically: {}", startResult);
+                if (status.state() == ServiceState.RUNNING) {
+                    logger.warn("IIS is running on {} but its site failed the HTTP probe: {}", target.host(),
+                            failedProbe.statusCode() > 0 ? "status " + failedProbe.statusCode() : failedProbe.error());
+                } else if (status.state() == ServiceState.UNKNOWN) {
+                    logger.warn("Could not determine IIS state clearly on {}: {}", target.host(), status.message());
+                } else {
+                    logger.warn("IIS is not running on {}: {}", target.host(), status.state());
+                }
+                // Fetch what the host logged since the last collection, so the cause of the failure is at hand
+                logTailService.collectAfterFailure(target);
+            }
+            if (event.isTransition() || !event.isHealthy()) {
+                remediation.publish(event);
             }
             
         } catch (Exception e) {
-            logger.error("Error during automatic IIS start: {}", e.getMessage(), e);
+            // Treat it like a failed check so the host is retried soon rather than after a full interval
+            schedule.afterCheck(ServiceState.UNKNOWN, System.currentTimeMillis());
+            logger.error("Error during scheduled IIS status check of {}: {}", target.host(), e.getMessage(), e);
         }
     }
 
     /**
-     * Manual trigger to check IIS status immediately
+     * Store a check result in the history and track it as the host's latest state
+     */
+    private StatusEvent recordCheck(ServiceStatus status) {
+        historyStore.recordCheck(status);
+        return recordStatus(status);
+    }
+
+    /**
+     * Remember the latest state of a monitored host and publish it to live
+     * status subscribers when it differs from the previous one
+     */
+    private StatusEvent recordStatus(ServiceStatus status) {
+        String description = ansibleService.describeIISStatus(status);
+        // A check that finishes after its host was removed must not bring it back
+        if (!inventory.contains(status.host())) {
+            return new StatusEvent(status.host(), status.state(), description, status, System.currentTimeMillis());
+        }
+        boolean[] changed = new boolean[1];
+        StatusEvent event = latestStatus.compute(status.host(), (host, previous) -> {
+            changed[0] = previous == null || previous.state() != status.state();
+            long changedAt = changed[0] ? System.currentTimeMillis() : previous.changedAt();
+            return new StatusEvent(host, status.state(), description, status, changedAt);
+        });
+        if (changed[0]) {
+            statusStream.publish(event);
+        }
+        return event;
+    }
+
+    /**
+     * Manual trigger to check IIS status of every target immediately
      */
     public String checkIISStatusNow() {
-        logger.info("Manual IIS status check triggered");
-        try {
-            String result = ansibleService.checkIISStatus(monitoredHost, monitoredUser, monitoredPass);
-            logger.info("Manual IIS Status Check Result: {}", result);
-            return result;
-        } catch (Exception e) {
-            logger.error("Error during manual IIS status check: {}", e.getMessage(), e);
-            return "Error: " + e.getMessage();
+        List<Target> targets = inventory.targets();
+        logger.info("Manual IIS status check triggered for {} hosts", targets.size());
+        Map<String, CompletableFuture<String>> checks = new TreeMap<>();
+        for (Target target : targets) {
+            checks.put(target.host(), CompletableFuture.supplyAsync(
+                    () -> recordCheck(ansibleService.getIISStatus(target.host(), target.user(), target.pass()))
+                            .description(), checkExecutor)
+                    .completeOnTimeout("🟡 UNKNOWN - Check timed out", checkTimeoutMillis, TimeUnit.MILLISECONDS));
         }
+
+        StringBuilder result = new StringBuilder();
+        checks.forEach((host, check) -> {
+            String status;
+            try {
+                status = check.join();
+            } catch (Exception e) {
+                logger.error("Error during manual IIS status check of {}: {}", host, e.getMessage(), e);
+                status = "Error: " + e.getMessage();
+            }
+            logger.info("Manual IIS Status Check Result for {}: {}", host, status);
+            result.append(host).append(": ").append(status).append("\n");
+        });
+        return result.toString();
     }
 
     /**
@@ -133,20 +422,99 @@ public class IISMonitorService {
     }
 
     /**
-     * Update monitoring configuration
+     * Add a target to the inventory with its own credential, replacing any
+     * existing entry for the same host but keeping its groups and tags
      */
     public void updateMonitoringConfig(String host, String user, String pass) {
-        this.monitoredHost = host;
-        this.monitoredUser = user;
-        this.monitoredPass = pass;
+        ansibleService.validateInput(host, user, pass);
+        Credential credential = new Credential(user + "@" + host, user, pass);
+        InventoryTarget existing = inventory.entry(host);
+        InventoryTarget target = existing == null
+                ? new InventoryTarget(host, credential.id(), null, null, null)
+                : new InventoryTarget(host, credential.id(), existing.groups(), existing.tags(), existing.healthUrl());
+        inventory.put(target, credential);
         logger.info("Monitoring configuration updated for host: {}", host);
     }
 
+    /**
+     * Remove a target from the inventory and forget its monitoring state
+     */
+    public boolean removeTarget(String host) {
+        boolean removed = inventory.removeTarget(host);
+        if (removed) {
+            latestStatus.remove(host);
+            schedules.remove(host);
+            httpProbe.forget(host);
+            logTailService.forget(host);
+            remediation.forget(host);
+            commandExecutor.forget(host);
+            statusStream.publishRemoval(host);
+            logger.info("Host {} removed from monitoring", host);
+        }
+        return removed;
+    }
+
+    /**
+     * Get the hosts currently being monitored
+     */
+    public List<String> getMonitoredHosts() {
+        return inventory.targets().stream().map(Target::host).toList();
+    }
+
+    /**
+     * Get the monitored targets, ordered by host
+     */
+    public List<Target> getTargets() {
+        return inventory.targets();
+    }
+
+    /**
+     * Get the latest known state of every monitored host that has been checked
+     */
+    public List<StatusEvent> getLatestStatus() {
+        List<StatusEvent> events = new ArrayList<>(latestStatus.values());
+        events.sort(Comparator.comparing(StatusEvent::host));
+        return events;
+    }
+
+    /**
+     * Get the scheduling and breaker state of every monitored host, ordered by host
+     */
+    public List<HostSchedule.Snapshot> getSchedules() {
+        long now = System.currentTimeMillis();
+        List<HostSchedule.Snapshot> snapshots = new ArrayList<>();
+        schedules.values().forEach(schedule -> snapshots.add(schedule.snapshot(now)));
+        snapshots.sort(Comparator.comparing(HostSchedule.Snapshot::host));
+        return snapshots;
+    }
+
+    /**
+     * Get the duration of the last completed fleet sweep and the progress of the current one
+     */
+    public Sweep getSweep() {
+        Sweep last = lastSweep;
+        synchronized (sweepLock) {
+            int pending = sweepPending == null ? 0 : sweepPending.size();
+            return new Sweep(last.hosts(), last.lastSweepDurationMs(), last.lastSweepCompletedAt(), pending);
+        }
+    }
+
+    private long countSchedules(Predicate<HostSchedule.Snapshot> condition) {
+        return getSchedules().stream().filter(condition).count();
+    }
+
     /**
      * Get current monitoring configuration
      */
     public String getMonitoringConfig() {
-        return String.format("Host: %s, User: %s, Monitoring: %s", 
-                           monitoredHost, monitoredUser, monitoringEnabled ? "Enabled" : "Disabled");
+        long backingOff = countSchedules(snapshot -> snapshot.consecutiveUnreachable() > 0);
+        long breakersOpen = countSchedules(snapshot -> snapshot.breaker() == HostSchedule.BreakerState.OPEN);
+        Sweep sweep = lastSweep;
+        String sweepDescription = sweep.lastSweepCompletedAt() < 0
+                ? "no sweep finished yet"
+                : String.format("last sweep of %d hosts took %d ms", sweep.hosts(), sweep.lastSweepDurationMs());
+        return String.format("Hosts: %d, Monitoring: %s, Workers: %d, Interval: %d s, Backing off: %d, Restarts suspended: %d, %s",
+                           inventory.size(), monitoringEnabled ? "Enabled" : "Disabled", workerThreads,
+                           intervalMillis / 1000, backingOff, breakersOpen, sweepDescription);
     }
-} 
\ No newline at end of file
+} 
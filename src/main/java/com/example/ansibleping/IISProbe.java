@@ -0,0 +1,76 @@
+package com.example.ansibleping;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Health of IIS on one host as collected by the composite probe in a single
+ * remote execution: the W3SVC and WAS services, every application pool,
+ * every site with its bindings, and a few performance counters.
+ *
+ * <p>{@code state} is the W3SVC state when the probe ran, or why it did not
+ * (UNREACHABLE, FAILED, TIMED_OUT, ...). {@code healthy} means both services
+ * are running and every auto-start pool and every site is started;
+ * {@code problems} lists what is not.
+ */
+public record IISProbe(String host, ServiceState state, boolean healthy, List<String> problems,
+                       List<Service> services, List<AppPool> appPools, List<Site> sites, Counters counters,
+                       List<String> errors, long durationMillis, String message) {
+
+    public record Service(String name, String state, String startMode, Integer processId) {
+    }
+
+    public record AppPool(String name, String state, boolean autoStart, String runtimeVersion, String pipelineMode) {
+    }
+
+    public record Site(String name, long id, String state, String appPool, List<Binding> bindings) {
+    }
+
+    public record Binding(String protocol, String bindingInformation) {
+    }
+
+    /**
+     * Counters the host did not report are null
+     */
+    public record Counters(Double cpuPercent, Long availableMemoryMb, Long currentConnections, Double requestsPerSec,
+                           Long requestQueueLength) {
+    }
+
+    /**
+     * A probe that could not run
+     */
+    static IISProbe failed(ServiceStatus status) {
+        return new IISProbe(status.host(), status.state(), false, List.of("Probe did not run: " + status.state()),
+                List.of(), List.of(), List.of(), null, List.of(), status.durationMillis(), status.message());
+    }
+
+    /**
+     * Assemble a probe result from what the script reported and work out whether IIS is healthy
+     */
+    static IISProbe of(String host, List<Service> services, List<AppPool> appPools, List<Site> sites,
+                       Counters counters, List<String> errors, long durationMillis) {
+        List<String> problems = new ArrayList<>();
+        ServiceState state = ServiceState.UNKNOWN;
+        for (Service service : services) {
+            if ("W3SVC".equalsIgnoreCase(service.name())) {
+                state = ServiceState.fromWindowsState(service.state());
+            }
+            if (!"running".equals(service.state())) {
+                problems.add("Service " + service.name() + " is " + service.state());
+            }
+        }
+        for (AppPool pool : appPools) {
+            if (pool.autoStart() && !"started".equals(pool.state())) {
+                problems.add("App pool " + pool.name() + " is " + pool.state());
+            }
+        }
+        for (Site site : sites) {
+            if (!"started".equals(site.state())) {
+                problems.add("Site " + site.name() + " is " + site.state());
+            }
+        }
+        problems.addAll(errors);
+        return new IISProbe(host, state, problems.isEmpty(), List.copyOf(problems), List.copyOf(services),
+                List.copyOf(appPools), List.copyOf(sites), counters, List.copyOf(errors), durationMillis, null);
+    }
+}
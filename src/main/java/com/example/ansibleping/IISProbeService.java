@@ -0,0 +1,98 @@
+package com.example.ansibleping;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Runs the composite IIS probe ({@code scripts/iis-probe.ps1}): services,
+ * app pools, sites and counters collected by one PowerShell execution per
+ * host, where asking for each separately would take one remote run apiece.
+ */
+@Service
+public class IISProbeService {
+
+    private static final Logger logger = LoggerFactory.getLogger(IISProbeService.class);
+
+    private static final String OPERATION = "probe";
+
+    private static final String SCRIPT = PowerShellScripts.load("/scripts/iis-probe.ps1");
+
+    private final ObjectMapper objectMapper = new ObjectMapper()
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+    @Autowired
+    private CommandExecutor commandExecutor;
+
+    @Autowired
+    private AnsibleService ansibleService;
+
+    @Autowired
+    private AnsibleMetrics metrics;
+
+    @Value("${ansible.timeout.probe-ms:90000}")
+    private long probeTimeoutMillis;
+
+    public IISProbeService() {
+    }
+
+    IISProbeService(CommandExecutor commandExecutor, AnsibleService ansibleService, AnsibleMetrics metrics,
+                    long probeTimeoutMillis) {
+        this.commandExecutor = commandExecutor;
+        this.ansibleService = ansibleService;
+        this.metrics = metrics;
+        this.probeTimeoutMillis = probeTimeoutMillis;
+    }
+
+    /**
+     * Probe IIS on one host
+     */
+    public IISProbe probe(String host, String user, String pass) {
+        ansibleService.validateInput(host, user, pass);
+
+        ScriptResult result = commandExecutor.runScript(new Target(host, user, pass), OPERATION, SCRIPT,
+                Duration.ofMillis(probeTimeoutMillis));
+        IISProbe probe = result.succeeded()
+                ? parse(host, result.stdout(), result.status().durationMillis())
+                : IISProbe.failed(result.status());
+        metrics.recordOutcome(OPERATION, ServiceStatus.of(host, probe.state(), probe.message()));
+        if (!probe.healthy()) {
+            logger.info("IIS probe of {} found problems: {}", host, probe.problems());
+        }
+        return probe;
+    }
+
+    private IISProbe parse(String host, String stdout, long durationMillis) {
+        int start = stdout == null ? -1 : stdout.indexOf('{');
+        if (start < 0) {
+            return IISProbe.failed(ServiceStatus.of(host, ServiceState.UNKNOWN, "Probe printed no result: " + stdout));
+        }
+        try {
+            Payload payload = objectMapper.readValue(stdout.substring(start), Payload.class);
+            return IISProbe.of(host, orEmpty(payload.services()), orEmpty(payload.appPools()), orEmpty(payload.sites()),
+                    payload.counters(), orEmpty(payload.errors()), durationMillis);
+        } catch (IOException e) {
+            return IISProbe.failed(ServiceStatus.of(host, ServiceState.UNKNOWN,
+                    "Unexpected probe output: " + e.getMessage()));
+        }
+    }
+
+    private static <T> List<T> orEmpty(List<T> values) {
+        return values == null ? List.of() : values;
+    }
+
+    /**
+     * The JSON document printed by the probe script
+     */
+    private record Payload(List<IISProbe.Service> services, List<IISProbe.AppPool> appPools,
+                           List<IISProbe.Site> sites, IISProbe.Counters counters, List<String> errors) {
+    }
+}
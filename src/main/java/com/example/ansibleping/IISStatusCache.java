@@ -0,0 +1,200 @@
+package com.example.ansibleping;
+
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Short-lived cache of IIS status per host. Concurrent lookups for the same
+ * host and credentials that miss the cache share a single remote check.
+ * Entries expire after {@code iis.status-cache.ttl-ms}, the least recently
+ * used entry is evicted beyond {@code iis.status-cache.max-entries}, and
+ * service actions invalidate the host so the next read sees the new state.
+ */
+@Component
+public class IISStatusCache {
+
+    @Autowired
+    private AnsibleMetrics metrics;
+
+    @Value("${iis.status-cache.ttl-ms:15000}")
+    private long ttlMillis;
+
+    @Value("${iis.status-cache.max-entries:1024}")
+    private int maxEntries;
+
+    // Access-ordered, so iteration order is least recently used first; guarded by "this"
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(64, 0.75f, true);
+
+    // Bumped on every invalidation so a check that started before it is not cached after it
+    private final Map<String, Long> generations = new ConcurrentHashMap<>();
+
+    private final Map<String, Load> inFlight = new ConcurrentHashMap<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public IISStatusCache() {
+    }
+
+    IISStatusCache(AnsibleMetrics metrics, long ttlMillis, int maxEntries) {
+        this.metrics = metrics;
+        this.ttlMillis = ttlMillis;
+        this.maxEntries = maxEntries;
+        registerMetrics();
+    }
+
+    @PostConstruct
+    void registerMetrics() {
+        metrics.functionCounter("iis.status.cache.hits", "Status checks served from the cache", hits, LongAdder::sum);
+        metrics.functionCounter("iis.status.cache.misses", "Status checks that ran remotely", misses, LongAdder::sum);
+        metrics.functionCounter("iis.status.cache.coalesced", "Status checks that waited on another caller's run",
+                coalesced, LongAdder::sum);
+        metrics.functionCounter("iis.status.cache.evictions", "Entries evicted to stay within the size limit",
+                evictions, LongAdder::sum);
+        metrics.gauge("iis.status.cache.size", "Cached host statuses", this, cache -> cache.getStats().get("size"));
+    }
+
+    /**
+     * Return the cached status for the target, or load it once for all
+     * concurrent callers. Only conclusive results are cached. A caller
+     * arriving after an invalidation does not join a load that started
+     * before it, but starts a fresh one.
+     */
+    public ServiceStatus get(Target target, Supplier<ServiceStatus> loader) {
+        String key = target.credentialKey();
+        ServiceStatus cached = lookup(key);
+        if (cached != null) {
+            hits.increment();
+            return cached;
+        }
+
+        Load load = new Load(generation(target.host()), new CompletableFuture<>());
+        // Join a load of the same generation or a later one; one from before an invalidation is replaced
+        Load running = inFlight.compute(key, (k, current) ->
+                current != null && current.generation >= load.generation ? current : load);
+        if (running != load) {
+            coalesced.increment();
+            try {
+                return running.result.join();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException cause ? cause : e;
+            }
+        }
+
+        misses.increment();
+        try {
+            ServiceStatus status = loader.get();
+            put(target, key, status, load.generation);
+            load.result.complete(status);
+            return status;
+        } catch (RuntimeException e) {
+            load.result.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, load);
+        }
+    }
+
+    /**
+     * Return the cached status if present and fresh, without loading
+     */
+    public ServiceStatus getIfPresent(Target target) {
+        ServiceStatus cached = lookup(target.credentialKey());
+        if (cached != null) {
+            hits.increment();
+        }
+        return cached;
+    }
+
+    /**
+     * Get the invalidation generation of a host, to pass to {@link #put}
+     * for a status loaded outside {@link #get}
+     */
+    public long generation(String host) {
+        return generations.getOrDefault(host, 0L);
+    }
+
+    /**
+     * Cache a status loaded outside {@link #get}, unless the host was
+     * invalidated since the given generation
+     */
+    public void put(Target target, ServiceStatus status, long generation) {
+        misses.increment();
+        put(target, target.credentialKey(), status, generation);
+    }
+
+    /**
+     * Drop every cached entry for the host
+     */
+    public void invalidate(String host) {
+        generations.merge(host, 1L, Long::sum);
+        synchronized (this) {
+            entries.values().removeIf(entry -> entry.status.host().equals(host));
+        }
+    }
+
+    /**
+     * Get hit, miss, coalesce and eviction counters
+     */
+    public Map<String, Long> getStats() {
+        Map<String, Long> stats = new LinkedHashMap<>();
+        stats.put("hits", hits.sum());
+        stats.put("misses", misses.sum());
+        stats.put("coalesced", coalesced.sum());
+        stats.put("evictions", evictions.sum());
+        synchronized (this) {
+            stats.put("size", (long) entries.size());
+        }
+        return stats;
+    }
+
+    private synchronized ServiceStatus lookup(String key) {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (System.nanoTime() - entry.expiresAtNanos > 0) {
+            entries.remove(key);
+            return null;
+        }
+        return entry.status;
+    }
+
+    private void put(Target target, String key, ServiceStatus status, long generation) {
+        if (!status.succeeded()) {
+            return;
+        }
+        long expiresAt = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+        synchronized (this) {
+            if (generations.getOrDefault(target.host(), 0L) != generation) {
+                return;
+            }
+            entries.put(key, new Entry(status, expiresAt));
+            while (entries.size() > maxEntries) {
+                String eldest = entries.keySet().iterator().next();
+                entries.remove(eldest);
+                evictions.increment();
+            }
+        }
+    }
+
+    private record Entry(ServiceStatus status, long expiresAtNanos) {
+    }
+
+    // A remote check in progress and the invalidation generation it started under
+    private record Load(long generation, CompletableFuture<ServiceStatus> result) {
+    }
+}
@@ -0,0 +1,239 @@
+package com.example.ansibleping;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Pushes IIS state transitions to browsers over Server-Sent Events, so any
+ * number of open dashboards cost no extra remote checks. Each subscriber
+ * gets its own sender; when a client reads slower than updates arrive,
+ * pending updates are merged per host so only the newest state is sent and
+ * memory per client stays bounded by the number of hosts.
+ */
+@Component
+public class IISStatusStream {
+
+    private static final Logger logger = LoggerFactory.getLogger(IISStatusStream.class);
+
+    @Autowired
+    private AnsibleMetrics metrics;
+
+    @Value("${iis.stream.max-subscribers:256}")
+    private int maxSubscribers;
+
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean virtualThreads;
+
+    private final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+
+    private ExecutorService senders;
+
+    public IISStatusStream() {
+    }
+
+    IISStatusStream(AnsibleMetrics metrics, int maxSubscribers, boolean virtualThreads) {
+        this.metrics = metrics;
+        this.maxSubscribers = maxSubscribers;
+        this.virtualThreads = virtualThreads;
+        init();
+    }
+
+    @PostConstruct
+    void init() {
+        AtomicInteger count = new AtomicInteger();
+        senders = virtualThreads
+                ? Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("status-stream-", 1).factory())
+                : Executors.newCachedThreadPool(runnable -> {
+                    Thread thread = new Thread(runnable, "status-stream-" + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        metrics.gauge("iis.stream.subscribers", "Connected live status subscribers", subscribers, List::size);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        subscribers.forEach(subscriber -> subscriber.emitter.complete());
+        senders.shutdownNow();
+    }
+
+    /**
+     * Open a stream for the given hosts (all hosts when empty) and queue the
+     * current state of each of them as the first event. The snapshot is read
+     * after the subscriber is registered, so no transition falls between the two.
+     */
+    public SseEmitter subscribe(Set<String> hosts, Supplier<Collection<StatusEvent>> snapshot) {
+        if (subscribers.size() >= maxSubscribers) {
+            throw new IllegalStateException("Too many live status subscribers (" + maxSubscribers + ")");
+        }
+        SseEmitter emitter = new SseEmitter(0L);
+        Subscriber subscriber = new Subscriber(emitter, hosts);
+        emitter.onCompletion(() -> subscribers.remove(subscriber));
+        emitter.onTimeout(() -> subscribers.remove(subscriber));
+        emitter.onError(e -> subscribers.remove(subscriber));
+
+        subscribers.add(subscriber);
+        List<StatusEvent> initial = new ArrayList<>();
+        for (StatusEvent event : snapshot.get()) {
+            if (subscriber.wants(event.host())) {
+                initial.add(event);
+            }
+        }
+        subscriber.setSnapshot(initial);
+        schedule(subscriber);
+        logger.info("Live status subscriber connected for {} ({} subscribers)",
+                hosts.isEmpty() ? "all hosts" : hosts, subscribers.size());
+        return emitter;
+    }
+
+    /**
+     * Send a host's new state to every subscriber interested in it
+     */
+    public void publish(StatusEvent event) {
+        for (Subscriber subscriber : subscribers) {
+            if (subscriber.wants(event.host())) {
+                subscriber.offer(event.host(), event);
+                schedule(subscriber);
+            }
+        }
+    }
+
+    /**
+     * Tell subscribers a host is no longer monitored
+     */
+    public void publishRemoval(String host) {
+        for (Subscriber subscriber : subscribers) {
+            if (subscriber.wants(host)) {
+                subscriber.offer(host, null);
+                schedule(subscriber);
+            }
+        }
+    }
+
+    /**
+     * Get the number of connected subscribers
+     */
+    public int getSubscriberCount() {
+        return subscribers.size();
+    }
+
+    /**
+     * Send a comment line now and then so closed connections are noticed and released
+     */
+    @Scheduled(fixedRateString = "${iis.stream.heartbeat-ms:15000}")
+    public void heartbeat() {
+        for (Subscriber subscriber : subscribers) {
+            subscriber.heartbeatDue = true;
+            schedule(subscriber);
+        }
+    }
+
+    private void schedule(Subscriber subscriber) {
+        if (subscriber.sending.compareAndSet(false, true)) {
+            senders.execute(() -> drain(subscriber));
+        }
+    }
+
+    // Runs on at most one sender thread per subscriber at a time
+    private void drain(Subscriber subscriber) {
+        try {
+            while (true) {
+                Work work = subscriber.take();
+                if (work == null) {
+                    subscriber.sending.set(false);
+                    // An update may have arrived between take() and releasing the flag
+                    if (subscriber.hasWork() && subscriber.sending.compareAndSet(false, true)) {
+                        continue;
+                    }
+                    return;
+                }
+                if (work.snapshot != null) {
+                    subscriber.emitter.send(SseEmitter.event().name("snapshot").data(work.snapshot));
+                }
+                for (Map.Entry<String, StatusEvent> update : work.updates.entrySet()) {
+                    if (update.getValue() == null) {
+                        subscriber.emitter.send(SseEmitter.event().name("removed").data(update.getKey()));
+                    } else {
+                        subscriber.emitter.send(SseEmitter.event().name("status").data(update.getValue()));
+                    }
+                }
+                if (work.heartbeat) {
+                    subscriber.emitter.send(SseEmitter.event().comment("heartbeat"));
+                }
+            }
+        } catch (IOException | IllegalStateException e) {
+            // The client went away
+            logger.debug("Live status subscriber disconnected: {}", e.getMessage());
+            subscribers.remove(subscriber);
+            subscriber.emitter.completeWithError(e);
+        }
+    }
+
+    private record Work(List<StatusEvent> snapshot, Map<String, StatusEvent> updates, boolean heartbeat) {
+    }
+
+    private static final class Subscriber {
+        private final SseEmitter emitter;
+        private final Set<String> hosts;
+        private final AtomicBoolean sending = new AtomicBoolean();
+        // Newest undelivered state per host; null value means the host was removed. Guarded by "this"
+        private Map<String, StatusEvent> pending = new LinkedHashMap<>();
+        private List<StatusEvent> snapshot;
+        private volatile boolean heartbeatDue;
+
+        Subscriber(SseEmitter emitter, Set<String> hosts) {
+            this.emitter = emitter;
+            this.hosts = Set.copyOf(hosts);
+        }
+
+        boolean wants(String host) {
+            return hosts.isEmpty() || hosts.contains(host);
+        }
+
+        synchronized void setSnapshot(List<StatusEvent> snapshot) {
+            this.snapshot = snapshot;
+        }
+
+        synchronized void offer(String host, StatusEvent event) {
+            // Re-inserting moves the host to the back so updates go out in arrival order
+            pending.remove(host);
+            pending.put(host, event);
+        }
+
+        synchronized boolean hasWork() {
+            return snapshot != null || !pending.isEmpty() || heartbeatDue;
+        }
+
+        synchronized Work take() {
+            if (!hasWork()) {
+                return null;
+            }
+            Work work = new Work(snapshot, pending, heartbeatDue);
+            snapshot = null;
+            pending = new LinkedHashMap<>();
+            heartbeatDue = false;
+            return work;
+        }
+    }
+}
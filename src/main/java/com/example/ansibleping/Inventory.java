@@ -0,0 +1,467 @@
+package com.example.ansibleping;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.OpenOption;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * File-backed inventory of monitored targets and the credentials they use.
+ *
+ * <p>The whole inventory lives in memory as one immutable {@link State},
+ * indexed by host, group and tag, and is replaced with a single volatile
+ * write on every change. Readers never lock and always see a host together
+ * with the credentials that were current at the same moment.
+ *
+ * <p>On disk it is a JSON snapshot plus a write-ahead log of changes, one
+ * JSON line each. A change is appended and forced to disk before it is
+ * published; at startup the snapshot is read and newer log entries are
+ * replayed. Once the log holds {@code iis.inventory.compact-after} entries a
+ * new snapshot is written to a temporary file, moved into place and the log
+ * is emptied.
+ */
+@Component
+public class Inventory {
+
+    private static final Logger logger = LoggerFactory.getLogger(Inventory.class);
+
+    private static final String SNAPSHOT = "snapshot.json";
+    private static final String LOG = "wal.log";
+
+    @Autowired
+    private AnsibleMetrics metrics;
+
+    @Value("${iis.inventory.dir:data/inventory}")
+    private String directory;
+
+    @Value("${iis.inventory.compact-after:1000}")
+    private int compactAfter;
+
+    @Value("${iis.inventory.fsync:true}")
+    private boolean fsync;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    private volatile State state = State.of(Map.of(), Map.of());
+
+    // Writers are serialised; the fields below are only touched while holding this lock
+    private final Object writeLock = new Object();
+    private FileChannel log;
+    private long sequence;
+    private int logEntries;
+    private boolean fresh;
+
+    public Inventory() {
+    }
+
+    Inventory(AnsibleMetrics metrics, String directory, int compactAfter, boolean fsync) throws IOException {
+        this.metrics = metrics;
+        this.directory = directory;
+        this.compactAfter = compactAfter;
+        this.fsync = fsync;
+        load();
+    }
+
+    @PostConstruct
+    void load() throws IOException {
+        Path dir = Path.of(directory);
+        Files.createDirectories(dir);
+        restrictToOwner(dir);
+        Path snapshotFile = dir.resolve(SNAPSHOT);
+        Path logFile = dir.resolve(LOG);
+        fresh = !Files.exists(snapshotFile) && !Files.exists(logFile);
+
+        Map<String, Credential> credentials = new TreeMap<>();
+        Map<String, InventoryTarget> targets = new TreeMap<>();
+        if (Files.exists(snapshotFile)) {
+            Snapshot snapshot = mapper.readValue(snapshotFile.toFile(), Snapshot.class);
+            snapshot.credentials().forEach(credential -> credentials.put(credential.id(), credential));
+            snapshot.targets().forEach(target -> targets.put(target.host(), target));
+            sequence = snapshot.sequence();
+        }
+
+        log = openPrivate(logFile, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        // A log left by an older version may have been created with default permissions
+        restrictToOwner(logFile);
+        long valid = replay(Files.readAllBytes(logFile), credentials, targets);
+        if (valid < log.size()) {
+            // A write cut short by a crash was never acknowledged, so it is dropped
+            logger.warn("Discarding {} bytes of incomplete inventory log entry", log.size() - valid);
+            log.truncate(valid);
+        }
+        log.position(valid);
+
+        state = State.of(targets, credentials);
+        metrics.gauge("iis.inventory.targets", "Targets in the inventory", this, inventory -> inventory.state.targets.size());
+        logger.info("Inventory loaded from {}: {} targets, {} credentials, {} log entries replayed",
+                dir.toAbsolutePath(), targets.size(), credentials.size(), logEntries);
+    }
+
+    @PreDestroy
+    void close() throws IOException {
+        synchronized (writeLock) {
+            if (log != null) {
+                log.close();
+            }
+        }
+    }
+
+    /**
+     * Whether nothing was on disk at startup, i.e. this is the first run
+     */
+    public boolean isFresh() {
+        return fresh;
+    }
+
+    /**
+     * Every target resolved with its credentials, ordered by host
+     */
+    public List<Target> targets() {
+        return state.resolved;
+    }
+
+    /**
+     * A target resolved with its credentials, or null if the host is not in the inventory
+     */
+    public Target target(String host) {
+        return state.byHost.get(host);
+    }
+
+    /**
+     * The inventory entry of a host, or null if it is not in the inventory
+     */
+    public InventoryTarget entry(String host) {
+        return state.targets.get(host);
+    }
+
+    public boolean contains(String host) {
+        return state.byHost.containsKey(host);
+    }
+
+    public int size() {
+        return state.targets.size();
+    }
+
+    /**
+     * Targets in a group, ordered by host
+     */
+    public List<Target> byGroup(String group) {
+        return resolve(state, state.groups.getOrDefault(group, List.of()));
+    }
+
+    /**
+     * Targets with a tag, ordered by host
+     */
+    public List<Target> byTag(String tag) {
+        return resolve(state, state.tags.getOrDefault(tag, List.of()));
+    }
+
+    /**
+     * Inventory entries, optionally only those in a group and/or with a tag
+     */
+    public List<InventoryTarget> entries(String group, String tag) {
+        State current = state;
+        List<InventoryTarget> entries = new ArrayList<>();
+        for (InventoryTarget target : current.targets.values()) {
+            if ((group == null || target.groups().contains(group)) && (tag == null || target.tags().contains(tag))) {
+                entries.add(target);
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Hosts by group name
+     */
+    public Map<String, List<String>> groups() {
+        return state.groups;
+    }
+
+    /**
+     * Hosts by tag
+     */
+    public Map<String, List<String>> tags() {
+        return state.tags;
+    }
+
+    public List<Credential> credentials() {
+        return List.copyOf(state.credentials.values());
+    }
+
+    /**
+     * Add or replace a target, and optionally the credential it uses, as one change
+     */
+    public void put(InventoryTarget target, Credential credential) {
+        synchronized (writeLock) {
+            State current = state;
+            Map<String, Credential> credentials = new TreeMap<>(current.credentials);
+            if (credential != null) {
+                credentials.put(credential.id(), credential);
+            }
+            if (target != null && !credentials.containsKey(target.credentialId())) {
+                throw new IllegalArgumentException("Unknown credential ID: " + target.credentialId());
+            }
+            Map<String, InventoryTarget> targets = new TreeMap<>(current.targets);
+            if (target != null) {
+                targets.put(target.host(), target);
+            }
+            commit(new Change(sequence + 1, Change.PUT, credential, target, null), targets, credentials);
+        }
+    }
+
+    /**
+     * Add or replace a credential. Targets using it pick it up on their next check.
+     */
+    public void putCredential(Credential credential) {
+        put(null, credential);
+    }
+
+    /**
+     * Remove a target; returns false if it was not in the inventory
+     */
+    public boolean removeTarget(String host) {
+        synchronized (writeLock) {
+            State current = state;
+            if (!current.targets.containsKey(host)) {
+                return false;
+            }
+            Map<String, InventoryTarget> targets = new TreeMap<>(current.targets);
+            targets.remove(host);
+            commit(new Change(sequence + 1, Change.REMOVE_TARGET, null, null, host), targets, current.credentials);
+            return true;
+        }
+    }
+
+    /**
+     * Remove a credential; returns false if it does not exist and fails if a target still uses it
+     */
+    public boolean removeCredential(String id) {
+        synchronized (writeLock) {
+            State current = state;
+            if (!current.credentials.containsKey(id)) {
+                return false;
+            }
+            for (InventoryTarget target : current.targets.values()) {
+                if (target.credentialId().equals(id)) {
+                    throw new IllegalStateException("Credential " + id + " is used by " + target.host());
+                }
+            }
+            Map<String, Credential> credentials = new TreeMap<>(current.credentials);
+            credentials.remove(id);
+            commit(new Change(sequence + 1, Change.REMOVE_CREDENTIAL, null, null, id), current.targets, credentials);
+            return true;
+        }
+    }
+
+    // Caller holds the write lock. Log first, then publish, so nothing is visible that a crash could lose.
+    private void commit(Change change, Map<String, InventoryTarget> targets, Map<String, Credential> credentials) {
+        long start = -1;
+        try {
+            byte[] line = (mapper.writeValueAsString(change) + "\n").getBytes(StandardCharsets.UTF_8);
+            start = log.position();
+            ByteBuffer buffer = ByteBuffer.wrap(line);
+            while (buffer.hasRemaining()) {
+                log.write(buffer);
+            }
+            if (fsync) {
+                log.force(false);
+            }
+        } catch (IOException e) {
+            // Cut off what was written of the failed change, or the next one would be appended after a torn
+            // line and replay, which stops there, would lose it and everything after it
+            if (start >= 0) {
+                try {
+                    log.truncate(start);
+                    log.position(start);
+                } catch (IOException rollback) {
+                    e.addSuppressed(rollback);
+                }
+            }
+            throw new UncheckedIOException("Could not write inventory change", e);
+        }
+        sequence = change.sequence();
+        logEntries++;
+        state = State.of(targets, credentials);
+        if (logEntries >= compactAfter) {
+            compact();
+        }
+    }
+
+    // Caller holds the write lock
+    private void compact() {
+        Path dir = Path.of(directory);
+        Path temporary = dir.resolve(SNAPSHOT + ".tmp");
+        State current = state;
+        try {
+            Snapshot snapshot = new Snapshot(sequence, List.copyOf(current.credentials.values()),
+                    List.copyOf(current.targets.values()));
+            try (FileChannel channel = openPrivate(temporary, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                ByteBuffer buffer = ByteBuffer.wrap(mapper.writeValueAsBytes(snapshot));
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                channel.force(true);
+            }
+            Files.move(temporary, dir.resolve(SNAPSHOT), StandardCopyOption.ATOMIC_MOVE,
+                    StandardCopyOption.REPLACE_EXISTING);
+            // Entries left behind by a crash here are older than the snapshot and skipped on replay
+            log.truncate(0);
+            log.position(0);
+            logEntries = 0;
+            logger.info("Inventory compacted into a snapshot at sequence {}", sequence);
+        } catch (IOException e) {
+            // The log still holds every change, so nothing is lost; try again after the next change
+            logger.error("Could not write inventory snapshot: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Apply log entries newer than the snapshot and return the length of the
+     * part of the log that holds complete entries
+     */
+    private long replay(byte[] data, Map<String, Credential> credentials, Map<String, InventoryTarget> targets) {
+        int start = 0;
+        while (start < data.length) {
+            int end = start;
+            while (end < data.length && data[end] != '\n') {
+                end++;
+            }
+            if (end == data.length) {
+                return start;
+            }
+            Change change;
+            try {
+                change = mapper.readValue(data, start, end - start, Change.class);
+            } catch (IOException e) {
+                return start;
+            }
+            if (change.sequence() > sequence) {
+                change.applyTo(credentials, targets);
+                sequence = change.sequence();
+                logEntries++;
+            }
+            start = end + 1;
+        }
+        return start;
+    }
+
+    private static List<Target> resolve(State state, List<String> hosts) {
+        List<Target> resolved = new ArrayList<>(hosts.size());
+        for (String host : hosts) {
+            resolved.add(state.byHost.get(host));
+        }
+        return resolved;
+    }
+
+    // Snapshot and log hold passwords, so only the service account may read them. Files are created that way,
+    // rather than restricted after creation, so they never exist with default permissions.
+    private static FileChannel openPrivate(Path path, OpenOption... options) throws IOException {
+        Set<OpenOption> openOptions = Set.of(options);
+        try {
+            return FileChannel.open(path, openOptions, PosixFilePermissions.asFileAttribute(
+                    PosixFilePermissions.fromString("rw-------")));
+        } catch (UnsupportedOperationException e) {
+            return FileChannel.open(path, openOptions);
+        }
+    }
+
+    private static void restrictToOwner(Path path) {
+        try {
+            Files.setPosixFilePermissions(path, PosixFilePermissions.fromString(
+                    Files.isDirectory(path) ? "rwx------" : "rw-------"));
+        } catch (UnsupportedOperationException | IOException e) {
+            logger.debug("Could not restrict permissions of {}: {}", path, e.getMessage());
+        }
+    }
+
+    /**
+     * One immutable version of the inventory with its indexes
+     */
+    private static final class State {
+        private final Map<String, InventoryTarget> targets;
+        private final Map<String, Credential> credentials;
+        private final Map<String, Target> byHost;
+        private final List<Target> resolved;
+        private final Map<String, List<String>> groups;
+        private final Map<String, List<String>> tags;
+
+        private State(Map<String, InventoryTarget> targets, Map<String, Credential> credentials) {
+            this.targets = Collections.unmodifiableMap(new TreeMap<>(targets));
+            this.credentials = Collections.unmodifiableMap(new TreeMap<>(credentials));
+            Map<String, Target> byHost = new TreeMap<>();
+            Map<String, List<String>> groups = new TreeMap<>();
+            Map<String, List<String>> tags = new TreeMap<>();
+            for (InventoryTarget target : this.targets.values()) {
+                Credential credential = this.credentials.get(target.credentialId());
+                byHost.put(target.host(), new Target(target.host(), credential.user(), credential.pass()));
+                target.groups().forEach(group -> groups.computeIfAbsent(group, key -> new ArrayList<>()).add(target.host()));
+                target.tags().forEach(tag -> tags.computeIfAbsent(tag, key -> new ArrayList<>()).add(target.host()));
+            }
+            groups.replaceAll((group, hosts) -> List.copyOf(hosts));
+            tags.replaceAll((tag, hosts) -> List.copyOf(hosts));
+            this.byHost = Collections.unmodifiableMap(byHost);
+            this.resolved = List.copyOf(byHost.values());
+            this.groups = Collections.unmodifiableMap(groups);
+            this.tags = Collections.unmodifiableMap(tags);
+        }
+
+        static State of(Map<String, InventoryTarget> targets, Map<String, Credential> credentials) {
+            return new State(targets, credentials);
+        }
+    }
+
+    /**
+     * Contents of the snapshot file
+     */
+    private record Snapshot(long sequence, List<Credential> credentials, List<InventoryTarget> targets) {
+    }
+
+    /**
+     * One line of the write-ahead log
+     */
+    private record Change(long sequence, String op, Credential credential, InventoryTarget target, String key) {
+
+        static final String PUT = "put";
+        static final String REMOVE_TARGET = "remove-target";
+        static final String REMOVE_CREDENTIAL = "remove-credential";
+
+        void applyTo(Map<String, Credential> credentials, Map<String, InventoryTarget> targets) {
+            switch (op) {
+                case PUT -> {
+                    if (credential != null) {
+                        credentials.put(credential.id(), credential);
+                    }
+                    if (target != null) {
+                        targets.put(target.host(), target);
+                    }
+                }
+                case REMOVE_TARGET -> targets.remove(key);
+                case REMOVE_CREDENTIAL -> credentials.remove(key);
+                default -> throw new IllegalStateException("Unknown inventory change: " + op);
+            }
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.example.ansibleping;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.Collections;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * A host in the inventory: the credentials it uses, by ID, and the groups
+ * and tags it can be selected by. {@code healthUrl} is the page the HTTP
+ * probe requests; when null it is derived from {@code iis.http-probe.url-template}.
+ */
+public record InventoryTarget(String host, String credentialId, Set<String> groups, Set<String> tags,
+                              String healthUrl) {
+
+    public InventoryTarget {
+        if (host == null || host.trim().isEmpty()) {
+            throw new IllegalArgumentException("Host cannot be null or empty");
+        }
+        if (credentialId == null || credentialId.isBlank()) {
+            throw new IllegalArgumentException("Credential ID cannot be null or empty");
+        }
+        groups = sorted(groups);
+        tags = sorted(tags);
+        healthUrl = healthUrl == null || healthUrl.isBlank() ? null : validUrl(healthUrl.trim());
+    }
+
+    // Sorted so the stored and returned order is stable
+    private static Set<String> sorted(Set<String> values) {
+        return values == null ? Collections.emptySortedSet() : Collections.unmodifiableSortedSet(new TreeSet<>(values));
+    }
+
+    private static String validUrl(String url) {
+        try {
+            URI uri = new URI(url);
+            if (!"http".equalsIgnoreCase(uri.getScheme()) && !"https".equalsIgnoreCase(uri.getScheme())
+                    || uri.getHost() == null) {
+                throw new IllegalArgumentException("Health URL must be an absolute http or https URL");
+            }
+            return url;
+        } catch (URISyntaxException e) {
+            throw new IllegalArgumentException("Invalid health URL: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package com.example.ansibleping;
+
+/**
+ * One collected log entry of a host. {@code source} is {@code event} for
+ * the System event log, with the provider and event ID as {@code origin},
+ * or {@code w3c} for an IIS access log line, with the site as {@code origin}.
+ * {@code sequence} orders the entries of one host and is used to read on
+ * from where a previous query stopped.
+ */
+public record LogEntry(long sequence, String host, String source, String origin, String time, String level,
+                       String message, long collectedAt) {
+}
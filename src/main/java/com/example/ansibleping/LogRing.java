@@ -0,0 +1,48 @@
+package com.example.ansibleping;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Fixed-size ring of the most recent log entries of one host. Once full,
+ * each new entry overwrites the oldest, so memory per host stays bounded
+ * however much a host logs.
+ */
+final class LogRing {
+
+    private final LogEntry[] entries;
+    // Sequence the next entry gets; entries [next - size, next) are held
+    private long next = 1;
+    private int size;
+
+    LogRing(int capacity) {
+        this.entries = new LogEntry[capacity];
+    }
+
+    /**
+     * Append entries, numbering them; the given sequence numbers are ignored
+     */
+    synchronized void addAll(List<LogEntry> batch) {
+        for (LogEntry entry : batch) {
+            long sequence = next++;
+            entries[(int) (sequence % entries.length)] = new LogEntry(sequence, entry.host(), entry.source(),
+                    entry.origin(), entry.time(), entry.level(), entry.message(), entry.collectedAt());
+            size = Math.min(size + 1, entries.length);
+        }
+    }
+
+    /**
+     * Entries with a sequence above {@code after}, oldest first, optionally
+     * only from one source, at most {@code limit} of them
+     */
+    synchronized List<LogEntry> after(long after, String source, int limit) {
+        List<LogEntry> result = new ArrayList<>(Math.min(limit, size));
+        for (long sequence = Math.max(after + 1, next - size); sequence < next && result.size() < limit; sequence++) {
+            LogEntry entry = entries[(int) (sequence % entries.length)];
+            if (source == null || source.equals(entry.source())) {
+                result.add(entry);
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,301 @@
+package com.example.ansibleping;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Collects the System event log and the IIS W3C access logs of a host
+ * incrementally ({@code scripts/iis-logs.ps1}).
+ *
+ * <p>For each host it keeps a cursor: the last event record ID and, per
+ * site, the log file and byte offset read up to. A collection only
+ * transfers what was written after the cursor, gzip-compressed, and the
+ * entries go into a bounded per-host {@link LogRing} that the API queries.
+ * A cursor only moves once its entries are stored, so a failed collection
+ * is simply repeated from the same place.
+ *
+ * <p>The monitor triggers a collection whenever it finds IIS down, so the
+ * events leading up to the failure are at hand without copying whole log
+ * files.
+ */
+@Service
+public class LogTailService {
+
+    private static final Logger logger = LoggerFactory.getLogger(LogTailService.class);
+
+    private static final String OPERATION = "logs";
+
+    private static final String SCRIPT = PowerShellScripts.load("/scripts/iis-logs.ps1");
+
+    /**
+     * Outcome of one collection
+     */
+    public record LogBatch(String host, ServiceState state, int events, int lines, long compressedBytes,
+                           long uncompressedBytes, List<String> errors, String message) {
+    }
+
+    private record FileCursor(String file, long offset) {
+    }
+
+    private record Cursor(long eventRecordId, Map<String, FileCursor> files) {
+    }
+
+    private final ObjectMapper objectMapper = new ObjectMapper()
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+    @Autowired
+    private CommandExecutor commandExecutor;
+
+    @Autowired
+    private AnsibleMetrics metrics;
+
+    @Value("${iis.logs.enabled:true}")
+    private boolean enabled;
+
+    @Value("${iis.logs.ring-entries:5000}")
+    private int ringEntries;
+
+    @Value("${iis.logs.max-events:200}")
+    private int maxEvents;
+
+    @Value("${iis.logs.max-bytes:262144}")
+    private int maxBytes;
+
+    @Value("${iis.logs.initial-events:50}")
+    private int initialEvents;
+
+    @Value("${iis.logs.initial-bytes:16384}")
+    private int initialBytes;
+
+    @Value("${iis.logs.min-interval-ms:60000}")
+    private long minIntervalMillis;
+
+    @Value("${iis.logs.threads:4}")
+    private int threads;
+
+    @Value("${ansible.timeout.logs-ms:90000}")
+    private long timeoutMillis;
+
+    private final Map<String, Cursor> cursors = new ConcurrentHashMap<>();
+    private final Map<String, LogRing> rings = new ConcurrentHashMap<>();
+    // When the monitor last triggered a collection per host, to bound remote runs while a host stays down
+    private final Map<String, Long> lastTriggered = new ConcurrentHashMap<>();
+    // At most one collection per host at a time, so cursors never race
+    private final Set<String> collecting = ConcurrentHashMap.newKeySet();
+
+    private ExecutorService collectors;
+
+    public LogTailService() {
+    }
+
+    LogTailService(CommandExecutor commandExecutor, AnsibleMetrics metrics, int ringEntries, int maxEvents,
+                   int maxBytes, int initialEvents, int initialBytes, long minIntervalMillis, int threads,
+                   long timeoutMillis) {
+        this.commandExecutor = commandExecutor;
+        this.metrics = metrics;
+        this.enabled = true;
+        this.ringEntries = ringEntries;
+        this.maxEvents = maxEvents;
+        this.maxBytes = maxBytes;
+        this.initialEvents = initialEvents;
+        this.initialBytes = initialBytes;
+        this.minIntervalMillis = minIntervalMillis;
+        this.threads = threads;
+        this.timeoutMillis = timeoutMillis;
+        init();
+    }
+
+    @PostConstruct
+    void init() {
+        AtomicInteger count = new AtomicInteger();
+        collectors = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "log-tail-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    void shutdown() {
+        collectors.shutdownNow();
+    }
+
+    /**
+     * Collect in the background after the monitor found a problem on the
+     * host. Skipped when a collection for the host is running or the last
+     * one triggered this way was less than {@code iis.logs.min-interval-ms} ago.
+     */
+    public void collectAfterFailure(Target target) {
+        if (!enabled) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        Long last = lastTriggered.get(target.host());
+        if (last != null && now - last < minIntervalMillis) {
+            return;
+        }
+        lastTriggered.put(target.host(), now);
+        try {
+            collectors.execute(() -> {
+                LogBatch batch = collect(target);
+                if (batch != null && batch.state() == ServiceState.REACHABLE) {
+                    logger.info("Collected {} events and {} access log lines from {} after a failed check",
+                            batch.events(), batch.lines(), target.host());
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            logger.debug("Log collection for {} not started: shutting down", target.host());
+        }
+    }
+
+    /**
+     * Fetch everything new since the host's cursor. Returns null when a
+     * collection for the host is already running.
+     */
+    public LogBatch collect(Target target) {
+        String host = target.host();
+        if (!collecting.add(host)) {
+            return null;
+        }
+        try {
+            Cursor cursor = cursors.getOrDefault(host, new Cursor(-1, Map.of()));
+            ScriptResult result = commandExecutor.runScript(target, OPERATION, withCursor(cursor),
+                    Duration.ofMillis(timeoutMillis));
+            if (!result.succeeded()) {
+                ServiceStatus status = result.status();
+                logger.warn("Log collection from {} failed: {} {}", host, status.state(), status.message());
+                return new LogBatch(host, status.state(), 0, 0, 0, 0, List.of(), status.message());
+            }
+            return store(host, cursor, result.stdout());
+        } finally {
+            collecting.remove(host);
+        }
+    }
+
+    /**
+     * Collected entries of a host after sequence {@code after}, oldest first
+     */
+    public List<LogEntry> query(String host, long after, String source, int limit) {
+        LogRing ring = rings.get(host);
+        return ring == null ? List.of() : ring.after(after, source, limit);
+    }
+
+    /**
+     * Drop the cursors and entries of a host that is no longer monitored
+     */
+    public void forget(String host) {
+        cursors.remove(host);
+        rings.remove(host);
+        lastTriggered.remove(host);
+    }
+
+    private LogBatch store(String host, Cursor cursor, String stdout) {
+        String encoded = stdout == null ? "" : stdout.strip();
+        Payload payload;
+        byte[] compressed;
+        byte[] json;
+        try {
+            compressed = Base64.getMimeDecoder().decode(encoded);
+            try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(compressed))) {
+                json = in.readAllBytes();
+            }
+            payload = objectMapper.readValue(json, Payload.class);
+            metrics.recordLogTransfer(compressed.length, json.length);
+        } catch (IOException | IllegalArgumentException e) {
+            logger.warn("Unexpected log collector output from {}: {}", host, e.getMessage());
+            return new LogBatch(host, ServiceState.UNKNOWN, 0, 0, encoded.length(), 0, List.of(),
+                    "Unexpected collector output: " + e.getMessage());
+        }
+
+        long now = System.currentTimeMillis();
+        List<LogEntry> entries = new ArrayList<>();
+        for (EventPayload event : orEmpty(payload.events())) {
+            entries.add(new LogEntry(0, host, "event", event.provider() + "/" + event.eventId(), event.time(),
+                    event.level(), event.message(), now));
+        }
+        int events = entries.size();
+        Map<String, FileCursor> files = new LinkedHashMap<>(cursor.files());
+        for (FilePayload file : orEmpty(payload.files())) {
+            for (String line : orEmpty(file.lines())) {
+                entries.add(new LogEntry(0, host, "w3c", file.site(), w3cTime(line), null, line, now));
+            }
+            files.put(file.site(), new FileCursor(file.file(), file.offset()));
+        }
+        rings.computeIfAbsent(host, key -> new LogRing(ringEntries)).addAll(entries);
+        cursors.put(host, new Cursor(Math.max(cursor.eventRecordId(), payload.eventCursor()), files));
+        metrics.recordLogEntries("event", events);
+        metrics.recordLogEntries("w3c", entries.size() - events);
+
+        List<String> errors = orEmpty(payload.errors());
+        if (!errors.isEmpty()) {
+            logger.info("Log collection from {} was partial: {}", host, errors);
+        }
+        return new LogBatch(host, ServiceState.REACHABLE, events, entries.size() - events,
+                compressed.length, json.length, errors, null);
+    }
+
+    private String withCursor(Cursor cursor) {
+        StringBuilder script = new StringBuilder()
+                .append("$EventCursor = ").append(cursor.eventRecordId()).append('\n')
+                .append("$MaxEvents = ").append(maxEvents).append('\n')
+                .append("$MaxBytes = ").append(maxBytes).append('\n')
+                .append("$InitialEvents = ").append(initialEvents).append('\n')
+                .append("$InitialBytes = ").append(initialBytes).append('\n')
+                .append("$FileCursors = @{");
+        cursor.files().forEach((site, file) -> script.append(PowerShellScripts.quote(site)).append(" = @(")
+                .append(PowerShellScripts.quote(file.file())).append(", ").append(file.offset()).append("); "));
+        return script.append("}\n").append(SCRIPT).toString();
+    }
+
+    // W3C lines start with the UTC date and time fields in the default field set
+    private static String w3cTime(String line) {
+        if (line.isEmpty() || !Character.isDigit(line.charAt(0))) {
+            return null;
+        }
+        int date = line.indexOf(' ');
+        int time = date < 0 ? -1 : line.indexOf(' ', date + 1);
+        return time < 0 ? null : line.substring(0, date) + "T" + line.substring(date + 1, time) + "Z";
+    }
+
+    private static <T> List<T> orEmpty(List<T> values) {
+        return values == null ? List.of() : values;
+    }
+
+    /**
+     * The JSON document printed by the collector script
+     */
+    private record Payload(long eventCursor, List<EventPayload> events, List<FilePayload> files,
+                           List<String> errors) {
+    }
+
+    private record EventPayload(long recordId, String time, String level, String provider, int eventId,
+                                String message) {
+    }
+
+    private record FilePayload(String site, String file, long offset, List<String> lines) {
+    }
+}
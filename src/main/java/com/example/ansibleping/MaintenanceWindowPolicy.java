@@ -0,0 +1,154 @@
+package com.example.ansibleping;
+
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import java.time.DayOfWeek;
+import java.time.Instant;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Suppresses every remediation of a host during planned maintenance: while
+ * it carries the {@code iis.remediation.maintenance.tag} inventory tag, or
+ * during one of the weekly {@code iis.remediation.maintenance.windows}.
+ *
+ * <p>A window is {@code DAYS HH:mm-HH:mm}, where {@code DAYS} is {@code *},
+ * a day ({@code SUN}) or a range ({@code MON-FRI}); several are separated by
+ * commas. A window that ends before it starts runs past midnight into the
+ * next day. Times are in {@code iis.remediation.maintenance.zone}.
+ */
+@Component
+@Order(100)
+@ConditionalOnProperty(name = "iis.remediation.maintenance.enabled", havingValue = "true", matchIfMissing = true)
+public class MaintenanceWindowPolicy implements RemediationPolicy {
+
+    record Window(Set<DayOfWeek> days, LocalTime start, LocalTime end) {
+
+        boolean contains(ZonedDateTime time) {
+            LocalTime clock = time.toLocalTime();
+            if (!start.isAfter(end)) {
+                return days.contains(time.getDayOfWeek()) && !clock.isBefore(start) && clock.isBefore(end);
+            }
+            // Past midnight: the part after midnight belongs to the window of the day before
+            return days.contains(time.getDayOfWeek()) && !clock.isBefore(start)
+                    || days.contains(time.getDayOfWeek().minus(1)) && clock.isBefore(end);
+        }
+    }
+
+    @Autowired
+    private Inventory inventory;
+
+    @Value("${iis.remediation.maintenance.windows:}")
+    private String windowSpec;
+
+    @Value("${iis.remediation.maintenance.zone:UTC}")
+    private String zone;
+
+    @Value("${iis.remediation.maintenance.tag:maintenance}")
+    private String tag;
+
+    private List<Window> windows;
+    private ZoneId zoneId;
+
+    public MaintenanceWindowPolicy() {
+    }
+
+    /**
+     * A policy with the given settings, ready to use without Spring
+     */
+    MaintenanceWindowPolicy(Inventory inventory, String windowSpec, String zone, String tag) {
+        this.inventory = inventory;
+        this.windowSpec = windowSpec;
+        this.zone = zone;
+        this.tag = tag;
+        init();
+    }
+
+    @PostConstruct
+    void init() {
+        zoneId = ZoneId.of(zone);
+        windows = parse(windowSpec);
+    }
+
+    @Override
+    public String name() {
+        return "maintenance";
+    }
+
+    @Override
+    public Decision evaluate(MonitorEvent event) {
+        if (event.isHealthy()) {
+            // Nothing to hold back, and the policies after this one must see the host recover
+            return Decision.none();
+        }
+        InventoryTarget entry = inventory.entry(event.host());
+        if (entry != null && entry.tags().contains(tag)) {
+            return Decision.suppress("host tagged " + tag);
+        }
+        ZonedDateTime now = Instant.ofEpochMilli(event.at()).atZone(zoneId);
+        for (Window window : windows) {
+            if (window.contains(now)) {
+                return Decision.suppress("maintenance window");
+            }
+        }
+        return Decision.none();
+    }
+
+    static List<Window> parse(String spec) {
+        List<Window> windows = new ArrayList<>();
+        if (spec == null || spec.isBlank()) {
+            return windows;
+        }
+        for (String part : spec.split(",")) {
+            String[] fields = part.trim().split("\\s+");
+            String[] times = fields.length == 2 ? fields[1].split("-") : new String[0];
+            if (times.length != 2) {
+                throw new IllegalArgumentException("Invalid maintenance window '" + part.trim()
+                        + "': expected DAYS HH:mm-HH:mm");
+            }
+            try {
+                windows.add(new Window(days(fields[0]), LocalTime.parse(times[0]), LocalTime.parse(times[1])));
+            } catch (DateTimeParseException e) {
+                throw new IllegalArgumentException("Invalid maintenance window '" + part.trim() + "': "
+                        + e.getMessage());
+            }
+        }
+        return windows;
+    }
+
+    private static Set<DayOfWeek> days(String spec) {
+        if (spec.equals("*")) {
+            return EnumSet.allOf(DayOfWeek.class);
+        }
+        String[] range = spec.split("-");
+        DayOfWeek first = day(range[0]);
+        DayOfWeek last = range.length == 2 ? day(range[1]) : first;
+        Set<DayOfWeek> days = EnumSet.of(first);
+        for (DayOfWeek day = first; day != last; day = day.plus(1)) {
+            days.add(day.plus(1));
+        }
+        return days;
+    }
+
+    private static DayOfWeek day(String name) {
+        String upper = name.toUpperCase(Locale.ROOT);
+        for (DayOfWeek day : DayOfWeek.values()) {
+            if (upper.length() >= 3 && day.name().startsWith(upper)) {
+                return day;
+            }
+        }
+        throw new IllegalArgumentException("Invalid day '" + name + "' in maintenance window");
+    }
+}
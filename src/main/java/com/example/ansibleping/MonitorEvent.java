@@ -0,0 +1,38 @@
+package com.example.ansibleping;
+
+/**
+ * Outcome of a full monitor check, handed to the remediation policies. The
+ * monitor publishes one whenever a host's state changed or the host is not
+ * healthy, so an unhealthy host keeps producing events at its re-check pace.
+ * {@code previousState} is null for a host's first check and
+ * {@code failedProbe} is the HTTP probe that triggered the check, if any.
+ */
+public record MonitorEvent(Target target, HostSchedule schedule, ServiceState previousState, ServiceStatus status,
+                           HttpHealthProbe.HttpCheck failedProbe, long at) {
+
+    public String host() {
+        return target.host();
+    }
+
+    public ServiceState state() {
+        return status.state();
+    }
+
+    /**
+     * Whether the check found a different state than the one before it
+     */
+    public boolean isTransition() {
+        return previousState != status.state();
+    }
+
+    public boolean isUnreachable() {
+        return state() == ServiceState.UNREACHABLE || state() == ServiceState.TIMED_OUT;
+    }
+
+    /**
+     * IIS is running and its site, where one is probed, answers
+     */
+    public boolean isHealthy() {
+        return state() == ServiceState.RUNNING && failedProbe == null;
+    }
+}
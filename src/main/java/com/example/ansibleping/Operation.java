@@ -0,0 +1,105 @@
+package com.example.ansibleping;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * One single-host operation run in the background on behalf of an API
+ * caller, who gets its ID at once and collects the result later.
+ */
+public final class Operation {
+
+    public enum Kind {
+        PING, STATUS, DETAILS, PROBE, START, STOP, RESTART;
+
+        static Kind parse(String value) {
+            if (value != null) {
+                for (Kind kind : values()) {
+                    if (kind.name().equalsIgnoreCase(value.trim())) {
+                        return kind;
+                    }
+                }
+            }
+            throw new IllegalArgumentException(
+                    "Operation must be one of ping, status, details, probe, start, stop or restart");
+        }
+    }
+
+    public enum Status { PENDING, RUNNING, SUCCEEDED, FAILED }
+
+    /**
+     * The operation as returned by the API. {@code result} is what the
+     * matching synchronous endpoint returns: a description, a
+     * {@link ServiceStatus} or an {@link IISProbe}.
+     */
+    public record Snapshot(String id, Kind operation, String host, Status status, Object result, String error,
+                           long createdAt, long startedAt, long finishedAt) {
+    }
+
+    private final String id;
+    private final Kind kind;
+    private final String host;
+    private final long createdAt = System.currentTimeMillis();
+    private final CompletableFuture<Snapshot> done = new CompletableFuture<>();
+
+    // Guarded by "this"
+    private Status status = Status.PENDING;
+    private Object result;
+    private String error;
+    private long startedAt = -1;
+    private long finishedAt = -1;
+
+    Operation(String id, Kind kind, String host) {
+        this.id = id;
+        this.kind = kind;
+        this.host = host;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    Kind getKind() {
+        return kind;
+    }
+
+    synchronized boolean isFinished() {
+        return status == Status.SUCCEEDED || status == Status.FAILED;
+    }
+
+    synchronized void started() {
+        status = Status.RUNNING;
+        startedAt = System.currentTimeMillis();
+    }
+
+    void succeeded(Object result) {
+        finish(Status.SUCCEEDED, result, null);
+    }
+
+    void failed(String error) {
+        finish(Status.FAILED, null, error);
+    }
+
+    /**
+     * Completes with the final snapshot once the operation has finished
+     */
+    CompletableFuture<Snapshot> whenDone() {
+        return done;
+    }
+
+    synchronized Snapshot snapshot() {
+        return new Snapshot(id, kind, host, status, result, error, createdAt, startedAt, finishedAt);
+    }
+
+    private void finish(Status status, Object result, String error) {
+        Snapshot snapshot;
+        synchronized (this) {
+            this.status = status;
+            this.result = result;
+            this.error = error;
+            finishedAt = System.currentTimeMillis();
+            snapshot = snapshot();
+        }
+        // Outside the lock: waiters are completed on this thread
+        done.complete(snapshot);
+    }
+}
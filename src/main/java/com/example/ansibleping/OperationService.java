@@ -0,0 +1,185 @@
+package com.example.ansibleping;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs single-host operations in the background so the API can answer at
+ * once with an operation ID instead of holding a request thread for the
+ * length of a remote call. Results are kept for the last
+ * {@code operations.max-retained} operations.
+ */
+@Service
+public class OperationService {
+
+    private static final Logger logger = LoggerFactory.getLogger(OperationService.class);
+
+    @Autowired
+    private AnsibleService ansibleService;
+
+    @Autowired
+    private IISProbeService probeService;
+
+    @Autowired
+    private AnsibleMetrics metrics;
+
+    @Value("${operations.worker-threads:32}")
+    private int workerThreads;
+
+    @Value("${operations.max-queued:1000}")
+    private int maxQueued;
+
+    @Value("${operations.max-retained:1000}")
+    private int maxRetained;
+
+    // Operations by ID in submission order; finished ones beyond the retention limit are dropped oldest first
+    private final Map<String, Operation> operations = new LinkedHashMap<>();
+
+    private ExecutorService workers;
+
+    public OperationService() {
+    }
+
+    OperationService(AnsibleService ansibleService, IISProbeService probeService, AnsibleMetrics metrics,
+                     int workerThreads, int maxQueued, int maxRetained) {
+        this.ansibleService = ansibleService;
+        this.probeService = probeService;
+        this.metrics = metrics;
+        this.workerThreads = workerThreads;
+        this.maxQueued = maxQueued;
+        this.maxRetained = maxRetained;
+        init();
+    }
+
+    @PostConstruct
+    void init() {
+        AtomicInteger count = new AtomicInteger();
+        // Bounded queue: past it callers get an error instead of an ever-growing backlog
+        workers = new ThreadPoolExecutor(workerThreads, workerThreads, 0, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(maxQueued), runnable -> {
+                    Thread thread = new Thread(runnable, "operation-" + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        metrics.gauge("operations.in.progress", "Background operations queued or running", this,
+                service -> service.countUnfinished());
+    }
+
+    @PreDestroy
+    void shutdown() {
+        workers.shutdownNow();
+    }
+
+    /**
+     * Validate and queue an operation. Throws IllegalArgumentException for
+     * invalid input and RejectedExecutionException when the queue is full.
+     */
+    public Operation submit(String operation, String host, String user, String pass) {
+        Operation.Kind kind = Operation.Kind.parse(operation);
+        ansibleService.validateInput(host, user, pass);
+
+        Operation op = new Operation(UUID.randomUUID().toString(), kind, host);
+        synchronized (operations) {
+            operations.put(op.getId(), op);
+            evictFinished();
+        }
+        try {
+            workers.execute(() -> run(op, host, user, pass));
+        } catch (RejectedExecutionException e) {
+            synchronized (operations) {
+                operations.remove(op.getId());
+            }
+            throw new RejectedExecutionException("Too many operations queued; try again later");
+        }
+        logger.debug("Operation {}: {} on {} queued", op.getId(), kind.name().toLowerCase(), host);
+        return op;
+    }
+
+    /**
+     * Get an operation by ID, or null if it is unknown or no longer retained
+     */
+    public Operation get(String id) {
+        synchronized (operations) {
+            return operations.get(id);
+        }
+    }
+
+    /**
+     * Get the listed operations, skipping unknown IDs, or every retained one
+     * newest first when no IDs are given
+     */
+    public List<Operation.Snapshot> getAll(Collection<String> ids) {
+        List<Operation> selected = new ArrayList<>();
+        synchronized (operations) {
+            if (ids == null || ids.isEmpty()) {
+                selected.addAll(operations.values());
+            } else {
+                ids.stream().map(operations::get).filter(op -> op != null).forEach(selected::add);
+            }
+        }
+        List<Operation.Snapshot> snapshots = new ArrayList<>(selected.size());
+        selected.forEach(op -> snapshots.add(op.snapshot()));
+        if (ids == null || ids.isEmpty()) {
+            snapshots.sort(Comparator.comparingLong(Operation.Snapshot::createdAt).reversed());
+        }
+        return snapshots;
+    }
+
+    private void run(Operation op, String host, String user, String pass) {
+        op.started();
+        try {
+            Object result = switch (op.getKind()) {
+                case PING -> ansibleService.pingVM(host, user, pass);
+                case STATUS -> ansibleService.checkIISStatus(host, user, pass);
+                case DETAILS -> ansibleService.getIISStatus(host, user, pass);
+                case PROBE -> probeService.probe(host, user, pass);
+                case START -> ansibleService.startIIS(host, user, pass);
+                case STOP -> ansibleService.stopIIS(host, user, pass);
+                case RESTART -> ansibleService.restartIIS(host, user, pass);
+            };
+            op.succeeded(result);
+        } catch (Exception e) {
+            logger.error("Operation {}: {} on {} failed: {}", op.getId(), op.getKind().name().toLowerCase(), host,
+                    e.getMessage(), e);
+            op.failed("Error: " + e.getMessage());
+        }
+    }
+
+    private int countUnfinished() {
+        synchronized (operations) {
+            return (int) operations.values().stream().filter(op -> !op.isFinished()).count();
+        }
+    }
+
+    // Caller holds the operations lock
+    private void evictFinished() {
+        int excess = operations.size() - maxRetained;
+        Iterator<Operation> iterator = operations.values().iterator();
+        while (excess > 0 && iterator.hasNext()) {
+            if (iterator.next().isFinished()) {
+                iterator.remove();
+                excess--;
+            }
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package com.example.ansibleping;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.stream.Collectors;
+
+/**
+ * PowerShell scripts shipped under {@code src/main/resources/scripts}
+ */
+final class PowerShellScripts {
+
+    private PowerShellScripts() {
+    }
+
+    /**
+     * Load a script with comments and indentation stripped: scripts travel
+     * Base64 encoded on a command line, where every byte counts
+     */
+    static String load(String resource) {
+        try (InputStream in = PowerShellScripts.class.getResourceAsStream(resource)) {
+            if (in == null) {
+                throw new IllegalStateException("Missing script " + resource);
+            }
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8).lines()
+                    .map(String::strip)
+                    .filter(line -> !line.isEmpty() && !line.startsWith("#"))
+                    .collect(Collectors.joining("\n"));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Quote a value as a single-quoted PowerShell string literal
+     */
+    static String quote(String value) {
+        return "'" + value.replace("'", "''") + "'";
+    }
+}
@@ -0,0 +1,270 @@
+package com.example.ansibleping;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Executes each command by forking the {@code ansible} CLI with the
+ * {@code json} stdout callback and parsing its output. Commands are built
+ * from cached {@link CommandTemplate}s and started directly, not through a shell.
+ */
+@Component
+@ConditionalOnProperty(name = "ansible.executor", havingValue = "process", matchIfMissing = true)
+public class ProcessCommandExecutor implements CommandExecutor {
+
+    private static final Logger logger = LoggerFactory.getLogger(ProcessCommandExecutor.class);
+
+    private static final Duration WARM_UP_TIMEOUT = Duration.ofSeconds(60);
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    // Templates by module and arguments; the service only uses a handful of combinations
+    private final Map<String, CommandTemplate> singleTemplates = new ConcurrentHashMap<>();
+    private final Map<String, CommandTemplate> batchTemplates = new ConcurrentHashMap<>();
+
+    @Autowired
+    private ProcessRunner processRunner;
+
+    @Autowired
+    private AnsibleMetrics metrics;
+
+    @Value("${ansible.batch.forks:10}")
+    private int batchForks;
+
+    @Value("${ansible.stdout-callback:json}")
+    private String stdoutCallback;
+
+    public ProcessCommandExecutor() {
+    }
+
+    ProcessCommandExecutor(ProcessRunner processRunner, AnsibleMetrics metrics, int batchForks, String stdoutCallback) {
+        this.processRunner = processRunner;
+        this.metrics = metrics;
+        this.batchForks = batchForks;
+        this.stdoutCallback = stdoutCallback;
+    }
+
+    @Override
+    public ServiceStatus execute(AnsibleCommand command) {
+        String host = command.target().host();
+        ProcessRunner.ProcessResult result;
+        try {
+            result = executeCommand(buildCommand(command), credentials(command.target()), 1, command.timeout());
+        } catch (IOException e) {
+            return ServiceStatus.of(host, ServiceState.UNKNOWN, "Error: " + e.getMessage());
+        }
+        metrics.recordProcess(command.operation(), host, result);
+        return toStatuses(command.operation(), List.of(host), result).get(host);
+    }
+
+    /**
+     * Run {@code ansible --version} once. The first ansible run after a boot
+     * or deploy spends most of its time reading the Python interpreter and
+     * the ansible packages from disk and compiling stale bytecode; this pays
+     * for that before the first check. Each command is its own process, so
+     * there are no connections to open ahead of time.
+     */
+    @Override
+    public void warmUp(List<Target> targets) {
+        try {
+            ProcessRunner.ProcessResult result = processRunner.run(List.of("ansible", "--version"), WARM_UP_TIMEOUT);
+            String version = result.output().lines().findFirst().orElse("");
+            if (result.exitCode() == 0) {
+                logger.info("Ansible toolchain loaded in {} ms: {}", result.durationMillis(), version);
+            } else {
+                logger.warn("ansible --version exited with {}: {}", result.exitCode(), version);
+            }
+        } catch (IOException e) {
+            logger.warn("Could not run ansible to warm it up: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Run the script through {@code win_command} as an encoded PowerShell
+     * command, so it needs no quoting on either the local or the remote side
+     */
+    @Override
+    public ScriptResult runScript(Target target, String operation, String script, Duration timeout) {
+        String host = target.host();
+        // Not cached: the script differs from call to call
+        List<String> argv = CommandTemplate.single("win_command", encodedPowerShell(script)).forHost(host);
+        ProcessRunner.ProcessResult result;
+        try {
+            result = executeCommand(argv, credentials(target), 1, timeout);
+        } catch (IOException e) {
+            return new ScriptResult(ServiceStatus.of(host, ServiceState.UNKNOWN, "Error: " + e.getMessage()), null);
+        }
+        metrics.recordProcess(operation, host, result);
+        long parseStart = System.nanoTime();
+        Map<String, ScriptResult> perHost = AnsibleJsonParser.parseScripts(result.output());
+        metrics.recordParse(operation, System.nanoTime() - parseStart);
+        ScriptResult scriptResult = perHost.get(host);
+        return scriptResult != null ? scriptResult : new ScriptResult(missingResult(host, perHost.isEmpty(), result), null);
+    }
+
+    /**
+     * Run the module against all targets in one ansible process using a
+     * temporary inventory, then split the results back out per host.
+     * The deadline scales with the number of fork rounds the batch needs.
+     */
+    @Override
+    public Map<String, ServiceStatus> executeBatch(List<Target> targets, String module, String moduleArgs,
+                                                   Duration timeout) {
+        List<String> hosts = targets.stream().map(Target::host).toList();
+        String operation = AnsibleCommand.operationOf(module, moduleArgs);
+        Path inventory = null;
+        try {
+            Map<String, String> credentials = new LinkedHashMap<>();
+            inventory = writeInventory(targets, credentials);
+            int rounds = (targets.size() + batchForks - 1) / batchForks;
+            List<String> argv = batchTemplates.computeIfAbsent(key(module, moduleArgs),
+                    key -> CommandTemplate.batch(module, moduleArgs)).withInventory(inventory.toString());
+            ProcessRunner.ProcessResult result = executeCommand(argv, credentials, batchForks,
+                    timeout.multipliedBy(Math.max(1, rounds)));
+            // A batch run is not attributable to one host
+            metrics.recordProcess(operation, null, result);
+            return toStatuses(operation, hosts, result);
+        } catch (IOException e) {
+            Map<String, ServiceStatus> results = new LinkedHashMap<>();
+            hosts.forEach(host -> results.put(host, ServiceStatus.of(host, ServiceState.UNKNOWN, "Error: " + e.getMessage())));
+            return results;
+        } finally {
+            if (inventory != null) {
+                try {
+                    Files.deleteIfExists(inventory);
+                } catch (IOException ignored) {
+                    // Best effort; the file lives in the temp directory and is only readable by us
+                }
+            }
+        }
+    }
+
+    /**
+     * Turn one process result into a status per host. Timeouts and
+     * truncated output are reported as their own states for hosts the
+     * parser could not find a complete result for.
+     */
+    private Map<String, ServiceStatus> toStatuses(String operation, List<String> hosts,
+                                                  ProcessRunner.ProcessResult result) {
+        long parseStart = System.nanoTime();
+        Map<String, ServiceStatus> perHost = AnsibleJsonParser.parse(result.output());
+        metrics.recordParse(operation, System.nanoTime() - parseStart);
+        Map<String, ServiceStatus> results = new LinkedHashMap<>();
+        for (String host : hosts) {
+            ServiceStatus status = perHost.get(host);
+            results.put(host, status != null ? status : missingResult(host, perHost.isEmpty(), result));
+        }
+        return results;
+    }
+
+    /**
+     * Explain why a host has no result: the run timed out, its output was
+     * truncated, or it failed as a whole
+     */
+    private static ServiceStatus missingResult(String host, boolean noHostResults, ProcessRunner.ProcessResult result) {
+        if (result.timedOut()) {
+            return ServiceStatus.of(host, ServiceState.TIMED_OUT, "No result within " + result.durationMillis() + " ms");
+        }
+        if (result.truncated()) {
+            return ServiceStatus.of(host, ServiceState.TRUNCATED, "Output exceeded the capture limit");
+        }
+        // Without any host results the run failed as a whole and the full output explains why
+        String output = result.exitCode() == 0 ? result.output()
+                : result.output() + "Ansible command failed with exit code: " + result.exitCode();
+        return ServiceStatus.of(host, ServiceState.UNKNOWN, noHostResults ? output : "No result returned for " + host);
+    }
+
+    /**
+     * PowerShell command line running the script, Base64 encoded as UTF-16LE as {@code -EncodedCommand} expects
+     */
+    static String encodedPowerShell(String script) {
+        return "powershell.exe -NoProfile -NonInteractive -ExecutionPolicy Bypass -EncodedCommand "
+                + Base64.getEncoder().encodeToString(script.getBytes(StandardCharsets.UTF_16LE));
+    }
+
+    /**
+     * Build the ansible arguments for a single host; the credentials are passed separately, in the environment
+     */
+    List<String> buildCommand(AnsibleCommand command) {
+        return singleTemplates.computeIfAbsent(key(command.module(), command.moduleArgs()),
+                key -> CommandTemplate.single(command.module(), command.moduleArgs()))
+                .forHost(command.target().host());
+    }
+
+    private static String key(String module, String moduleArgs) {
+        return moduleArgs == null ? module : module + '\0' + moduleArgs;
+    }
+
+    private static Map<String, String> credentials(Target target) {
+        return Map.of(CommandTemplate.USER_ENV, target.user(), CommandTemplate.PASSWORD_ENV, target.pass());
+    }
+
+    /**
+     * Write a YAML (JSON) inventory, readable only by the owner, whose hosts
+     * look their credentials up in the environment like a single-host run:
+     * each distinct user and password pair goes into {@code credentials}
+     * as numbered variables.
+     */
+    private Path writeInventory(List<Target> targets, Map<String, String> credentials) throws IOException {
+        Map<String, Object> hosts = new LinkedHashMap<>();
+        Map<List<String>, Integer> pairs = new HashMap<>();
+        for (Target target : targets) {
+            int pair = pairs.computeIfAbsent(List.of(target.user(), target.pass()), key -> {
+                int number = pairs.size() + 1;
+                credentials.put(CommandTemplate.USER_ENV + "_" + number, target.user());
+                credentials.put(CommandTemplate.PASSWORD_ENV + "_" + number, target.pass());
+                return number;
+            });
+            hosts.put(target.host(), Map.of(
+                    "ansible_user", CommandTemplate.envLookup(CommandTemplate.USER_ENV + "_" + pair),
+                    "ansible_password", CommandTemplate.envLookup(CommandTemplate.PASSWORD_ENV + "_" + pair)));
+        }
+        Map<String, Object> inventory = Map.of("all", Map.of("hosts", hosts, "vars", CommandTemplate.CONNECTION_VARS));
+
+        Path file = FileSystems.getDefault().supportedFileAttributeViews().contains("posix")
+                ? Files.createTempFile("ansible-inventory-", ".json",
+                        PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------")))
+                : Files.createTempFile("ansible-inventory-", ".json");
+        objectMapper.writeValue(file.toFile(), inventory);
+        return file;
+    }
+
+    /**
+     * Execute Ansible with proper environment setup. The credentials go
+     * into the child's environment, which unlike its command line is only
+     * readable by the same user.
+     */
+    private ProcessRunner.ProcessResult executeCommand(List<String> argv, Map<String, String> credentials, int forks,
+                                                       Duration timeout) throws IOException {
+        ProcessBuilder pb = new ProcessBuilder(argv);
+
+        // Set environment variables to fix macOS multiprocessing issue
+        Map<String, String> env = pb.environment();
+        env.putAll(credentials);
+        env.put("OBJC_DISABLE_INITIALIZE_FORK_SAFETY", "YES");
+        env.put("ANSIBLE_FORKS", String.valueOf(forks));
+        // Machine-readable results; ad-hoc commands only use the callback when plugins are loaded
+        env.put("ANSIBLE_LOAD_CALLBACK_PLUGINS", "1");
+        env.put("ANSIBLE_STDOUT_CALLBACK", stdoutCallback);
+
+        return processRunner.run(pb, timeout);
+    }
+}
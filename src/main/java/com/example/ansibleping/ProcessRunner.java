@@ -0,0 +1,237 @@
+package com.example.ansibleping;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs child processes with a hard deadline and a cap on captured output.
+ * Output is drained incrementally on a separate thread so the child never
+ * blocks on a full pipe; anything past {@code ansible.max-output-bytes} is
+ * read and discarded. When the deadline passes the whole process tree is
+ * killed.
+ */
+@Component
+public class ProcessRunner {
+
+    private static final Logger logger = LoggerFactory.getLogger(ProcessRunner.class);
+
+    private static final long DRAIN_GRACE_MILLIS = 5000;
+
+    @Autowired
+    private AnsibleMetrics metrics;
+
+    @Value("${ansible.max-output-bytes:1048576}")
+    private int maxOutputBytes;
+
+    @Value("${ansible.max-concurrent-processes:32}")
+    private int maxConcurrentProcesses;
+
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean virtualThreads;
+
+    // Global cap on child processes so a burst of requests cannot fork-bomb the host
+    private Semaphore processPermits;
+
+    private ExecutorService drainExecutor;
+
+    private final ScheduledExecutorService deadlineScheduler =
+            Executors.newSingleThreadScheduledExecutor(daemonThreads("process-deadline-"));
+
+    public ProcessRunner() {
+    }
+
+    ProcessRunner(AnsibleMetrics metrics, int maxOutputBytes, int maxConcurrentProcesses, boolean virtualThreads) {
+        this.metrics = metrics;
+        this.maxOutputBytes = maxOutputBytes;
+        this.maxConcurrentProcesses = maxConcurrentProcesses;
+        this.virtualThreads = virtualThreads;
+        init();
+    }
+
+    @PostConstruct
+    void init() {
+        processPermits = new Semaphore(maxConcurrentProcesses, true);
+        drainExecutor = virtualThreads
+                ? Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("process-drain-", 1).factory())
+                : Executors.newCachedThreadPool(daemonThreads("process-drain-"));
+        metrics.gauge("ansible.processes.running", "Child processes currently running", this,
+                ProcessRunner::getRunningProcessCount);
+        metrics.gauge("ansible.processes.waiting", "Callers waiting for a free process slot", processPermits,
+                Semaphore::getQueueLength);
+    }
+
+    /**
+     * Start the process and complete the returned future when it has exited
+     * and its output has been drained, or once it has been killed for
+     * running past the timeout. Waits for a free process slot first; if none
+     * frees up within the timeout the result is reported as timed out
+     * without starting the process.
+     */
+    public CompletableFuture<ProcessResult> start(ProcessBuilder builder, Duration timeout) {
+        long startNanos = System.nanoTime();
+        try {
+            if (!processPermits.tryAcquire(timeout.toMillis(), TimeUnit.MILLISECONDS)) {
+                logger.warn("No free process slot within {} ms ({} processes running)",
+                        timeout.toMillis(), maxConcurrentProcesses);
+                return CompletableFuture.completedFuture(new ProcessResult(-1, "", true, false,
+                        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos)));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return CompletableFuture.failedFuture(e);
+        }
+
+        Process process;
+        long spawnStart = System.nanoTime();
+        try {
+            process = builder.redirectErrorStream(true).start();
+            metrics.recordSpawn(System.nanoTime() - spawnStart);
+        } catch (IOException e) {
+            processPermits.release();
+            return CompletableFuture.failedFuture(e);
+        }
+        process.onExit().whenComplete((exited, e) -> processPermits.release());
+
+        // The deadline covers the time spent waiting for a slot
+        long remainingMillis = Math.max(0, timeout.toMillis() - TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+
+        BoundedOutput output = new BoundedOutput(maxOutputBytes);
+        // A killed tree can leave an orphan holding the pipe open, so stop waiting for the drain shortly after the deadline
+        CompletableFuture<Void> drained = CompletableFuture.runAsync(
+                () -> output.drain(process.getInputStream()), drainExecutor)
+                .completeOnTimeout(null, remainingMillis + DRAIN_GRACE_MILLIS, TimeUnit.MILLISECONDS);
+
+        AtomicBoolean timedOut = new AtomicBoolean();
+        ScheduledFuture<?> deadline = deadlineScheduler.schedule(() -> {
+            timedOut.set(true);
+            logger.warn("Process {} exceeded its {} ms deadline - killing process tree",
+                    process.pid(), timeout.toMillis());
+            killTree(process);
+        }, remainingMillis, TimeUnit.MILLISECONDS);
+
+        return process.onExit().thenCombine(drained, (exited, ignored) -> {
+            deadline.cancel(false);
+            return new ProcessResult(exited.exitValue(), output.text(), timedOut.get(), output.truncated(),
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+        });
+    }
+
+    /**
+     * Run the process and wait for its result
+     */
+    public ProcessResult run(List<String> command, Duration timeout) throws IOException {
+        return run(new ProcessBuilder(command), timeout);
+    }
+
+    /**
+     * Run the configured process builder and wait for its result
+     */
+    public ProcessResult run(ProcessBuilder builder, Duration timeout) throws IOException {
+        try {
+            return start(builder, timeout).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof IOException io) {
+                throw io;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Get the number of child processes currently running
+     */
+    public int getRunningProcessCount() {
+        return maxConcurrentProcesses - processPermits.availablePermits();
+    }
+
+    // Children are collected before the parent dies, otherwise they are re-parented and lost
+    private static void killTree(Process process) {
+        List<ProcessHandle> descendants = process.descendants().toList();
+        process.destroyForcibly();
+        descendants.forEach(ProcessHandle::destroyForcibly);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        deadlineScheduler.shutdownNow();
+        drainExecutor.shutdownNow();
+    }
+
+    private static ThreadFactory daemonThreads(String prefix) {
+        AtomicInteger count = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * Exit code, captured output and termination details of a finished process
+     */
+    public record ProcessResult(int exitCode, String output, boolean timedOut, boolean truncated,
+                                long durationMillis) {
+    }
+
+    /**
+     * Output buffer that stops growing at a fixed size
+     */
+    private static final class BoundedOutput {
+        private final ByteArrayOutputStream buffer = new ByteArrayOutputStream(8192);
+        private final int limit;
+        private volatile boolean truncated;
+
+        BoundedOutput(int limit) {
+            this.limit = limit;
+        }
+
+        void drain(InputStream in) {
+            byte[] chunk = new byte[8192];
+            try (in) {
+                int read;
+                while ((read = in.read(chunk)) != -1) {
+                    int room = limit - buffer.size();
+                    if (read > room) {
+                        truncated = true;
+                    }
+                    if (room > 0) {
+                        buffer.write(chunk, 0, Math.min(read, room));
+                    }
+                }
+            } catch (IOException e) {
+                // The stream is closed when the process is killed
+            }
+        }
+
+        String text() {
+            return buffer.toString(StandardCharsets.UTF_8);
+        }
+
+        boolean truncated() {
+            return truncated;
+        }
+    }
+}
@@ -0,0 +1,418 @@
+package com.example.ansibleping;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * Turns monitor check outcomes into remediation actions.
+ *
+ * <p>The monitor publishes a {@link MonitorEvent} onto a lock-free queue and
+ * goes back to checking; it never waits for a remediation. One dispatcher
+ * thread drains the queue and asks every {@link RemediationPolicy} bean
+ * what to do. The actions they ask for run on a separate pool, at most one
+ * host-changing action per host at a time: while a start or recycle of a
+ * host is queued or running, further ones for it are dropped as duplicates.
+ * Before a host-changing action runs it is skipped if a fleet job is
+ * working on the host or, with clustering, another instance now owns it.
+ */
+@Service
+public class RemediationEngine {
+
+    private static final Logger logger = LoggerFactory.getLogger(RemediationEngine.class);
+
+    private static final String RECYCLE_OPERATION = "recycle";
+
+    private static final String RECYCLE_SCRIPT = PowerShellScripts.load("/scripts/iis-recycle.ps1");
+
+    // Upper bound on how long an idle dispatcher sleeps before looking at the queue again
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    public enum Outcome { SUCCEEDED, FAILED, SKIPPED }
+
+    /**
+     * One action taken by the engine, for the API; {@code finishedAt} is -1
+     * and {@code outcome} null while it is queued or running
+     */
+    public record Remediation(long id, String host, RemediationPolicy.Action action, String policy, String reason,
+                              Outcome outcome, String detail, long requestedAt, long finishedAt) {
+
+        Remediation finish(Outcome outcome, String detail) {
+            return new Remediation(id, host, action, policy, reason, outcome, detail, requestedAt,
+                    System.currentTimeMillis());
+        }
+    }
+
+    /**
+     * Queue depth, active policies, and the actions running and recently finished
+     */
+    public record Status(int queuedEvents, List<String> policies, List<Remediation> active,
+                         List<Remediation> recent) {
+    }
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Autowired
+    private List<RemediationPolicy> policies;
+
+    @Autowired
+    private AnsibleService ansibleService;
+
+    @Autowired
+    private CommandExecutor commandExecutor;
+
+    @Autowired
+    private StatusHistoryStore historyStore;
+
+    @Autowired
+    private FleetActionService fleetActionService;
+
+    @Autowired
+    private ClusterCoordinator cluster;
+
+    @Autowired
+    private AnsibleMetrics metrics;
+
+    @Value("${iis.remediation.threads:8}")
+    private int threads;
+
+    @Value("${iis.remediation.max-queued-events:10000}")
+    private int maxQueuedEvents;
+
+    @Value("${iis.remediation.max-retained:200}")
+    private int maxRetained;
+
+    @Value("${iis.remediation.escalation.webhook-url:}")
+    private String webhookUrl;
+
+    @Value("${ansible.timeout.recycle-ms:120000}")
+    private long recycleTimeoutMillis;
+
+    // Multi-producer, single-consumer: check workers offer, only the dispatcher polls
+    private final Queue<MonitorEvent> events = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queuedEvents = new AtomicInteger();
+
+    // Queued or running actions by deduplication key
+    private final Map<String, Remediation> active = new ConcurrentHashMap<>();
+    private final AtomicLong ids = new AtomicLong();
+
+    // Finished actions, newest first
+    private final Deque<Remediation> recent = new ArrayDeque<>();
+
+    private volatile Consumer<ServiceStatus> statusListener = status -> { };
+    private volatile boolean running = true;
+
+    private Thread dispatcher;
+    private ExecutorService actions;
+    private HttpClient webhookClient;
+
+    public RemediationEngine() {
+    }
+
+    /**
+     * An engine that only decides, for use without Spring: {@link #decide} works, nothing is dispatched
+     */
+    RemediationEngine(List<RemediationPolicy> policies, AnsibleMetrics metrics) {
+        this.policies = policies;
+        this.metrics = metrics;
+    }
+
+    @PostConstruct
+    void init() {
+        AtomicInteger count = new AtomicInteger();
+        actions = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "remediation-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (!webhookUrl.isBlank()) {
+            webhookClient = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(5)).build();
+        }
+        dispatcher = new Thread(this::dispatchLoop, "remediation-dispatcher");
+        dispatcher.setDaemon(true);
+        dispatcher.start();
+        metrics.gauge("iis.remediation.queue.depth", "Monitor events waiting for the remediation dispatcher",
+                queuedEvents, AtomicInteger::get);
+        metrics.gauge("iis.remediation.active", "Remediation actions queued or running", active, Map::size);
+        logger.info("Remediation engine started with policies {}", policyNames());
+    }
+
+    @PreDestroy
+    void shutdown() {
+        running = false;
+        LockSupport.unpark(dispatcher);
+        actions.shutdownNow();
+    }
+
+    /**
+     * Register the consumer of statuses that actions produce, such as the
+     * result of an automatic start, so they reach the latest state and live stream
+     */
+    void onStatus(Consumer<ServiceStatus> listener) {
+        this.statusListener = listener;
+    }
+
+    /**
+     * Hand an event to the policies without waiting for them. When more than
+     * {@code iis.remediation.max-queued-events} are waiting the event is
+     * dropped; the host's next check publishes a fresh one.
+     */
+    public void publish(MonitorEvent event) {
+        if (queuedEvents.incrementAndGet() > maxQueuedEvents) {
+            queuedEvents.decrementAndGet();
+            logger.warn("Remediation queue full - dropping the event for {}", event.host());
+            metrics.recordRemediation("none", "event", "dropped");
+            return;
+        }
+        events.offer(event);
+        LockSupport.unpark(dispatcher);
+    }
+
+    /**
+     * Drop what the policies remember about a host that is no longer monitored
+     */
+    public void forget(String host) {
+        for (RemediationPolicy policy : policies) {
+            policy.forget(host);
+        }
+    }
+
+    public Status getStatus() {
+        List<Remediation> inProgress = new ArrayList<>(active.values());
+        inProgress.sort(Comparator.comparingLong(Remediation::id));
+        List<Remediation> finished;
+        synchronized (recent) {
+            finished = new ArrayList<>(recent);
+        }
+        return new Status(queuedEvents.get(), policyNames(), inProgress, finished);
+    }
+
+    private List<String> policyNames() {
+        return policies.stream().map(RemediationPolicy::name).toList();
+    }
+
+    private void dispatchLoop() {
+        while (running) {
+            MonitorEvent event = events.poll();
+            if (event == null) {
+                LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+                continue;
+            }
+            queuedEvents.decrementAndGet();
+            metrics.recordRemediationLag(Math.max(0, System.currentTimeMillis() - event.at()));
+            try {
+                dispatch(event);
+            } catch (RuntimeException e) {
+                logger.error("Error dispatching the monitor event for {}: {}", event.host(), e.getMessage(), e);
+            }
+        }
+    }
+
+    private void dispatch(MonitorEvent event) {
+        decide(event).forEach(remediation -> submit(event, remediation));
+    }
+
+    /**
+     * Ask the policies, in order, what to do about an event. The first one
+     * to suppress it ends the evaluation, so the policies after it neither
+     * act on it nor count it: a failure inside a maintenance window does not
+     * use up an escalation or start a recycle cooldown.
+     */
+    List<Remediation> decide(MonitorEvent event) {
+        List<Remediation> wanted = new ArrayList<>();
+        for (RemediationPolicy policy : policies) {
+            RemediationPolicy.Decision decision;
+            try {
+                decision = policy.evaluate(event);
+            } catch (RuntimeException e) {
+                logger.error("Remediation policy {} failed on {}: {}", policy.name(), event.host(), e.getMessage(), e);
+                continue;
+            }
+            if (decision.verdict() == RemediationPolicy.Verdict.SUPPRESS) {
+                logger.debug("Remediation of {} suppressed by {} ({})", event.host(), policy.name(), decision.reason());
+                metrics.recordRemediation(policy.name(), "event", "suppressed");
+                return List.of();
+            }
+            if (decision.verdict() == RemediationPolicy.Verdict.ACT) {
+                wanted.add(new Remediation(ids.incrementAndGet(), event.host(), decision.action(), policy.name(),
+                        decision.reason(), null, null, event.at(), -1));
+            }
+        }
+        return wanted;
+    }
+
+    private void submit(MonitorEvent event, Remediation remediation) {
+        String key = remediation.action().changesHost()
+                ? remediation.host()
+                : remediation.host() + "#" + remediation.action();
+        if (active.putIfAbsent(key, remediation) != null) {
+            logger.debug("{} of {} already in progress - dropping the duplicate", remediation.action(), event.host());
+            metrics.recordRemediation(remediation.policy(), remediation.action().name(), "deduplicated");
+            return;
+        }
+        try {
+            actions.execute(() -> {
+                Remediation finished = remediation.finish(Outcome.FAILED, "Not run");
+                try {
+                    finished = run(event, remediation);
+                } catch (RuntimeException e) {
+                    logger.error("{} of {} failed: {}", remediation.action(), event.host(), e.getMessage(), e);
+                    finished = remediation.finish(Outcome.FAILED, "Error: " + e.getMessage());
+                } finally {
+                    active.remove(key);
+                    retain(finished);
+                    metrics.recordRemediation(finished.policy(), finished.action().name(),
+                            finished.outcome().name().toLowerCase());
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // Shutting down
+            active.remove(key);
+        }
+    }
+
+    private Remediation run(MonitorEvent event, Remediation remediation) {
+        String host = event.host();
+        if (remediation.action().changesHost()) {
+            if (fleetActionService.isHostBusy(host)) {
+                // A bulk job owns the host until it is done with it, including a deliberate stop
+                logger.info("Not taking {} on {}: a fleet job is acting on it", remediation.action(), host);
+                return remediation.finish(Outcome.SKIPPED, "A fleet job is acting on the host");
+            }
+            if (!cluster.owns(host)) {
+                // Ownership moved since the check; the new owner checks and remediates it
+                logger.info("Not taking {} on {}: another instance now monitors it", remediation.action(), host);
+                return remediation.finish(Outcome.SKIPPED, "Another instance monitors the host");
+            }
+        }
+        return switch (remediation.action()) {
+            case START -> start(event, remediation);
+            case RECYCLE -> recycle(event, remediation);
+            case ESCALATE -> escalate(event, remediation);
+        };
+    }
+
+    /**
+     * Start IIS, record the outcome against the host's restart breaker and
+     * schedule the re-check that confirms it
+     */
+    private Remediation start(MonitorEvent event, Remediation remediation) {
+        Target target = event.target();
+        logger.warn("IIS is not running on {} - attempting to start it automatically", target.host());
+        ServiceStatus result = ansibleService.changeIISState(target.host(), target.user(), target.pass(), "started");
+        historyStore.recordRestart(result);
+        metrics.recordAutoRestart(target.host(), result.succeeded() ? "success" : "failure");
+        statusListener.accept(result);
+        event.schedule().afterRestart(result.succeeded(), System.currentTimeMillis());
+
+        String description = ansibleService.describeServiceAction(result, "started");
+        if (result.succeeded()) {
+            logger.info("IIS has been successfully started automatically on {}", target.host());
+        } else {
+            logger.error("Failed to start IIS automatically on {}: {}", target.host(), description);
+        }
+        return remediation.finish(result.succeeded() ? Outcome.SUCCEEDED : Outcome.FAILED, description);
+    }
+
+    /**
+     * Bring the application pools back: start the stopped ones (rapid-fail
+     * protection stops a crashing pool and the site then answers 503) and
+     * recycle the running ones
+     */
+    private Remediation recycle(MonitorEvent event, Remediation remediation) {
+        logger.warn("IIS is running on {} but its site is failing - recycling its application pools", event.host());
+        ScriptResult result = commandExecutor.runScript(event.target(), RECYCLE_OPERATION, RECYCLE_SCRIPT,
+                Duration.ofMillis(recycleTimeoutMillis));
+        if (!result.succeeded()) {
+            ServiceStatus status = result.status();
+            logger.error("Recycling application pools on {} failed: {} {}", event.host(), status.state(),
+                    status.message());
+            return remediation.finish(Outcome.FAILED, status.state() + ": " + status.message());
+        }
+        String output = result.stdout() == null ? "" : result.stdout().strip();
+        logger.info("Application pools on {}: {}", event.host(), output);
+        return remediation.finish(Outcome.SUCCEEDED, output);
+    }
+
+    /**
+     * Raise the host for a person's attention, and post it to
+     * {@code iis.remediation.escalation.webhook-url} when one is set
+     */
+    private Remediation escalate(MonitorEvent event, Remediation remediation) {
+        logger.error("ESCALATION for {}: {} (state {})", event.host(), remediation.reason(), event.state());
+        if (webhookClient == null) {
+            return remediation.finish(Outcome.SUCCEEDED, "Logged");
+        }
+        try {
+            Map<String, Object> alert = new LinkedHashMap<>();
+            alert.put("host", event.host());
+            alert.put("state", event.state().name());
+            alert.put("reason", remediation.reason());
+            if (event.status().message() != null) {
+                alert.put("message", event.status().message());
+            }
+            alert.put("at", event.at());
+            String body = objectMapper.writeValueAsString(alert);
+            HttpRequest request = HttpRequest.newBuilder(URI.create(webhookUrl))
+                    .timeout(Duration.ofSeconds(10))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(body))
+                    .build();
+            HttpResponse<Void> response = webhookClient.send(request, HttpResponse.BodyHandlers.discarding());
+            boolean delivered = response.statusCode() / 100 == 2;
+            if (!delivered) {
+                logger.warn("Escalation webhook answered {} for {}", response.statusCode(), event.host());
+            }
+            return remediation.finish(delivered ? Outcome.SUCCEEDED : Outcome.FAILED,
+                    "Webhook answered " + response.statusCode());
+        } catch (JsonProcessingException | IllegalArgumentException e) {
+            return remediation.finish(Outcome.FAILED, "Webhook not sent: " + e.getMessage());
+        } catch (IOException e) {
+            logger.warn("Escalation webhook for {} failed: {}", event.host(), e.getMessage());
+            return remediation.finish(Outcome.FAILED, "Webhook failed: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return remediation.finish(Outcome.FAILED, "Interrupted");
+        }
+    }
+
+    private void retain(Remediation remediation) {
+        synchronized (recent) {
+            recent.addFirst(remediation);
+            while (recent.size() > maxRetained) {
+                recent.removeLast();
+            }
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.example.ansibleping;
+
+/**
+ * Decides how the monitor reacts to a check outcome. Policy beans see
+ * {@link MonitorEvent}s in the order they were published, on the single
+ * remediation dispatcher thread, and are asked in {@code @Order}. A policy
+ * must not block: the actions it asks for run elsewhere. Per-host state
+ * belongs in a concurrent map, since {@link #forget} is called from other
+ * threads. When a policy suppresses an event, no action is taken for it and
+ * the policies after it never see it, so suppressing policies come first.
+ */
+public interface RemediationPolicy {
+
+    enum Action {
+        /** Start the W3SVC service */
+        START,
+        /** Start stopped application pools and recycle running ones */
+        RECYCLE,
+        /** Tell a person: log, count and notify the configured webhook */
+        ESCALATE;
+
+        /**
+         * Whether the action changes the host. At most one such action runs
+         * per host at a time; escalations are only deduplicated among themselves.
+         */
+        boolean changesHost() {
+            return this != ESCALATE;
+        }
+    }
+
+    enum Verdict { NONE, ACT, SUPPRESS }
+
+    /**
+     * What a policy wants done about one event, and why
+     */
+    record Decision(Verdict verdict, Action action, String reason) {
+
+        private static final Decision NONE = new Decision(Verdict.NONE, null, null);
+
+        static Decision none() {
+            return NONE;
+        }
+
+        static Decision act(Action action, String reason) {
+            return new Decision(Verdict.ACT, action, reason);
+        }
+
+        static Decision suppress(String reason) {
+            return new Decision(Verdict.SUPPRESS, null, reason);
+        }
+    }
+
+    /**
+     * Short name used in logs, metrics and the remediation history
+     */
+    String name();
+
+    Decision evaluate(MonitorEvent event);
+
+    /**
+     * Drop any state kept for a host that is no longer monitored
+     */
+    default void forget(String host) {
+    }
+}
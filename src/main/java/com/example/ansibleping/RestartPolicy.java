@@ -0,0 +1,43 @@
+package com.example.ansibleping;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+/**
+ * Starts IIS on a reachable host where it is not running, unless the host's
+ * restart breaker ({@link HostSchedule}) is open after repeated failures.
+ * Nothing is tried on an unreachable host.
+ */
+@Component
+@Order(300)
+@ConditionalOnProperty(name = "iis.remediation.restart.enabled", havingValue = "true", matchIfMissing = true)
+public class RestartPolicy implements RemediationPolicy {
+
+    private static final Logger logger = LoggerFactory.getLogger(RestartPolicy.class);
+
+    @Autowired
+    private AnsibleMetrics metrics;
+
+    @Override
+    public String name() {
+        return "restart";
+    }
+
+    @Override
+    public Decision evaluate(MonitorEvent event) {
+        if (event.state() == ServiceState.RUNNING || event.isUnreachable()) {
+            return Decision.none();
+        }
+        if (!event.schedule().allowRestart(System.currentTimeMillis())) {
+            logger.warn("IIS is not running on {} but automatic restarts are suspended after repeated failures",
+                    event.host());
+            metrics.recordAutoRestart(event.host(), "suppressed");
+            return Decision.none();
+        }
+        return Decision.act(Action.START, "IIS is " + event.state());
+    }
+}
@@ -0,0 +1,13 @@
+package com.example.ansibleping;
+
+/**
+ * Outcome of running a script on one host. {@code status} is REACHABLE when
+ * the script ran to completion, otherwise it says why it did not (UNREACHABLE,
+ * FAILED, TIMED_OUT, ...); {@code stdout} is what the script printed, or null.
+ */
+public record ScriptResult(ServiceStatus status, String stdout) {
+
+    public boolean succeeded() {
+        return status.state() == ServiceState.REACHABLE;
+    }
+}
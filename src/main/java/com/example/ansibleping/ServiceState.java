@@ -0,0 +1,40 @@
+package com.example.ansibleping;
+
+/**
+ * Outcome of a service query or action on one host
+ */
+public enum ServiceState {
+    RUNNING,
+    STOPPED,
+    PAUSED,
+    PENDING,
+    /** The host answered a ping; no service state was asked for */
+    REACHABLE,
+    UNREACHABLE,
+    FAILED,
+    /** The operation was killed after running past its deadline */
+    TIMED_OUT,
+    /** The output exceeded the capture limit and could not be parsed */
+    TRUNCATED,
+    UNKNOWN;
+
+    /**
+     * Map a Windows service state as reported by win_service
+     * ({@code running}, {@code stopped}, {@code start_pending}, ...)
+     */
+    public static ServiceState fromWindowsState(String state) {
+        if (state == null) {
+            return UNKNOWN;
+        }
+        switch (state) {
+            case "running":
+                return RUNNING;
+            case "stopped":
+                return STOPPED;
+            case "paused":
+                return PAUSED;
+            default:
+                return state.endsWith("_pending") ? PENDING : UNKNOWN;
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package com.example.ansibleping;
+
+/**
+ * Typed result of one module run on one host.
+ * {@code startMode} and {@code pid} are null when the module did not report them;
+ * only the WinRM executor reports a PID.
+ */
+public record ServiceStatus(String host, ServiceState state, boolean changed, String startMode,
+                            Integer pid, long durationMillis, String message) {
+
+    public static ServiceStatus of(String host, ServiceState state, String message) {
+        return new ServiceStatus(host, state, false, null, null, 0, message);
+    }
+
+    /**
+     * Whether the module itself succeeded, whatever state the service is in
+     */
+    public boolean succeeded() {
+        switch (state) {
+            case RUNNING:
+            case STOPPED:
+            case PAUSED:
+            case PENDING:
+            case REACHABLE:
+                return true;
+            default:
+                return false;
+        }
+    }
+}
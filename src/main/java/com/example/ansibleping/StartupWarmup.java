@@ -0,0 +1,148 @@
+package com.example.ansibleping;
+
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Gets the application ready for its first checks and reports how long
+ * after JVM start the first one succeeded.
+ *
+ * <p>While the rest of the context is still starting, a background thread
+ * warms up the command executor ({@link CommandExecutor#warmUp}) for the
+ * first {@code startup.warmup.max-hosts} monitored hosts. With lazy bean
+ * initialization (the {@code fast-start} profile) a second one creates the
+ * beans nothing has needed yet once the application is ready, so the first
+ * API call does not pay for them either. Neither holds up the monitor.
+ */
+@Component
+public class StartupWarmup {
+
+    private static final Logger logger = LoggerFactory.getLogger(StartupWarmup.class);
+
+    @Autowired
+    private CommandExecutor commandExecutor;
+
+    @Autowired
+    private Inventory inventory;
+
+    @Autowired
+    private AnsibleMetrics metrics;
+
+    @Autowired
+    private ConfigurableListableBeanFactory beanFactory;
+
+    @Value("${startup.warmup.enabled:true}")
+    private boolean enabled;
+
+    @Value("${startup.warmup.max-hosts:32}")
+    private int maxHosts;
+
+    @Value("${spring.main.lazy-initialization:false}")
+    private boolean lazyInitialization;
+
+    private final long jvmStartedAt = ManagementFactory.getRuntimeMXBean().getStartTime();
+
+    private volatile long readyAfterMillis = -1;
+    private volatile long firstCheckAfterMillis = -1;
+
+    public StartupWarmup() {
+    }
+
+    StartupWarmup(CommandExecutor commandExecutor, Inventory inventory, AnsibleMetrics metrics, boolean enabled,
+                  int maxHosts) {
+        this.commandExecutor = commandExecutor;
+        this.inventory = inventory;
+        this.metrics = metrics;
+        this.enabled = enabled;
+        this.maxHosts = maxHosts;
+        init();
+    }
+
+    @PostConstruct
+    void init() {
+        metrics.timeGauge("iis.monitor.first.check.time", "Time from JVM start to the first successful IIS check",
+                this, warmup -> warmup.firstCheckAfterMillis >= 0 ? warmup.firstCheckAfterMillis : Double.NaN);
+        if (enabled) {
+            List<Target> targets = inventory.targets();
+            List<Target> warmed = targets.subList(0, Math.min(maxHosts, targets.size()));
+            Thread.ofPlatform().name("startup-warmup").daemon().start(() -> warmUp(warmed));
+        }
+    }
+
+    @EventListener
+    public void onReady(ApplicationReadyEvent event) {
+        readyAfterMillis = System.currentTimeMillis() - jvmStartedAt;
+        logger.info("Application ready {} ms after JVM start", readyAfterMillis);
+        if (enabled && lazyInitialization) {
+            Thread.ofPlatform().name("startup-beans").daemon().start(this::createRemainingBeans);
+        }
+    }
+
+    /**
+     * Record the result of a monitor check. The first one that got a service
+     * state back from its host is reported as the time to first successful check.
+     */
+    public void recordCheck(ServiceStatus status) {
+        if (firstCheckAfterMillis >= 0 || !answered(status.state())) {
+            return;
+        }
+        synchronized (this) {
+            if (firstCheckAfterMillis >= 0) {
+                return;
+            }
+            firstCheckAfterMillis = System.currentTimeMillis() - jvmStartedAt;
+        }
+        long ready = readyAfterMillis;
+        logger.info("First successful IIS check ({} is {}) {} ms after JVM start, {}", status.host(), status.state(),
+                firstCheckAfterMillis,
+                ready < 0 ? "before the application was ready" : "application ready after " + ready + " ms");
+    }
+
+    private void warmUp(List<Target> targets) {
+        long start = System.nanoTime();
+        try {
+            commandExecutor.warmUp(targets);
+        } catch (RuntimeException e) {
+            logger.warn("Warm-up of the command executor failed: {}", e.getMessage(), e);
+        }
+        logger.info("Command executor warmed up in {} ms", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    private void createRemainingBeans() {
+        long start = System.nanoTime();
+        int created = 0;
+        for (String name : beanFactory.getBeanDefinitionNames()) {
+            BeanDefinition definition = beanFactory.getBeanDefinition(name);
+            if (!definition.isSingleton() || definition.isAbstract() || beanFactory.containsSingleton(name)) {
+                continue;
+            }
+            try {
+                beanFactory.getBean(name);
+                created++;
+            } catch (BeansException e) {
+                logger.debug("Bean {} not created ahead of use: {}", name, e.getMessage());
+            }
+        }
+        logger.info("Created {} lazily initialized beans in {} ms", created,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    // The host answered with a service state, as opposed to not being reached or not making sense
+    private static boolean answered(ServiceState state) {
+        return state == ServiceState.RUNNING || state == ServiceState.STOPPED || state == ServiceState.PAUSED
+                || state == ServiceState.PENDING;
+    }
+}
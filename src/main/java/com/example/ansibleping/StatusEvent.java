@@ -0,0 +1,9 @@
+package com.example.ansibleping;
+
+/**
+ * Latest known IIS state of a monitored host, as pushed to live status subscribers.
+ * {@code changedAt} is when the host entered this state.
+ */
+public record StatusEvent(String host, ServiceState state, String description, ServiceStatus status,
+                          long changedAt) {
+}
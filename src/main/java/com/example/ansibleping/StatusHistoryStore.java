@@ -0,0 +1,472 @@
+package com.example.ansibleping;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Embedded history of IIS checks and auto-restarts per host. Records are
+ * appended to memory-mapped, fixed-width segment files, one or more per UTC
+ * day, so a range query only maps the days it covers and binary-searches to
+ * its start. Days older than {@code iis.history.downsample-after-days} are
+ * rewritten as one record per host and bucket, and days older than
+ * {@code iis.history.retention-days} are deleted.
+ */
+@Component
+public class StatusHistoryStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(StatusHistoryStore.class);
+
+    private static final Pattern SEGMENT_NAME = Pattern.compile("(\\d{8})-(\\d{3}|ds)\\.seg");
+    private static final String HOSTS_FILE = "hosts.txt";
+
+    @Value("${iis.history.dir:data/history}")
+    private String directory;
+
+    @Value("${iis.history.segment-records:262144}")
+    private int segmentRecords;
+
+    @Value("${iis.history.retention-days:90}")
+    private int retentionDays;
+
+    @Value("${iis.history.downsample-after-days:7}")
+    private int downsampleAfterDays;
+
+    @Value("${iis.history.downsample-bucket-ms:3600000}")
+    private long bucketMillis;
+
+    @Value("${iis.history.max-query-records:10000}")
+    private int maxQueryRecords;
+
+    // Null when the directory could not be opened; recording is then skipped
+    private volatile Path dir;
+
+    // Host names are stored once and records refer to them by line number in hosts.txt
+    private final Map<String, Integer> hostIds = new ConcurrentHashMap<>();
+
+    // Every segment in time order; replaced as a whole under the lock
+    private volatile List<Segment> segments = List.of();
+
+    // Segment currently appended to; guarded by "this"
+    private Segment active;
+    private long lastTimestamp;
+
+    public StatusHistoryStore() {
+    }
+
+    StatusHistoryStore(String directory, int segmentRecords, int retentionDays, int downsampleAfterDays,
+                       long bucketMillis, int maxQueryRecords) {
+        this.directory = directory;
+        this.segmentRecords = segmentRecords;
+        this.retentionDays = retentionDays;
+        this.downsampleAfterDays = downsampleAfterDays;
+        this.bucketMillis = bucketMillis;
+        this.maxQueryRecords = maxQueryRecords;
+        init();
+    }
+
+    @PostConstruct
+    void init() {
+        try {
+            Path path = Paths.get(directory);
+            Files.createDirectories(path);
+            Path hosts = path.resolve(HOSTS_FILE);
+            if (Files.exists(hosts)) {
+                for (String host : Files.readAllLines(hosts, StandardCharsets.UTF_8)) {
+                    hostIds.putIfAbsent(host, hostIds.size());
+                }
+            }
+            List<Segment> loaded = new ArrayList<>();
+            try (Stream<Path> files = Files.list(path)) {
+                for (Path file : files.sorted().toList()) {
+                    Matcher name = SEGMENT_NAME.matcher(file.getFileName().toString());
+                    if (!name.matches()) {
+                        continue;
+                    }
+                    try {
+                        loaded.add(new Segment(LocalDate.parse(name.group(1), DateTimeFormatter.BASIC_ISO_DATE),
+                                "ds".equals(name.group(2)), HistorySegment.open(file)));
+                    } catch (IOException e) {
+                        logger.warn("Skipping unreadable history segment {}: {}", file, e.getMessage());
+                    }
+                }
+            }
+            segments = List.copyOf(loaded);
+            // Keep appending to today's last segment after a restart
+            LocalDate today = day(System.currentTimeMillis());
+            for (Segment segment : loaded) {
+                if (!segment.downsampled && segment.day.equals(today)) {
+                    active = segment;
+                }
+            }
+            if (active != null && active.data.count() > 0) {
+                lastTimestamp = active.data.timestamp(active.data.count() - 1);
+            }
+            dir = path;
+            long records = loaded.stream().mapToLong(segment -> segment.data.count()).sum();
+            logger.info("IIS status history opened at {} with {} segments and {} records", path.toAbsolutePath(),
+                    loaded.size(), records);
+        } catch (IOException e) {
+            logger.error("Could not open IIS status history at {} - history is disabled: {}", directory, e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    void close() {
+        segments.forEach(segment -> segment.data.force());
+    }
+
+    /**
+     * Store the outcome of a status check
+     */
+    public void recordCheck(ServiceStatus status) {
+        boolean up = status.state() == ServiceState.RUNNING;
+        append(status, status.succeeded() ? HistorySegment.FLAG_SUCCEEDED : 0, 1, up ? 1 : 0);
+    }
+
+    /**
+     * Store an automatic restart attempt; it does not count towards uptime
+     */
+    public void recordRestart(ServiceStatus status) {
+        int flags = HistorySegment.FLAG_RESTART | (status.succeeded() ? HistorySegment.FLAG_SUCCEEDED : 0);
+        append(status, flags, 0, 0);
+    }
+
+    private synchronized void append(ServiceStatus status, int flags, int samples, int upSamples) {
+        if (dir == null) {
+            return;
+        }
+        // Keep each segment sorted even if the wall clock steps back
+        long now = Math.max(System.currentTimeMillis(), lastTimestamp);
+        try {
+            int hostId = hostId(status.host());
+            int duration = (int) Math.min(Integer.MAX_VALUE, status.durationMillis());
+            Segment segment = writableSegment(day(now));
+            if (!segment.data.append(now, hostId, duration, status.state(), flags, samples, upSamples)) {
+                throw new IllegalStateException("New history segment is already full");
+            }
+            lastTimestamp = now;
+        } catch (IOException e) {
+            logger.warn("Could not record IIS status history for {}: {}", status.host(), e.getMessage());
+        }
+    }
+
+    private int hostId(String host) throws IOException {
+        Integer id = hostIds.get(host);
+        if (id != null) {
+            return id;
+        }
+        Files.writeString(dir.resolve(HOSTS_FILE), host + "\n", StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        int newId = hostIds.size();
+        hostIds.put(host, newId);
+        return newId;
+    }
+
+    private Segment writableSegment(LocalDate day) throws IOException {
+        if (active != null && active.day.equals(day) && !active.data.isFull()) {
+            return active;
+        }
+        int sequence = 0;
+        for (Segment segment : segments) {
+            if (segment.day.equals(day) && !segment.downsampled) {
+                sequence++;
+            }
+        }
+        Path file = dir.resolve(String.format("%s-%03d.seg", day.format(DateTimeFormatter.BASIC_ISO_DATE), sequence));
+        active = new Segment(day, false, HistorySegment.create(file, segmentRecords));
+        List<Segment> updated = new ArrayList<>(segments);
+        updated.add(active);
+        updated.sort(Comparator.comparing(segment -> segment.data.path().getFileName()));
+        segments = List.copyOf(updated);
+        return active;
+    }
+
+    /**
+     * Get the most recent records of a host in [from, to), oldest first,
+     * limited to {@code iis.history.max-query-records}
+     */
+    public List<HistoryRecord> query(String host, long from, long to) {
+        Integer hostId = hostIds.get(host);
+        if (hostId == null) {
+            return List.of();
+        }
+        ArrayDeque<HistoryRecord> latest = new ArrayDeque<>();
+        scan(hostId, from, to, (data, i) -> {
+            if (latest.size() == maxQueryRecords) {
+                latest.removeFirst();
+            }
+            int flags = data.flags(i);
+            latest.addLast(new HistoryRecord(host, data.timestamp(i), data.state(i),
+                    (flags & HistorySegment.FLAG_RESTART) != 0, (flags & HistorySegment.FLAG_SUCCEEDED) != 0,
+                    data.durationMillis(i), data.samples(i), data.upSamples(i)));
+        });
+        return new ArrayList<>(latest);
+    }
+
+    /**
+     * Compute uptime, outage and restart figures for a host over [from, to)
+     */
+    public HistoryReport report(String host, long from, long to) {
+        ReportBuilder builder = new ReportBuilder();
+        Integer hostId = hostIds.get(host);
+        if (hostId != null) {
+            scan(hostId, from, to, builder);
+        }
+        return builder.build(host, from, to);
+    }
+
+    private void scan(int hostId, long from, long to, RecordVisitor visitor) {
+        LocalDate firstDay = day(from);
+        LocalDate lastDay = day(Math.max(from, to - 1));
+        for (Segment segment : segments) {
+            if (segment.day.isBefore(firstDay) || segment.day.isAfter(lastDay)) {
+                continue;
+            }
+            HistorySegment data = segment.data;
+            int count = data.count();
+            for (int i = data.firstIndexAtOrAfter(from); i < count; i++) {
+                if (data.timestamp(i) >= to) {
+                    break;
+                }
+                if (data.hostId(i) == hostId) {
+                    visitor.visit(data, i);
+                }
+            }
+        }
+    }
+
+    /**
+     * Delete days past retention and downsample days past the downsampling age
+     */
+    @Scheduled(fixedDelayString = "${iis.history.maintenance-ms:3600000}", initialDelayString = "${iis.history.maintenance-initial-delay-ms:60000}")
+    public void maintain() {
+        if (dir == null) {
+            return;
+        }
+        LocalDate today = day(System.currentTimeMillis());
+        LocalDate expireBefore = today.minusDays(retentionDays);
+        LocalDate downsampleBefore = today.minusDays(downsampleAfterDays);
+
+        TreeSet<LocalDate> toDownsample = new TreeSet<>();
+        synchronized (this) {
+            List<Segment> kept = new ArrayList<>();
+            for (Segment segment : segments) {
+                if (segment.day.isBefore(expireBefore)) {
+                    delete(segment);
+                } else {
+                    kept.add(segment);
+                    if (!segment.downsampled && segment.day.isBefore(downsampleBefore)) {
+                        toDownsample.add(segment.day);
+                    }
+                }
+            }
+            if (kept.size() != segments.size()) {
+                logger.info("Deleted {} IIS status history segments older than {}", segments.size() - kept.size(),
+                        expireBefore);
+                segments = List.copyOf(kept);
+            }
+        }
+
+        for (LocalDate day : toDownsample) {
+            try {
+                downsample(day);
+            } catch (IOException e) {
+                logger.warn("Could not downsample IIS status history of {}: {}", day, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Rewrite every segment of a past day as one record per host and bucket.
+     * Restart records are kept as they are.
+     */
+    private void downsample(LocalDate day) throws IOException {
+        List<Segment> sources = segments.stream().filter(segment -> segment.day.equals(day)).toList();
+        long dayStart = day.atStartOfDay(ZoneOffset.UTC).toInstant().toEpochMilli();
+
+        Map<Long, Bucket> buckets = new HashMap<>();
+        List<Bucket> output = new ArrayList<>();
+        long inputRecords = 0;
+        for (Segment segment : sources) {
+            HistorySegment data = segment.data;
+            int count = data.count();
+            inputRecords += count;
+            for (int i = 0; i < count; i++) {
+                long timestamp = data.timestamp(i);
+                int hostId = data.hostId(i);
+                if ((data.flags(i) & HistorySegment.FLAG_RESTART) != 0) {
+                    output.add(new Bucket(hostId, timestamp, data, i));
+                    continue;
+                }
+                long bucketIndex = (timestamp - dayStart) / bucketMillis;
+                long key = ((long) hostId << 32) | bucketIndex;
+                Bucket bucket = buckets.get(key);
+                if (bucket == null) {
+                    bucket = new Bucket(hostId, dayStart + bucketIndex * bucketMillis, data, i);
+                    buckets.put(key, bucket);
+                    output.add(bucket);
+                } else {
+                    bucket.add(data, i);
+                }
+            }
+        }
+        output.sort(Comparator.comparingLong(bucket -> bucket.timestamp));
+
+        String name = day.format(DateTimeFormatter.BASIC_ISO_DATE) + "-ds.seg";
+        Path temp = dir.resolve(name + ".tmp");
+        Files.deleteIfExists(temp);
+        HistorySegment written = HistorySegment.create(temp, Math.max(1, output.size()));
+        for (Bucket bucket : output) {
+            written.append(bucket.timestamp, bucket.hostId, (int) (bucket.durationSum / Math.max(1, bucket.samples)),
+                    bucket.state, bucket.flags, bucket.samples, bucket.upSamples);
+        }
+        written.force();
+
+        synchronized (this) {
+            Path target = dir.resolve(name);
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            Segment downsampled = new Segment(day, true, HistorySegment.open(target));
+            List<Segment> updated = new ArrayList<>();
+            for (Segment segment : segments) {
+                if (!segment.day.equals(day)) {
+                    updated.add(segment);
+                } else if (!segment.downsampled) {
+                    delete(segment);
+                }
+            }
+            updated.add(downsampled);
+            updated.sort(Comparator.comparing(segment -> segment.data.path().getFileName()));
+            segments = List.copyOf(updated);
+        }
+        logger.info("Downsampled IIS status history of {} from {} to {} records", day, inputRecords, output.size());
+    }
+
+    private static void delete(Segment segment) {
+        try {
+            Files.deleteIfExists(segment.data.path());
+        } catch (IOException e) {
+            logger.warn("Could not delete history segment {}: {}", segment.data.path(), e.getMessage());
+        }
+    }
+
+    private static LocalDate day(long epochMillis) {
+        return LocalDate.ofInstant(Instant.ofEpochMilli(epochMillis), ZoneOffset.UTC);
+    }
+
+    @FunctionalInterface
+    private interface RecordVisitor {
+        void visit(HistorySegment data, int index);
+    }
+
+    private record Segment(LocalDate day, boolean downsampled, HistorySegment data) {
+    }
+
+    /**
+     * Checks of one host folded into one record
+     */
+    private static final class Bucket {
+        private final int hostId;
+        private final long timestamp;
+        private final int flags;
+        private ServiceState state;
+        private int samples;
+        private int upSamples;
+        private long durationSum;
+
+        Bucket(int hostId, long timestamp, HistorySegment data, int index) {
+            this.hostId = hostId;
+            this.timestamp = timestamp;
+            this.flags = data.flags(index);
+            this.state = data.state(index);
+            this.samples = data.samples(index);
+            this.upSamples = data.upSamples(index);
+            this.durationSum = (long) data.durationMillis(index) * Math.max(1, samples);
+        }
+
+        void add(HistorySegment data, int index) {
+            state = data.state(index);
+            samples += data.samples(index);
+            upSamples += data.upSamples(index);
+            durationSum += (long) data.durationMillis(index) * data.samples(index);
+        }
+    }
+
+    /**
+     * Folds a host's records, in time order, into a report without allocating per record
+     */
+    private static final class ReportBuilder implements RecordVisitor {
+        private long checks;
+        private long upChecks;
+        private long durationSum;
+        private int outages;
+        private long downtime;
+        private long outageStart = -1;
+        private int restarts;
+        private int failedRestarts;
+
+        @Override
+        public void visit(HistorySegment data, int index) {
+            int flags = data.flags(index);
+            if ((flags & HistorySegment.FLAG_RESTART) != 0) {
+                restarts++;
+                if ((flags & HistorySegment.FLAG_SUCCEEDED) == 0) {
+                    failedRestarts++;
+                }
+                return;
+            }
+            int samples = data.samples(index);
+            int up = data.upSamples(index);
+            checks += samples;
+            upChecks += up;
+            durationSum += (long) data.durationMillis(index) * samples;
+
+            long timestamp = data.timestamp(index);
+            // A downsampled bucket is down when most of its checks were
+            if (up * 2 < samples) {
+                if (outageStart < 0) {
+                    outageStart = timestamp;
+                }
+            } else if (outageStart >= 0) {
+                outages++;
+                downtime += timestamp - outageStart;
+                outageStart = -1;
+            }
+        }
+
+        HistoryReport build(String host, long from, long to) {
+            return new HistoryReport(host, from, to, checks,
+                    checks == 0 ? 0 : upChecks * 100.0 / checks,
+                    checks == 0 ? 0 : durationSum / checks,
+                    outages, outages == 0 ? -1 : downtime / outages, outageStart,
+                    restarts, failedRestarts);
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package com.example.ansibleping;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * A Windows host to manage, together with the WinRM credentials used to reach it
+ */
+public record Target(String host, String user, String pass) {
+
+    /**
+     * Identify host and credentials without exposing the password, so state
+     * obtained with one set of credentials is never handed to a caller with another
+     */
+    public String credentialKey() {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(pass.getBytes(StandardCharsets.UTF_8));
+            return user + "@" + host + "#" + HexFormat.of().formatHex(digest, 0, 8);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Keep the password out of log lines and error messages
+     */
+    @Override
+    public String toString() {
+        return "Target[host=" + host + ", user=" + user + "]";
+    }
+}
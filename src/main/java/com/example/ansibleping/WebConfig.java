@@ -0,0 +1,25 @@
+package com.example.ansibleping;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.CorsRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/**
+ * Cross-origin access: other sites may read status, but only the bundled
+ * UI, which is served from the same origin, may change anything. Otherwise
+ * any page a user visits could start, stop or reconfigure their hosts.
+ */
+@Configuration
+public class WebConfig implements WebMvcConfigurer {
+
+    @Value("${api.cors.allowed-origins:*}")
+    private String[] allowedOrigins;
+
+    @Override
+    public void addCorsMappings(CorsRegistry registry) {
+        registry.addMapping("/**")
+                .allowedOrigins(allowedOrigins)
+                .allowedMethods("GET", "HEAD");
+    }
+}
@@ -0,0 +1,220 @@
+package com.example.ansibleping;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Executes commands as PowerShell over pooled WinRM sessions instead of
+ * forking {@code ansible}. Only the modules this application uses
+ * ({@code win_ping} and {@code win_service}) are supported.
+ */
+@Component
+@ConditionalOnProperty(name = "ansible.executor", havingValue = "winrm")
+public class WinRmCommandExecutor implements CommandExecutor {
+
+    private static final Logger logger = LoggerFactory.getLogger(WinRmCommandExecutor.class);
+
+    @Autowired
+    private WinRmSessionPool sessionPool;
+
+    @Autowired
+    private AnsibleMetrics metrics;
+
+    public WinRmCommandExecutor() {
+    }
+
+    WinRmCommandExecutor(WinRmSessionPool sessionPool, AnsibleMetrics metrics) {
+        this.sessionPool = sessionPool;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public ServiceStatus execute(AnsibleCommand command) {
+        Target target = command.target();
+        String script;
+        try {
+            script = toPowerShell(command);
+        } catch (IllegalArgumentException e) {
+            return ServiceStatus.of(target.host(), ServiceState.FAILED, e.getMessage());
+        }
+
+        long start = System.nanoTime();
+        ScriptResult result = run(target, script, command.timeout(), start);
+        ServiceStatus status = result.succeeded()
+                ? toStatus(target.host(), parseKeyValues(result.stdout()), result.status().durationMillis())
+                : result.status();
+        metrics.recordWinRm(command.operation(), target.host(), status.state().name(), System.nanoTime() - start);
+        return status;
+    }
+
+    /**
+     * Open a pooled session to each target in parallel, so the first checks
+     * find a shell ready instead of paying for the handshake
+     */
+    @Override
+    public void warmUp(List<Target> targets) {
+        long start = System.nanoTime();
+        try (ExecutorService openers = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (Target target : targets) {
+                openers.execute(() -> {
+                    try {
+                        sessionPool.release(sessionPool.acquire(target));
+                    } catch (IOException e) {
+                        logger.debug("Could not open a WinRM session to {} ahead of time: {}", target.host(),
+                                e.getMessage());
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                });
+            }
+        }
+        logger.info("Opened WinRM sessions to {} hosts in {} ms ({} idle)", targets.size(),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), sessionPool.getIdleSessionCount());
+    }
+
+    @Override
+    public void forget(String host) {
+        sessionPool.closeIdle(host);
+    }
+
+    @Override
+    public ScriptResult runScript(Target target, String operation, String script, Duration timeout) {
+        long start = System.nanoTime();
+        ScriptResult result = run(target, script, timeout, start);
+        metrics.recordWinRm(operation, target.host(), result.status().state().name(), System.nanoTime() - start);
+        return result;
+    }
+
+    /**
+     * Run a script on a pooled session. The status is REACHABLE when the
+     * script completed with exit code 0, otherwise it says what went wrong.
+     */
+    private ScriptResult run(Target target, String script, Duration timeout, long start) {
+        WinRmSession session;
+        try {
+            session = sessionPool.acquire(target);
+        } catch (IOException e) {
+            return failure(target, ServiceState.UNREACHABLE, e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return failure(target, ServiceState.UNKNOWN, "Error: " + e.getMessage());
+        }
+
+        try {
+            WinRmSession.Result result = session.runPowerShell(script, timeout);
+            sessionPool.release(session);
+            long durationMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            if (result.truncated()) {
+                return new ScriptResult(new ServiceStatus(target.host(), ServiceState.TRUNCATED, false, null, null,
+                        durationMillis, "Output exceeded the capture limit"), null);
+            }
+            if (result.exitCode() != 0) {
+                return new ScriptResult(new ServiceStatus(target.host(), ServiceState.FAILED, false, null, null,
+                        durationMillis, result.stderr().trim()), result.stdout());
+            }
+            return new ScriptResult(new ServiceStatus(target.host(), ServiceState.REACHABLE, false, null, null,
+                    durationMillis, null), result.stdout());
+        } catch (WinRmSession.DeadlineExceededException e) {
+            sessionPool.discard(session);
+            return failure(target, ServiceState.TIMED_OUT, e.getMessage());
+        } catch (IOException e) {
+            logger.debug("WinRM session to {} failed: {}", target.host(), e.getMessage());
+            sessionPool.discard(session);
+            return failure(target, ServiceState.UNREACHABLE, e.getMessage());
+        } catch (InterruptedException e) {
+            sessionPool.discard(session);
+            Thread.currentThread().interrupt();
+            return failure(target, ServiceState.UNKNOWN, "Error: " + e.getMessage());
+        }
+    }
+
+    private static ScriptResult failure(Target target, ServiceState state, String message) {
+        return new ScriptResult(ServiceStatus.of(target.host(), state, message), null);
+    }
+
+    /**
+     * Translate a module invocation into a PowerShell script that prints key=value lines
+     */
+    String toPowerShell(AnsibleCommand command) {
+        Map<String, String> args = parseModuleArgs(command.moduleArgs());
+        switch (command.module()) {
+            case "win_ping":
+                return "'changed=False'; 'ping=pong'";
+            case "win_service":
+                String name = args.get("name");
+                if (name == null) {
+                    throw new IllegalArgumentException("win_service requires a name");
+                }
+                return serviceScript(name, args.getOrDefault("state", ""));
+            default:
+                throw new IllegalArgumentException("Module " + command.module() + " is not supported by the WinRM executor");
+        }
+    }
+
+    private static String serviceScript(String name, String state) {
+        String quotedName = "'" + name.replace("'", "''") + "'";
+        return String.join("\n",
+            "$ErrorActionPreference = 'Stop'",
+            "$name = " + quotedName,
+            "$svc = Get-CimInstance -ClassName Win32_Service -Filter \"Name='$name'\"",
+            "if (-not $svc) { throw \"Service $name was not found\" }",
+            "$changed = $false",
+            "switch ('" + state.replace("'", "''") + "') {",
+            "  'started'   { if ($svc.State -ne 'Running') { Start-Service -Name $name; $changed = $true } }",
+            "  'stopped'   { if ($svc.State -ne 'Stopped') { Stop-Service -Name $name -Force; $changed = $true } }",
+            "  'restarted' { Restart-Service -Name $name -Force; $changed = $true }",
+            "}",
+            "if ($changed) { $svc = Get-CimInstance -ClassName Win32_Service -Filter \"Name='$name'\" }",
+            "\"changed=$changed\"",
+            "\"name=$($svc.Name)\"",
+            "\"state=$(($svc.State -replace ' ', '_').ToLower())\"",
+            "\"start_mode=$($svc.StartMode.ToLower())\"",
+            "\"process_id=$($svc.ProcessId)\"");
+    }
+
+    private static Map<String, String> parseModuleArgs(String moduleArgs) {
+        Map<String, String> args = new LinkedHashMap<>();
+        if (moduleArgs != null) {
+            for (String token : moduleArgs.trim().split("\\s+")) {
+                int eq = token.indexOf('=');
+                if (eq > 0) {
+                    args.put(token.substring(0, eq), token.substring(eq + 1));
+                }
+            }
+        }
+        return args;
+    }
+
+    private static Map<String, String> parseKeyValues(String stdout) {
+        Map<String, String> values = new LinkedHashMap<>();
+        for (String line : stdout.split("\\r?\\n")) {
+            int eq = line.indexOf('=');
+            if (eq > 0) {
+                values.put(line.substring(0, eq).trim(), line.substring(eq + 1).trim());
+            }
+        }
+        return values;
+    }
+
+    private static ServiceStatus toStatus(String host, Map<String, String> values, long durationMillis) {
+        ServiceState state = values.containsKey("state")
+                ? ServiceState.fromWindowsState(values.get("state"))
+                : "pong".equals(values.get("ping")) ? ServiceState.REACHABLE : ServiceState.UNKNOWN;
+        String pid = values.get("process_id");
+        return new ServiceStatus(host, state, "True".equals(values.get("changed")), values.get("start_mode"),
+                pid == null || pid.isEmpty() || "0".equals(pid) ? null : Integer.valueOf(pid),
+                durationMillis, null);
+    }
+}
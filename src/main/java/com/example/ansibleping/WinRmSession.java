@@ -0,0 +1,257 @@
+package com.example.ansibleping;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * An open WinRM remote shell on one host. Commands run sequentially in the
+ * same shell, so the WS-Management handshake and shell creation are paid
+ * once per session instead of once per command.
+ */
+public class WinRmSession implements AutoCloseable {
+
+    private static final String NS_SOAP = "http://www.w3.org/2003/05/soap-envelope";
+    private static final String NS_ADDRESSING = "http://schemas.xmlsoap.org/ws/2004/08/addressing";
+    private static final String NS_WSMAN = "http://schemas.dmtf.org/wbem/wsman/1/wsman.xsd";
+    private static final String NS_SHELL = "http://schemas.microsoft.com/wbem/wsman/1/windows/shell";
+    private static final String RESOURCE_CMD = "http://schemas.microsoft.com/wbem/wsman/1/windows/shell/cmd";
+
+    private static final String ACTION_CREATE = "http://schemas.xmlsoap.org/ws/2004/09/transfer/Create";
+    private static final String ACTION_DELETE = "http://schemas.xmlsoap.org/ws/2004/09/transfer/Delete";
+    private static final String ACTION_COMMAND = NS_SHELL + "/Command";
+    private static final String ACTION_RECEIVE = NS_SHELL + "/Receive";
+    private static final String ACTION_SIGNAL = NS_SHELL + "/Signal";
+    private static final String SIGNAL_TERMINATE = NS_SHELL + "/signal/terminate";
+
+    private static final Pattern SHELL_ID = Pattern.compile("<(?:\\w+:)?ShellId>([^<]+)</");
+    private static final Pattern COMMAND_ID = Pattern.compile("<(?:\\w+:)?CommandId>([^<]+)</");
+    private static final Pattern STREAM = Pattern.compile(
+            "<(?:\\w+:)?Stream[^>]*Name=\"(stdout|stderr)\"[^>]*?(?:/>|>([^<]*)</(?:\\w+:)?Stream>)");
+    private static final Pattern EXIT_CODE = Pattern.compile("<(?:\\w+:)?ExitCode>(-?\\d+)</");
+    private static final String STATE_DONE = "CommandState/Done";
+    // WSManFault code returned when a Receive finds no output within the operation timeout
+    private static final String RECEIVE_TIMED_OUT = "2150858793";
+
+    private final HttpClient httpClient;
+    private final URI endpoint;
+    private final String authorization;
+    private final Duration operationTimeout;
+    private final String host;
+    private final String key;
+    private final int maxOutputBytes;
+    private final String shellId;
+    private volatile long lastUsed = System.nanoTime();
+
+    WinRmSession(HttpClient httpClient, URI endpoint, Target target, Duration operationTimeout, String key,
+                 int maxOutputBytes) throws IOException, InterruptedException {
+        this.httpClient = httpClient;
+        this.endpoint = endpoint;
+        this.authorization = "Basic " + Base64.getEncoder().encodeToString(
+                (target.user() + ":" + target.pass()).getBytes(StandardCharsets.UTF_8));
+        this.operationTimeout = operationTimeout;
+        this.host = target.host();
+        this.key = key;
+        this.maxOutputBytes = maxOutputBytes;
+        this.shellId = openShell();
+    }
+
+    /**
+     * Run a PowerShell script in this shell and wait for it to finish.
+     * The command is terminated if it has not finished within the timeout.
+     */
+    public Result runPowerShell(String script, Duration timeout) throws IOException, InterruptedException {
+        lastUsed = System.nanoTime();
+        long deadline = lastUsed + timeout.toNanos();
+        String encoded = Base64.getEncoder().encodeToString(script.getBytes(StandardCharsets.UTF_16LE));
+        String body = "<rsp:CommandLine><rsp:Command>powershell.exe</rsp:Command>"
+                + "<rsp:Arguments>-NoProfile -NonInteractive -ExecutionPolicy Bypass -EncodedCommand "
+                + encoded + "</rsp:Arguments></rsp:CommandLine>";
+        String options = "<w:OptionSet><w:Option Name=\"WINRS_CONSOLEMODE_STDIN\">TRUE</w:Option>"
+                + "<w:Option Name=\"WINRS_SKIP_CMD_SHELL\">TRUE</w:Option></w:OptionSet>";
+        String response = send(envelope(ACTION_COMMAND, selector() + options, body));
+        String commandId = extract(COMMAND_ID, response, "CommandId");
+
+        try {
+            return receive(commandId, deadline);
+        } finally {
+            lastUsed = System.nanoTime();
+            try {
+                send(envelope(ACTION_SIGNAL, selector(),
+                        "<rsp:Signal CommandId=\"" + commandId + "\"><rsp:Code>" + SIGNAL_TERMINATE + "</rsp:Code></rsp:Signal>"));
+            } catch (IOException ignored) {
+                // The command has already finished; a failed cleanup signal is harmless
+            }
+        }
+    }
+
+    private Result receive(String commandId, long deadline) throws IOException, InterruptedException {
+        // Collect raw bytes: a multibyte character can be split across two chunks
+        ByteArrayOutputStream stdout = new ByteArrayOutputStream();
+        ByteArrayOutputStream stderr = new ByteArrayOutputStream();
+        boolean truncated = false;
+        String body = "<rsp:Receive><rsp:DesiredStream CommandId=\"" + commandId + "\">stdout stderr</rsp:DesiredStream></rsp:Receive>";
+        while (true) {
+            if (System.nanoTime() - deadline > 0) {
+                throw new DeadlineExceededException("Remote command did not finish before its deadline");
+            }
+            // Long-poll no further than the deadline
+            long remainingSeconds = Math.max(1, TimeUnit.NANOSECONDS.toSeconds(deadline - System.nanoTime()));
+            Duration poll = Duration.ofSeconds(Math.min(operationTimeout.toSeconds(), remainingSeconds));
+            String response;
+            try {
+                response = send(envelope(ACTION_RECEIVE, selector(), body, poll), poll);
+            } catch (WinRmFault fault) {
+                if (fault.getMessage().contains(RECEIVE_TIMED_OUT)) {
+                    continue;
+                }
+                throw fault;
+            }
+            Matcher stream = STREAM.matcher(response);
+            while (stream.find()) {
+                if (stream.group(2) != null && !stream.group(2).isEmpty()) {
+                    byte[] chunk = Base64.getDecoder().decode(stream.group(2));
+                    ByteArrayOutputStream target = "stdout".equals(stream.group(1)) ? stdout : stderr;
+                    int room = maxOutputBytes - target.size();
+                    if (chunk.length > room) {
+                        truncated = true;
+                    }
+                    if (room > 0) {
+                        target.write(chunk, 0, Math.min(chunk.length, room));
+                    }
+                }
+            }
+            if (response.contains(STATE_DONE)) {
+                Matcher exitCode = EXIT_CODE.matcher(response);
+                return new Result(exitCode.find() ? Integer.parseInt(exitCode.group(1)) : 0,
+                        stdout.toString(StandardCharsets.UTF_8), stderr.toString(StandardCharsets.UTF_8), truncated);
+            }
+        }
+    }
+
+    private String openShell() throws IOException, InterruptedException {
+        String options = "<w:OptionSet><w:Option Name=\"WINRS_NOPROFILE\">TRUE</w:Option>"
+                + "<w:Option Name=\"WINRS_CODEPAGE\">65001</w:Option></w:OptionSet>";
+        String body = "<rsp:Shell><rsp:InputStreams>stdin</rsp:InputStreams>"
+                + "<rsp:OutputStreams>stdout stderr</rsp:OutputStreams></rsp:Shell>";
+        return extract(SHELL_ID, send(envelope(ACTION_CREATE, options, body)), "ShellId");
+    }
+
+    /**
+     * Delete the remote shell
+     */
+    @Override
+    public void close() {
+        try {
+            send(envelope(ACTION_DELETE, selector(), ""));
+        } catch (IOException e) {
+            // The shell is dropped by the server once its idle timeout expires anyway
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    String host() {
+        return host;
+    }
+
+    String key() {
+        return key;
+    }
+
+    long idleNanos() {
+        return System.nanoTime() - lastUsed;
+    }
+
+    private String selector() {
+        return "<w:SelectorSet><w:Selector Name=\"ShellId\">" + shellId + "</w:Selector></w:SelectorSet>";
+    }
+
+    private String envelope(String action, String extraHeaders, String body) {
+        return envelope(action, extraHeaders, body, operationTimeout);
+    }
+
+    private String envelope(String action, String extraHeaders, String body, Duration timeout) {
+        return "<s:Envelope xmlns:s=\"" + NS_SOAP + "\" xmlns:a=\"" + NS_ADDRESSING + "\" xmlns:w=\"" + NS_WSMAN
+                + "\" xmlns:rsp=\"" + NS_SHELL + "\"><s:Header>"
+                + "<a:To>" + endpoint + "</a:To>"
+                + "<a:ReplyTo><a:Address s:mustUnderstand=\"true\">" + NS_ADDRESSING + "/role/anonymous</a:Address></a:ReplyTo>"
+                + "<w:MaxEnvelopeSize s:mustUnderstand=\"true\">153600</w:MaxEnvelopeSize>"
+                + "<a:MessageID>uuid:" + UUID.randomUUID() + "</a:MessageID>"
+                + "<w:Locale xml:lang=\"en-US\" s:mustUnderstand=\"false\"/>"
+                + "<w:OperationTimeout>PT" + timeout.toSeconds() + "S</w:OperationTimeout>"
+                + "<w:ResourceURI s:mustUnderstand=\"true\">" + RESOURCE_CMD + "</w:ResourceURI>"
+                + "<a:Action s:mustUnderstand=\"true\">" + action + "</a:Action>"
+                + extraHeaders
+                + "</s:Header><s:Body>" + body + "</s:Body></s:Envelope>";
+    }
+
+    private String send(String envelope) throws IOException, InterruptedException {
+        return send(envelope, operationTimeout);
+    }
+
+    private String send(String envelope, Duration timeout) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(endpoint)
+                .timeout(timeout.plusSeconds(10))
+                .header("Content-Type", "application/soap+xml;charset=UTF-8")
+                .header("Authorization", authorization)
+                .POST(HttpRequest.BodyPublishers.ofString(envelope, StandardCharsets.UTF_8))
+                .build();
+        HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
+        if (response.statusCode() == 401) {
+            throw new IOException("WinRM authentication failed (HTTP 401)");
+        }
+        if (response.statusCode() != 200) {
+            throw new WinRmFault("WinRM request failed (HTTP " + response.statusCode() + "): " + response.body());
+        }
+        return response.body();
+    }
+
+    private static String extract(Pattern pattern, String response, String name) throws IOException {
+        Matcher matcher = pattern.matcher(response);
+        if (!matcher.find()) {
+            throw new IOException("WinRM response did not contain a " + name);
+        }
+        return matcher.group(1).trim();
+    }
+
+    /**
+     * Exit code and decoded output streams of a remote command. Output
+     * past the session's capture limit is dropped and flagged as truncated.
+     */
+    public record Result(int exitCode, String stdout, String stderr, boolean truncated) {
+    }
+
+    /**
+     * The remote command ran past its deadline and was terminated
+     */
+    static class DeadlineExceededException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        DeadlineExceededException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * A SOAP fault returned by the WinRM service. The connection itself
+     * worked, so the session is still usable.
+     */
+    static class WinRmFault extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        WinRmFault(String message) {
+            super(message);
+        }
+    }
+}
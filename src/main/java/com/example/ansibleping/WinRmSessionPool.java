@@ -0,0 +1,236 @@
+package com.example.ansibleping;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps WinRM shells open per host and hands them out for reuse.
+ * At most {@code ansible.winrm.max-sessions-per-host} shells are in use
+ * per host at once, and idle shells are closed after
+ * {@code ansible.winrm.idle-timeout-ms}.
+ */
+@Component
+@ConditionalOnProperty(name = "ansible.executor", havingValue = "winrm")
+public class WinRmSessionPool {
+
+    private static final Logger logger = LoggerFactory.getLogger(WinRmSessionPool.class);
+
+    @Autowired
+    private AnsibleMetrics metrics;
+
+    @Value("${ansible.winrm.scheme:http}")
+    private String scheme;
+
+    @Value("${ansible.winrm.port:5985}")
+    private int port;
+
+    @Value("${ansible.winrm.max-sessions-per-host:2}")
+    private int maxSessionsPerHost;
+
+    @Value("${ansible.winrm.idle-timeout-ms:300000}")
+    private long idleTimeoutMillis;
+
+    @Value("${ansible.winrm.operation-timeout-s:60}")
+    private long operationTimeoutSeconds;
+
+    @Value("${ansible.winrm.acquire-timeout-ms:120000}")
+    private long acquireTimeoutMillis;
+
+    @Value("${ansible.max-output-bytes:1048576}")
+    private int maxOutputBytes;
+
+    private final HttpClient httpClient = HttpClient.newBuilder()
+            .connectTimeout(Duration.ofSeconds(10))
+            .build();
+
+    // Idle shells by the credentials that opened them; at most maxSessionsPerHost shells in use per host
+    private final Map<String, Deque<WinRmSession>> idleSessions = new ConcurrentHashMap<>();
+    private final Map<String, Semaphore> permits = new ConcurrentHashMap<>();
+
+    public WinRmSessionPool() {
+    }
+
+    /**
+     * A pool with the given settings, ready to use without Spring
+     */
+    WinRmSessionPool(AnsibleMetrics metrics, String scheme, int port, int maxSessionsPerHost, long idleTimeoutMillis,
+                     long operationTimeoutSeconds, long acquireTimeoutMillis, int maxOutputBytes) {
+        this.metrics = metrics;
+        this.scheme = scheme;
+        this.port = port;
+        this.maxSessionsPerHost = maxSessionsPerHost;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.operationTimeoutSeconds = operationTimeoutSeconds;
+        this.acquireTimeoutMillis = acquireTimeoutMillis;
+        this.maxOutputBytes = maxOutputBytes;
+        registerMetrics();
+    }
+
+    @PostConstruct
+    void registerMetrics() {
+        metrics.gauge("ansible.winrm.sessions.idle", "Idle WinRM shells held open for reuse", this,
+                WinRmSessionPool::getIdleSessionCount);
+    }
+
+    /**
+     * Borrow a session for the target, reusing an idle one when available
+     */
+    public WinRmSession acquire(Target target) throws IOException, InterruptedException {
+        Semaphore hostPermits = acquirePermit(target.host());
+        try {
+            // Sessions are bound to the credentials that opened them, so a caller
+            // with different credentials never reuses someone else's shell
+            String key = target.credentialKey();
+            Deque<WinRmSession> idle = idleSessions.get(key);
+            WinRmSession session = idle == null ? null : idle.pollFirst();
+            if (session != null) {
+                return session;
+            }
+            URI endpoint = URI.create(scheme + "://" + target.host() + ":" + port + "/wsman");
+            logger.debug("Opening WinRM session to {}", endpoint);
+            return new WinRmSession(httpClient, endpoint, target, Duration.ofSeconds(operationTimeoutSeconds), key,
+                    maxOutputBytes);
+        } catch (IOException | InterruptedException | RuntimeException e) {
+            hostPermits.release();
+            throw e;
+        }
+    }
+
+    private Semaphore acquirePermit(String host) throws IOException, InterruptedException {
+        while (true) {
+            Semaphore hostPermits = permits.computeIfAbsent(host, k -> new Semaphore(maxSessionsPerHost, true));
+            if (!hostPermits.tryAcquire(acquireTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                throw new IOException("Timed out waiting for a WinRM session to " + host);
+            }
+            if (permits.get(host) == hostPermits) {
+                return hostPermits;
+            }
+            // Dropped by evictIdleSessions while this thread was getting it; take the host's new one
+            hostPermits.release();
+        }
+    }
+
+    /**
+     * Return a healthy session to the pool
+     */
+    public void release(WinRmSession session) {
+        idleSessions.compute(session.key(), (key, idle) -> {
+            Deque<WinRmSession> sessions = idle != null ? idle : new ConcurrentLinkedDeque<>();
+            sessions.offerFirst(session);
+            return sessions;
+        });
+        permits.get(session.host()).release();
+    }
+
+    /**
+     * Close a session that failed instead of returning it to the pool
+     */
+    public void discard(WinRmSession session) {
+        session.close();
+        permits.get(session.host()).release();
+    }
+
+    /**
+     * Close the idle sessions to a host that is no longer monitored, whatever credentials opened them
+     */
+    public void closeIdle(String host) {
+        int closed = 0;
+        for (Deque<WinRmSession> sessions : idleSessions.values()) {
+            for (WinRmSession session : sessions) {
+                if (session.host().equals(host) && sessions.removeFirstOccurrence(session)) {
+                    session.close();
+                    closed++;
+                }
+            }
+        }
+        dropUnused();
+        if (closed > 0) {
+            logger.debug("Closed {} idle WinRM sessions to {}", closed, host);
+        }
+    }
+
+    /**
+     * Close sessions that have been idle longer than the idle timeout. Shells
+     * opened with a credential that has since been rotated end up here too.
+     */
+    @Scheduled(fixedDelayString = "${ansible.winrm.eviction-interval-ms:60000}")
+    public void evictIdleSessions() {
+        long idleTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(idleTimeoutMillis);
+        int evicted = 0;
+        for (Deque<WinRmSession> sessions : idleSessions.values()) {
+            Iterator<WinRmSession> iterator = sessions.iterator();
+            while (iterator.hasNext()) {
+                WinRmSession session = iterator.next();
+                if (session.idleNanos() > idleTimeoutNanos && sessions.removeFirstOccurrence(session)) {
+                    session.close();
+                    evicted++;
+                }
+            }
+        }
+        dropUnused();
+        if (evicted > 0) {
+            logger.debug("Evicted {} idle WinRM sessions", evicted);
+        }
+    }
+
+    /**
+     * Forget credentials without idle shells and hosts without shells in use,
+     * so neither map grows with every host and credential ever seen
+     */
+    private void dropUnused() {
+        for (String key : idleSessions.keySet()) {
+            idleSessions.computeIfPresent(key, (k, sessions) -> sessions.isEmpty() ? null : sessions);
+        }
+        for (Map.Entry<String, Semaphore> entry : permits.entrySet()) {
+            Semaphore hostPermits = entry.getValue();
+            // Holding every permit proves no session to the host is in use
+            if (hostPermits.tryAcquire(maxSessionsPerHost)) {
+                permits.remove(entry.getKey(), hostPermits);
+                hostPermits.release(maxSessionsPerHost);
+            }
+        }
+    }
+
+    /**
+     * Number of hosts and credentials the pool currently keeps state for
+     */
+    int trackedKeys() {
+        return idleSessions.size() + permits.size();
+    }
+
+    /**
+     * Get the number of idle sessions currently held open
+     */
+    public int getIdleSessionCount() {
+        return idleSessions.values().stream().mapToInt(Deque::size).sum();
+    }
+
+    @PreDestroy
+    void closeAll() {
+        idleSessions.values().forEach(sessions -> {
+            WinRmSession session;
+            while ((session = sessions.pollFirst()) != null) {
+                session.close();
+            }
+        });
+    }
+}
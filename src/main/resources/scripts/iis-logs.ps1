@@ -0,0 +1,91 @@
+# Incremental log collector. The caller prepends the cursors from the
+# previous run:
+#   $EventCursor   last System event log record ID seen, -1 on the first run
+#   $FileCursors   site name -> @(W3C log file, byte offset) read up to
+#   $MaxEvents, $MaxBytes, $InitialEvents, $InitialBytes
+# Only entries after the cursors are read; the first run starts with a
+# short recent tail instead of the whole log. The result, with the new
+# cursors, is printed as gzip-compressed JSON in Base64.
+$ErrorActionPreference = 'Stop'
+$ProgressPreference = 'SilentlyContinue'
+$result = [ordered]@{ eventCursor = [long]$EventCursor; events = @(); files = @(); errors = @() }
+
+try {
+    if ($EventCursor -lt 0) {
+        $events = @(Get-WinEvent -LogName System -MaxEvents $InitialEvents -ErrorAction SilentlyContinue)
+        [array]::Reverse($events)
+    } else {
+        $events = @(Get-WinEvent -LogName System -FilterXPath "*[System[EventRecordID > $EventCursor]]" -MaxEvents $MaxEvents -Oldest -ErrorAction SilentlyContinue)
+    }
+    foreach ($entry in $events) {
+        $result.events += [ordered]@{
+            recordId = [long]$entry.RecordId
+            time = $entry.TimeCreated.ToUniversalTime().ToString('o')
+            level = "$($entry.LevelDisplayName)"
+            provider = $entry.ProviderName
+            eventId = [int]$entry.Id
+            message = "$($entry.Message)"
+        }
+        $result.eventCursor = [long]$entry.RecordId
+    }
+} catch {
+    $result.errors += "System event log: $($_.Exception.Message)"
+}
+
+try {
+    Import-Module WebAdministration
+    foreach ($site in Get-ChildItem IIS:\Sites) {
+        $dir = Join-Path ([Environment]::ExpandEnvironmentVariables($site.logFile.directory)) "W3SVC$($site.Id)"
+        $latest = Get-ChildItem -Path $dir -Filter '*.log' -ErrorAction SilentlyContinue |
+            Sort-Object LastWriteTimeUtc | Select-Object -Last 1
+        if (-not $latest) { continue }
+
+        $cursor = $FileCursors[$site.Name]
+        $tail = $false
+        if ($cursor -and $cursor[0] -eq $latest.FullName) {
+            $offset = [long]$cursor[1]
+        } elseif ($cursor) {
+            # The log rolled over since the last run: the new file is read from its start
+            $offset = 0
+        } else {
+            $offset = [Math]::Max(0, $latest.Length - $InitialBytes)
+            $tail = $offset -gt 0
+        }
+        if ($offset -gt $latest.Length) { $offset = 0 }
+
+        $count = [int][Math]::Min($MaxBytes, $latest.Length - $offset)
+        $buffer = New-Object byte[] $count
+        $read = 0
+        # IIS keeps the file open for writing, so it has to be shared
+        $stream = [IO.File]::Open($latest.FullName, 'Open', 'Read', 'ReadWrite')
+        try {
+            $null = $stream.Seek($offset, 'Begin')
+            while ($read -lt $count) {
+                $n = $stream.Read($buffer, $read, $count - $read)
+                if ($n -le 0) { break }
+                $read += $n
+            }
+        } finally {
+            $stream.Dispose()
+        }
+
+        # Whole lines only; a line IIS is still writing is read next time
+        $end = if ($read -gt 0) { [Array]::LastIndexOf($buffer, [byte]10, $read - 1) } else { -1 }
+        $lines = @()
+        if ($end -ge 0) {
+            $lines = @([Text.Encoding]::UTF8.GetString($buffer, 0, $end + 1) -split "`r?`n" |
+                Where-Object { $_ -and -not $_.StartsWith('#') })
+            if ($tail -and $lines.Count -gt 0) { $lines = @($lines | Select-Object -Skip 1) }
+        }
+        $result.files += [ordered]@{ site = $site.Name; file = $latest.FullName; offset = $offset + $end + 1; lines = $lines }
+    }
+} catch {
+    $result.errors += "W3C logs: $($_.Exception.Message)"
+}
+
+$bytes = [Text.Encoding]::UTF8.GetBytes((ConvertTo-Json $result -Compress -Depth 5))
+$out = New-Object IO.MemoryStream
+$gzip = New-Object IO.Compression.GZipStream($out, [IO.Compression.CompressionMode]::Compress)
+$gzip.Write($bytes, 0, $bytes.Length)
+$gzip.Dispose()
+[Convert]::ToBase64String($out.ToArray())
@@ -0,0 +1,70 @@
+# Composite IIS health probe: service state, app pools, sites with their
+# bindings and a few performance counters, printed as one JSON document.
+# Each section is collected independently so one failing part (e.g. the
+# WebAdministration module missing) still returns the others.
+$ErrorActionPreference = 'Stop'
+$ProgressPreference = 'SilentlyContinue'
+$result = [ordered]@{ services = @(); appPools = @(); sites = @(); counters = [ordered]@{}; errors = @() }
+
+foreach ($name in 'W3SVC', 'WAS') {
+    $svc = Get-CimInstance -ClassName Win32_Service -Filter "Name='$name'"
+    if ($svc) {
+        $result.services += [ordered]@{
+            name = $svc.Name
+            state = ($svc.State -replace ' ', '_').ToLower()
+            startMode = "$($svc.StartMode)".ToLower()
+            processId = [int]$svc.ProcessId
+        }
+    } else {
+        $result.services += [ordered]@{ name = $name; state = 'not_installed' }
+    }
+}
+
+try {
+    Import-Module WebAdministration
+    foreach ($pool in Get-ChildItem IIS:\AppPools) {
+        $result.appPools += [ordered]@{
+            name = $pool.Name
+            state = "$($pool.State)".ToLower()
+            autoStart = [bool]$pool.autoStart
+            runtimeVersion = $pool.managedRuntimeVersion
+            pipelineMode = "$($pool.managedPipelineMode)".ToLower()
+        }
+    }
+    foreach ($site in Get-ChildItem IIS:\Sites) {
+        $result.sites += [ordered]@{
+            name = $site.Name
+            id = [long]$site.Id
+            state = "$($site.State)".ToLower()
+            appPool = $site.applicationPool
+            bindings = @($site.Bindings.Collection | ForEach-Object {
+                [ordered]@{ protocol = $_.protocol; bindingInformation = $_.bindingInformation }
+            })
+        }
+    }
+} catch {
+    $result.errors += "IIS configuration: $($_.Exception.Message)"
+}
+
+try {
+    $queue = $null
+    $samples = (Get-Counter -ErrorAction SilentlyContinue -Counter @(
+        '\Processor(_Total)\% Processor Time',
+        '\Memory\Available MBytes',
+        '\Web Service(_Total)\Current Connections',
+        '\Web Service(_Total)\Total Method Requests/sec',
+        '\HTTP Service Request Queues(*)\CurrentQueueSize')).CounterSamples
+    foreach ($sample in $samples) {
+        $path = $sample.Path.ToLower()
+        if ($path -like '*\processor(_total)\% processor time') { $result.counters.cpuPercent = [math]::Round($sample.CookedValue, 1) }
+        elseif ($path -like '*\memory\available mbytes') { $result.counters.availableMemoryMb = [long]$sample.CookedValue }
+        elseif ($path -like '*\web service(_total)\current connections') { $result.counters.currentConnections = [long]$sample.CookedValue }
+        elseif ($path -like '*\web service(_total)\total method requests/sec') { $result.counters.requestsPerSec = [math]::Round($sample.CookedValue, 1) }
+        elseif ($path -like '*\http service request queues(*)\currentqueuesize') { $queue += [long]$sample.CookedValue }
+    }
+    if ($null -ne $queue) { $result.counters.requestQueueLength = $queue }
+} catch {
+    $result.errors += "Performance counters: $($_.Exception.Message)"
+}
+
+$result | ConvertTo-Json -Compress -Depth 6
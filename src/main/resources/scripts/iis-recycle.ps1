@@ -0,0 +1,22 @@
+# Brings the application pools back on a host whose site fails while W3SVC
+# runs. Rapid-fail protection stops a pool that keeps crashing, and its
+# sites then answer 503, so stopped pools set to start automatically are
+# started; running pools are recycled. Prints what it did as JSON.
+$ErrorActionPreference = 'Stop'
+$ProgressPreference = 'SilentlyContinue'
+Import-Module WebAdministration
+$result = [ordered]@{ started = @(); recycled = @(); errors = @() }
+foreach ($pool in Get-ChildItem IIS:\AppPools) {
+    try {
+        if ($pool.State -eq 'Stopped' -and $pool.autoStart) {
+            Start-WebAppPool -Name $pool.Name
+            $result.started += $pool.Name
+        } elseif ($pool.State -eq 'Started') {
+            Restart-WebAppPool -Name $pool.Name
+            $result.recycled += $pool.Name
+        }
+    } catch {
+        $result.errors += "$($pool.Name): $($_.Exception.Message)"
+    }
+}
+ConvertTo-Json $result -Compress
@@ -0,0 +1,122 @@
+package com.example.ansibleping;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@WebMvcTest(AnsibleController.class)
+@Import(ApiAuthorization.class)
+@TestPropertySource(properties = "api.token=" + AnsibleControllerTest.TOKEN)
+class AnsibleControllerTest {
+
+    static final String TOKEN = "s3cret-token";
+
+    private static final String HOST = "{\"host\": \"web1\", \"user\": \"admin\", \"pass\": \"secret\"}";
+
+    @Autowired
+    private MockMvc mvc;
+
+    @MockBean
+    private AnsibleService ansibleService;
+    @MockBean
+    private IISMonitorService iisMonitorService;
+    @MockBean
+    private IISStatusCache statusCache;
+    @MockBean
+    private IISStatusStream statusStream;
+    @MockBean
+    private StatusHistoryStore historyStore;
+    @MockBean
+    private FleetActionService fleetActionService;
+    @MockBean
+    private Inventory inventory;
+    @MockBean
+    private IISProbeService probeService;
+    @MockBean
+    private HttpHealthProbe httpProbe;
+    @MockBean
+    private ClusterCoordinator cluster;
+    @MockBean
+    private OperationService operationService;
+    @MockBean
+    private LogTailService logTailService;
+    @MockBean
+    private RemediationEngine remediation;
+
+    @Test
+    void updatingTheMonitorConfigNeedsTheToken() throws Exception {
+        mvc.perform(post("/monitor/update-config").contentType(MediaType.APPLICATION_JSON).content(HOST))
+                .andExpect(status().isUnauthorized())
+                .andExpect(header().string(HttpHeaders.WWW_AUTHENTICATE, "Bearer"));
+
+        verify(iisMonitorService, never()).updateMonitoringConfig(anyString(), anyString(), anyString());
+    }
+
+    @Test
+    void addingAMonitoredHostNeedsTheToken() throws Exception {
+        mvc.perform(post("/monitor/targets").contentType(MediaType.APPLICATION_JSON).content(HOST))
+                .andExpect(status().isUnauthorized());
+        mvc.perform(post("/monitor/targets").contentType(MediaType.APPLICATION_JSON).content(HOST)
+                        .header(HttpHeaders.AUTHORIZATION, "Bearer wrong"))
+                .andExpect(status().isUnauthorized());
+
+        verify(iisMonitorService, never()).updateMonitoringConfig(anyString(), anyString(), anyString());
+
+        mvc.perform(post("/monitor/targets").contentType(MediaType.APPLICATION_JSON).content(HOST)
+                        .header(HttpHeaders.AUTHORIZATION, "Bearer " + TOKEN))
+                .andExpect(status().isOk());
+        verify(iisMonitorService).updateMonitoringConfig("web1", "admin", "secret");
+    }
+
+    @Test
+    void removingAMonitoredHostNeedsTheToken() throws Exception {
+        when(iisMonitorService.removeTarget(any())).thenReturn(true);
+
+        mvc.perform(delete("/monitor/targets").param("host", "web1"))
+                .andExpect(status().isUnauthorized());
+        verify(iisMonitorService, never()).removeTarget(any());
+
+        mvc.perform(delete("/monitor/targets").param("host", "web1")
+                        .header(HttpHeaders.AUTHORIZATION, "Bearer " + TOKEN))
+                .andExpect(status().isOk());
+        verify(iisMonitorService).removeTarget("web1");
+    }
+
+    @Test
+    void aFullOperationQueueAnswersServiceUnavailable() throws Exception {
+        when(operationService.submit(anyString(), anyString(), anyString(), anyString()))
+                .thenThrow(new RejectedExecutionException("Too many operations queued; try again later"));
+
+        mvc.perform(post("/operations").contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"operation\": \"ping\", \"host\": \"web1\", \"user\": \"admin\", \"pass\": \"secret\"}"))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(content().string("Too many operations queued; try again later"));
+    }
+
+    @Test
+    void removingAnInventoryHostNeedsTheToken() throws Exception {
+        mvc.perform(delete("/inventory/targets").param("host", "web1"))
+                .andExpect(status().isUnauthorized());
+
+        verify(iisMonitorService, never()).removeTarget(any());
+    }
+}
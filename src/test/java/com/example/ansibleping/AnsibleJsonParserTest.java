@@ -0,0 +1,131 @@
+package com.example.ansibleping;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AnsibleJsonParserTest {
+
+    // One win_service task over four hosts, as printed by the json stdout callback
+    private static final String SERVICE_OUTPUT = """
+            [WARNING]: Invalid characters were found in group names
+            {
+                "custom_stats": {},
+                "global_custom_stats": {},
+                "plays": [
+                    {
+                        "play": {"name": "Ansible Ad-Hoc", "id": "1"},
+                        "tasks": [
+                            {
+                                "hosts": {
+                                    "web1": {"changed": false, "state": "running", "start_mode": "auto",
+                                             "exists": true, "dependencies": ["HTTP"]},
+                                    "web2": {"changed": true, "state": "stopped", "start_mode": "manual"},
+                                    "web3": {"changed": false, "unreachable": true,
+                                             "msg": "ntlm: HTTPConnectionPool: Read timed out"},
+                                    "web4": {"changed": false, "failed": true,
+                                             "msg": "Service 'W3SVC' is not installed"}
+                                },
+                                "task": {
+                                    "name": "win_service",
+                                    "duration": {"start": "2024-05-01T10:00:00.000000Z",
+                                                 "end": "2024-05-01T10:00:01.250000Z"}
+                                }
+                            }
+                        ]
+                    }
+                ],
+                "stats": {"web1": {"ok": 1}, "web2": {"changed": 1}}
+            }
+            """;
+
+    @Test
+    void parsesEveryHostOfTheTask() {
+        Map<String, ServiceStatus> statuses = AnsibleJsonParser.parse(SERVICE_OUTPUT);
+
+        assertThat(statuses).containsOnlyKeys("web1", "web2", "web3", "web4");
+    }
+
+    @Test
+    void readsStateStartModeAndProcessOfARunningService() {
+        ServiceStatus web1 = AnsibleJsonParser.parse(SERVICE_OUTPUT).get("web1");
+
+        assertThat(web1.state()).isEqualTo(ServiceState.RUNNING);
+        assertThat(web1.changed()).isFalse();
+        assertThat(web1.startMode()).isEqualTo("auto");
+        assertThat(web1.pid()).isNull();
+        assertThat(web1.durationMillis()).isEqualTo(1250);
+        assertThat(web1.succeeded()).isTrue();
+    }
+
+    @Test
+    void reportsChangedHosts() {
+        ServiceStatus web2 = AnsibleJsonParser.parse(SERVICE_OUTPUT).get("web2");
+
+        assertThat(web2.state()).isEqualTo(ServiceState.STOPPED);
+        assertThat(web2.changed()).isTrue();
+        assertThat(web2.pid()).isNull();
+    }
+
+    @Test
+    void unreachableWinsOverAnyReportedState() {
+        ServiceStatus web3 = AnsibleJsonParser.parse(SERVICE_OUTPUT).get("web3");
+
+        assertThat(web3.state()).isEqualTo(ServiceState.UNREACHABLE);
+        assertThat(web3.message()).contains("Read timed out");
+        assertThat(web3.succeeded()).isFalse();
+    }
+
+    @Test
+    void failedHostsKeepTheModuleMessage() {
+        ServiceStatus web4 = AnsibleJsonParser.parse(SERVICE_OUTPUT).get("web4");
+
+        assertThat(web4.state()).isEqualTo(ServiceState.FAILED);
+        assertThat(web4.message()).isEqualTo("Service 'W3SVC' is not installed");
+    }
+
+    @Test
+    void pongMeansReachable() {
+        String output = """
+                {"plays": [{"tasks": [{"hosts": {"web1": {"changed": false, "ping": "pong"}}}]}]}
+                """;
+
+        assertThat(AnsibleJsonParser.parse(output).get("web1").state()).isEqualTo(ServiceState.REACHABLE);
+    }
+
+    @Test
+    void keepsHostsThatWereCompleteWhenOutputIsTruncated() {
+        String truncated = SERVICE_OUTPUT.substring(0, SERVICE_OUTPUT.indexOf("\"task\":"));
+
+        Map<String, ServiceStatus> statuses = AnsibleJsonParser.parse(truncated);
+
+        // The task never ended, so none of its hosts are reported
+        assertThat(statuses).isEmpty();
+    }
+
+    @Test
+    void returnsNothingWithoutAJsonDocument() {
+        assertThat(AnsibleJsonParser.parse("ERROR! the playbook could not be found")).isEmpty();
+        assertThat(AnsibleJsonParser.parse("")).isEmpty();
+    }
+
+    @Test
+    void scriptResultsUseStderrForFailures() {
+        String output = """
+                {"plays": [{"tasks": [{"hosts": {
+                    "web1": {"changed": true, "rc": 0, "stdout": "{\\"pool\\":\\"Default\\"}\\r\\n"},
+                    "web2": {"changed": true, "failed": true, "rc": 1, "msg": "non-zero return code",
+                             "stderr": "Access is denied.\\r\\n"}
+                }}]}]}
+                """;
+
+        Map<String, ScriptResult> results = AnsibleJsonParser.parseScripts(output);
+
+        assertThat(results.get("web1").status().state()).isEqualTo(ServiceState.REACHABLE);
+        assertThat(results.get("web1").stdout()).startsWith("{\"pool\":\"Default\"}");
+        assertThat(results.get("web2").status().state()).isEqualTo(ServiceState.FAILED);
+        assertThat(results.get("web2").status().message()).isEqualTo("Access is denied.");
+    }
+}
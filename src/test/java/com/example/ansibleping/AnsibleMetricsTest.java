@@ -0,0 +1,89 @@
+package com.example.ansibleping;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.prometheus.PrometheusConfig;
+import io.micrometer.prometheus.PrometheusMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AnsibleMetricsTest {
+
+    private final MeterRegistry registry = new SimpleMeterRegistry();
+
+    @Test
+    void tagsProcessRunsByOperationAndOutcome() {
+        AnsibleMetrics metrics = new AnsibleMetrics(registry, false);
+
+        metrics.recordProcess("status", "web1", new ProcessRunner.ProcessResult(0, "", false, false, 120));
+        metrics.recordProcess("status", "web2", new ProcessRunner.ProcessResult(2, "", false, false, 80));
+        metrics.recordProcess("status", "web3", new ProcessRunner.ProcessResult(-1, "", true, false, 5000));
+
+        assertThat(processTimer("success").count()).isEqualTo(1);
+        assertThat(processTimer("success").totalTime(TimeUnit.MILLISECONDS)).isEqualTo(120);
+        assertThat(processTimer("error").count()).isEqualTo(1);
+        assertThat(processTimer("timeout").count()).isEqualTo(1);
+    }
+
+    @Test
+    void leavesTheHostOutByDefault() {
+        AnsibleMetrics metrics = new AnsibleMetrics(registry, false);
+
+        metrics.recordOutcome("status", ServiceStatus.of("web1", ServiceState.RUNNING, null));
+        metrics.recordOutcome("status", ServiceStatus.of("web2", ServiceState.RUNNING, null));
+        metrics.recordProcess("status", "web1", new ProcessRunner.ProcessResult(0, "", false, false, 10));
+
+        assertThat(registry.get("ansible.command.outcomes").counters()).singleElement()
+                .satisfies(counter -> {
+                    assertThat(counter.getId().getTag("host")).isEqualTo("all");
+                    assertThat(counter.count()).isEqualTo(2);
+                });
+    }
+
+    @Test
+    void publishesHistogramBucketsOnlyWithoutTheHostTag() {
+        PrometheusMeterRegistry fleet = new PrometheusMeterRegistry(PrometheusConfig.DEFAULT);
+        PrometheusMeterRegistry perHost = new PrometheusMeterRegistry(PrometheusConfig.DEFAULT);
+
+        new AnsibleMetrics(fleet, false).recordWinRm("status", "web1", "success", 1_000_000);
+        new AnsibleMetrics(perHost, true).recordWinRm("status", "web1", "success", 1_000_000);
+
+        // Fleet-wide timers keep their buckets, so quantiles can be aggregated across instances
+        assertThat(fleet.scrape()).contains("ansible_winrm_roundtrip_seconds_bucket{host=\"all\"");
+        assertThat(perHost.scrape()).contains("ansible_winrm_roundtrip_seconds_count{host=\"web1\"")
+                .doesNotContain("ansible_winrm_roundtrip_seconds_bucket");
+    }
+
+    @Test
+    void tagsTheHostWhenAskedTo() {
+        AnsibleMetrics metrics = new AnsibleMetrics(registry, true);
+
+        metrics.recordOutcome("status", ServiceStatus.of("web1", ServiceState.RUNNING, null));
+        metrics.recordOutcome("status", ServiceStatus.of("web2", ServiceState.STOPPED, null));
+        metrics.recordProcess("status", "web1", new ProcessRunner.ProcessResult(0, "", false, false, 10));
+
+        assertThat(registry.get("ansible.command.outcomes").tag("host", "web1").counter().count()).isEqualTo(1);
+        assertThat(registry.get("ansible.command.outcomes").tag("host", "web2").tag("state", "STOPPED")
+                .counter().count()).isEqualTo(1);
+        assertThat(registry.get("ansible.process.duration").tag("host", "web1").timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    void gaugesSampleTheirObjectOnEveryRead() {
+        AnsibleMetrics metrics = new AnsibleMetrics(registry, false);
+        int[] running = {3};
+
+        metrics.gauge("ansible.process.running", "Running processes", running, value -> value[0]);
+        running[0] = 5;
+
+        assertThat(registry.get("ansible.process.running").gauge().value()).isEqualTo(5);
+    }
+
+    private Timer processTimer(String outcome) {
+        return registry.get("ansible.process.duration").tag("operation", "status").tag("outcome", outcome).timer();
+    }
+}
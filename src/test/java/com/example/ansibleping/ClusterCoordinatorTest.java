@@ -0,0 +1,106 @@
+package com.example.ansibleping;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ClusterCoordinatorTest {
+
+    private static final int SHARDS = 16;
+    private static final long HEARTBEAT = 250;
+    private static final long LEASE = 1000;
+
+    @TempDir
+    Path dir;
+
+    private final List<String> hosts = new ArrayList<>();
+
+    ClusterCoordinatorTest() {
+        for (int i = 1; i <= 200; i++) {
+            hosts.add("web" + i);
+        }
+    }
+
+    @Test
+    void aLoneNodeMonitorsEveryHost() {
+        ClusterCoordinator a = node("a");
+
+        a.heartbeat();
+
+        assertThat(hosts).allMatch(a::owns);
+        assertThat(a.getStatus().ownedShards()).isEqualTo(SHARDS);
+    }
+
+    @Test
+    void aJoiningNodeTakesItsShardsOnlyOnceTheOwnerLetsGo() {
+        ClusterCoordinator a = node("a");
+        ClusterCoordinator b = node("b");
+        a.heartbeat();
+
+        b.heartbeat();
+        // a still holds every lease, so b waits instead of checking the same hosts
+        assertThat(hosts).noneMatch(b::owns);
+        assertThat(hosts).allMatch(a::owns);
+
+        // a stops using the shards that moved at once, and releases them on the heartbeat after
+        a.heartbeat();
+        assertThat(hosts).noneMatch(host -> a.owns(host) && b.owns(host));
+        a.heartbeat();
+        b.heartbeat();
+
+        assertThat(hosts).allMatch(host -> a.owns(host) ^ b.owns(host));
+        assertThat(a.getStatus().ownedShards()).isPositive();
+        assertThat(b.getStatus().ownedShards()).isPositive();
+        assertThat(b.getStatus().members()).containsExactlyInAnyOrder("a", "b");
+    }
+
+    @Test
+    void takesOverTheShardsOfANodeThatStoppedAfterItsLeaseRunsOut() throws Exception {
+        ClusterCoordinator a = node("a");
+        ClusterCoordinator b = node("b");
+        a.heartbeat();
+        b.heartbeat();
+        a.heartbeat();
+        a.heartbeat();
+        b.heartbeat();
+        List<String> ofA = hosts.stream().filter(a::owns).toList();
+        assertThat(ofA).isNotEmpty();
+
+        // a hangs without leaving; until its lease expires nobody else checks its hosts
+        b.heartbeat();
+        assertThat(ofA).noneMatch(b::owns);
+
+        Thread.sleep(LEASE + HEARTBEAT);
+        // By now a has stopped using its shards on its own, even without hearing from the store
+        assertThat(ofA).noneMatch(a::owns);
+        b.heartbeat();
+
+        assertThat(hosts).allMatch(b::owns);
+        assertThat(b.getStatus().members()).containsExactly("b");
+    }
+
+    @Test
+    void aLeavingNodeHandsItsShardsOverAtOnce() {
+        ClusterCoordinator a = node("a");
+        ClusterCoordinator b = node("b");
+        a.heartbeat();
+        b.heartbeat();
+
+        a.leave();
+        b.heartbeat();
+
+        assertThat(hosts).noneMatch(a::owns);
+        assertThat(hosts).allMatch(b::owns);
+    }
+
+    private ClusterCoordinator node(String id) {
+        return new ClusterCoordinator(new FileClusterStore(dir.toString()),
+                new AnsibleMetrics(new SimpleMeterRegistry(), false), id, SHARDS, 64, HEARTBEAT, LEASE);
+    }
+}
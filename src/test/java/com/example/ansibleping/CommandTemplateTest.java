@@ -0,0 +1,64 @@
+package com.example.ansibleping;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CommandTemplateTest {
+
+    @Test
+    void fillsInOnlyTheInventorySlot() {
+        CommandTemplate template = CommandTemplate.single("win_service", "name=W3SVC state=started");
+
+        List<String> argv = template.forHost("web1.example.com");
+
+        assertThat(argv.subList(0, 8)).containsExactly("ansible", "all", "-i", "web1.example.com,", "-m",
+                "win_service", "-a", "name=W3SVC state=started");
+        assertThat(argv.get(8)).isEqualTo("-e");
+        assertThat(argv).hasSize(10);
+    }
+
+    @Test
+    void leavesOutTheModuleArgumentsWhenThereAreNone() {
+        assertThat(CommandTemplate.single("win_ping", null).forHost("web1"))
+                .containsSubsequence("-m", "win_ping", "-e").doesNotContain("-a");
+        assertThat(CommandTemplate.batch("win_ping", null).withInventory("/tmp/inventory.json"))
+                .containsExactly("ansible", "all", "-i", "/tmp/inventory.json", "-m", "win_ping");
+    }
+
+    @Test
+    void keepsHostileValuesAsSingleArguments() {
+        // Without a shell nothing is split or expanded, so an argument cannot turn into two
+        List<String> argv = CommandTemplate.single("win_ping", null).forHost("web1; rm -rf / #");
+
+        assertThat(argv.get(3)).isEqualTo("web1; rm -rf / #,");
+        assertThat(argv).hasSize(8);
+    }
+
+    @Test
+    void callsDoNotShareTheirArguments() {
+        CommandTemplate template = CommandTemplate.single("win_ping", null);
+
+        List<String> first = template.forHost("web1");
+        List<String> second = template.forHost("web2");
+
+        assertThat(first.get(3)).isEqualTo("web1,");
+        assertThat(second.get(3)).isEqualTo("web2,");
+    }
+
+    @Test
+    void credentialsAreLookedUpFromTheEnvironmentInsteadOfTheCommandLine() throws Exception {
+        List<String> argv = CommandTemplate.single("win_ping", null).forHost("web1");
+
+        Map<String, String> vars = new ObjectMapper().readValue(argv.get(argv.size() - 1), new TypeReference<>() {
+        });
+        assertThat(vars).containsEntry("ansible_user", "{{ lookup('env', 'ANSIBLE_PING_USER') }}")
+                .containsEntry("ansible_password", "{{ lookup('env', 'ANSIBLE_PING_PASSWORD') }}")
+                .containsAllEntriesOf(CommandTemplate.CONNECTION_VARS);
+    }
+}
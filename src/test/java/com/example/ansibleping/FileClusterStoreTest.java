@@ -0,0 +1,77 @@
+package com.example.ansibleping;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FileClusterStoreTest {
+
+    private static final long LEASE = 20_000;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void aLeaseHeldByAnotherNodeIsLeftAloneUntilItExpires() throws IOException {
+        FileClusterStore a = new FileClusterStore(dir.toString());
+        FileClusterStore b = new FileClusterStore(dir.toString());
+        long now = 1_000_000;
+
+        assertThat(a.claim("a", Set.of(0, 1, 2), now + LEASE, now)).containsExactly(0, 1, 2);
+        assertThat(b.claim("b", Set.of(1, 2, 3), now + LEASE, now + 1)).containsExactly(3);
+
+        // Node a stopped renewing; once its leases run out they go to whoever asks
+        long later = now + LEASE;
+        assertThat(b.claim("b", Set.of(1, 2, 3), later + LEASE, later)).containsExactly(1, 2, 3);
+        assertThat(b.owners(later)).containsOnlyKeys(1, 2, 3).containsValue("b").doesNotContainValue("a");
+    }
+
+    @Test
+    void claimingReleasesTheShardsANodeNoLongerAsksFor() throws IOException {
+        FileClusterStore store = new FileClusterStore(dir.toString());
+        long now = 1_000_000;
+
+        store.claim("a", Set.of(0, 1, 2), now + LEASE, now);
+        store.claim("a", Set.of(0), now + LEASE, now);
+
+        assertThat(store.owners(now)).containsOnlyKeys(0);
+        assertThat(store.claim("b", Set.of(1, 2), now + LEASE, now)).containsExactly(1, 2);
+    }
+
+    @Test
+    void membersExpireUnlessTheyHeartbeat() throws IOException {
+        FileClusterStore store = new FileClusterStore(dir.toString());
+        long now = 1_000_000;
+
+        store.heartbeat("a", now + LEASE, now);
+        assertThat(store.heartbeat("b", now + LEASE, now + 10)).containsExactlyInAnyOrder("a", "b");
+
+        assertThat(store.heartbeat("b", now + 2 * LEASE, now + LEASE)).containsExactly("b");
+    }
+
+    @Test
+    void leavingReleasesEverythingAtOnce() throws IOException {
+        FileClusterStore store = new FileClusterStore(dir.toString());
+        long now = 1_000_000;
+        store.heartbeat("a", now + LEASE, now);
+        store.claim("a", Set.of(0, 1), now + LEASE, now);
+
+        store.leave("a");
+
+        assertThat(store.owners(now)).isEmpty();
+        assertThat(store.heartbeat("b", now + LEASE, now)).containsExactly("b");
+    }
+
+    @Test
+    void keepsItsStateAcrossInstances() throws IOException {
+        long now = 1_000_000;
+        new FileClusterStore(dir.toString()).claim("a", Set.of(5), now + LEASE, now);
+
+        assertThat(new FileClusterStore(dir.toString()).owners(now)).containsEntry(5, "a");
+    }
+}
@@ -0,0 +1,193 @@
+package com.example.ansibleping;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class FleetActionServiceTest {
+
+    private final AnsibleService ansibleService = mock(AnsibleService.class);
+    private final FleetActionService fleet = new FleetActionService(ansibleService,
+            new AnsibleMetrics(new SimpleMeterRegistry(), false), 8, 100);
+
+    // Every start and finish of an action on a host, in order
+    private final List<String> log = Collections.synchronizedList(new ArrayList<>());
+    private final Set<String> failing = ConcurrentHashMap.newKeySet();
+
+    @AfterEach
+    void tearDown() {
+        fleet.shutdown();
+    }
+
+    @Test
+    void rollsOutOneBatchAtATime() throws Exception {
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger mostAtOnce = new AtomicInteger();
+        when(ansibleService.changeIISState(anyString(), any(), any(), eq("stopped"))).thenAnswer(invocation -> {
+            String host = invocation.getArgument(0);
+            mostAtOnce.accumulateAndGet(running.incrementAndGet(), Math::max);
+            log.add("start " + host);
+            Thread.sleep(50);
+            log.add("end " + host);
+            running.decrementAndGet();
+            return ServiceStatus.of(host, ServiceState.STOPPED, null);
+        });
+
+        FleetJob job = fleet.submit(FleetJob.Action.STOP, targets(5), new FleetJob.Options(2, 2, 2, 0));
+        waitFor(job::isFinished);
+
+        FleetJob.Snapshot snapshot = job.snapshot();
+        assertThat(snapshot.status()).isEqualTo(FleetJob.Status.SUCCEEDED);
+        assertThat(snapshot.batches()).isEqualTo(3);
+        assertThat(snapshot.hosts()).extracting(FleetJob.HostProgress::batch).containsExactly(1, 1, 2, 2, 3);
+        assertThat(mostAtOnce).hasValue(2);
+        // The next batch only starts once both hosts of the one before it are done
+        assertThat(log.indexOf("start web3")).isGreaterThan(log.indexOf("end web1")).isGreaterThan(log.indexOf("end web2"));
+        assertThat(log.indexOf("start web5")).isGreaterThan(log.indexOf("end web3")).isGreaterThan(log.indexOf("end web4"));
+    }
+
+    @Test
+    void stopsOnceMaxUnavailableHostsHaveFailed() throws Exception {
+        failing.addAll(List.of("web1", "web2"));
+        recordActions();
+
+        FleetJob job = fleet.submit(FleetJob.Action.START, targets(6), new FleetJob.Options(3, 1, 2, 0));
+        waitFor(job::isFinished);
+
+        FleetJob.Snapshot snapshot = job.snapshot();
+        assertThat(snapshot.status()).isEqualTo(FleetJob.Status.FAILED);
+        assertThat(snapshot.message()).isEqualTo("Stopped after 2 hosts failed (maxUnavailable 2)");
+        assertThat(snapshot.counts()).containsEntry(FleetJob.HostState.FAILED, 2)
+                .containsEntry(FleetJob.HostState.SKIPPED, 4);
+        assertThat(log).containsExactly("start web1", "start web2");
+        verify(ansibleService, never()).changeIISState(eq("web3"), any(), any(), any());
+    }
+
+    @Test
+    void countsFailuresInProgressAgainstMaxUnavailable() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        when(ansibleService.changeIISState(anyString(), any(), any(), any())).thenAnswer(invocation -> {
+            String host = invocation.getArgument(0);
+            log.add("start " + host);
+            release.await(5, TimeUnit.SECONDS);
+            return ServiceStatus.of(host, ServiceState.FAILED, "Access is denied");
+        });
+
+        FleetJob job = fleet.submit(FleetJob.Action.STOP, targets(4), new FleetJob.Options(4, 4, 2, 0));
+        waitFor(() -> log.size() == 2);
+        // Two hosts could still fail, so a third may not start alongside them even with maxParallel 4
+        Thread.sleep(100);
+        assertThat(log).hasSize(2);
+
+        release.countDown();
+        waitFor(job::isFinished);
+        assertThat(job.snapshot().counts()).containsEntry(FleetJob.HostState.SKIPPED, 2);
+    }
+
+    @Test
+    void aStartOnlySucceedsOnceIISIsRunningAgain() throws Exception {
+        recordActions();
+        when(ansibleService.getIISStatus(anyString(), any(), any())).thenAnswer(invocation -> {
+            String host = invocation.getArgument(0);
+            return ServiceStatus.of(host, host.equals("web2") ? ServiceState.STOPPED : ServiceState.RUNNING, null);
+        });
+
+        FleetJob job = fleet.submit(FleetJob.Action.RESTART, targets(2), new FleetJob.Options(2, 2, 2, 0));
+        waitFor(job::isFinished);
+
+        assertThat(job.snapshot().hosts()).extracting(FleetJob.HostProgress::state)
+                .containsExactly(FleetJob.HostState.SUCCEEDED, FleetJob.HostState.FAILED);
+        assertThat(job.snapshot().hosts().get(1).description()).startsWith("🔴 NOT RUNNING");
+    }
+
+    @Test
+    void cancellingLetsRunningActionsFinishButStartsNoMore() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        when(ansibleService.changeIISState(anyString(), any(), any(), any())).thenAnswer(invocation -> {
+            String host = invocation.getArgument(0);
+            log.add("start " + host);
+            release.await(5, TimeUnit.SECONDS);
+            return ServiceStatus.of(host, ServiceState.STOPPED, null);
+        });
+
+        FleetJob job = fleet.submit(FleetJob.Action.STOP, targets(3), new FleetJob.Options(1, 1, 1, 0));
+        waitFor(() -> log.size() == 1);
+        assertThat(fleet.cancel(job.getId())).isTrue();
+        release.countDown();
+        waitFor(job::isFinished);
+
+        assertThat(job.snapshot().status()).isEqualTo(FleetJob.Status.CANCELLED);
+        assertThat(job.snapshot().hosts()).extracting(FleetJob.HostProgress::state).containsExactly(
+                FleetJob.HostState.SUCCEEDED, FleetJob.HostState.CANCELLED, FleetJob.HostState.CANCELLED);
+        assertThat(fleet.cancel(job.getId())).isFalse();
+    }
+
+    @Test
+    void refusesHostsListedTwiceOrBusyInAnotherJob() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        when(ansibleService.changeIISState(anyString(), any(), any(), any())).thenAnswer(invocation -> {
+            release.await(5, TimeUnit.SECONDS);
+            return ServiceStatus.of(invocation.getArgument(0), ServiceState.STOPPED, null);
+        });
+        FleetJob.Options options = new FleetJob.Options(1, 1, 1, 0);
+
+        assertThatThrownBy(() -> fleet.submit(FleetJob.Action.STOP, List.of(new Target("web1", "admin", "a"),
+                new Target("WEB1", "admin", "a")), options))
+                .isInstanceOf(IllegalArgumentException.class).hasMessageContaining("listed more than once");
+
+        FleetJob first = fleet.submit(FleetJob.Action.STOP, targets(2), options);
+        assertThat(fleet.isHostBusy("web2")).isTrue();
+        assertThatThrownBy(() -> fleet.submit(FleetJob.Action.START, List.of(new Target("web2", "admin", "a")), options))
+                .isInstanceOf(IllegalStateException.class).hasMessageContaining(first.getId());
+
+        release.countDown();
+        waitFor(first::isFinished);
+        assertThat(fleet.isHostBusy("web2")).isFalse();
+    }
+
+    private void recordActions() {
+        when(ansibleService.changeIISState(anyString(), any(), any(), any())).thenAnswer(invocation -> {
+            String host = invocation.getArgument(0);
+            log.add("start " + host);
+            return ServiceStatus.of(host, failing.contains(host) ? ServiceState.FAILED : ServiceState.RUNNING, null);
+        });
+        when(ansibleService.getIISStatus(anyString(), any(), any()))
+                .thenAnswer(invocation -> ServiceStatus.of(invocation.getArgument(0), ServiceState.RUNNING, null));
+    }
+
+    private static List<Target> targets(int count) {
+        List<Target> targets = new ArrayList<>();
+        for (int i = 1; i <= count; i++) {
+            targets.add(new Target("web" + i, "admin", "secret"));
+        }
+        return targets;
+    }
+
+    private static void waitFor(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean() && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(condition.getAsBoolean()).isTrue();
+    }
+}
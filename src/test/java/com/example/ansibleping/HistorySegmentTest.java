@@ -0,0 +1,78 @@
+package com.example.ansibleping;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class HistorySegmentTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void recordsSurviveReopeningTheFile() throws IOException {
+        Path file = dir.resolve("20240501-000.seg");
+        HistorySegment segment = HistorySegment.create(file, 4);
+        segment.append(1000, 3, 250, ServiceState.RUNNING, HistorySegment.FLAG_SUCCEEDED, 1, 1);
+        segment.append(2000, 7, 1200, ServiceState.STOPPED,
+                HistorySegment.FLAG_RESTART | HistorySegment.FLAG_SUCCEEDED, 0, 0);
+        segment.force();
+
+        HistorySegment reopened = HistorySegment.open(file);
+
+        assertThat(reopened.count()).isEqualTo(2);
+        assertThat(reopened.timestamp(0)).isEqualTo(1000);
+        assertThat(reopened.hostId(0)).isEqualTo(3);
+        assertThat(reopened.durationMillis(0)).isEqualTo(250);
+        assertThat(reopened.state(0)).isEqualTo(ServiceState.RUNNING);
+        assertThat(reopened.flags(0)).isEqualTo(HistorySegment.FLAG_SUCCEEDED);
+        assertThat(reopened.samples(0)).isEqualTo(1);
+        assertThat(reopened.upSamples(0)).isEqualTo(1);
+        assertThat(reopened.state(1)).isEqualTo(ServiceState.STOPPED);
+        assertThat(reopened.flags(1)).isEqualTo(HistorySegment.FLAG_RESTART | HistorySegment.FLAG_SUCCEEDED);
+        assertThat(reopened.samples(1)).isZero();
+    }
+
+    @Test
+    void refusesAppendsOnceFull() throws IOException {
+        HistorySegment segment = HistorySegment.create(dir.resolve("full.seg"), 2);
+
+        assertThat(segment.append(1, 0, 0, ServiceState.RUNNING, 0, 1, 1)).isTrue();
+        assertThat(segment.append(2, 0, 0, ServiceState.RUNNING, 0, 1, 1)).isTrue();
+        assertThat(segment.isFull()).isTrue();
+        assertThat(segment.append(3, 0, 0, ServiceState.RUNNING, 0, 1, 1)).isFalse();
+        assertThat(segment.count()).isEqualTo(2);
+    }
+
+    @Test
+    void findsTheFirstRecordAtOrAfterATimestamp() throws IOException {
+        HistorySegment segment = HistorySegment.create(dir.resolve("search.seg"), 8);
+        for (long timestamp : new long[] {100, 200, 200, 300}) {
+            segment.append(timestamp, 0, 0, ServiceState.RUNNING, 0, 1, 1);
+        }
+
+        assertThat(segment.firstIndexAtOrAfter(50)).isZero();
+        assertThat(segment.firstIndexAtOrAfter(200)).isEqualTo(1);
+        assertThat(segment.firstIndexAtOrAfter(201)).isEqualTo(3);
+        assertThat(segment.firstIndexAtOrAfter(301)).isEqualTo(4);
+    }
+
+    @Test
+    void rejectsAFileOfAnotherFormat() throws IOException {
+        Path file = dir.resolve("other.seg");
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.allocate(HistorySegment.HEADER_SIZE + HistorySegment.RECORD_SIZE));
+        }
+
+        assertThatThrownBy(() -> HistorySegment.open(file)).isInstanceOf(IOException.class)
+                .hasMessageContaining("unknown format");
+    }
+}
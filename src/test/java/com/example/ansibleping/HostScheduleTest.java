@@ -0,0 +1,147 @@
+package com.example.ansibleping;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class HostScheduleTest {
+
+    private static final HostSchedule.Policy POLICY = new HostSchedule.Policy(60_000, 10_000, 80_000, 2, 300_000);
+
+    private final HostSchedule schedule = new HostSchedule("web1", POLICY, 0);
+
+    @Test
+    void checksAHealthyHostEveryInterval() {
+        schedule.afterCheck(ServiceState.RUNNING, 1_000);
+
+        assertThat(schedule.nextDue() - 1_000).isCloseTo(60_000, within(6_000L));
+        assertThat(schedule.isDue(1_000)).isFalse();
+        assertThat(schedule.isDue(1_000 + 66_001)).isTrue();
+    }
+
+    @Test
+    void backsOffWhileTheHostStaysUnreachable() {
+        long now = 0;
+        long[] expected = {10_000, 20_000, 40_000, 80_000, 80_000};
+        for (long delay : expected) {
+            schedule.afterCheck(ServiceState.UNREACHABLE, now);
+            assertThat(schedule.nextDue() - now).isCloseTo(delay, within(delay / 10));
+            now = schedule.nextDue();
+        }
+
+        assertThat(schedule.snapshot(now).consecutiveUnreachable()).isEqualTo(expected.length);
+    }
+
+    @Test
+    void confirmsQuicklyAndResetsTheBackoffWhenTheHostComesBack() {
+        schedule.afterCheck(ServiceState.UNREACHABLE, 0);
+        schedule.afterCheck(ServiceState.TIMED_OUT, 20_000);
+
+        schedule.afterCheck(ServiceState.RUNNING, 60_000);
+        assertThat(schedule.snapshot(60_000).consecutiveUnreachable()).isZero();
+        assertThat(schedule.nextDue() - 60_000).isCloseTo(10_000, within(1_000L));
+
+        schedule.afterCheck(ServiceState.RUNNING, 70_000);
+        assertThat(schedule.nextDue() - 70_000).isCloseTo(60_000, within(6_000L));
+
+        // A new outage starts the backoff from the beginning again
+        schedule.afterCheck(ServiceState.UNREACHABLE, 130_000);
+        assertThat(schedule.nextDue() - 130_000).isCloseTo(10_000, within(1_000L));
+    }
+
+    @Test
+    void opensTheBreakerAfterRepeatedFailedRestarts() {
+        schedule.afterCheck(ServiceState.STOPPED, 0);
+        assertThat(schedule.allowRestart(0)).isTrue();
+
+        schedule.afterRestart(false, 1_000);
+        assertThat(schedule.snapshot(1_000).breaker()).isEqualTo(HostSchedule.BreakerState.CLOSED);
+
+        // The start command worked but IIS is still down at the next check
+        schedule.afterRestart(true, 2_000);
+        schedule.afterCheck(ServiceState.STOPPED, 12_000);
+
+        assertThat(schedule.snapshot(12_000).breaker()).isEqualTo(HostSchedule.BreakerState.OPEN);
+        assertThat(schedule.snapshot(12_000).consecutiveRestartFailures()).isEqualTo(2);
+        assertThat(schedule.allowRestart(12_000)).isFalse();
+        // No point checking more often than a restart would be allowed
+        assertThat(schedule.nextDue()).isBetween(12_000 + 54_000L, 12_000 + 66_000L);
+    }
+
+    @Test
+    void halfOpensForOneTrialOnceTheOpenTimeIsUp() {
+        openBreaker(0);
+        long reopen = 300_000;
+
+        assertThat(schedule.allowRestart(reopen - 1)).isFalse();
+        assertThat(schedule.allowRestart(reopen)).isTrue();
+        assertThat(schedule.snapshot(reopen).breaker()).isEqualTo(HostSchedule.BreakerState.HALF_OPEN);
+
+        // A single failed trial opens it again straight away
+        schedule.afterRestart(false, reopen);
+        assertThat(schedule.snapshot(reopen).breaker()).isEqualTo(HostSchedule.BreakerState.OPEN);
+        assertThat(schedule.allowRestart(reopen + 1)).isFalse();
+    }
+
+    @Test
+    void closesTheBreakerWhenATrialRestartIsConfirmed() {
+        openBreaker(0);
+        long reopen = 300_000;
+        assertThat(schedule.allowRestart(reopen)).isTrue();
+
+        schedule.afterRestart(true, reopen);
+        // Not counted until the re-check sees IIS running
+        assertThat(schedule.snapshot(reopen).breaker()).isEqualTo(HostSchedule.BreakerState.HALF_OPEN);
+        schedule.afterCheck(ServiceState.RUNNING, reopen + 10_000);
+
+        HostSchedule.Snapshot snapshot = schedule.snapshot(reopen + 10_000);
+        assertThat(snapshot.breaker()).isEqualTo(HostSchedule.BreakerState.CLOSED);
+        assertThat(snapshot.consecutiveRestartFailures()).isZero();
+    }
+
+    @Test
+    void acceptsAnHttpProbeOnlyForARecentlyRunningHost() {
+        assertThat(schedule.acceptsHttpProbe(0, 300_000)).isFalse();
+
+        schedule.afterCheck(ServiceState.RUNNING, 0);
+        assertThat(schedule.acceptsHttpProbe(100_000, 300_000)).isTrue();
+        assertThat(schedule.acceptsHttpProbe(300_000, 300_000)).isFalse();
+
+        schedule.afterRestart(true, 100_000);
+        assertThat(schedule.acceptsHttpProbe(100_000, 300_000)).isFalse();
+    }
+
+    @Test
+    void probesAgainSoonAfterAFailedProbeFindsIisRunning() {
+        schedule.afterCheck(ServiceState.RUNNING, 0);
+
+        schedule.afterCheck(ServiceState.RUNNING, true, 60_000);
+        assertThat(schedule.nextDue() - 60_000).isCloseTo(10_000, within(1_000L));
+        assertThat(schedule.acceptsHttpProbe(70_000, 300_000)).isTrue();
+
+        // Still failing: the full check comes round again at the re-check pace
+        schedule.afterCheck(ServiceState.RUNNING, true, 70_000);
+        assertThat(schedule.nextDue() - 70_000).isCloseTo(10_000, within(1_000L));
+
+        assertThat(schedule.afterHttpProbe(80_000, 30_000)).isTrue();
+        assertThat(schedule.nextDue() - 80_000).isCloseTo(30_000, within(3_000L));
+        assertThat(schedule.afterHttpProbe(110_000, 30_000)).isFalse();
+    }
+
+    @Test
+    void confirmsQuicklyOnceTheSiteOfARunningHostRecovers() {
+        schedule.afterCheck(ServiceState.RUNNING, true, 0);
+
+        schedule.afterCheck(ServiceState.RUNNING, 10_000);
+        assertThat(schedule.nextDue() - 10_000).isCloseTo(10_000, within(1_000L));
+        assertThat(schedule.afterHttpProbe(20_000, 30_000)).isFalse();
+    }
+
+    private void openBreaker(long now) {
+        schedule.afterCheck(ServiceState.STOPPED, now);
+        schedule.afterRestart(false, now);
+        schedule.afterRestart(false, now);
+        assertThat(schedule.snapshot(now).breaker()).isEqualTo(HostSchedule.BreakerState.OPEN);
+    }
+}
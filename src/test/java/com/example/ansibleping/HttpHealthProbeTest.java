@@ -0,0 +1,135 @@
+package com.example.ansibleping;
+
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class HttpHealthProbeTest {
+
+    private final MeterRegistry registry = new SimpleMeterRegistry();
+    private final HttpHealthProbe probe = new HttpHealthProbe(new AnsibleMetrics(registry, false), true,
+            "http://{host}/", 500, 300, 399, 1);
+
+    private HttpServer server;
+    private String base;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        respond("/ok", 200);
+        respond("/down", 503);
+        respond("/moved", 302);
+        respond("/missing", 404);
+        server.createContext("/slow", exchange -> {
+            try {
+                Thread.sleep(2000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            exchange.sendResponseHeaders(200, -1);
+            exchange.close();
+        });
+        server.start();
+        base = "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+        probe.shutdown();
+    }
+
+    @Test
+    void aSuccessfulResponseIsHealthy() {
+        HttpHealthProbe.HttpCheck check = probe.probe("web1", base + "/ok").join();
+
+        assertThat(check.healthy()).isTrue();
+        assertThat(check.statusCode()).isEqualTo(200);
+        assertThat(check.error()).isNull();
+        assertThat(probe.getLatest()).containsExactly(check);
+        assertThat(registry.get("iis.http.probe.responses").tag("status", "200").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void serverErrorsAreUnhealthy() {
+        HttpHealthProbe.HttpCheck check = probe.probe("web1", base + "/down").join();
+
+        assertThat(check.healthy()).isFalse();
+        assertThat(check.statusCode()).isEqualTo(503);
+    }
+
+    @Test
+    void statusCodesUpToTheLimitAreHealthy() {
+        // Redirects are not followed; the redirect itself shows IIS is serving
+        assertThat(probe.probe("web1", base + "/moved").join().healthy()).isTrue();
+        assertThat(probe.probe("web1", base + "/missing").join().healthy()).isFalse();
+
+        HttpHealthProbe lenient = new HttpHealthProbe(new AnsibleMetrics(new SimpleMeterRegistry(), false), true,
+                "http://{host}/", 500, 300, 404, 1);
+        try {
+            assertThat(lenient.probe("web1", base + "/missing").join().healthy()).isTrue();
+        } finally {
+            lenient.shutdown();
+        }
+    }
+
+    @Test
+    void noAnswerInTimeIsReportedAsATimeout() {
+        HttpHealthProbe.HttpCheck check = probe.probe("web1", base + "/slow").join();
+
+        assertThat(check.healthy()).isFalse();
+        assertThat(check.statusCode()).isZero();
+        assertThat(check.error()).isEqualTo("Timed out");
+        assertThat(registry.get("iis.http.probe.responses").tag("status", "none").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void aRefusedConnectionOrBadUrlIsUnhealthy() throws IOException {
+        int closedPort;
+        try (ServerSocket socket = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+            closedPort = socket.getLocalPort();
+        }
+
+        HttpHealthProbe.HttpCheck refused = probe.probe("web1", "http://127.0.0.1:" + closedPort + "/").join();
+        HttpHealthProbe.HttpCheck invalid = probe.probe("web2", "http://web 2/").join();
+
+        assertThat(refused.healthy()).isFalse();
+        assertThat(refused.error()).startsWith("ConnectException");
+        assertThat(invalid.healthy()).isFalse();
+        assertThat(invalid.error()).startsWith("Invalid URL");
+    }
+
+    @Test
+    void buildsTheUrlFromTheTemplateUnlessTheHostHasItsOwn() {
+        assertThat(probe.urlFor(new InventoryTarget("web1", "admin", Set.of(), Set.of(), null)))
+                .isEqualTo("http://web1/");
+        assertThat(probe.urlFor(new InventoryTarget("web1", "admin", Set.of(), Set.of(), "https://web1/health")))
+                .isEqualTo("https://web1/health");
+
+        HttpHealthProbe disabled = new HttpHealthProbe(new AnsibleMetrics(new SimpleMeterRegistry(), false), false,
+                "http://{host}/", 500, 300, 399, 1);
+        try {
+            assertThat(disabled.urlFor(new InventoryTarget("web1", "admin", Set.of(), Set.of(), null))).isNull();
+        } finally {
+            disabled.shutdown();
+        }
+    }
+
+    private void respond(String path, int status) {
+        server.createContext(path, exchange -> {
+            exchange.sendResponseHeaders(status, -1);
+            exchange.close();
+        });
+    }
+}
@@ -0,0 +1,161 @@
+package com.example.ansibleping;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit.jupiter.SpringJUnitConfig;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+// Every test starts with a fresh monitor: schedules and sweeps carry over otherwise
+@SpringJUnitConfig(IISMonitorServiceTest.Config.class)
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+@TestPropertySource(properties = {"iis.monitor.worker-threads=4", "iis.monitor.jitter-ms=0"})
+class IISMonitorServiceTest {
+
+    @Configuration
+    @Import({IISMonitorService.class, AnsibleMetrics.class})
+    static class Config {
+
+        @Bean
+        MeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+    }
+
+    @MockBean
+    private AnsibleService ansibleService;
+    @MockBean
+    private IISStatusStream statusStream;
+    @MockBean
+    private StatusHistoryStore historyStore;
+    @MockBean
+    private Inventory inventory;
+    @MockBean
+    private CommandExecutor commandExecutor;
+    @MockBean
+    private HttpHealthProbe httpProbe;
+    @MockBean
+    private ClusterCoordinator cluster;
+    @MockBean
+    private LogTailService logTailService;
+    @MockBean
+    private RemediationEngine remediation;
+    @MockBean
+    private StartupWarmup startup;
+
+    @Autowired
+    private IISMonitorService monitor;
+
+    private final Set<String> checked = ConcurrentHashMap.newKeySet();
+
+    @BeforeEach
+    void setUp() {
+        when(cluster.owns(anyString())).thenReturn(true);
+        when(inventory.contains(anyString())).thenReturn(true);
+    }
+
+    @Test
+    void checksTheFleetInParallelOnTheBoundedPool() throws Exception {
+        monitor(12);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger mostAtOnce = new AtomicInteger();
+        when(ansibleService.getIISStatus(anyString(), any(), any())).thenAnswer(invocation -> {
+            mostAtOnce.accumulateAndGet(running.incrementAndGet(), Math::max);
+            Thread.sleep(100);
+            running.decrementAndGet();
+            return running(invocation.getArgument(0));
+        });
+
+        monitor.dispatchDueChecks();
+
+        // The dispatcher only hands the checks to the workers
+        assertThat(checked).hasSizeLessThan(12);
+        waitFor(() -> monitor.getSweep().lastSweepCompletedAt() > 0);
+        assertThat(checked).hasSize(12);
+        assertThat(mostAtOnce).hasValue(4);
+        assertThat(monitor.getSweep().hosts()).isEqualTo(12);
+        assertThat(monitor.getLatestStatus()).hasSize(12)
+                .allMatch(event -> event.state() == ServiceState.RUNNING);
+    }
+
+    @Test
+    void aHungHostOnlyHoldsItsOwnWorker() throws Exception {
+        monitor(3);
+        CountDownLatch release = new CountDownLatch(1);
+        when(ansibleService.getIISStatus(anyString(), any(), any())).thenAnswer(invocation -> {
+            String host = invocation.getArgument(0);
+            if (host.equals("web1")) {
+                release.await(5, TimeUnit.SECONDS);
+            }
+            return running(host);
+        });
+
+        monitor.dispatchDueChecks();
+        // The other hosts finish while web1 hangs
+        waitFor(() -> monitor.getSweep().pending() == 1);
+        assertThat(checked).containsExactlyInAnyOrder("web2", "web3");
+        // Still due, but its check has not come back, so it is not dispatched a second time
+        monitor.dispatchDueChecks();
+
+        release.countDown();
+        waitFor(() -> monitor.getSweep().pending() == 0);
+        verify(ansibleService, times(1)).getIISStatus("web1", "admin", "secret");
+    }
+
+    @Test
+    void leavesHostsOfOtherInstancesAlone() throws Exception {
+        monitor(2);
+        when(cluster.owns("web2")).thenReturn(false);
+        when(ansibleService.getIISStatus(anyString(), any(), any()))
+                .thenAnswer(invocation -> running(invocation.getArgument(0)));
+
+        monitor.dispatchDueChecks();
+        waitFor(() -> monitor.getSweep().lastSweepCompletedAt() > 0);
+
+        assertThat(checked).containsExactly("web1");
+    }
+
+    private void monitor(int hosts) {
+        List<Target> targets = new ArrayList<>();
+        for (int i = 1; i <= hosts; i++) {
+            targets.add(new Target("web" + i, "admin", "secret"));
+        }
+        when(inventory.targets()).thenReturn(targets);
+    }
+
+    private ServiceStatus running(String host) {
+        checked.add(host);
+        return ServiceStatus.of(host, ServiceState.RUNNING, null);
+    }
+
+    private static void waitFor(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean() && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(condition.getAsBoolean()).isTrue();
+    }
+}
@@ -0,0 +1,120 @@
+package com.example.ansibleping;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class IISProbeServiceTest {
+
+    // As printed by scripts/iis-probe.ps1 on a healthy host, after a profile banner
+    private static final String HEALTHY = """
+            Loading personal and system profiles took 512ms.
+            {"services":[{"name":"W3SVC","state":"running","startMode":"auto","processId":4312},
+            {"name":"WAS","state":"running","startMode":"manual","processId":4120}],
+            "appPools":[{"name":"DefaultAppPool","state":"started","autoStart":true,"runtimeVersion":"v4.0",
+            "pipelineMode":"integrated"},{"name":"Reports","state":"stopped","autoStart":false,"runtimeVersion":"",
+            "pipelineMode":"classic"}],
+            "sites":[{"name":"Default Web Site","id":1,"state":"started","appPool":"DefaultAppPool",
+            "bindings":[{"protocol":"http","bindingInformation":"*:80:"}]}],
+            "counters":{"cpuPercent":12.5,"availableMemoryMb":2048,"currentConnections":7,"requestsPerSec":3.2,
+            "requestQueueLength":0},"errors":[],"psVersion":"5.1"}
+            """;
+
+    private final CommandExecutor commandExecutor = mock(CommandExecutor.class);
+    private final IISProbeService probeService = new IISProbeService(commandExecutor, mock(AnsibleService.class),
+            new AnsibleMetrics(new SimpleMeterRegistry(), false), 90000);
+
+    @Test
+    void collectsEverySectionFromOneRun() {
+        printed(HEALTHY);
+
+        IISProbe probe = probeService.probe("web1", "admin", "secret");
+
+        assertThat(probe.state()).isEqualTo(ServiceState.RUNNING);
+        assertThat(probe.healthy()).isTrue();
+        assertThat(probe.problems()).isEmpty();
+        assertThat(probe.services()).extracting(IISProbe.Service::processId).containsExactly(4312, 4120);
+        // A stopped pool that is not set to start on its own is not a problem
+        assertThat(probe.appPools()).hasSize(2);
+        assertThat(probe.sites()).singleElement().satisfies(site -> assertThat(site.bindings())
+                .containsExactly(new IISProbe.Binding("http", "*:80:")));
+        assertThat(probe.counters().cpuPercent()).isEqualTo(12.5);
+        assertThat(probe.counters().availableMemoryMb()).isEqualTo(2048);
+        assertThat(probe.durationMillis()).isEqualTo(900);
+        verify(commandExecutor).runScript(eq(new Target("web1", "admin", "secret")), eq("probe"), anyString(),
+                eq(Duration.ofMillis(90000)));
+    }
+
+    @Test
+    void listsWhatIsNotRunning() {
+        printed("""
+                {"services":[{"name":"W3SVC","state":"stopped","startMode":"auto","processId":0},
+                {"name":"WAS","state":"not_installed"}],
+                "appPools":[{"name":"DefaultAppPool","state":"stopped","autoStart":true}],
+                "sites":[{"name":"Shop","id":2,"state":"stopped","appPool":"DefaultAppPool","bindings":[]}],
+                "counters":{},"errors":["Performance counters: Access is denied"]}
+                """);
+
+        IISProbe probe = probeService.probe("web1", "admin", "secret");
+
+        assertThat(probe.state()).isEqualTo(ServiceState.STOPPED);
+        assertThat(probe.healthy()).isFalse();
+        assertThat(probe.problems()).containsExactly("Service W3SVC is stopped", "Service WAS is not_installed",
+                "App pool DefaultAppPool is stopped", "Site Shop is stopped", "Performance counters: Access is denied");
+        assertThat(probe.counters().cpuPercent()).isNull();
+    }
+
+    @Test
+    void keepsTheServicesWhenIISConfigurationCouldNotBeRead() {
+        printed("""
+                {"services":[{"name":"W3SVC","state":"running"},{"name":"WAS","state":"running"}],
+                "counters":{"cpuPercent":3.0},
+                "errors":["IIS configuration: The specified module 'WebAdministration' was not loaded"]}
+                """);
+
+        IISProbe probe = probeService.probe("web1", "admin", "secret");
+
+        assertThat(probe.state()).isEqualTo(ServiceState.RUNNING);
+        assertThat(probe.appPools()).isEmpty();
+        assertThat(probe.sites()).isEmpty();
+        assertThat(probe.problems()).singleElement().asString().startsWith("IIS configuration:");
+    }
+
+    @Test
+    void reportsWhyTheProbeDidNotRun() {
+        when(commandExecutor.runScript(any(), anyString(), anyString(), any())).thenReturn(new ScriptResult(
+                ServiceStatus.of("web1", ServiceState.UNREACHABLE, "ntlm: Read timed out"), null));
+
+        IISProbe probe = probeService.probe("web1", "admin", "secret");
+
+        assertThat(probe.state()).isEqualTo(ServiceState.UNREACHABLE);
+        assertThat(probe.healthy()).isFalse();
+        assertThat(probe.message()).isEqualTo("ntlm: Read timed out");
+        assertThat(probe.problems()).containsExactly("Probe did not run: UNREACHABLE");
+    }
+
+    @Test
+    void rejectsOutputThatIsNotTheProbeDocument() {
+        printed("Get-CimInstance : Access denied");
+        assertThat(probeService.probe("web1", "admin", "secret").message()).startsWith("Probe printed no result");
+
+        printed("{\"services\": [{\"name\": ");
+        IISProbe truncated = probeService.probe("web1", "admin", "secret");
+        assertThat(truncated.state()).isEqualTo(ServiceState.UNKNOWN);
+        assertThat(truncated.message()).startsWith("Unexpected probe output");
+    }
+
+    private void printed(String stdout) {
+        when(commandExecutor.runScript(any(), anyString(), anyString(), any())).thenReturn(new ScriptResult(
+                new ServiceStatus("web1", ServiceState.REACHABLE, false, null, null, 900, null), stdout));
+    }
+}
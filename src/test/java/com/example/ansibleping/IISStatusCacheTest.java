@@ -0,0 +1,199 @@
+package com.example.ansibleping;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class IISStatusCacheTest {
+
+    private static final Target WEB1 = new Target("web1", "admin", "secret");
+    private static final Target WEB2 = new Target("web2", "admin", "secret");
+    private static final Target WEB3 = new Target("web3", "admin", "secret");
+
+    private IISStatusCache cache;
+
+    @BeforeEach
+    void setUp() {
+        cache = cache(60000, 16);
+    }
+
+    @Test
+    void servesARepeatedLookupFromTheCache() {
+        AtomicInteger loads = new AtomicInteger();
+
+        cache.get(WEB1, () -> running(WEB1, loads));
+        ServiceStatus second = cache.get(WEB1, () -> running(WEB1, loads));
+
+        assertThat(second.state()).isEqualTo(ServiceState.RUNNING);
+        assertThat(loads).hasValue(1);
+        assertThat(cache.getStats()).containsEntry("hits", 1L).containsEntry("misses", 1L);
+    }
+
+    @Test
+    void doesNotShareEntriesBetweenCredentials() {
+        AtomicInteger loads = new AtomicInteger();
+
+        cache.get(WEB1, () -> running(WEB1, loads));
+        cache.get(new Target("web1", "admin", "other"), () -> running(WEB1, loads));
+
+        assertThat(loads).hasValue(2);
+    }
+
+    @Test
+    void reloadsAfterTheTtl() throws InterruptedException {
+        cache = cache(20, 16);
+        AtomicInteger loads = new AtomicInteger();
+
+        cache.get(WEB1, () -> running(WEB1, loads));
+        Thread.sleep(50);
+
+        assertThat(cache.getIfPresent(WEB1)).isNull();
+        cache.get(WEB1, () -> running(WEB1, loads));
+        assertThat(loads).hasValue(2);
+    }
+
+    @Test
+    void evictsTheLeastRecentlyUsedEntry() {
+        cache = cache(60000, 2);
+        AtomicInteger loads = new AtomicInteger();
+
+        cache.get(WEB1, () -> running(WEB1, loads));
+        cache.get(WEB2, () -> running(WEB2, loads));
+        // Touch web1 so web2 becomes the least recently used
+        cache.getIfPresent(WEB1);
+        cache.get(WEB3, () -> running(WEB3, loads));
+
+        assertThat(cache.getIfPresent(WEB1)).isNotNull();
+        assertThat(cache.getIfPresent(WEB2)).isNull();
+        assertThat(cache.getIfPresent(WEB3)).isNotNull();
+        assertThat(cache.getStats()).containsEntry("evictions", 1L).containsEntry("size", 2L);
+    }
+
+    @Test
+    void doesNotCacheInconclusiveResults() {
+        cache.get(WEB1, () -> ServiceStatus.of("web1", ServiceState.UNREACHABLE, "timed out"));
+
+        assertThat(cache.getIfPresent(WEB1)).isNull();
+    }
+
+    @Test
+    void coalescesConcurrentLoadsOfTheSameHost() throws Exception {
+        int callers = 8;
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(callers);
+        try {
+            Future<ServiceStatus> first = pool.submit(() -> cache.get(WEB1, () -> {
+                loading.countDown();
+                await(release);
+                return running(WEB1, loads);
+            }));
+            assertThat(loading.await(5, TimeUnit.SECONDS)).isTrue();
+
+            Future<?>[] others = new Future<?>[callers - 1];
+            for (int i = 0; i < others.length; i++) {
+                others[i] = pool.submit(() -> cache.get(WEB1, () -> running(WEB1, loads)));
+            }
+            // Every other caller is parked on the running load before it finishes
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (cache.getStats().get("coalesced") < others.length && System.nanoTime() < deadline) {
+                Thread.sleep(5);
+            }
+            release.countDown();
+
+            assertThat(first.get(5, TimeUnit.SECONDS).state()).isEqualTo(ServiceState.RUNNING);
+            for (Future<?> other : others) {
+                assertThat(((ServiceStatus) other.get(5, TimeUnit.SECONDS)).state()).isEqualTo(ServiceState.RUNNING);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        assertThat(loads).hasValue(1);
+        assertThat(cache.getStats()).containsEntry("coalesced", (long) callers - 1).containsEntry("misses", 1L);
+    }
+
+    @Test
+    void invalidationDiscardsAStatusLoadedBeforeIt() {
+        long generation = cache.generation("web1");
+
+        // A start invalidates the host while an older check is still on its way back
+        cache.invalidate("web1");
+        cache.put(WEB1, ServiceStatus.of("web1", ServiceState.STOPPED, null), generation);
+
+        assertThat(cache.getIfPresent(WEB1)).isNull();
+
+        cache.put(WEB1, ServiceStatus.of("web1", ServiceState.RUNNING, null), cache.generation("web1"));
+        assertThat(cache.getIfPresent(WEB1).state()).isEqualTo(ServiceState.RUNNING);
+    }
+
+    @Test
+    void aLookupAfterAnInvalidationDoesNotJoinALoadFromBeforeIt() throws Exception {
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService pool = Executors.newSingleThreadExecutor();
+        try {
+            Future<ServiceStatus> before = pool.submit(() -> cache.get(WEB1, () -> {
+                loading.countDown();
+                await(release);
+                loads.incrementAndGet();
+                return ServiceStatus.of("web1", ServiceState.STOPPED, null);
+            }));
+            assertThat(loading.await(5, TimeUnit.SECONDS)).isTrue();
+
+            // IIS is started while the old check is still out
+            cache.invalidate("web1");
+            ServiceStatus after = cache.get(WEB1, () -> running(WEB1, loads));
+            release.countDown();
+
+            assertThat(after.state()).isEqualTo(ServiceState.RUNNING);
+            assertThat(before.get(5, TimeUnit.SECONDS).state()).isEqualTo(ServiceState.STOPPED);
+        } finally {
+            pool.shutdownNow();
+        }
+
+        assertThat(loads).hasValue(2);
+        assertThat(cache.getStats()).containsEntry("coalesced", 0L);
+        assertThat(cache.getIfPresent(WEB1).state()).isEqualTo(ServiceState.RUNNING);
+    }
+
+    @Test
+    void invalidationDropsEveryEntryOfTheHost() {
+        AtomicInteger loads = new AtomicInteger();
+        cache.get(WEB1, () -> running(WEB1, loads));
+        cache.get(WEB2, () -> running(WEB2, loads));
+
+        cache.invalidate("web1");
+
+        assertThat(cache.getIfPresent(WEB1)).isNull();
+        assertThat(cache.getIfPresent(WEB2)).isNotNull();
+    }
+
+    private static IISStatusCache cache(long ttlMillis, int maxEntries) {
+        return new IISStatusCache(new AnsibleMetrics(new SimpleMeterRegistry(), false), ttlMillis, maxEntries);
+    }
+
+    private static ServiceStatus running(Target target, AtomicInteger loads) {
+        loads.incrementAndGet();
+        return ServiceStatus.of(target.host(), ServiceState.RUNNING, null);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
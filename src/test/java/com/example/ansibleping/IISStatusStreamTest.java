@@ -0,0 +1,108 @@
+package com.example.ansibleping;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+
+class IISStatusStreamTest {
+
+    private final IISStatusStream stream = new IISStatusStream(new AnsibleMetrics(new SimpleMeterRegistry(), false),
+            2, false);
+
+    private final MockMvc mvc = MockMvcBuilders.standaloneSetup(new StreamController()).build();
+
+    private List<StatusEvent> latest = List.of();
+
+    @AfterEach
+    void tearDown() {
+        stream.shutdown();
+    }
+
+    @Test
+    void sendsTheSnapshotFirstAndThenOnlyTheHostsAskedFor() throws Exception {
+        latest = List.of(event("web1", ServiceState.RUNNING), event("web2", ServiceState.RUNNING));
+        MockHttpServletResponse response = subscribe("web1");
+        waitFor(() -> content(response).contains("event:snapshot"));
+
+        stream.publish(event("web2", ServiceState.STOPPED));
+        stream.publish(event("web1", ServiceState.STOPPED));
+        waitFor(() -> content(response).contains("STOPPED") && content(response).endsWith("\n\n"));
+
+        String sent = content(response);
+        assertThat(sent.indexOf("event:snapshot")).isLessThan(sent.indexOf("event:status"));
+        assertThat(sent).contains("\"host\":\"web1\"", "\"state\":\"STOPPED\"").doesNotContain("web2");
+    }
+
+    @Test
+    void tellsSubscribersWhenAHostIsRemoved() throws Exception {
+        MockHttpServletResponse everything = subscribe(null);
+        MockHttpServletResponse other = subscribe("web2");
+
+        stream.publishRemoval("web1");
+        waitFor(() -> content(everything).contains("data:web1"));
+
+        assertThat(content(everything)).contains("event:removed\ndata:web1");
+        assertThat(content(other)).doesNotContain("removed");
+    }
+
+    @Test
+    void refusesSubscribersBeyondTheLimit() throws Exception {
+        subscribe(null);
+        subscribe(null);
+
+        assertThat(stream.getSubscriberCount()).isEqualTo(2);
+        assertThatThrownBy(() -> stream.subscribe(Set.of(), () -> latest))
+                .isInstanceOf(IllegalStateException.class);
+    }
+
+    @RestController
+    class StreamController {
+
+        @GetMapping("/stream")
+        SseEmitter stream(@RequestParam(required = false) Set<String> hosts) {
+            return stream.subscribe(hosts == null ? Set.of() : hosts, () -> latest);
+        }
+    }
+
+    private MockHttpServletResponse subscribe(String host) throws Exception {
+        return mvc.perform(host == null ? get("/stream") : get("/stream").param("hosts", host))
+                .andReturn().getResponse();
+    }
+
+    private static StatusEvent event(String host, ServiceState state) {
+        return new StatusEvent(host, state, state.name(), ServiceStatus.of(host, state, null),
+                System.currentTimeMillis());
+    }
+
+    private static String content(MockHttpServletResponse response) {
+        try {
+            return response.getContentAsString();
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void waitFor(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean() && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(condition.getAsBoolean()).isTrue();
+    }
+}
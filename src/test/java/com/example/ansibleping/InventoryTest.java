@@ -0,0 +1,132 @@
+package com.example.ansibleping;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class InventoryTest {
+
+    private static final Credential ADMIN = new Credential("admin", "administrator", "secret");
+
+    @TempDir
+    Path dir;
+
+    private final List<Inventory> opened = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() throws IOException {
+        for (Inventory inventory : opened) {
+            inventory.close();
+        }
+    }
+
+    @Test
+    void replaysTheLogAfterARestart() throws IOException {
+        Inventory inventory = open(1000);
+        assertThat(inventory.isFresh()).isTrue();
+        inventory.put(target("web1", Set.of("prod"), Set.of()), ADMIN);
+        inventory.put(target("web2", Set.of("prod"), Set.of("canary")), null);
+        inventory.put(target("web3", Set.of(), Set.of()), null);
+        inventory.removeTarget("web3");
+        inventory.close();
+
+        Inventory reopened = open(1000);
+
+        assertThat(reopened.isFresh()).isFalse();
+        assertThat(reopened.targets()).extracting(Target::host).containsExactly("web1", "web2");
+        assertThat(reopened.target("web1")).isEqualTo(new Target("web1", "administrator", "secret"));
+        assertThat(reopened.byGroup("prod")).extracting(Target::host).containsExactly("web1", "web2");
+        assertThat(reopened.byTag("canary")).extracting(Target::host).containsExactly("web2");
+        assertThat(Files.exists(dir.resolve("snapshot.json"))).isFalse();
+    }
+
+    @Test
+    void compactsTheLogIntoASnapshot() throws IOException {
+        Inventory inventory = open(3);
+        inventory.put(target("web1", Set.of(), Set.of()), ADMIN);
+        inventory.put(target("web2", Set.of(), Set.of()), null);
+        assertThat(Files.size(dir.resolve("wal.log"))).isPositive();
+
+        inventory.put(target("web3", Set.of(), Set.of()), null);
+
+        assertThat(Files.exists(dir.resolve("snapshot.json"))).isTrue();
+        assertThat(Files.size(dir.resolve("wal.log"))).isZero();
+        assertThat(Files.exists(dir.resolve("snapshot.json.tmp"))).isFalse();
+    }
+
+    @Test
+    void combinesTheSnapshotWithNewerLogEntries() throws IOException {
+        Inventory inventory = open(2);
+        inventory.put(target("web1", Set.of(), Set.of()), ADMIN);
+        inventory.put(target("web2", Set.of(), Set.of()), null);
+        // Compacted; the next change only lands in the log
+        inventory.put(target("web3", Set.of("prod"), Set.of()), null);
+        inventory.close();
+        assertThat(Files.size(dir.resolve("wal.log"))).isPositive();
+
+        Inventory reopened = open(2);
+
+        assertThat(reopened.targets()).extracting(Target::host).containsExactly("web1", "web2", "web3");
+        assertThat(reopened.byGroup("prod")).extracting(Target::host).containsExactly("web3");
+    }
+
+    @Test
+    void skipsLogEntriesAlreadyInTheSnapshot() throws IOException {
+        Inventory inventory = open(2);
+        inventory.put(target("web1", Set.of(), Set.of()), ADMIN);
+        byte[] firstEntry = Files.readAllBytes(dir.resolve("wal.log"));
+        inventory.removeTarget("web1");
+        inventory.close();
+
+        // As if the process died after writing the snapshot but before emptying the log
+        Files.write(dir.resolve("wal.log"), firstEntry);
+        Inventory reopened = open(2);
+
+        assertThat(reopened.targets()).isEmpty();
+        assertThat(reopened.credentials()).containsExactly(ADMIN);
+    }
+
+    @Test
+    void dropsATornEntryAtTheEndOfTheLog() throws IOException {
+        Inventory inventory = open(1000);
+        inventory.put(target("web1", Set.of(), Set.of()), ADMIN);
+        inventory.close();
+        Path log = dir.resolve("wal.log");
+        long complete = Files.size(log);
+        Files.writeString(log, "{\"sequence\":2,\"op\":\"put\",\"tar", StandardCharsets.UTF_8,
+                StandardOpenOption.APPEND);
+
+        Inventory reopened = open(1000);
+
+        assertThat(reopened.targets()).extracting(Target::host).containsExactly("web1");
+        assertThat(Files.size(log)).isEqualTo(complete);
+
+        // New changes follow the last complete entry and survive the next restart
+        reopened.put(target("web2", Set.of(), Set.of()), null);
+        reopened.close();
+        assertThat(open(1000).targets()).extracting(Target::host).containsExactly("web1", "web2");
+    }
+
+    private Inventory open(int compactAfter) throws IOException {
+        Inventory inventory = new Inventory(new AnsibleMetrics(new SimpleMeterRegistry(), false), dir.toString(),
+                compactAfter, false);
+        opened.add(inventory);
+        return inventory;
+    }
+
+    private static InventoryTarget target(String host, Set<String> groups, Set<String> tags) {
+        return new InventoryTarget(host, ADMIN.id(), groups, tags, null);
+    }
+}
@@ -0,0 +1,142 @@
+package com.example.ansibleping;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+class LogTailServiceTest {
+
+    private static final Target WEB1 = new Target("web1", "admin", "secret");
+
+    private final CommandExecutor commandExecutor = mock(CommandExecutor.class);
+    private final LogTailService logs = new LogTailService(commandExecutor,
+            new AnsibleMetrics(new SimpleMeterRegistry(), false), 100, 200, 262144, 50, 16384, 60000, 2, 90000);
+
+    // The script of every collection, with its cursor preamble
+    private final List<String> scripts = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        logs.shutdown();
+    }
+
+    @Test
+    void startsFromTheInitialLimitsAndThenReadsOnFromTheCursors() {
+        printed(collected(1041, """
+                [{"recordId": 1041, "time": "2024-05-01T10:00:00Z", "level": "Error",
+                  "provider": "Service Control Manager", "eventId": 7031, "message": "W3SVC terminated"}]""", """
+                [{"site": "Default Web Site", "file": "C:\\\\inetpub\\\\logs\\\\W3SVC1\\\\u_ex240501.log",
+                  "offset": 5120, "lines": ["2024-05-01 10:00:01 GET / 80 - 10.0.0.5 500"]}]"""));
+
+        LogTailService.LogBatch first = logs.collect(WEB1);
+        printed(collected(1041, "[]", "[]"));
+        logs.collect(WEB1);
+
+        assertThat(first.state()).isEqualTo(ServiceState.REACHABLE);
+        assertThat(first.events()).isEqualTo(1);
+        assertThat(first.lines()).isEqualTo(1);
+        assertThat(first.compressedBytes()).isPositive();
+        assertThat(scripts.get(0)).startsWith("$EventCursor = -1\n").contains("$InitialEvents = 50\n",
+                "$FileCursors = @{}\n");
+        assertThat(scripts.get(1)).startsWith("$EventCursor = 1041\n")
+                .contains("$FileCursors = @{'Default Web Site' = @('C:\\inetpub\\logs\\W3SVC1\\u_ex240501.log', 5120); }");
+    }
+
+    @Test
+    void aFailedCollectionIsRepeatedFromTheSameCursor() {
+        printed(collected(7, "[]", "[]"));
+        logs.collect(WEB1);
+        doAnswer(invocation -> {
+            scripts.add(invocation.getArgument(2));
+            return new ScriptResult(ServiceStatus.of("web1", ServiceState.UNREACHABLE, "Read timed out"), null);
+        }).when(commandExecutor).runScript(any(), anyString(), anyString(), any());
+        LogTailService.LogBatch failed = logs.collect(WEB1);
+        printed("H4sIA not gzip");
+        LogTailService.LogBatch garbled = logs.collect(WEB1);
+        printed(collected(9, "[]", "[]"));
+        logs.collect(WEB1);
+
+        assertThat(failed.state()).isEqualTo(ServiceState.UNREACHABLE);
+        assertThat(garbled.state()).isEqualTo(ServiceState.UNKNOWN);
+        assertThat(garbled.message()).startsWith("Unexpected collector output");
+        assertThat(scripts).extracting(script -> script.substring(0, script.indexOf('\n')))
+                .containsExactly("$EventCursor = -1", "$EventCursor = 7", "$EventCursor = 7", "$EventCursor = 7");
+    }
+
+    @Test
+    void queriesReadOnFromTheLastSequenceSeen() {
+        printed(collected(2, """
+                [{"recordId": 1, "provider": "WAS", "eventId": 5002, "message": "Pool disabled"},
+                 {"recordId": 2, "provider": "WAS", "eventId": 5059, "message": "Pool stopped"}]""", """
+                [{"site": "Shop", "file": "u_ex.log", "offset": 10, "lines": ["2024-05-01 10:00:01 GET /cart 503"]}]"""));
+        logs.collect(WEB1);
+
+        List<LogEntry> all = logs.query("web1", 0, null, 100);
+        assertThat(all).extracting(LogEntry::origin).containsExactly("WAS/5002", "WAS/5059", "Shop");
+        assertThat(all.get(2).time()).isEqualTo("2024-05-01T10:00:01Z");
+        assertThat(logs.query("web1", 0, "w3c", 100)).singleElement()
+                .satisfies(entry -> assertThat(entry.source()).isEqualTo("w3c"));
+
+        long seen = all.get(2).sequence();
+        printed(collected(3, """
+                [{"recordId": 3, "provider": "WAS", "eventId": 5186, "message": "Worker process recycled"}]""", "[]"));
+        logs.collect(WEB1);
+
+        assertThat(logs.query("web1", seen, null, 100)).extracting(LogEntry::origin).containsExactly("WAS/5186");
+        logs.forget("web1");
+        assertThat(logs.query("web1", 0, null, 100)).isEmpty();
+    }
+
+    @Test
+    void collectsAfterAFailureAtMostOncePerInterval() throws InterruptedException {
+        printed(collected(1, "[]", "[]"));
+
+        logs.collectAfterFailure(WEB1);
+        verify(commandExecutor, timeout(5000)).runScript(any(), anyString(), anyString(), any());
+        logs.collectAfterFailure(WEB1);
+        logs.collectAfterFailure(new Target("web2", "admin", "secret"));
+
+        verify(commandExecutor, timeout(5000).times(2)).runScript(any(), anyString(), anyString(), any());
+        TimeUnit.MILLISECONDS.sleep(100);
+        verify(commandExecutor, times(2)).runScript(any(), anyString(), anyString(), any());
+    }
+
+    // Stubbed without calling the mock, so replacing a stub does not record a collection
+    private void printed(String stdout) {
+        doAnswer(invocation -> {
+            scripts.add(invocation.getArgument(2));
+            return new ScriptResult(ServiceStatus.of("web1", ServiceState.REACHABLE, null), stdout);
+        }).when(commandExecutor).runScript(any(), anyString(), anyString(), any());
+    }
+
+    // The collector's output: its JSON document gzipped and base64-encoded, in lines as PowerShell prints it
+    private static String collected(long eventCursor, String events, String files) {
+        String json = "{\"eventCursor\": " + eventCursor + ", \"events\": " + events + ", \"files\": " + files
+                + ", \"errors\": []}";
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(bytes)) {
+            gzip.write(json.getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return Base64.getMimeEncoder().encodeToString(bytes.toByteArray()) + "\r\n";
+    }
+}
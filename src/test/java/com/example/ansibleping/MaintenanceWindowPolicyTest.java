@@ -0,0 +1,85 @@
+package com.example.ansibleping;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.time.DayOfWeek;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.EnumSet;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class MaintenanceWindowPolicyTest {
+
+    @Test
+    void parsesDaysRangesAndEveryDay() {
+        List<MaintenanceWindowPolicy.Window> windows =
+                MaintenanceWindowPolicy.parse("SUN 02:00-04:00, mon-fri 12:30-13:00,* 23:00-23:30");
+
+        assertThat(windows).containsExactly(
+                new MaintenanceWindowPolicy.Window(EnumSet.of(DayOfWeek.SUNDAY), LocalTime.of(2, 0), LocalTime.of(4, 0)),
+                new MaintenanceWindowPolicy.Window(EnumSet.range(DayOfWeek.MONDAY, DayOfWeek.FRIDAY),
+                        LocalTime.of(12, 30), LocalTime.of(13, 0)),
+                new MaintenanceWindowPolicy.Window(EnumSet.allOf(DayOfWeek.class),
+                        LocalTime.of(23, 0), LocalTime.of(23, 30)));
+    }
+
+    @Test
+    void wrapsADayRangeAroundTheEndOfTheWeek() {
+        MaintenanceWindowPolicy.Window window = MaintenanceWindowPolicy.parse("FRI-MON 01:00-02:00").get(0);
+
+        assertThat(window.days()).containsExactlyInAnyOrder(DayOfWeek.FRIDAY, DayOfWeek.SATURDAY, DayOfWeek.SUNDAY,
+                DayOfWeek.MONDAY);
+    }
+
+    @Test
+    void coversTheStartButNotTheEnd() {
+        MaintenanceWindowPolicy.Window window = MaintenanceWindowPolicy.parse("MON-FRI 12:30-13:00").get(0);
+
+        assertThat(window.contains(at(6, 12, 30))).isTrue();
+        assertThat(window.contains(at(6, 12, 59))).isTrue();
+        assertThat(window.contains(at(6, 13, 0))).isFalse();
+        assertThat(window.contains(at(6, 12, 29))).isFalse();
+        // Saturday
+        assertThat(window.contains(at(11, 12, 45))).isFalse();
+    }
+
+    @Test
+    void aWindowEndingBeforeItStartsRunsPastMidnight() {
+        MaintenanceWindowPolicy.Window window = MaintenanceWindowPolicy.parse("SAT 22:00-02:00").get(0);
+
+        // Saturday evening and the early hours of Sunday
+        assertThat(window.contains(at(11, 22, 0))).isTrue();
+        assertThat(window.contains(at(12, 1, 59))).isTrue();
+        assertThat(window.contains(at(12, 2, 0))).isFalse();
+        // Early Saturday belongs to a Friday window, which there is none of
+        assertThat(window.contains(at(11, 1, 0))).isFalse();
+        assertThat(window.contains(at(12, 22, 0))).isFalse();
+    }
+
+    @Test
+    void blankSpecificationHasNoWindows() {
+        assertThat(MaintenanceWindowPolicy.parse("")).isEmpty();
+        assertThat(MaintenanceWindowPolicy.parse("  ")).isEmpty();
+        assertThat(MaintenanceWindowPolicy.parse(null)).isEmpty();
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"MON", "MON 02:00", "MON 02:00-", "MON 2am-4am", "MON 25:00-26:00", "XYZ 02:00-04:00",
+            "MO 02:00-04:00", "MON 02:00-04:00 extra"})
+    void rejectsMalformedWindows(String spec) {
+        assertThatThrownBy(() -> MaintenanceWindowPolicy.parse(spec)).isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("maintenance window");
+    }
+
+    // 2024-05-06 is a Monday
+    private static ZonedDateTime at(int dayOfMonth, int hour, int minute) {
+        return LocalDateTime.of(2024, 5, dayOfMonth, hour, minute).atZone(ZoneOffset.UTC);
+    }
+}
@@ -0,0 +1,115 @@
+package com.example.ansibleping;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class OperationServiceTest {
+
+    private final AnsibleService ansibleService = mock(AnsibleService.class);
+    private final IISProbeService probeService = mock(IISProbeService.class);
+
+    private OperationService operations;
+
+    @AfterEach
+    void tearDown() {
+        operations.shutdown();
+    }
+
+    @Test
+    void refusesOperationsOnceTheQueueIsFull() throws Exception {
+        operations = service(1, 1, 100);
+        CountDownLatch release = new CountDownLatch(1);
+        when(ansibleService.pingVM(anyString(), anyString(), anyString())).thenAnswer(invocation -> {
+            release.await(5, TimeUnit.SECONDS);
+            return "pong";
+        });
+
+        Operation running = operations.submit("ping", "web1", "admin", "secret");
+        Operation queued = operations.submit("ping", "web2", "admin", "secret");
+
+        assertThatThrownBy(() -> operations.submit("ping", "web3", "admin", "secret"))
+                .isInstanceOf(RejectedExecutionException.class)
+                .hasMessage("Too many operations queued; try again later");
+        // The refused operation is not left behind as pending forever
+        assertThat(operations.getAll(List.of())).extracting(Operation.Snapshot::host)
+                .containsExactlyInAnyOrder("web1", "web2");
+
+        release.countDown();
+        assertThat(running.whenDone().get(5, TimeUnit.SECONDS).status()).isEqualTo(Operation.Status.SUCCEEDED);
+        assertThat(queued.whenDone().get(5, TimeUnit.SECONDS).status()).isEqualTo(Operation.Status.SUCCEEDED);
+        // With room in the queue again, new operations are taken
+        assertThat(operations.submit("ping", "web3", "admin", "secret").whenDone().get(5, TimeUnit.SECONDS)
+                .result()).isEqualTo("pong");
+    }
+
+    @Test
+    void keepsTheResultOfTheMatchingSynchronousCall() throws Exception {
+        operations = service(2, 10, 100);
+        ServiceStatus running = ServiceStatus.of("web1", ServiceState.RUNNING, null);
+        when(ansibleService.getIISStatus("web1", "admin", "secret")).thenReturn(running);
+
+        Operation op = operations.submit("DETAILS", "web1", "admin", "secret");
+        Operation.Snapshot done = op.whenDone().get(5, TimeUnit.SECONDS);
+
+        assertThat(done.operation()).isEqualTo(Operation.Kind.DETAILS);
+        assertThat(done.result()).isEqualTo(running);
+        assertThat(done.startedAt()).isPositive();
+        assertThat(done.finishedAt()).isGreaterThanOrEqualTo(done.startedAt());
+        assertThat(operations.get(op.getId()).snapshot()).isEqualTo(done);
+    }
+
+    @Test
+    void recordsAFailedCallAsAFailedOperation() throws Exception {
+        operations = service(2, 10, 100);
+        when(ansibleService.restartIIS(anyString(), anyString(), anyString()))
+                .thenThrow(new IllegalStateException("ansible not found"));
+
+        Operation.Snapshot done = operations.submit("restart", "web1", "admin", "secret").whenDone()
+                .get(5, TimeUnit.SECONDS);
+
+        assertThat(done.status()).isEqualTo(Operation.Status.FAILED);
+        assertThat(done.error()).isEqualTo("Error: ansible not found");
+    }
+
+    @Test
+    void rejectsUnknownOperationsBeforeQueueing() {
+        operations = service(2, 10, 100);
+
+        assertThatThrownBy(() -> operations.submit("reboot", "web1", "admin", "secret"))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageStartingWith("Operation must be one of");
+        assertThat(operations.getAll(List.of())).isEmpty();
+    }
+
+    @Test
+    void dropsTheOldestFinishedOperationsBeyondTheRetentionLimit() throws Exception {
+        operations = service(1, 10, 2);
+        when(ansibleService.pingVM(anyString(), anyString(), anyString())).thenReturn("pong");
+
+        Operation first = operations.submit("ping", "web1", "admin", "secret");
+        first.whenDone().get(5, TimeUnit.SECONDS);
+        operations.submit("ping", "web2", "admin", "secret").whenDone().get(5, TimeUnit.SECONDS);
+        operations.submit("ping", "web3", "admin", "secret").whenDone().get(5, TimeUnit.SECONDS);
+
+        assertThat(operations.get(first.getId())).isNull();
+        assertThat(operations.getAll(List.of())).extracting(Operation.Snapshot::host)
+                .containsExactlyInAnyOrder("web2", "web3");
+    }
+
+    private OperationService service(int workerThreads, int maxQueued, int maxRetained) {
+        return new OperationService(ansibleService, probeService, new AnsibleMetrics(new SimpleMeterRegistry(), false),
+                workerThreads, maxQueued, maxRetained);
+    }
+}
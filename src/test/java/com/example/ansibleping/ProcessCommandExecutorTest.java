@@ -0,0 +1,123 @@
+package com.example.ansibleping;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ProcessCommandExecutorTest {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(10);
+
+    private final ProcessRunner processRunner = mock(ProcessRunner.class);
+    private final ProcessCommandExecutor executor = new ProcessCommandExecutor(processRunner,
+            new AnsibleMetrics(new SimpleMeterRegistry(), false), 10, "json");
+
+    private Map<String, String> environment;
+    private String inventory;
+    private List<String> command;
+    private Duration timeout;
+    private String output = "";
+
+    @Test
+    void batchCredentialsAreLookedUpFromTheEnvironment() throws IOException {
+        recordRuns();
+
+        executor.executeBatch(List.of(
+                new Target("web1", "admin", "{{ lookup('pipe', 'id') }}"),
+                new Target("web2", "admin", "{% raw %}p4ss"),
+                new Target("web3", "admin", "{{ lookup('pipe', 'id') }}")), "win_ping", null, TIMEOUT);
+
+        // The passwords never reach the inventory, where ansible would template them
+        assertThat(inventory).doesNotContain("pipe", "raw", "p4ss")
+                .contains("\"ansible_password\":\"{{ lookup('env', 'ANSIBLE_PING_PASSWORD_1') }}\"")
+                .contains("\"ansible_password\":\"{{ lookup('env', 'ANSIBLE_PING_PASSWORD_2') }}\"")
+                .doesNotContain("ANSIBLE_PING_PASSWORD_3");
+        assertThat(environment)
+                .containsEntry("ANSIBLE_PING_USER_1", "admin")
+                .containsEntry("ANSIBLE_PING_PASSWORD_1", "{{ lookup('pipe', 'id') }}")
+                .containsEntry("ANSIBLE_PING_PASSWORD_2", "{% raw %}p4ss");
+    }
+
+    @Test
+    void runsABatchInOneProcessAndSplitsTheResultsByHost() throws IOException {
+        recordRuns();
+        output = """
+                {"plays": [{"tasks": [{"hosts": {
+                    "web1": {"changed": false, "state": "running", "start_mode": "auto"},
+                    "web2": {"changed": false, "unreachable": true, "msg": "Read timed out"}
+                }, "task": {"name": "win_service"}}]}]}
+                """;
+
+        Map<String, ServiceStatus> statuses = executor.executeBatch(List.of(new Target("web1", "admin", "a"),
+                new Target("web2", "admin", "a"), new Target("web3", "admin", "a")), "win_service", "name=W3SVC", TIMEOUT);
+
+        assertThat(command).containsSubsequence("ansible", "all", "-i").containsSubsequence("-m", "win_service",
+                "-a", "name=W3SVC");
+        assertThat(inventory).contains("\"web1\"", "\"web2\"", "\"web3\"", "\"ansible_connection\":\"winrm\"");
+        assertThat(statuses).containsOnlyKeys("web1", "web2", "web3");
+        assertThat(statuses.get("web1").state()).isEqualTo(ServiceState.RUNNING);
+        assertThat(statuses.get("web2").state()).isEqualTo(ServiceState.UNREACHABLE);
+        // One host missing from the output does not take the others with it
+        assertThat(statuses.get("web3").state()).isEqualTo(ServiceState.UNKNOWN);
+        assertThat(statuses.get("web3").message()).isEqualTo("No result returned for web3");
+    }
+
+    @Test
+    void givesABatchADeadlineForEachRoundOfForks() throws IOException {
+        recordRuns();
+        List<Target> targets = new ArrayList<>();
+        for (int i = 0; i < 25; i++) {
+            targets.add(new Target("web" + i, "admin", "a"));
+        }
+
+        executor.executeBatch(targets, "win_ping", null, TIMEOUT);
+
+        // 25 hosts at 10 forks take three rounds
+        assertThat(timeout).isEqualTo(TIMEOUT.multipliedBy(3));
+        assertThat(environment).containsEntry("ANSIBLE_FORKS", "10");
+    }
+
+    @Test
+    void deletesTheBatchInventoryAfterTheRun() throws IOException {
+        recordRuns();
+
+        executor.executeBatch(List.of(new Target("web1", "admin", "a")), "win_ping", null, TIMEOUT);
+
+        assertThat(Path.of(command.get(3))).doesNotExist();
+    }
+
+    @Test
+    void singleHostCredentialsGoIntoTheEnvironment() throws IOException {
+        recordRuns();
+
+        executor.execute(new AnsibleCommand(new Target("web1", "admin", "S3cret!"), "win_ping", null, TIMEOUT));
+
+        assertThat(environment).containsEntry("ANSIBLE_PING_USER", "admin")
+                .containsEntry("ANSIBLE_PING_PASSWORD", "S3cret!");
+    }
+
+    // Keep what each run was started with; the batch inventory is deleted once the run is over
+    private void recordRuns() throws IOException {
+        when(processRunner.run(any(ProcessBuilder.class), any(Duration.class))).thenAnswer(invocation -> {
+            ProcessBuilder builder = invocation.getArgument(0);
+            command = List.copyOf(builder.command());
+            timeout = invocation.getArgument(1);
+            environment = Map.copyOf(builder.environment());
+            Path file = Path.of(command.get(3));
+            inventory = Files.exists(file) ? Files.readString(file) : null;
+            return new ProcessRunner.ProcessResult(0, output, false, false, 5);
+        });
+    }
+}
@@ -0,0 +1,97 @@
+package com.example.ansibleping;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ProcessRunnerTest {
+
+    private final ProcessRunner runner = new ProcessRunner(new AnsibleMetrics(new SimpleMeterRegistry(), false),
+            1024, 4, false);
+
+    @AfterEach
+    void tearDown() {
+        runner.shutdown();
+    }
+
+    @Test
+    void capturesTheOutputAndExitCode() throws IOException {
+        ProcessRunner.ProcessResult result = runner.run(List.of("sh", "-c", "echo out; echo err >&2; exit 3"),
+                Duration.ofSeconds(10));
+
+        assertThat(result.exitCode()).isEqualTo(3);
+        assertThat(result.output()).contains("out\n", "err\n");
+        assertThat(result.timedOut()).isFalse();
+        assertThat(result.truncated()).isFalse();
+    }
+
+    @Test
+    void keepsDrainingPastTheOutputCap() throws IOException {
+        // Far more than a pipe buffer: the child would block forever if nobody read it
+        ProcessRunner.ProcessResult result = runner.run(List.of("sh", "-c", "head -c 1000000 /dev/zero | tr '\\0' x"),
+                Duration.ofSeconds(10));
+
+        assertThat(result.exitCode()).isZero();
+        assertThat(result.timedOut()).isFalse();
+        assertThat(result.truncated()).isTrue();
+        assertThat(result.output()).hasSize(1024).matches("x+");
+    }
+
+    @Test
+    void neverRunsMoreProcessesThanTheLimit() throws Exception {
+        ProcessRunner limited = new ProcessRunner(new AnsibleMetrics(new SimpleMeterRegistry(), false), 1024, 2, true);
+        try {
+            List<CompletableFuture<ProcessRunner.ProcessResult>> running = List.of(
+                    limited.start(new ProcessBuilder("sleep", "1"), Duration.ofSeconds(10)),
+                    limited.start(new ProcessBuilder("sleep", "1"), Duration.ofSeconds(10)));
+            assertThat(limited.getRunningProcessCount()).isEqualTo(2);
+
+            // No slot frees up in time, so the third is reported as timed out without being started
+            ProcessRunner.ProcessResult third = limited.run(List.of("echo", "third"), Duration.ofMillis(200));
+            assertThat(third.timedOut()).isTrue();
+            assertThat(third.output()).isEmpty();
+
+            running.forEach(CompletableFuture::join);
+            // With a slot free again it runs, its output drained on a virtual thread
+            assertThat(limited.run(List.of("echo", "fourth"), Duration.ofSeconds(10)).output()).isEqualTo("fourth\n");
+        } finally {
+            limited.shutdown();
+        }
+    }
+
+    @Test
+    void countsTheWaitForASlotAgainstTheDeadline() throws Exception {
+        ProcessRunner limited = new ProcessRunner(new AnsibleMetrics(new SimpleMeterRegistry(), false), 1024, 1, false);
+        try {
+            CompletableFuture<ProcessRunner.ProcessResult> first = limited.start(new ProcessBuilder("sleep", "1"),
+                    Duration.ofSeconds(10));
+
+            // Waits about a second for the slot, which leaves too little of its 1.5 s for a one second run
+            ProcessRunner.ProcessResult second = limited.run(List.of("sleep", "1"), Duration.ofMillis(1500));
+
+            assertThat(first.join().timedOut()).isFalse();
+            assertThat(second.timedOut()).isTrue();
+        } finally {
+            limited.shutdown();
+        }
+    }
+
+    @Test
+    void killsTheProcessTreeAtTheDeadline() throws IOException {
+        long start = System.nanoTime();
+
+        // The child's own child holds the pipe open too
+        ProcessRunner.ProcessResult result = runner.run(List.of("sh", "-c", "sleep 30 & sleep 30"),
+                Duration.ofMillis(300));
+
+        assertThat(result.timedOut()).isTrue();
+        assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(Duration.ofSeconds(10));
+    }
+}
@@ -0,0 +1,87 @@
+package com.example.ansibleping;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class RemediationEngineTest {
+
+    private static final Target WEB1 = new Target("web1", "admin", "secret");
+    private static final HttpHealthProbe.HttpCheck SERVER_ERROR =
+            new HttpHealthProbe.HttpCheck("web1", "http://web1/", 503, 12, false, null, 0);
+
+    private final Inventory inventory = mock(Inventory.class);
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final HostSchedule schedule = new HostSchedule("web1",
+            new HostSchedule.Policy(60_000, 10_000, 80_000, 3, 300_000), 0);
+
+    // Maintenance every day from 02:00 to 04:00 UTC, escalation after three failures, recycle at most every 10 minutes
+    private final RemediationEngine engine = new RemediationEngine(List.of(
+            new MaintenanceWindowPolicy(inventory, "* 02:00-04:00", "UTC", "maintenance"),
+            new EscalationPolicy(3),
+            new AppPoolRecyclePolicy(600_000)),
+            new AnsibleMetrics(registry, false));
+
+    @Test
+    void aFailureInsideTheWindowDoesNotUseUpTheEscalation() {
+        assertThat(engine.decide(down(1, 0))).isEmpty();
+        assertThat(engine.decide(down(1, 10))).isEmpty();
+        // The third failure in a row falls inside the window
+        assertThat(engine.decide(down(2, 30))).isEmpty();
+
+        assertThat(engine.decide(down(4, 10))).extracting(RemediationEngine.Remediation::action)
+                .containsExactly(RemediationPolicy.Action.ESCALATE);
+        assertThat(registry.get("iis.remediation.actions").tag("policy", "maintenance")
+                .tag("outcome", "suppressed").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void aRecoveryInsideTheWindowStillEndsTheOutage() {
+        engine.decide(down(1, 0));
+        engine.decide(down(1, 10));
+        engine.decide(event(2, 30, ServiceState.RUNNING, null));
+
+        assertThat(engine.decide(down(4, 10))).isEmpty();
+        assertThat(engine.decide(down(4, 20))).isEmpty();
+        assertThat(engine.decide(down(4, 30))).extracting(RemediationEngine.Remediation::action)
+                .containsExactly(RemediationPolicy.Action.ESCALATE);
+    }
+
+    @Test
+    void aSuppressedRecycleStartsNoCooldown() {
+        assertThat(engine.decide(event(3, 58, ServiceState.RUNNING, SERVER_ERROR))).isEmpty();
+
+        assertThat(engine.decide(event(4, 1, ServiceState.RUNNING, SERVER_ERROR)))
+                .extracting(RemediationEngine.Remediation::action)
+                .containsExactly(RemediationPolicy.Action.RECYCLE);
+        // The recycle that did run does start one
+        assertThat(engine.decide(event(4, 5, ServiceState.RUNNING, SERVER_ERROR))).isEmpty();
+    }
+
+    @Test
+    void aHostTaggedForMaintenanceIsLeftAlone() {
+        when(inventory.entry("web1")).thenReturn(new InventoryTarget("web1", "admin", null, Set.of("maintenance"), null));
+
+        for (int minute = 0; minute < 5; minute++) {
+            assertThat(engine.decide(down(12, minute))).isEmpty();
+        }
+    }
+
+    private MonitorEvent down(int hour, int minute) {
+        return event(hour, minute, ServiceState.STOPPED, null);
+    }
+
+    private MonitorEvent event(int hour, int minute, ServiceState state, HttpHealthProbe.HttpCheck failedProbe) {
+        long at = LocalDateTime.of(2024, 5, 6, hour, minute).toInstant(ZoneOffset.UTC).toEpochMilli();
+        return new MonitorEvent(WEB1, schedule, ServiceState.RUNNING, ServiceStatus.of("web1", state, null),
+                failedProbe, at);
+    }
+}
@@ -0,0 +1,84 @@
+package com.example.ansibleping;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class StartupWarmupTest {
+
+    private final CommandExecutor commandExecutor = mock(CommandExecutor.class);
+    private final Inventory inventory = mock(Inventory.class);
+    private final MeterRegistry registry = new SimpleMeterRegistry();
+
+    private final List<Target> targets = List.of(new Target("web1", "admin", "a"), new Target("web2", "admin", "a"),
+            new Target("web3", "admin", "a"));
+
+    @Test
+    void warmsUpTheFirstHostsInTheBackground() {
+        when(inventory.targets()).thenReturn(targets);
+
+        warmup(true, 2);
+
+        verify(commandExecutor, timeout(5000)).warmUp(targets.subList(0, 2));
+    }
+
+    @Test
+    void aFailedWarmUpOnlyCostsTheWarmUp() throws Exception {
+        when(inventory.targets()).thenReturn(targets);
+        doThrow(new IllegalStateException("no route to host")).when(commandExecutor).warmUp(any());
+
+        StartupWarmup warmup = warmup(true, 32);
+        verify(commandExecutor, timeout(5000)).warmUp(targets);
+
+        warmup.recordCheck(ServiceStatus.of("web1", ServiceState.RUNNING, null));
+        assertThat(firstCheckTime()).isPositive();
+    }
+
+    @Test
+    void doesNothingAheadOfTimeWhenDisabled() throws Exception {
+        when(inventory.targets()).thenReturn(targets);
+
+        warmup(false, 32);
+
+        TimeUnit.MILLISECONDS.sleep(100);
+        verify(commandExecutor, never()).warmUp(any());
+    }
+
+    @Test
+    void reportsTheFirstCheckThatGotAServiceStateBack() throws Exception {
+        when(inventory.targets()).thenReturn(List.of());
+        StartupWarmup warmup = warmup(false, 32);
+
+        warmup.recordCheck(ServiceStatus.of("web1", ServiceState.UNREACHABLE, "Read timed out"));
+        assertThat(firstCheckTime()).isNaN();
+
+        // A stopped IIS still means the host answered
+        warmup.recordCheck(ServiceStatus.of("web2", ServiceState.STOPPED, null));
+        double first = firstCheckTime();
+        TimeUnit.MILLISECONDS.sleep(20);
+        warmup.recordCheck(ServiceStatus.of("web1", ServiceState.RUNNING, null));
+
+        assertThat(first).isPositive();
+        assertThat(firstCheckTime()).isEqualTo(first);
+    }
+
+    private StartupWarmup warmup(boolean enabled, int maxHosts) {
+        return new StartupWarmup(commandExecutor, inventory, new AnsibleMetrics(registry, false), enabled, maxHosts);
+    }
+
+    private double firstCheckTime() {
+        return registry.get("iis.monitor.first.check.time").timeGauge().value(TimeUnit.MILLISECONDS);
+    }
+}
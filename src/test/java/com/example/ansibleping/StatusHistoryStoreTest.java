@@ -0,0 +1,182 @@
+package com.example.ansibleping;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class StatusHistoryStoreTest {
+
+    private static final long HOUR = TimeUnit.HOURS.toMillis(1);
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void storesChecksAndRestartsOfEachHost() {
+        StatusHistoryStore store = open(100);
+
+        store.recordCheck(status("web1", ServiceState.RUNNING, 120));
+        store.recordCheck(status("web2", ServiceState.STOPPED, 80));
+        store.recordRestart(status("web2", ServiceState.RUNNING, 900));
+
+        List<HistoryRecord> web2 = store.query("web2", 0, Long.MAX_VALUE);
+        assertThat(web2).extracting(HistoryRecord::state).containsExactly(ServiceState.STOPPED, ServiceState.RUNNING);
+        assertThat(web2.get(0).restart()).isFalse();
+        assertThat(web2.get(0).samples()).isEqualTo(1);
+        assertThat(web2.get(0).upSamples()).isZero();
+        assertThat(web2.get(1).restart()).isTrue();
+        assertThat(web2.get(1).succeeded()).isTrue();
+        assertThat(web2.get(1).samples()).isZero();
+        assertThat(store.query("web1", 0, Long.MAX_VALUE)).singleElement()
+                .satisfies(record -> assertThat(record.durationMillis()).isEqualTo(120));
+        assertThat(store.query("unknown", 0, Long.MAX_VALUE)).isEmpty();
+    }
+
+    @Test
+    void keepsRecordsAcrossARestart() {
+        StatusHistoryStore store = open(100);
+        store.recordCheck(status("web1", ServiceState.RUNNING, 10));
+        store.close();
+
+        StatusHistoryStore reopened = open(100);
+        reopened.recordCheck(status("web1", ServiceState.STOPPED, 20));
+
+        assertThat(reopened.query("web1", 0, Long.MAX_VALUE)).extracting(HistoryRecord::state)
+                .containsExactly(ServiceState.RUNNING, ServiceState.STOPPED);
+        // Still today's first segment, not a new one
+        assertThat(segmentFiles()).containsExactly(fileName(today(), "000"));
+    }
+
+    @Test
+    void startsANewSegmentWhenTheCurrentOneIsFull() {
+        StatusHistoryStore store = open(2);
+
+        for (int i = 0; i < 5; i++) {
+            store.recordCheck(status("web1", ServiceState.RUNNING, i));
+        }
+
+        assertThat(segmentFiles()).containsExactly(fileName(today(), "000"), fileName(today(), "001"),
+                fileName(today(), "002"));
+        assertThat(store.query("web1", 0, Long.MAX_VALUE)).extracting(HistoryRecord::durationMillis)
+                .containsExactly(0, 1, 2, 3, 4);
+    }
+
+    @Test
+    void writesANewDayToItsOwnSegment() throws IOException {
+        LocalDate yesterday = today().minusDays(1);
+        long yesterdayNoon = startOf(yesterday) + 12 * HOUR;
+        writeDay(yesterday, "web1", new long[] {yesterdayNoon}, ServiceState.STOPPED);
+
+        StatusHistoryStore store = open(100);
+        store.recordCheck(status("web1", ServiceState.RUNNING, 5));
+
+        assertThat(segmentFiles()).containsExactly(fileName(yesterday, "000"), fileName(today(), "000"));
+        assertThat(store.query("web1", startOf(yesterday), Long.MAX_VALUE)).extracting(HistoryRecord::state)
+                .containsExactly(ServiceState.STOPPED, ServiceState.RUNNING);
+        assertThat(store.query("web1", startOf(today()), Long.MAX_VALUE)).extracting(HistoryRecord::state)
+                .containsExactly(ServiceState.RUNNING);
+    }
+
+    @Test
+    void downsamplesOldDaysIntoOneRecordPerHostAndBucket() throws IOException {
+        LocalDate old = today().minusDays(10);
+        long start = startOf(old);
+        Path file = dir.resolve(fileName(old, "000"));
+        Files.writeString(dir.resolve("hosts.txt"), "web1\nweb2\n");
+        HistorySegment segment = HistorySegment.create(file, 16);
+        segment.append(start + 60_000, 0, 100, ServiceState.RUNNING, HistorySegment.FLAG_SUCCEEDED, 1, 1);
+        segment.append(start + 120_000, 1, 400, ServiceState.RUNNING, HistorySegment.FLAG_SUCCEEDED, 1, 1);
+        segment.append(start + 180_000, 0, 300, ServiceState.STOPPED, HistorySegment.FLAG_SUCCEEDED, 1, 0);
+        segment.append(start + 240_000, 0, 5000, ServiceState.RUNNING,
+                HistorySegment.FLAG_RESTART | HistorySegment.FLAG_SUCCEEDED, 0, 0);
+        segment.append(start + 300_000, 0, 200, ServiceState.RUNNING, HistorySegment.FLAG_SUCCEEDED, 1, 1);
+        segment.append(start + HOUR + 60_000, 0, 50, ServiceState.RUNNING, HistorySegment.FLAG_SUCCEEDED, 1, 1);
+        segment.force();
+
+        StatusHistoryStore store = open(100);
+        store.maintain();
+
+        assertThat(segmentFiles()).containsExactly(old.format(DateTimeFormatter.BASIC_ISO_DATE) + "-ds.seg");
+        List<HistoryRecord> web1 = store.query("web1", start, start + 2 * HOUR);
+        assertThat(web1).hasSize(3);
+        // First hour: three checks folded into one, with the last state and the average duration
+        assertThat(web1.get(0).timestamp()).isEqualTo(start);
+        assertThat(web1.get(0).restart()).isFalse();
+        assertThat(web1.get(0).samples()).isEqualTo(3);
+        assertThat(web1.get(0).upSamples()).isEqualTo(2);
+        assertThat(web1.get(0).state()).isEqualTo(ServiceState.RUNNING);
+        assertThat(web1.get(0).durationMillis()).isEqualTo(200);
+        // The restart is kept as it was
+        assertThat(web1.get(1).restart()).isTrue();
+        assertThat(web1.get(1).timestamp()).isEqualTo(start + 240_000);
+        assertThat(web1.get(2).timestamp()).isEqualTo(start + HOUR);
+        assertThat(web1.get(2).samples()).isEqualTo(1);
+        assertThat(store.query("web2", start, start + 2 * HOUR)).singleElement()
+                .satisfies(record -> assertThat(record.samples()).isEqualTo(1));
+    }
+
+    @Test
+    void deletesDaysPastRetention() throws IOException {
+        LocalDate expired = today().minusDays(91);
+        LocalDate kept = today().minusDays(89);
+        writeDay(expired, "web1", new long[] {startOf(expired)}, ServiceState.RUNNING);
+        writeDay(kept, "web1", new long[] {startOf(kept)}, ServiceState.RUNNING);
+
+        StatusHistoryStore store = open(100);
+        store.maintain();
+
+        assertThat(segmentFiles()).containsExactly(kept.format(DateTimeFormatter.BASIC_ISO_DATE) + "-ds.seg");
+        assertThat(store.query("web1", startOf(expired), Long.MAX_VALUE)).extracting(HistoryRecord::timestamp)
+                .containsExactly(startOf(kept));
+    }
+
+    private StatusHistoryStore open(int segmentRecords) {
+        return new StatusHistoryStore(dir.toString(), segmentRecords, 90, 7, HOUR, 1000);
+    }
+
+    // A raw segment of a past day, for a host that is the first in hosts.txt
+    private void writeDay(LocalDate day, String host, long[] timestamps, ServiceState state) throws IOException {
+        Files.writeString(dir.resolve("hosts.txt"), host + "\n");
+        HistorySegment segment = HistorySegment.create(dir.resolve(fileName(day, "000")), timestamps.length);
+        for (long timestamp : timestamps) {
+            segment.append(timestamp, 0, 10, state, HistorySegment.FLAG_SUCCEEDED, 1,
+                    state == ServiceState.RUNNING ? 1 : 0);
+        }
+        segment.force();
+    }
+
+    private List<String> segmentFiles() {
+        try (var files = Files.list(dir)) {
+            return files.map(file -> file.getFileName().toString()).filter(name -> name.endsWith(".seg"))
+                    .sorted().toList();
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    private static ServiceStatus status(String host, ServiceState state, long durationMillis) {
+        return new ServiceStatus(host, state, false, null, null, durationMillis, null);
+    }
+
+    private static String fileName(LocalDate day, String sequence) {
+        return day.format(DateTimeFormatter.BASIC_ISO_DATE) + "-" + sequence + ".seg";
+    }
+
+    private static LocalDate today() {
+        return LocalDate.now(ZoneOffset.UTC);
+    }
+
+    private static long startOf(LocalDate day) {
+        return day.atStartOfDay(ZoneOffset.UTC).toInstant().toEpochMilli();
+    }
+}
@@ -0,0 +1,227 @@
+package com.example.ansibleping;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A WS-Management endpoint on localhost that speaks just enough of the
+ * remote shell protocol for {@link WinRmSession}: it creates and deletes
+ * shells, decodes the PowerShell script of each command and answers its
+ * Receive with whatever the test's responder returns for that script.
+ */
+final class StubWsManServer implements AutoCloseable {
+
+    /**
+     * What a command prints and exits with; a null reply keeps it running forever
+     */
+    record Reply(int exitCode, String stdout, String stderr) {
+
+        static Reply ok(String stdout) {
+            return new Reply(0, stdout, "");
+        }
+    }
+
+    private static final Pattern ACTION = Pattern.compile("<a:Action[^>]*>([^<]+)</a:Action>");
+    private static final Pattern ENCODED_COMMAND = Pattern.compile("-EncodedCommand ([A-Za-z0-9+/=]+)");
+    private static final Pattern COMMAND_ID = Pattern.compile("CommandId=\"([^\"]+)\"");
+    private static final String SHELL = "http://schemas.microsoft.com/wbem/wsman/1/windows/shell";
+    private static final String ENVELOPE = "<s:Envelope xmlns:s=\"http://www.w3.org/2003/05/soap-envelope\""
+            + " xmlns:rsp=\"" + SHELL + "\"><s:Body>%s</s:Body></s:Envelope>";
+
+    static {
+        // The JDK server writes headers and body separately; without this each reply waits on a delayed ACK
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+    }
+
+    private final HttpServer server;
+    private final Set<String> authorizations = ConcurrentHashMap.newKeySet();
+    private final Map<String, Reply> commands = new ConcurrentHashMap<>();
+    private final Map<String, Long> done = new ConcurrentHashMap<>();
+    private final Map<String, AtomicInteger> requests = new ConcurrentHashMap<>();
+    private final AtomicInteger ids = new AtomicInteger();
+    private final AtomicInteger receiveTimeouts = new AtomicInteger();
+    private volatile Function<String, Reply> responder = script -> Reply.ok("");
+    private volatile int chunkBytes = Integer.MAX_VALUE;
+    private volatile Duration latency = Duration.ZERO;
+
+    StubWsManServer(String user, String pass) throws IOException {
+        this(user, pass, InetAddress.getLoopbackAddress());
+    }
+
+    /**
+     * Listen on another address, e.g. the wildcard one to answer for several loopback hosts
+     */
+    StubWsManServer(String user, String pass, InetAddress address) throws IOException {
+        accept(user, pass);
+        server = HttpServer.create(new InetSocketAddress(address, 0), 0);
+        server.createContext("/wsman", this::handle);
+        server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        server.start();
+    }
+
+    /**
+     * Let another user and password in as well
+     */
+    void accept(String user, String pass) {
+        authorizations.add("Basic " + Base64.getEncoder().encodeToString(
+                (user + ":" + pass).getBytes(StandardCharsets.UTF_8)));
+    }
+
+    int port() {
+        return server.getAddress().getPort();
+    }
+
+    void respond(Function<String, Reply> responder) {
+        this.responder = responder;
+    }
+
+    /**
+     * Answer the next Receives with the fault WinRM returns when a long poll finds no output
+     */
+    void timeOutReceives(int count) {
+        receiveTimeouts.set(count);
+    }
+
+    /**
+     * Let every command run this long before it is done, like a remote module call
+     */
+    void latency(Duration latency) {
+        this.latency = latency;
+    }
+
+    /**
+     * Send output in Stream elements of at most this many bytes, cutting through characters if need be
+     */
+    void chunkOutput(int bytes) {
+        chunkBytes = bytes;
+    }
+
+    /**
+     * Requests received so far for an action: Create, Command, Receive, Signal or Delete
+     */
+    int requests(String action) {
+        AtomicInteger count = requests.get(action);
+        return count == null ? 0 : count.get();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        String body;
+        try (InputStream in = exchange.getRequestBody()) {
+            body = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+        String authorization = exchange.getRequestHeaders().getFirst("Authorization");
+        if (authorization == null || !authorizations.contains(authorization)) {
+            send(exchange, 401, "");
+            return;
+        }
+        Matcher action = ACTION.matcher(body);
+        String name = action.find() ? action.group(1).substring(action.group(1).lastIndexOf('/') + 1) : "";
+        requests.computeIfAbsent(name, k -> new AtomicInteger()).incrementAndGet();
+        switch (name) {
+            case "Create" -> send(exchange, 200, String.format(ENVELOPE,
+                    "<rsp:Shell><rsp:ShellId>shell-" + ids.incrementAndGet() + "</rsp:ShellId></rsp:Shell>"));
+            case "Command" -> command(exchange, body);
+            case "Receive" -> receive(exchange, body);
+            case "Signal", "Delete" -> send(exchange, 200, String.format(ENVELOPE, ""));
+            default -> send(exchange, 400, "Unsupported action " + name);
+        }
+    }
+
+    private void command(HttpExchange exchange, String body) throws IOException {
+        Matcher encoded = ENCODED_COMMAND.matcher(body);
+        if (!encoded.find()) {
+            send(exchange, 400, "No encoded command");
+            return;
+        }
+        String script = new String(Base64.getDecoder().decode(encoded.group(1)), StandardCharsets.UTF_16LE);
+        String commandId = "command-" + ids.incrementAndGet();
+        Reply reply = responder.apply(script);
+        if (reply != null) {
+            commands.put(commandId, reply);
+            done.put(commandId, System.nanoTime() + latency.toNanos());
+        }
+        send(exchange, 200, String.format(ENVELOPE,
+                "<rsp:CommandResponse><rsp:CommandId>" + commandId + "</rsp:CommandId></rsp:CommandResponse>"));
+    }
+
+    private void receive(HttpExchange exchange, String body) throws IOException {
+        if (receiveTimeouts.getAndUpdate(count -> Math.max(0, count - 1)) > 0) {
+            send(exchange, 500, String.format(ENVELOPE,
+                    "<s:Fault><s:Detail><f:WSManFault xmlns:f=\"http://schemas.microsoft.com/wbem/wsman/1/wsmanfault\""
+                            + " Code=\"2150858793\"/></s:Detail></s:Fault>"));
+            return;
+        }
+        Matcher id = COMMAND_ID.matcher(body);
+        String commandId = id.find() ? id.group(1) : "";
+        Long doneAt = done.remove(commandId);
+        if (doneAt != null) {
+            sleep(TimeUnit.NANOSECONDS.toMillis(doneAt - System.nanoTime()));
+        }
+        Reply reply = commands.remove(commandId);
+        if (reply == null) {
+            // Still running: hold the poll briefly, as the real service does, and report no output
+            sleep(50);
+            send(exchange, 200, String.format(ENVELOPE, "<rsp:ReceiveResponse><rsp:CommandState CommandId=\""
+                    + commandId + "\" State=\"" + SHELL + "/CommandState/Running\"/></rsp:ReceiveResponse>"));
+            return;
+        }
+        send(exchange, 200, String.format(ENVELOPE, "<rsp:ReceiveResponse>"
+                + stream("stdout", commandId, reply.stdout()) + stream("stderr", commandId, reply.stderr())
+                + "<rsp:Stream Name=\"stdout\" CommandId=\"" + commandId + "\" End=\"true\"/>"
+                + "<rsp:CommandState CommandId=\"" + commandId + "\" State=\"" + SHELL + "/CommandState/Done\">"
+                + "<rsp:ExitCode>" + reply.exitCode() + "</rsp:ExitCode></rsp:CommandState></rsp:ReceiveResponse>"));
+    }
+
+    private String stream(String name, String commandId, String text) {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        StringBuilder streams = new StringBuilder();
+        for (int from = 0; from < bytes.length; from += chunkBytes) {
+            streams.append("<rsp:Stream Name=\"").append(name).append("\" CommandId=\"").append(commandId).append("\">")
+                    .append(Base64.getEncoder().encodeToString(
+                            Arrays.copyOfRange(bytes, from, Math.min(bytes.length, from + chunkBytes))))
+                    .append("</rsp:Stream>");
+        }
+        return streams.toString();
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(Math.max(0, millis));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void send(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/soap+xml;charset=UTF-8");
+        exchange.sendResponseHeaders(status, bytes.length == 0 ? -1 : bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package com.example.ansibleping;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class WinRmCommandExecutorTest {
+
+    private static final Target WEB1 = new Target("127.0.0.1", "admin", "secret");
+    private static final Duration TIMEOUT = Duration.ofSeconds(10);
+
+    private StubWsManServer server;
+    private WinRmSessionPool pool;
+    private WinRmCommandExecutor executor;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = new StubWsManServer("admin", "secret");
+        AnsibleMetrics metrics = new AnsibleMetrics(new SimpleMeterRegistry(), false);
+        pool = new WinRmSessionPool(metrics, "http", server.port(), 2, 300000, 5, 5000, 1024);
+        executor = new WinRmCommandExecutor(pool, metrics);
+    }
+
+    @AfterEach
+    void tearDown() {
+        pool.closeAll();
+        server.close();
+    }
+
+    @Test
+    void pingsOverOneReusedShell() {
+        server.respond(script -> StubWsManServer.Reply.ok("changed=False\r\nping=pong\r\n"));
+
+        for (int i = 0; i < 3; i++) {
+            assertThat(executor.execute(new AnsibleCommand(WEB1, "win_ping", "", TIMEOUT)).state())
+                    .isEqualTo(ServiceState.REACHABLE);
+        }
+
+        assertThat(server.requests("Create")).isEqualTo(1);
+        assertThat(server.requests("Command")).isEqualTo(3);
+        assertThat(server.requests("Signal")).isEqualTo(3);
+        assertThat(pool.getIdleSessionCount()).isEqualTo(1);
+    }
+
+    @Test
+    void startsAServiceAndReadsItsState() {
+        server.respond(script -> script.contains("Start-Service") && script.contains("$name = 'W3SVC'")
+                ? StubWsManServer.Reply.ok("changed=True\r\nname=W3SVC\r\nstate=running\r\nstart_mode=auto\r\n"
+                        + "process_id=4120\r\n")
+                : new StubWsManServer.Reply(1, "", "unexpected script"));
+
+        ServiceStatus status = executor.execute(new AnsibleCommand(WEB1, "win_service", "name=W3SVC state=started",
+                TIMEOUT));
+
+        assertThat(status.state()).isEqualTo(ServiceState.RUNNING);
+        assertThat(status.changed()).isTrue();
+        assertThat(status.startMode()).isEqualTo("auto");
+        assertThat(status.pid()).isEqualTo(4120);
+    }
+
+    @Test
+    void reportsAFailedScriptWithItsErrorOutput() {
+        server.respond(script -> new StubWsManServer.Reply(1, "", "Access is denied.\r\n"));
+
+        ScriptResult result = executor.runScript(WEB1, "collect", "Get-Content C:\\secret.txt", TIMEOUT);
+
+        assertThat(result.status().state()).isEqualTo(ServiceState.FAILED);
+        assertThat(result.status().message()).isEqualTo("Access is denied.");
+        // A failing script says nothing about the shell, which stays in the pool
+        assertThat(pool.getIdleSessionCount()).isEqualTo(1);
+    }
+
+    @Test
+    void keepsPollingWhenAReceiveTimesOutWithoutOutput() {
+        server.respond(script -> StubWsManServer.Reply.ok("done"));
+        server.timeOutReceives(2);
+
+        ScriptResult result = executor.runScript(WEB1, "collect", "'done'", TIMEOUT);
+
+        assertThat(result.status().state()).isEqualTo(ServiceState.REACHABLE);
+        assertThat(result.stdout()).isEqualTo("done");
+        assertThat(server.requests("Receive")).isEqualTo(3);
+    }
+
+    @Test
+    void decodesACharacterSplitAcrossStreamChunks() {
+        // "é" and "€" are two and three bytes in UTF-8, so two-byte chunks cut through both
+        server.respond(script -> StubWsManServer.Reply.ok("café €5"));
+        server.chunkOutput(2);
+
+        ScriptResult result = executor.runScript(WEB1, "collect", "'café €5'", TIMEOUT);
+
+        assertThat(result.stdout()).isEqualTo("café €5");
+    }
+
+    @Test
+    void flagsOutputPastTheCaptureLimit() {
+        server.respond(script -> StubWsManServer.Reply.ok("x".repeat(2048)));
+
+        ScriptResult result = executor.runScript(WEB1, "collect", "'x' * 2048", TIMEOUT);
+
+        assertThat(result.status().state()).isEqualTo(ServiceState.TRUNCATED);
+    }
+
+    @Test
+    void discardsTheShellOfACommandThatMissesItsDeadline() {
+        server.respond(script -> null);
+
+        ServiceStatus status = executor.execute(new AnsibleCommand(WEB1, "win_ping", "", Duration.ofSeconds(1)));
+
+        assertThat(status.state()).isEqualTo(ServiceState.TIMED_OUT);
+        assertThat(server.requests("Delete")).isEqualTo(1);
+        assertThat(pool.getIdleSessionCount()).isZero();
+    }
+
+    @Test
+    void rejectedCredentialsMakeTheHostUnreachable() {
+        Target wrongPassword = new Target("127.0.0.1", "admin", "wrong");
+
+        ServiceStatus status = executor.execute(new AnsibleCommand(wrongPassword, "win_ping", "", TIMEOUT));
+
+        assertThat(status.state()).isEqualTo(ServiceState.UNREACHABLE);
+        assertThat(status.message()).contains("HTTP 401");
+    }
+
+    @Test
+    void warmsUpAShellPerTarget() {
+        executor.warmUp(List.of(WEB1, new Target("localhost", "admin", "secret")));
+
+        assertThat(server.requests("Create")).isEqualTo(2);
+        assertThat(pool.getIdleSessionCount()).isEqualTo(2);
+    }
+
+    @Test
+    void refusesModulesItCannotTranslate() {
+        ServiceStatus status = executor.execute(new AnsibleCommand(WEB1, "win_reboot", "", TIMEOUT));
+
+        assertThat(status.state()).isEqualTo(ServiceState.FAILED);
+        assertThat(server.requests("Create")).isZero();
+    }
+}
@@ -0,0 +1,108 @@
+package com.example.ansibleping;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class WinRmSessionPoolTest {
+
+    private static final Target ADMIN = new Target("127.0.0.1", "admin", "secret");
+    private static final Target OPERATOR = new Target("127.0.0.1", "operator", "other");
+
+    private StubWsManServer server;
+    private WinRmSessionPool pool;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = new StubWsManServer("admin", "secret");
+        server.accept("operator", "other");
+        pool = pool(300000);
+    }
+
+    @AfterEach
+    void tearDown() {
+        pool.closeAll();
+        server.close();
+    }
+
+    @Test
+    void limitsSessionsPerHostWhateverTheCredentials() throws Exception {
+        WinRmSession first = pool.acquire(ADMIN);
+
+        // The one session allowed to the host is in use, under another credential
+        assertThatThrownBy(() -> pool.acquire(OPERATOR)).isInstanceOf(IOException.class)
+                .hasMessageContaining("Timed out waiting");
+
+        pool.release(first);
+        pool.release(pool.acquire(OPERATOR));
+        assertThat(pool.getIdleSessionCount()).isEqualTo(2);
+    }
+
+    @Test
+    void neverSharesAShellBetweenCredentials() throws Exception {
+        WinRmSession admin = pool.acquire(ADMIN);
+        pool.release(admin);
+
+        WinRmSession operator = pool.acquire(OPERATOR);
+
+        assertThat(operator).isNotSameAs(admin);
+        pool.release(operator);
+        assertThat(pool.acquire(ADMIN)).isSameAs(admin);
+    }
+
+    @Test
+    void closesEveryIdleShellOfAForgottenHost() throws Exception {
+        pool.release(pool.acquire(ADMIN));
+        pool.release(pool.acquire(OPERATOR));
+        pool.release(pool.acquire(new Target("localhost", "admin", "secret")));
+
+        pool.closeIdle("127.0.0.1");
+
+        assertThat(server.requests("Delete")).isEqualTo(2);
+        assertThat(pool.getIdleSessionCount()).isEqualTo(1);
+        // Only the other host's idle shell is still tracked; no host has a session in use
+        assertThat(pool.trackedKeys()).isEqualTo(1);
+    }
+
+    @Test
+    void forgetsHostsAndCredentialsOnceTheirShellsAreEvicted() throws Exception {
+        pool = pool(0);
+        pool.release(pool.acquire(ADMIN));
+        pool.release(pool.acquire(OPERATOR));
+        Thread.sleep(5);
+
+        pool.evictIdleSessions();
+
+        assertThat(pool.getIdleSessionCount()).isZero();
+        assertThat(pool.trackedKeys()).isZero();
+    }
+
+    @Test
+    void keepsTrackingAHostWithASessionInUse() throws Exception {
+        pool = pool(0);
+        WinRmSession inUse = pool.acquire(ADMIN);
+
+        pool.evictIdleSessions();
+
+        assertThat(pool.trackedKeys()).isEqualTo(1);
+        // Its permit is still the one the session holds, so the limit keeps applying
+        assertThatThrownBy(() -> pool.acquire(OPERATOR)).isInstanceOf(IOException.class);
+        pool.release(inUse);
+        pool.release(pool.acquire(OPERATOR));
+    }
+
+    // One session per host, and a short wait for it
+    private WinRmSessionPool pool(long idleTimeoutMillis) {
+        if (pool != null) {
+            pool.closeAll();
+        }
+        return new WinRmSessionPool(new AnsibleMetrics(new SimpleMeterRegistry(), false), "http", server.port(), 1,
+                idleTimeoutMillis, 5, 200, 1024);
+    }
+}